@@ -1,5 +1,9 @@
 package gakesson.util.collections;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -12,10 +16,22 @@ import java.util.Set;
  * 
  * This class and it's subclasses are not thread-safe.
  * 
+ * The serialized form is the state written by
+ * {@link #writeHeader(ObjectOutputStream)}, if any, followed by the number of
+ * entries and the keys and values, meaning that a lazy {@link Map} which has
+ * not been created is written as a single zero. The number of entries of a
+ * frozen map is written complemented, so that it is frozen again when
+ * deserialized. The entries are read back using
+ * {@link #readEntries(ObjectInputStream, int)}, which creates the lazy
+ * {@link Map} only in case there are entries to read.
+ * 
  */
-abstract class AbstractLazyMap<K, V> implements Map<K, V> {
+abstract class AbstractLazyMap<K, V> implements Map<K, V>, Serializable {
+
+	private static final long serialVersionUID = 1L;
 
-	private Map<K, V> myBackingMap = Collections.emptyMap();
+	private transient Map<K, V> myBackingMap;
+	private transient int myPeakSize;
 
 	/**
 	 * Creates a new {@link AbstractLazyMap} instance.
@@ -23,7 +39,19 @@ abstract class AbstractLazyMap<K, V> implements Map<K, V> {
 	 * @return a new {@link AbstractLazyMap}.
 	 */
 	AbstractLazyMap() {
-		// Nothing
+		this(Collections.<K, V> emptyMap());
+	}
+
+	/**
+	 * Creates a new {@link AbstractLazyMap} instance which reads through the
+	 * provided initial {@link Map} until the lazy {@link Map} is created. The
+	 * provided {@link Map} must be the same instance as returned by
+	 * {@link #initialMap()}.
+	 * 
+	 * @param initialMap
+	 */
+	AbstractLazyMap(Map<K, V> initialMap) {
+		myBackingMap = initialMap;
 	}
 
 	@Override
@@ -53,22 +81,34 @@ abstract class AbstractLazyMap<K, V> implements Map<K, V> {
 
 	@Override
 	public V put(K key, V value) {
-		return getLazyMap().put(key, value);
+		Map<K, V> map = getLazyMap();
+		V previousValue = map.put(key, value);
+		updatePeakSize(map);
+		return previousValue;
 	}
 
 	@Override
 	public V remove(Object key) {
-		return myBackingMap.remove(key);
+		if (!isLazyMapCreated() && !myBackingMap.containsKey(key)) {
+			return null;
+		}
+		return getLazyMap().remove(key);
 	}
 
 	@Override
 	public void putAll(Map<? extends K, ? extends V> m) {
-		getLazyMap().putAll(m);
+		Map<K, V> map = getLazyMap();
+		map.putAll(m);
+		updatePeakSize(map);
 	}
 
 	@Override
 	public void clear() {
-		myBackingMap.clear();
+		if (isLazyMapCreated()) {
+			myBackingMap.clear();
+		} else if (!myBackingMap.isEmpty()) {
+			myBackingMap = createMap();
+		}
 	}
 
 	@Override
@@ -103,14 +143,241 @@ abstract class AbstractLazyMap<K, V> implements Map<K, V> {
 	 */
 	abstract Map<K, V> createMap();
 
+	/**
+	 * Creates the immutable, read-optimized copy of the provided {@link Map}
+	 * used by {@link #freeze()}.
+	 * 
+	 * @param map
+	 * @return
+	 */
+	Map<K, V> createFrozenMap(Map<K, V> map) {
+		return new FrozenHashMap<>(map, false);
+	}
+
+	/**
+	 * Creates the {@link Map} to lazily use, sized to hold the expected number
+	 * of entries if the {@link Map} supports presizing.
+	 * 
+	 * @param expectedSize
+	 * @return
+	 */
+	Map<K, V> createMap(int expectedSize) {
+		return createMap();
+	}
+
+	/**
+	 * Freezes this map, replacing the backing {@link Map} with an immutable
+	 * copy packed densely into arrays (or sorted arrays for the tree variants)
+	 * which uses considerably less memory than the backing {@link Map}. After
+	 * freezing, all modifying operations throw
+	 * {@link UnsupportedOperationException}.
+	 * 
+	 * Once frozen and safely published, this map may be read concurrently by
+	 * multiple threads without synchronization. Freezing an already frozen map
+	 * has no effect, and a frozen map is frozen again when deserialized.
+	 */
+	public void freeze() {
+		if (!isFrozen()) {
+			myBackingMap = createFrozenMap(myBackingMap);
+		}
+	}
+
+	/**
+	 * Releases the backing {@link Map}, resetting this map to its initial state
+	 * (i.e. empty, unless it reads through a template). Subclasses supporting
+	 * it clear the backing {@link Map} and return it to a {@link MapPool}, from
+	 * which it may later be reused as the backing {@link Map} of another lazy
+	 * map created by the same thread.
+	 * 
+	 * This map may continue to be used after being released, creating a new
+	 * backing {@link Map} when needed. However, the previously returned
+	 * {@link #getLazilyCreatedMap()} and views must no longer be used.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if this map is frozen.
+	 */
+	public void release() {
+		if (isFrozen()) {
+			throw new UnsupportedOperationException();
+		}
+
+		if (isLazyMapCreated()) {
+			Map<K, V> map = myBackingMap;
+			int peakSize = myPeakSize;
+			myBackingMap = initialMap();
+			myPeakSize = 0;
+			recycleMap(map, peakSize);
+		}
+	}
+
+	/**
+	 * Recycles the released backing {@link Map}. The default implementation
+	 * leaves it for the garbage collector.
+	 * 
+	 * @param map
+	 * @param peakSize
+	 *            The largest number of entries the {@link Map} has held, or
+	 *            {@link Integer#MAX_VALUE} if unknown since the {@link Map}
+	 *            has been exposed using {@link #getLazilyCreatedMap()}.
+	 */
+	void recycleMap(Map<K, V> map, int peakSize) {
+		// Nothing
+	}
+
+	/**
+	 * Returns whether or not this map has been frozen using {@link #freeze()}.
+	 * 
+	 * @return {@code true} if this map is frozen, else {@code false}.
+	 */
+	public boolean isFrozen() {
+		return myBackingMap instanceof FrozenHashMap
+				|| myBackingMap instanceof FrozenSortedMap;
+	}
+
+	/**
+	 * Returns the {@link Map} which is read through until the lazy {@link Map}
+	 * is created. The returned {@link Map} is never modified by this class.
+	 * 
+	 * @return
+	 */
+	Map<K, V> initialMap() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * Returns whether or not the lazy {@link Map} has been created.
+	 * 
+	 * @return
+	 */
+	boolean isLazyMapCreated() {
+		return myBackingMap != initialMap();
+	}
+
 	/**
 	 * Returns the lazily created {@link Map}. Note that the {@link Map} will be
-	 * created in case it wasn't present prior to calling this method.
+	 * created in case it wasn't present prior to calling this method. Since
+	 * the returned {@link Map} may grow without this map knowing, it is not
+	 * recycled when this map is released (see {@link #release()}).
 	 * 
 	 * @return
 	 */
 	public Map<K, V> getLazilyCreatedMap() {
-		return getLazyMap();
+		Map<K, V> map = getLazyMap();
+		myPeakSize = Integer.MAX_VALUE;
+		return map;
+	}
+
+	/**
+	 * Returns the current backing {@link Map} without creating it, i.e. the
+	 * {@link #initialMap()} in case the lazy {@link Map} is not yet created.
+	 * 
+	 * @return
+	 */
+	final Map<K, V> getBackingMap() {
+		return myBackingMap;
+	}
+
+	/**
+	 * Writes the state which must be known before the entries can be read,
+	 * e.g. a {@link java.util.Comparator}. Written before the entries, and
+	 * read back by {@link #readHeader(ObjectInputStream)}. Does nothing by
+	 * default.
+	 * 
+	 * @param s
+	 * @throws IOException
+	 */
+	void writeHeader(ObjectOutputStream s) throws IOException {
+		// Nothing
+	}
+
+	/**
+	 * Reads the state written by {@link #writeHeader(ObjectOutputStream)},
+	 * including the state needed by {@link #initialMap()}. Does nothing by
+	 * default.
+	 * 
+	 * @param s
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	void readHeader(ObjectInputStream s) throws IOException,
+			ClassNotFoundException {
+		// Nothing
+	}
+
+	/**
+	 * Writes the entries of the provided backing {@link Map}, whose number of
+	 * entries has already been written. Writes the keys and values by default.
+	 * 
+	 * @param s
+	 * @param map
+	 * @throws IOException
+	 */
+	void writeEntries(ObjectOutputStream s, Map<K, V> map) throws IOException {
+		for (Entry<K, V> entry : map.entrySet()) {
+			s.writeObject(entry.getKey());
+			s.writeObject(entry.getValue());
+		}
+	}
+
+	/**
+	 * Reads the provided (positive) number of entries written by
+	 * {@link #writeEntries(ObjectOutputStream, Map)} into a new lazy
+	 * {@link Map} sized to hold them.
+	 * 
+	 * @param s
+	 * @param size
+	 * @return
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	@SuppressWarnings("unchecked")
+	Map<K, V> readEntries(ObjectInputStream s, int size) throws IOException,
+			ClassNotFoundException {
+		Map<K, V> map = createMap(size);
+
+		for (int i = 0; i < size; ++i) {
+			map.put((K) s.readObject(), (V) s.readObject());
+		}
+		return map;
+	}
+
+	/**
+	 * Returns the capacity needed for a {@link java.util.HashMap} to hold the
+	 * expected number of entries without resizing.
+	 * 
+	 * @param expectedSize
+	 * @return
+	 */
+	static int hashMapCapacity(int expectedSize) {
+		return expectedSize < (1 << 30) ? (int) (expectedSize / 0.75f) + 1
+				: Integer.MAX_VALUE;
+	}
+
+	private void writeObject(ObjectOutputStream s) throws IOException {
+		s.defaultWriteObject();
+		writeHeader(s);
+		Map<K, V> map = myBackingMap;
+		int size = map.size();
+		s.writeInt(isFrozen() ? ~size : size);
+		writeEntries(s, map);
+	}
+
+	private void readObject(ObjectInputStream s) throws IOException,
+			ClassNotFoundException {
+		s.defaultReadObject();
+		readHeader(s);
+		int size = s.readInt();
+		boolean frozen = size < 0;
+
+		if (frozen) {
+			size = ~size;
+		}
+		myBackingMap = size == 0 ? initialMap() : readEntries(s, size);
+		myPeakSize = size;
+
+		if (frozen) {
+			freeze();
+		}
 	}
 
 	/**
@@ -118,10 +385,27 @@ abstract class AbstractLazyMap<K, V> implements Map<K, V> {
 	 * 
 	 * @return
 	 */
-	private Map<K, V> getLazyMap() {
-		if (myBackingMap == Collections.emptyMap()) {
-			myBackingMap = createMap();
+	final Map<K, V> getLazyMap() {
+		if (!isLazyMapCreated()) {
+			Map<K, V> map = createMap();
+			map.putAll(myBackingMap);
+			myBackingMap = map;
+			myPeakSize = map.size();
 		}
 		return myBackingMap;
 	}
+
+	/**
+	 * Records the current size of the provided backing {@link Map} in case it
+	 * is the largest so far.
+	 * 
+	 * @param map
+	 */
+	private void updatePeakSize(Map<K, V> map) {
+		int size = map.size();
+
+		if (size > myPeakSize) {
+			myPeakSize = size;
+		}
+	}
 }
@@ -2,6 +2,11 @@ package gakesson.util.collections;
 
 import static org.fest.assertions.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.testng.annotations.Test;
@@ -175,7 +180,148 @@ public abstract class AbstractLazyMapTest {
 		assertThat(lazyMap.get(object)).isNotNull();
 	}
 
+	@Test
+	public void shouldSerializeEmptyLazyMapWithoutCreatingMap()
+			throws Exception {
+		Map<Object, Object> lazyMap = createLazyMap();
+
+		Map<Object, Object> deserializedMap = serializeAndDeserialize(lazyMap);
+
+		assertThat(deserializedMap).isEmpty();
+		assertThat(deserializedMap.getClass()).isEqualTo(lazyMap.getClass());
+		assertThat(
+				((AbstractLazyMap<Object, Object>) deserializedMap)
+						.isLazyMapCreated()).isFalse();
+	}
+
+	@Test
+	public void shouldSerializeLazyMap() throws Exception {
+		Map<Object, Object> lazyMap = createLazyMap();
+		lazyMap.put(new Integer(1), new Integer(3211));
+		lazyMap.put(new Integer(2), new Integer(3212));
+
+		Map<Object, Object> deserializedMap = serializeAndDeserialize(lazyMap);
+
+		assertThat(deserializedMap).hasSize(2);
+		assertThat(new HashMap<>(deserializedMap)).isEqualTo(
+				new HashMap<>(lazyMap));
+		assertThat(deserializedMap.getClass()).isEqualTo(lazyMap.getClass());
+	}
+
+	@Test
+	public void shouldStayFrozenWhenSerializingFrozenLazyMap()
+			throws Exception {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		lazyMap.put(new Integer(1), new Integer(3211));
+		lazyMap.freeze();
+
+		Map<Object, Object> deserializedMap = serializeAndDeserialize(lazyMap);
+
+		assertThat(
+				((AbstractLazyMap<Object, Object>) deserializedMap).isFrozen())
+				.isTrue();
+		assertThat(new HashMap<>(deserializedMap)).isEqualTo(
+				new HashMap<>(lazyMap));
+	}
+
+	@Test
+	public void shouldKeepContentsWhenFreezingLazyMap() {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		Object key = new Integer(1);
+		lazyMap.put(key, new Integer(3211));
+		lazyMap.put(new Integer(2), new Integer(3212));
+		Map<Object, Object> expectedMap = createBackingMap();
+		expectedMap.putAll(lazyMap);
+
+		lazyMap.freeze();
+
+		assertThat(lazyMap.isFrozen()).isTrue();
+		assertThat(lazyMap).hasSize(2);
+		assertThat(lazyMap.get(key)).isEqualTo(new Integer(3211));
+		assertThat(lazyMap.containsKey(key)).isTrue();
+		assertThat(lazyMap).isEqualTo(expectedMap);
+		assertThat(lazyMap.hashCode()).isEqualTo(expectedMap.hashCode());
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void shouldNotAllowPuttingIntoFrozenEmptyLazyMap() {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+
+		lazyMap.freeze();
+
+		lazyMap.put(new Integer(3211), new Integer(3211));
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void shouldNotAllowRemovingFromFrozenLazyMap() {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		Object object = new Integer(3211);
+		lazyMap.put(object, object);
+
+		lazyMap.freeze();
+
+		lazyMap.remove(object);
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void shouldNotAllowClearingFrozenLazyMap() {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		Object object = new Integer(3211);
+		lazyMap.put(object, object);
+
+		lazyMap.freeze();
+
+		lazyMap.clear();
+	}
+
+	@Test
+	public void shouldResetLazyMapWhenReleasing() {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		Object object = new Integer(3211);
+		lazyMap.put(object, object);
+
+		lazyMap.release();
+
+		assertThat(lazyMap).isEmpty();
+		assertThat(lazyMap.isLazyMapCreated()).isFalse();
+
+		lazyMap.put(object, object);
+
+		assertThat(lazyMap.get(object)).isSameAs(object);
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void shouldNotAllowReleasingFrozenLazyMap() {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+
+		lazyMap.freeze();
+
+		lazyMap.release();
+	}
+
 	protected abstract Map<Object, Object> createLazyMap();
 
 	protected abstract Map<Object, Object> createBackingMap();
+
+	/**
+	 * Serializes the provided map and deserializes it again.
+	 * 
+	 * @param map
+	 * @return
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	protected static Map<Object, Object> serializeAndDeserialize(
+			Map<Object, Object> map) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(map);
+		}
+
+		try (ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (Map<Object, Object>) in.readObject();
+		}
+	}
 }
@@ -0,0 +1,290 @@
+package gakesson.util.collections;
+
+import gakesson.util.misc.Stack;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EmptyStackException;
+import java.util.function.BinaryOperator;
+
+/**
+ * The {@link AggregatingArrayStack} class represents a last-in-first-out (LIFO)
+ * stack of objects which, in addition to the classic stack operations, answers
+ * the minimum, the maximum and a fold of all of its elements in constant time.
+ * The implementation is array-based and the capacity is unbounded, like
+ * {@link ArrayStack}.
+ *
+ * The aggregates are maintained in arrays parallel to the elements, where
+ * index {@code i} holds the aggregate of the elements at index {@code 0..i}.
+ * Hence pushing computes a single aggregate from the one below it, and popping
+ * merely discards the top aggregate. The minimum and maximum are computed using
+ * the comparator and the fold using the reducer provided upon construction,
+ * which must be associative, e.g. a sum or a product. The arrays of aggregates
+ * which aren't requested are not allocated. Of equal elements, the minimum and
+ * maximum return the one pushed first.
+ *
+ * See {@link IntAggregatingArrayStack} and {@link LongAggregatingArrayStack}
+ * for primitive specialisations.
+ *
+ * This class is not thread-safe.
+ *
+ */
+public class AggregatingArrayStack<E> implements Stack<E>
+{
+    private static final int DEFAULT_INITIAL_SIZE = 10;
+
+    private final Comparator<? super E> myComparator;
+    private final BinaryOperator<E> myReducer;
+    private E[] myElements;
+    private E[] myMins;
+    private E[] myMaxs;
+    private E[] myFolds;
+    private int mySize;
+
+    /**
+     * Creates a new {@link AggregatingArrayStack} answering the minimum and the
+     * maximum using the provided comparator.
+     *
+     * @param comparator
+     *            The comparator of the elements.
+     */
+    public AggregatingArrayStack(Comparator<? super E> comparator)
+    {
+        this(comparator, null, DEFAULT_INITIAL_SIZE);
+    }
+
+    /**
+     * Creates a new {@link AggregatingArrayStack} answering the fold using the
+     * provided reducer.
+     *
+     * @param reducer
+     *            The associative reducer of the elements.
+     */
+    public AggregatingArrayStack(BinaryOperator<E> reducer)
+    {
+        this(null, reducer, DEFAULT_INITIAL_SIZE);
+    }
+
+    /**
+     * Creates a new {@link AggregatingArrayStack} with the provided initial
+     * size, answering the minimum and the maximum using the provided
+     * comparator and the fold using the provided reducer, either of which may
+     * be {@code null} in case the corresponding aggregates aren't needed.
+     *
+     * @param comparator
+     *            The comparator of the elements, or {@code null}.
+     * @param reducer
+     *            The associative reducer of the elements, or {@code null}.
+     * @param initialSize
+     *            The initial size.
+     * @throws {@link NullPointerException} if both the comparator and the
+     *         reducer are null.
+     */
+    public AggregatingArrayStack(Comparator<? super E> comparator, BinaryOperator<E> reducer, int initialSize)
+    {
+        if (reducer == null)
+        {
+            checkNotNull(comparator);
+        }
+
+        myComparator = comparator;
+        myReducer = reducer;
+        myElements = newArray(initialSize);
+
+        if (comparator != null)
+        {
+            myMins = newArray(initialSize);
+            myMaxs = newArray(initialSize);
+        }
+
+        if (reducer != null)
+        {
+            myFolds = newArray(initialSize);
+        }
+    }
+
+    @Override
+    public void push(E e)
+    {
+        ensureStackCapacity(mySize + 1);
+        int index = mySize;
+
+        if (myComparator != null)
+        {
+            if (index == 0)
+            {
+                myMins[index] = e;
+                myMaxs[index] = e;
+            }
+            else
+            {
+                E min = myMins[index - 1];
+                E max = myMaxs[index - 1];
+                myMins[index] = myComparator.compare(e, min) < 0 ? e : min;
+                myMaxs[index] = myComparator.compare(e, max) > 0 ? e : max;
+            }
+        }
+
+        if (myReducer != null)
+        {
+            myFolds[index] = index == 0 ? e : myReducer.apply(myFolds[index - 1], e);
+        }
+
+        myElements[index] = e;
+        mySize++;
+    }
+
+    @Override
+    public E pop()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+
+        int index = --mySize;
+        E e = myElements[index];
+        myElements[index] = null;
+
+        if (myComparator != null)
+        {
+            myMins[index] = null;
+            myMaxs[index] = null;
+        }
+
+        if (myReducer != null)
+        {
+            myFolds[index] = null;
+        }
+
+        return e;
+    }
+
+    @Override
+    public E peek()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+
+        return myElements[mySize - 1];
+    }
+
+    /**
+     * Returns the minimum element of this stack according to the comparator.
+     *
+     * @return The minimum element.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     * @throws {@link IllegalStateException} if created without a comparator.
+     */
+    public E min()
+    {
+        checkAggregated(myComparator);
+        return myMins[mySize - 1];
+    }
+
+    /**
+     * Returns the maximum element of this stack according to the comparator.
+     *
+     * @return The maximum element.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     * @throws {@link IllegalStateException} if created without a comparator.
+     */
+    public E max()
+    {
+        checkAggregated(myComparator);
+        return myMaxs[mySize - 1];
+    }
+
+    /**
+     * Returns the fold of all elements of this stack from the bottom to the
+     * top using the reducer.
+     *
+     * @return The fold of the elements.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     * @throws {@link IllegalStateException} if created without a reducer.
+     */
+    public E fold()
+    {
+        checkAggregated(myReducer);
+        return myFolds[mySize - 1];
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Ensures that the capacity of the internal arrays is at least the
+     * provided capacity.
+     *
+     * @param requiredCapacity
+     */
+    private void ensureStackCapacity(int requiredCapacity)
+    {
+        if (requiredCapacity > myElements.length)
+        {
+            int newCapacity = ArrayStack.newStackCapacity(myElements.length, requiredCapacity);
+            myElements = Arrays.copyOf(myElements, newCapacity);
+
+            if (myComparator != null)
+            {
+                myMins = Arrays.copyOf(myMins, newCapacity);
+                myMaxs = Arrays.copyOf(myMaxs, newCapacity);
+            }
+
+            if (myReducer != null)
+            {
+                myFolds = Arrays.copyOf(myFolds, newCapacity);
+            }
+        }
+    }
+
+    private void checkAggregated(Object aggregator)
+    {
+        if (aggregator == null)
+        {
+            throw new IllegalStateException("Aggregate not maintained by this stack");
+        }
+
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+    }
+
+    /**
+     * Creates an array of elements or aggregates of the provided size.
+     *
+     * @param size
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E[] newArray(int size)
+    {
+        return (E[]) new Object[size];
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EmptyStackException;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BinaryOperator;
+
+import org.testng.annotations.Test;
+
+public class AggregatingArrayStackTest
+{
+    @Test
+    public void shouldPushAndPopElementsInLIFO()
+    {
+        int numberOfElements = 100;
+        AggregatingArrayStack<Integer> stack = new AggregatingArrayStack<Integer>(Comparator.<Integer> naturalOrder());
+
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            stack.push(i);
+        }
+
+        assertThat(stack.size()).isEqualTo(numberOfElements);
+
+        for (int i = numberOfElements - 1; i >= 0; --i)
+        {
+            assertThat(stack.peek()).isEqualTo(i);
+            assertThat(stack.pop()).isEqualTo(i);
+        }
+
+        assertThat(stack.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldMaintainAggregatesThroughPushAndPop()
+    {
+        Random random = new Random(42);
+        AggregatingArrayStack<BigInteger> stack = new AggregatingArrayStack<BigInteger>(
+                Comparator.<BigInteger> naturalOrder(), BigInteger::add, 0);
+        List<BigInteger> expected = new ArrayList<BigInteger>();
+
+        for (int i = 0; i < 2000; ++i)
+        {
+            if (!expected.isEmpty() && random.nextInt(3) == 0)
+            {
+                assertThat(stack.pop()).isEqualTo(expected.remove(expected.size() - 1));
+            }
+            else
+            {
+                BigInteger value = BigInteger.valueOf(random.nextInt(1000) - 500);
+                stack.push(value);
+                expected.add(value);
+            }
+
+            if (!expected.isEmpty())
+            {
+                BigInteger sum = BigInteger.ZERO;
+
+                for (BigInteger value : expected)
+                {
+                    sum = sum.add(value);
+                }
+
+                assertThat(stack.min()).isEqualTo(Collections.min(expected));
+                assertThat(stack.max()).isEqualTo(Collections.max(expected));
+                assertThat(stack.fold()).isEqualTo(sum);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnFirstPushedOfEqualElements()
+    {
+        String first = new String("a");
+        String second = new String("a");
+        AggregatingArrayStack<String> stack = new AggregatingArrayStack<String>(Comparator.<String> naturalOrder());
+
+        stack.push(first);
+        stack.push(second);
+
+        assertThat(stack.min()).isSameAs(first);
+        assertThat(stack.max()).isSameAs(first);
+    }
+
+    @Test
+    public void shouldFoldInPushOrder()
+    {
+        AggregatingArrayStack<String> stack = new AggregatingArrayStack<String>(String::concat);
+
+        stack.push("a");
+        stack.push("b");
+        stack.push("c");
+
+        assertThat(stack.fold()).isEqualTo("abc");
+
+        stack.pop();
+
+        assertThat(stack.fold()).isEqualTo("ab");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldThrowExceptionWhenAskingForMinWithoutComparator()
+    {
+        AggregatingArrayStack<String> stack = new AggregatingArrayStack<String>(String::concat);
+        stack.push("a");
+
+        stack.min();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldThrowExceptionWhenAskingForFoldWithoutReducer()
+    {
+        AggregatingArrayStack<String> stack = new AggregatingArrayStack<String>(Comparator.<String> naturalOrder());
+        stack.push("a");
+
+        stack.fold();
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenAskingForMaxOfEmptyStack()
+    {
+        new AggregatingArrayStack<String>(Comparator.<String> naturalOrder()).max();
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenCreatingWithNullComparator()
+    {
+        new AggregatingArrayStack<String>((Comparator<String>) null);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenCreatingWithNullReducer()
+    {
+        new AggregatingArrayStack<String>((BinaryOperator<String>) null);
+    }
+}
@@ -10,6 +10,14 @@ import java.util.EmptyStackException;
  * objects. All the classic stack operations are provided. The implementation is
  * array-based and the capacity is unbounded.
  * 
+ * Checkpoints are supported for speculative pushes: {@link #mark()} returns a
+ * token for the current depth, and {@link #rollbackTo(long)} truncates the
+ * stack back to that depth in a single step. Marks may be nested, and rolling
+ * back to or releasing a mark discards the marks nested within it. A mark
+ * becomes stale once discarded, or once the stack has been popped below its
+ * depth, after which its token is rejected. Marks are retained until they
+ * become stale, hence each mark should be released or rolled back to.
+ * 
  * This class is not thread-safe.
  * 
  */
@@ -20,6 +28,10 @@ public class ArrayStack<E> implements Stack<E>
 
     private E[] myElements;
     private int mySize;
+    private int[] myMarkDepths;
+    private int[] myMarkIds;
+    private int myMarkCount;
+    private int myNextMarkId;
 
     /**
      * Creates a new {@link ArrayStack} instance with the default initial size.
@@ -57,6 +69,13 @@ public class ArrayStack<E> implements Stack<E>
 
         E e = myElements[mySize - 1];
         myElements[--mySize] = null;
+
+        while (myMarkCount > 0 && myMarkDepths[myMarkCount - 1] > mySize)
+        {
+            // Popped below the depth of the mark
+            myMarkCount--;
+        }
+
         return e;
     }
 
@@ -83,6 +102,106 @@ public class ArrayStack<E> implements Stack<E>
         return mySize;
     }
 
+    /**
+     * Marks the current depth of this stack, which may later be rolled back to
+     * using the returned token.
+     * 
+     * The mark is retained until it is released, rolled back to, discarded
+     * along with an enclosing mark, or popped below. Marks which are never
+     * discarded accumulate without bound, hence every mark should eventually
+     * be released or rolled back to.
+     * 
+     * @return The token of the mark.
+     */
+    public long mark()
+    {
+        if (myMarkDepths == null)
+        {
+            myMarkDepths = new int[DEFAULT_INITIAL_SIZE];
+            myMarkIds = new int[DEFAULT_INITIAL_SIZE];
+        }
+        else if (myMarkCount == myMarkDepths.length)
+        {
+            int newCapacity = newStackCapacity(myMarkCount, myMarkCount + 1);
+            myMarkDepths = Arrays.copyOf(myMarkDepths, newCapacity);
+            myMarkIds = Arrays.copyOf(myMarkIds, newCapacity);
+        }
+
+        int id = myNextMarkId++;
+        myMarkDepths[myMarkCount] = mySize;
+        myMarkIds[myMarkCount] = id;
+        myMarkCount++;
+        return ((long) id << 32) | mySize;
+    }
+
+    /**
+     * Removes all elements pushed since the provided mark in a single step,
+     * and discards the mark along with the marks nested within it.
+     * 
+     * @param token
+     *            The token returned by {@link #mark()}.
+     * @return The number of removed elements.
+     * @throws {@link IllegalStateException} if the mark is stale.
+     */
+    public int rollbackTo(long token)
+    {
+        int depth = myMarkDepths[indexOfMark(token)];
+        int removed = mySize - depth;
+        Arrays.fill(myElements, depth, mySize, null);
+        mySize = depth;
+        return removed;
+    }
+
+    /**
+     * Discards the provided mark along with the marks nested within it,
+     * keeping the elements pushed since the mark.
+     * 
+     * @param token
+     *            The token returned by {@link #mark()}.
+     * @throws {@link IllegalStateException} if the mark is stale.
+     */
+    public void release(long token)
+    {
+        indexOfMark(token);
+    }
+
+    /**
+     * Returns a {@link PersistentStack} holding the elements of this stack,
+     * which is independent of any subsequent changes to this stack. The
+     * conversion copies the elements once into an array shared by all
+     * versions derived from the returned stack.
+     *
+     * @return A persistent snapshot of this stack.
+     */
+    public PersistentStack<E> toPersistentStack()
+    {
+        return PersistentStack.ofOwnedArray(Arrays.copyOf(myElements, mySize));
+    }
+
+    /**
+     * Returns the index of the provided mark, and discards the marks nested
+     * within it as well as the mark itself.
+     * 
+     * @param token
+     * @return
+     */
+    private int indexOfMark(long token)
+    {
+        int id = (int) (token >>> 32);
+        int depth = (int) token;
+
+        for (int i = myMarkCount - 1; i >= 0; --i)
+        {
+            if (myMarkIds[i] == id && myMarkDepths[i] == depth)
+            {
+                myMarkCount = i;
+                return i;
+            }
+        }
+
+        throw new IllegalStateException("Stale mark: " + token);
+    }
+
     /**
      * Ensures that the capacity of the internal array is at least the provided
      * capacity.
@@ -105,7 +224,20 @@ public class ArrayStack<E> implements Stack<E>
      */
     private static <E> E[] growStack(E[] stackElements, int requiredCapacity)
     {
-        int oldCapacity = stackElements.length;
+        return Arrays.copyOf(stackElements, newStackCapacity(stackElements.length, requiredCapacity));
+    }
+
+    /**
+     * Returns the capacity to grow a stack array of the provided capacity to,
+     * which is at least the required capacity. This method is static and
+     * shared with the other array-based stacks.
+     * 
+     * @param oldCapacity
+     * @param requiredCapacity
+     * @return
+     */
+    static int newStackCapacity(int oldCapacity, int requiredCapacity)
+    {
         int newCapacity = oldCapacity + (oldCapacity >> 1);
 
         if (newCapacity - requiredCapacity < 0)
@@ -118,7 +250,7 @@ public class ArrayStack<E> implements Stack<E>
             newCapacity = hugeStackCapacity(requiredCapacity);
         }
 
-        return Arrays.copyOf(stackElements, newCapacity);
+        return newCapacity;
     }
 
     /**
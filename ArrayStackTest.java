@@ -90,4 +90,97 @@ public class ArrayStackTest
         assertThat(javaStack).hasSize(0);
         assertThat(stack.size()).isZero();
     }
+
+    @Test
+    public void shouldRollbackToMark()
+    {
+        ArrayStack<Integer> stack = new ArrayStack<Integer>(2);
+        stack.push(1);
+        long token = stack.mark();
+
+        for (int i = 2; i <= 10; ++i)
+        {
+            stack.push(i);
+        }
+
+        int removed = stack.rollbackTo(token);
+
+        assertThat(removed).isEqualTo(9);
+        assertThat(stack.size()).isEqualTo(1);
+        assertThat(stack.peek()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRollbackToNestedMarks()
+    {
+        ArrayStack<Integer> stack = new ArrayStack<Integer>();
+        long outer = stack.mark();
+        stack.push(1);
+        long inner = stack.mark();
+        stack.push(2);
+
+        stack.rollbackTo(inner);
+        stack.push(3);
+
+        assertThat(stack.peek()).isEqualTo(3);
+
+        stack.rollbackTo(outer);
+
+        assertThat(stack.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldKeepElementsWhenReleasingMark()
+    {
+        ArrayStack<Integer> stack = new ArrayStack<Integer>();
+        long outer = stack.mark();
+        stack.push(1);
+        long inner = stack.mark();
+        stack.push(2);
+
+        stack.release(inner);
+        stack.rollbackTo(outer);
+
+        assertThat(stack.isEmpty()).isTrue();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectMarkNestedInRolledBackMark()
+    {
+        ArrayStack<Integer> stack = new ArrayStack<Integer>();
+        long outer = stack.mark();
+        stack.push(1);
+        long inner = stack.mark();
+
+        stack.rollbackTo(outer);
+        stack.rollbackTo(inner);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectMarkRolledBackTwice()
+    {
+        ArrayStack<Integer> stack = new ArrayStack<Integer>();
+        long token = stack.mark();
+
+        stack.rollbackTo(token);
+        stack.rollbackTo(token);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectMarkPoppedBelow()
+    {
+        ArrayStack<Integer> stack = new ArrayStack<Integer>();
+        stack.push(1);
+        long token = stack.mark();
+
+        stack.pop();
+        stack.push(2);
+        stack.rollbackTo(token);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldRejectUnknownToken()
+    {
+        new ArrayStack<Object>().rollbackTo(42L);
+    }
 }
@@ -0,0 +1,492 @@
+package gakesson.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * This is a consumer stage which drains a thread-safe bounded {@link Queue}
+ * into batches, and hands each batch to a handler on a thread of its own
+ * created by the provided {@link ThreadFactory}, e.g. a platform or a virtual
+ * thread. This is useful when the downstream sink of the elements is more
+ * efficient with batches than with single elements.
+ *
+ * A batch is handed over once it holds the maximum batch size, or once the
+ * linger time has passed since its first element was drained, whichever comes
+ * first. A batch is never empty. The sizes of the handed over batches and the
+ * time each batch lingered (in nanoseconds) are recorded in
+ * {@link PowerOfTwoHistogram}s.
+ *
+ * Producers may insert elements directly into the queue, in which case the
+ * consumer thread notices them within {@link #MAX_IDLE_PARK_NANOS}, or using
+ * {@link #offer(Object)} which wakes up the consumer thread immediately.
+ *
+ * Upon {@link #shutdown()}, the consumer thread drains all elements remaining
+ * in the queue into batches without lingering before it terminates, hence no
+ * queued elements are lost. {@link #offer(Object)} checks for shutdown and
+ * inserts under a read lock, whereas the consumer thread only decides to
+ * terminate under the write lock, hence an element accepted by
+ * {@link #offer(Object)} is always consumed. A batch for which the handler
+ * throws a {@link RuntimeException} is counted as failed and handed to the
+ * error handler, if any, along with the exception, and the consumer carries on
+ * with the next batch.
+ *
+ * This class is thread-safe.
+ *
+ * @param <E>
+ *            The type of elements consumed
+ */
+public class BatchingConsumer<E> implements AutoCloseable
+{
+    /**
+     * The maximum time the consumer thread is parked while waiting for
+     * elements, which bounds the latency of elements inserted directly into
+     * the queue.
+     */
+    public static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Queue<E> myQueue;
+    private final int myMaxBatchSize;
+    private final long myLingerNanos;
+    private final Consumer<? super List<E>> myHandler;
+    private final BiConsumer<? super List<E>, ? super RuntimeException> myErrorHandler;
+    private final ReadWriteLock myShutdownLock = new ReentrantReadWriteLock();
+    private final Thread myThread;
+    private final CountDownLatch myTerminationLatch = new CountDownLatch(1);
+    private final PowerOfTwoHistogram myBatchSizeHistogram = new PowerOfTwoHistogram();
+    private final PowerOfTwoHistogram myLingerHistogram = new PowerOfTwoHistogram();
+    private final LongAdder myFailedBatchCount = new LongAdder();
+    private volatile boolean myShutdown;
+    private volatile boolean myStarted;
+
+    /**
+     * Creates a new {@link BatchingConsumer} using the default thread factory
+     * of {@link Executors}.
+     *
+     * @param queue
+     *            The thread-safe queue to drain.
+     * @param maxBatchSize
+     *            The maximum number of elements per batch.
+     * @param linger
+     *            The maximum time to wait for a batch to fill up.
+     * @param unit
+     *            The unit of the linger time.
+     * @param handler
+     *            The handler of the batches.
+     * @throws {@link IllegalArgumentException} if the maximum batch size is
+     *         less than 1 or the linger time is negative.
+     */
+    public BatchingConsumer(Queue<E> queue, int maxBatchSize, long linger, TimeUnit unit,
+            Consumer<? super List<E>> handler)
+    {
+        this(queue, maxBatchSize, linger, unit, handler, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new {@link BatchingConsumer} using the provided thread
+     * factory.
+     *
+     * @param queue
+     *            The thread-safe queue to drain.
+     * @param maxBatchSize
+     *            The maximum number of elements per batch.
+     * @param linger
+     *            The maximum time to wait for a batch to fill up.
+     * @param unit
+     *            The unit of the linger time.
+     * @param handler
+     *            The handler of the batches.
+     * @param threadFactory
+     *            The factory creating the consumer thread.
+     * @throws {@link IllegalArgumentException} if the maximum batch size is
+     *         less than 1 or the linger time is negative.
+     */
+    public BatchingConsumer(Queue<E> queue, int maxBatchSize, long linger, TimeUnit unit,
+            Consumer<? super List<E>> handler, ThreadFactory threadFactory)
+    {
+        this(queue, maxBatchSize, linger, unit, handler, threadFactory, null);
+    }
+
+    /**
+     * Creates a new {@link BatchingConsumer} using the provided thread factory
+     * and error handler.
+     *
+     * @param queue
+     *            The thread-safe queue to drain.
+     * @param maxBatchSize
+     *            The maximum number of elements per batch.
+     * @param linger
+     *            The maximum time to wait for a batch to fill up.
+     * @param unit
+     *            The unit of the linger time.
+     * @param handler
+     *            The handler of the batches.
+     * @param threadFactory
+     *            The factory creating the consumer thread.
+     * @param errorHandler
+     *            The handler of the batches for which the handler threw a
+     *            {@link RuntimeException}, along with the exception, or
+     *            {@code null} to only count the failed batches.
+     * @throws {@link IllegalArgumentException} if the maximum batch size is
+     *         less than 1 or the linger time is negative.
+     */
+    public BatchingConsumer(Queue<E> queue, int maxBatchSize, long linger, TimeUnit unit,
+            Consumer<? super List<E>> handler, ThreadFactory threadFactory,
+            BiConsumer<? super List<E>, ? super RuntimeException> errorHandler)
+    {
+        checkNotNull(queue);
+        checkNotNull(unit);
+        checkNotNull(handler);
+        checkNotNull(threadFactory);
+
+        if (maxBatchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+
+        if (linger < 0)
+        {
+            throw new IllegalArgumentException("Negative linger time: " + linger);
+        }
+
+        myQueue = queue;
+        myMaxBatchSize = maxBatchSize;
+        myLingerNanos = unit.toNanos(linger);
+        myHandler = handler;
+        myErrorHandler = errorHandler;
+        myThread = threadFactory.newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    consume();
+                }
+                finally
+                {
+                    myTerminationLatch.countDown();
+                }
+            }
+        });
+
+        if (myThread == null)
+        {
+            throw new IllegalArgumentException("Thread factory returned null");
+        }
+    }
+
+    /**
+     * Starts the consumer thread.
+     *
+     * @throws {@link IllegalStateException} if already started.
+     */
+    public synchronized void start()
+    {
+        if (myStarted)
+        {
+            throw new IllegalStateException("Already started");
+        }
+
+        myStarted = true;
+        myThread.start();
+    }
+
+    /**
+     * Inserts the provided element into the queue and wakes up the consumer
+     * thread.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was inserted, else {@code false}.
+     * @throws {@link IllegalStateException} if this consumer is shut down.
+     */
+    public boolean offer(E e)
+    {
+        boolean inserted;
+        Lock lock = myShutdownLock.readLock();
+        lock.lock();
+
+        try
+        {
+            if (myShutdown)
+            {
+                throw new IllegalStateException("Consumer is shut down");
+            }
+
+            inserted = myQueue.offer(e);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (inserted)
+        {
+            LockSupport.unpark(myThread);
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Initiates an orderly shutdown, after which the consumer thread hands
+     * over the elements remaining in the queue and terminates. Elements
+     * inserted directly into the queue after the consumer thread terminated
+     * are not consumed.
+     */
+    public void shutdown()
+    {
+        myShutdown = true;
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Returns whether or not {@link #shutdown()} has been invoked.
+     *
+     * @return {@code true} if shut down, else {@code false}.
+     */
+    public boolean isShutdown()
+    {
+        return myShutdown;
+    }
+
+    /**
+     * Waits for the consumer thread to terminate after a shutdown.
+     *
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the timeout.
+     * @return {@code true} if terminated, else {@code false} if the timeout
+     *         elapsed.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return myTerminationLatch.await(timeout, unit);
+    }
+
+    /**
+     * Shuts down this consumer and waits for the consumer thread to hand over
+     * the remaining elements and terminate, in case it was started.
+     */
+    @Override
+    public void close()
+    {
+        shutdown();
+
+        if (!myStarted)
+        {
+            return;
+        }
+
+        boolean interrupted = false;
+
+        while (true)
+        {
+            try
+            {
+                myTerminationLatch.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the histogram of the number of elements per batch.
+     *
+     * @return The batch size histogram.
+     */
+    public PowerOfTwoHistogram getBatchSizeHistogram()
+    {
+        return myBatchSizeHistogram;
+    }
+
+    /**
+     * Returns the histogram of the time in nanoseconds from draining the first
+     * element of a batch until handing over the batch.
+     *
+     * @return The linger time histogram.
+     */
+    public PowerOfTwoHistogram getLingerHistogram()
+    {
+        return myLingerHistogram;
+    }
+
+    /**
+     * Returns the number of batches handed over.
+     *
+     * @return The number of batches.
+     */
+    public long getBatchCount()
+    {
+        return myBatchSizeHistogram.getCount();
+    }
+
+    /**
+     * Returns the number of batches for which the handler threw an exception.
+     *
+     * @return The number of failed batches.
+     */
+    public long getFailedBatchCount()
+    {
+        return myFailedBatchCount.sum();
+    }
+
+    /**
+     * The loop of the consumer thread, which runs until shut down and the
+     * queue has been drained.
+     */
+    private void consume()
+    {
+        while (true)
+        {
+            boolean shutdown = myShutdown;
+            E first = myQueue.poll();
+
+            if (first == null)
+            {
+                if (shutdown && isDrained())
+                {
+                    return;
+                }
+
+                LockSupport.parkNanos(this, MAX_IDLE_PARK_NANOS);
+                continue;
+            }
+
+            long firstDrainedTime = System.nanoTime();
+            List<E> batch = new ArrayList<E>(Math.min(myMaxBatchSize, 1024));
+            batch.add(first);
+            fillBatch(batch, firstDrainedTime + myLingerNanos);
+            myLingerHistogram.record(System.nanoTime() - firstDrainedTime);
+            myBatchSizeHistogram.record(batch.size());
+            handOver(batch);
+        }
+    }
+
+    /**
+     * Drains elements into the provided batch until it is full or the
+     * provided deadline has passed. The deadline is ignored once shut down.
+     *
+     * @param batch
+     * @param deadline
+     */
+    private void fillBatch(List<E> batch, long deadline)
+    {
+        while (batch.size() < myMaxBatchSize)
+        {
+            E e = myQueue.poll();
+
+            if (e != null)
+            {
+                batch.add(e);
+                continue;
+            }
+
+            long remainingNanos = deadline - System.nanoTime();
+
+            if (remainingNanos <= 0 || myShutdown)
+            {
+                return;
+            }
+
+            LockSupport.parkNanos(this, Math.min(remainingNanos, MAX_IDLE_PARK_NANOS));
+        }
+    }
+
+    /**
+     * Verifies, under the write lock, that the queue is empty once shut down,
+     * i.e. that no {@link #offer(Object)} inserted an element after the queue
+     * was last polled.
+     *
+     * @return {@code true} if the consumer thread may terminate, else
+     *         {@code false}.
+     */
+    private boolean isDrained()
+    {
+        Lock lock = myShutdownLock.writeLock();
+        lock.lock();
+
+        try
+        {
+            return myQueue.isEmpty();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void handOver(List<E> batch)
+    {
+        try
+        {
+            myHandler.accept(batch);
+        }
+        catch (RuntimeException e)
+        {
+            myFailedBatchCount.increment();
+
+            if (myErrorHandler != null)
+            {
+                handleError(batch, e);
+            }
+        }
+    }
+
+    /**
+     * Hands the failed batch to the error handler, ignoring any exception
+     * thrown by the error handler so that the consumer carries on.
+     *
+     * @param batch
+     * @param exception
+     */
+    private void handleError(List<E> batch, RuntimeException exception)
+    {
+        try
+        {
+            myErrorHandler.accept(batch, exception);
+        }
+        catch (RuntimeException e)
+        {
+            // Ignored, the batch is already counted as failed
+        }
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+}
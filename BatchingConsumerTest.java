@@ -0,0 +1,244 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.testng.annotations.Test;
+
+public class BatchingConsumerTest
+{
+    @Test
+    public void shouldHandOverFullBatches() throws Exception
+    {
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(100);
+        RecordingHandler handler = new RecordingHandler();
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<Integer>(queue, 10, 1, TimeUnit.HOURS, handler);
+
+        for (int i = 0; i < 30; ++i)
+        {
+            queue.offer(i);
+        }
+
+        consumer.start();
+        handler.awaitElements(30);
+        consumer.close();
+
+        assertThat(handler.myBatches).hasSize(3);
+        assertThat(handler.myBatches.get(0)).hasSize(10);
+        assertThat(handler.elements()).isEqualTo(createElements(30));
+        assertThat(consumer.getBatchCount()).isEqualTo(3);
+        assertThat(consumer.getBatchSizeHistogram().getPercentileUpperBound(100)).isEqualTo(16);
+    }
+
+    @Test
+    public void shouldHandOverPartialBatchOnceLingerTimeHasPassed() throws Exception
+    {
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(100);
+        RecordingHandler handler = new RecordingHandler();
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<Integer>(queue, 10, 20, TimeUnit.MILLISECONDS,
+                handler);
+        consumer.start();
+
+        consumer.offer(1);
+        consumer.offer(2);
+        handler.awaitElements(2);
+
+        assertThat(handler.myBatches).hasSize(1);
+        assertThat(consumer.getLingerHistogram().getPercentileUpperBound(50)).isGreaterThanOrEqualTo(
+                TimeUnit.MILLISECONDS.toNanos(20));
+
+        consumer.close();
+    }
+
+    @Test
+    public void shouldHandOverQueuedElementsWhenShutDown() throws Exception
+    {
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(1000);
+        RecordingHandler handler = new RecordingHandler();
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<Integer>(queue, 7, 1, TimeUnit.HOURS, handler);
+        consumer.start();
+
+        for (int i = 0; i < 1000; ++i)
+        {
+            consumer.offer(i);
+        }
+
+        consumer.shutdown();
+
+        assertThat(consumer.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(handler.elements()).isEqualTo(createElements(1000));
+        assertThat(queue).isEmpty();
+    }
+
+    @Test
+    public void shouldCountFailedBatchesAndCarryOn() throws Exception
+    {
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(100);
+        final RecordingHandler handler = new RecordingHandler();
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<Integer>(queue, 1, 0, TimeUnit.MILLISECONDS,
+                new java.util.function.Consumer<List<Integer>>()
+                {
+                    @Override
+                    public void accept(List<Integer> batch)
+                    {
+                        handler.accept(batch);
+
+                        if (batch.get(0) == 0)
+                        {
+                            throw new IllegalStateException();
+                        }
+                    }
+                });
+        queue.offer(0);
+        queue.offer(1);
+        consumer.start();
+        consumer.close();
+
+        assertThat(handler.elements()).isEqualTo(createElements(2));
+        assertThat(consumer.getFailedBatchCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldHandFailedBatchToErrorHandler() throws Exception
+    {
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(100);
+        final IllegalStateException exception = new IllegalStateException();
+        final List<Object> failures = new CopyOnWriteArrayList<Object>();
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<Integer>(queue, 1, 0, TimeUnit.MILLISECONDS,
+                new java.util.function.Consumer<List<Integer>>()
+                {
+                    @Override
+                    public void accept(List<Integer> batch)
+                    {
+                        if (batch.get(0) == 0)
+                        {
+                            throw exception;
+                        }
+                    }
+                }, Executors.defaultThreadFactory(), new BiConsumer<List<Integer>, RuntimeException>()
+                {
+                    @Override
+                    public void accept(List<Integer> batch, RuntimeException e)
+                    {
+                        failures.add(batch);
+                        failures.add(e);
+                        throw new IllegalArgumentException();
+                    }
+                });
+        queue.offer(0);
+        queue.offer(1);
+        consumer.start();
+        consumer.close();
+
+        assertThat(failures).hasSize(2);
+        assertThat(failures.get(0)).isEqualTo(createElements(1));
+        assertThat(failures.get(1)).isSameAs(exception);
+        assertThat(consumer.getFailedBatchCount()).isEqualTo(1);
+        assertThat(consumer.getBatchCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldConsumeEveryElementAcceptedWhileShuttingDown() throws Exception
+    {
+        for (int round = 0; round < 20; ++round)
+        {
+            ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<Integer>(100000);
+            RecordingHandler handler = new RecordingHandler();
+            final BatchingConsumer<Integer> consumer = new BatchingConsumer<Integer>(queue, 100, 0,
+                    TimeUnit.MILLISECONDS, handler);
+            final int[] accepted = new int[1];
+            Thread producer = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        while (consumer.offer(accepted[0]))
+                        {
+                            accepted[0]++;
+                        }
+                    }
+                    catch (IllegalStateException e)
+                    {
+                        // Shut down
+                    }
+                }
+            });
+            consumer.start();
+            producer.start();
+            Thread.sleep(1);
+            consumer.shutdown();
+            producer.join();
+
+            assertThat(consumer.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(handler.elements()).isEqualTo(createElements(accepted[0]));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldNotAllowOfferingWhenShutDown()
+    {
+        BatchingConsumer<Integer> consumer = new BatchingConsumer<Integer>(new ArrayBlockingQueue<Integer>(10), 10,
+                1, TimeUnit.MILLISECONDS, new RecordingHandler());
+        consumer.shutdown();
+
+        consumer.offer(1);
+    }
+
+    private static List<Integer> createElements(int numberOfElements)
+    {
+        List<Integer> elements = new ArrayList<Integer>();
+
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            elements.add(i);
+        }
+
+        return elements;
+    }
+
+    /**
+     * A handler recording the batches it is handed.
+     *
+     */
+    private static class RecordingHandler implements java.util.function.Consumer<List<Integer>>
+    {
+        private final List<List<Integer>> myBatches = new CopyOnWriteArrayList<List<Integer>>();
+
+        @Override
+        public void accept(List<Integer> batch)
+        {
+            myBatches.add(batch);
+        }
+
+        List<Integer> elements()
+        {
+            List<Integer> elements = new ArrayList<Integer>();
+
+            for (List<Integer> batch : myBatches)
+            {
+                elements.addAll(batch);
+            }
+
+            return elements;
+        }
+
+        void awaitElements(int numberOfElements) throws InterruptedException
+        {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (elements().size() < numberOfElements && System.nanoTime() < deadline)
+            {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package gakesson.util.collections;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This is a {@link BlockingQueue} which, like {@link BoundedQueue}, decorates
+ * a {@link Queue} with a bounded limit, and which lets producers wait for free
+ * capacity and consumers wait for elements using the provided
+ * {@link WaitStrategy}s, e.g. busy-spinning on latency-critical paths and
+ * blocking elsewhere (see {@link WaitStrategies}). Taking the bounded limit and
+ * the waiting aside, the ordering is dictated by the provided {@link Queue}
+ * implementation, which must be thread-safe and must not be accessed other
+ * than through this queue.
+ *
+ * Unlike {@link BoundedQueue}, the capacity is never exceeded by concurrent
+ * producers, since a slot is reserved using an atomic counter before an
+ * element is inserted into the backing queue. The counter only guards the
+ * capacity, whereas consumers wait for the backing queue to become non-empty.
+ *
+ * This class is thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class BlockingBoundedQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    private final Queue<E> myBackingQueue;
+    private final int myCapacity;
+    private final AtomicInteger myCount = new AtomicInteger();
+    private final WaitStrategy myConsumerWaitStrategy;
+    private final WaitStrategy myProducerWaitStrategy;
+    private final BooleanSupplier myNotEmpty = new BooleanSupplier()
+    {
+        @Override
+        public boolean getAsBoolean()
+        {
+            // Not the count, which includes elements being inserted
+            return !myBackingQueue.isEmpty();
+        }
+    };
+    private final BooleanSupplier myNotFull = new BooleanSupplier()
+    {
+        @Override
+        public boolean getAsBoolean()
+        {
+            return myCount.get() < myCapacity;
+        }
+    };
+
+    /**
+     * Creates a new {@link BlockingBoundedQueue} backed by a
+     * {@link ConcurrentLinkedQueue}, with blocking wait strategies.
+     *
+     * @param capacity
+     *            The maximum capacity.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public BlockingBoundedQueue(int capacity)
+    {
+        this(new ConcurrentLinkedQueue<E>(), capacity, WaitStrategies.blocking(), WaitStrategies.blocking());
+    }
+
+    /**
+     * Creates a new {@link BlockingBoundedQueue} using the provided backing
+     * queue, maximum capacity and wait strategies. The wait strategies must
+     * not be shared with other queues.
+     *
+     * @param backingQueue
+     *            The thread-safe queue to decorate.
+     * @param capacity
+     *            The maximum capacity.
+     * @param consumerWaitStrategy
+     *            The wait strategy of consumers waiting for elements.
+     * @param producerWaitStrategy
+     *            The wait strategy of producers waiting for free capacity.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1
+     *         or the wait strategies are the same instance.
+     */
+    public BlockingBoundedQueue(Queue<E> backingQueue, int capacity, WaitStrategy consumerWaitStrategy,
+            WaitStrategy producerWaitStrategy)
+    {
+        checkNotNull(backingQueue);
+        checkNotNull(consumerWaitStrategy);
+        checkNotNull(producerWaitStrategy);
+        checkNotSame(consumerWaitStrategy, producerWaitStrategy);
+
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        myBackingQueue = backingQueue;
+        myCapacity = capacity;
+        myConsumerWaitStrategy = consumerWaitStrategy;
+        myProducerWaitStrategy = producerWaitStrategy;
+    }
+
+    /**
+     * Returns the maximum capacity of this {@link BlockingBoundedQueue}.
+     *
+     * @return The maximum capacity of this queue.
+     */
+    public int getCapacity()
+    {
+        return myCapacity;
+    }
+
+    /**
+     * Returns the wait strategy of consumers waiting for elements.
+     *
+     * @return The consumer wait strategy.
+     */
+    public WaitStrategy getConsumerWaitStrategy()
+    {
+        return myConsumerWaitStrategy;
+    }
+
+    /**
+     * Returns the wait strategy of producers waiting for free capacity.
+     *
+     * @return The producer wait strategy.
+     */
+    public WaitStrategy getProducerWaitStrategy()
+    {
+        return myProducerWaitStrategy;
+    }
+
+    /**
+     * Inserts the specified element into this queue if it is possible to do so
+     * immediately without violating the capacity restriction.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+
+        if (!tryReserve())
+        {
+            return false;
+        }
+
+        insert(e);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this queue, waiting up to the
+     * provided time for free capacity.
+     *
+     * @param e
+     *            The element to add.
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the timeout.
+     * @return {@code true} if the element was added, else {@code false} if the
+     *         timeout elapsed.
+     * @throws {@link NullPointerException} if the specified element is null.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        checkNotNull(e);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (!tryReserve())
+        {
+            long remainingNanos = deadline - System.nanoTime();
+
+            if (remainingNanos <= 0 || !myProducerWaitStrategy.await(myNotFull, remainingNanos))
+            {
+                return false;
+            }
+        }
+
+        insert(e);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this queue, waiting for free capacity
+     * if necessary.
+     *
+     * @param e
+     *            The element to add.
+     * @throws {@link NullPointerException} if the specified element is null.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    @Override
+    public void put(E e) throws InterruptedException
+    {
+        checkNotNull(e);
+
+        while (!tryReserve())
+        {
+            myProducerWaitStrategy.await(myNotFull, Long.MAX_VALUE);
+        }
+
+        insert(e);
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns {@code null} if
+     * the queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E poll()
+    {
+        E e = myBackingQueue.poll();
+
+        if (e != null)
+        {
+            released();
+        }
+
+        return e;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, waiting up to the provided
+     * time for an element.
+     *
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the timeout.
+     * @return The head of the queue, or {@code null} if the timeout elapsed.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E e;
+
+        while ((e = poll()) == null)
+        {
+            long remainingNanos = deadline - System.nanoTime();
+
+            if (remainingNanos <= 0 || !myConsumerWaitStrategy.await(myNotEmpty, remainingNanos))
+            {
+                return null;
+            }
+        }
+
+        return e;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, waiting for an element if
+     * necessary.
+     *
+     * @return The head of the queue.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    @Override
+    public E take() throws InterruptedException
+    {
+        E e;
+
+        while ((e = poll()) == null)
+        {
+            myConsumerWaitStrategy.await(myNotEmpty, Long.MAX_VALUE);
+        }
+
+        return e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or returns
+     * {@code null} if the queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E peek()
+    {
+        return myBackingQueue.peek();
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue, if
+     * present.
+     *
+     * @param o
+     *            The element to remove.
+     * @return {@code true} if an element was removed, else {@code false}.
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        if (o != null && myBackingQueue.remove(o))
+        {
+            released();
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return myCapacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        checkNotNull(c);
+        checkNotSame(this, c);
+        checkNotSame(myBackingQueue, c);
+        int drained = 0;
+        E e;
+
+        while (drained < maxElements && (e = poll()) != null)
+        {
+            c.add(e);
+            drained++;
+        }
+
+        return drained;
+    }
+
+    /**
+     * Returns an iterator over the elements contained in the backing queue.
+     * Removing using the iterator removes the last returned element from the
+     * backing queue, unless it has already been removed (e.g. polled by
+     * another thread), in which case nothing is removed.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        final Iterator<E> iterator = myBackingQueue.iterator();
+
+        return new Iterator<E>()
+        {
+            private E myLastReturned;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next()
+            {
+                myLastReturned = iterator.next();
+                return myLastReturned;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (myLastReturned == null)
+                {
+                    throw new IllegalStateException();
+                }
+
+                // The backing iterator may silently remove nothing, hence only
+                // released in case the element was actually removed
+                if (myBackingQueue.remove(myLastReturned))
+                {
+                    released();
+                }
+
+                myLastReturned = null;
+            }
+        };
+    }
+
+    /**
+     * Returns whether or not the backing queue is empty, i.e. whether or not
+     * {@link #poll()} would find an element, unlike {@link #size()} which
+     * includes elements being inserted concurrently.
+     *
+     * @return {@code true} if empty, else {@code false}.
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return myBackingQueue.isEmpty();
+    }
+
+    /**
+     * Returns the number of elements in this queue, which may include elements
+     * being inserted concurrently.
+     *
+     * @return The size of this queue.
+     */
+    @Override
+    public int size()
+    {
+        return myCount.get();
+    }
+
+    /**
+     * Increments the count in case it is below the capacity.
+     *
+     * @return {@code true} if incremented, else {@code false}.
+     */
+    private boolean tryReserve()
+    {
+        int count;
+
+        do
+        {
+            count = myCount.get();
+
+            if (count >= myCapacity)
+            {
+                return false;
+            }
+        }
+        while (!myCount.compareAndSet(count, count + 1));
+
+        return true;
+    }
+
+    private void insert(E e)
+    {
+        if (!myBackingQueue.offer(e))
+        {
+            released();
+            throw new IllegalStateException("Backing queue rejected element");
+        }
+
+        myConsumerWaitStrategy.signalAll();
+    }
+
+    private void released()
+    {
+        myCount.decrementAndGet();
+        myProducerWaitStrategy.signalAll();
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Verifies that the two references don't refer to the very same object, and
+     * if they do an {@link IllegalArgumentException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotSame(Object first, Object second)
+    {
+        if (first == second)
+        {
+            throw new IllegalArgumentException("Not allowed due to same object");
+        }
+    }
+}
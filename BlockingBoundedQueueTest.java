@@ -0,0 +1,205 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class BlockingBoundedQueueTest
+{
+    @Test
+    public void shouldNotOfferMoreThanCapacityNumberOfElements()
+    {
+        BlockingBoundedQueue<Integer> queue = new BlockingBoundedQueue<Integer>(2);
+
+        assertThat(queue.offer(1)).isTrue();
+        assertThat(queue.offer(2)).isTrue();
+        assertThat(queue.offer(3)).isFalse();
+        assertThat(queue.remainingCapacity()).isEqualTo(0);
+        assertThat(queue.poll()).isEqualTo(1);
+        assertThat(queue.remainingCapacity()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTimeOutWhenOfferingToFullQueue() throws Exception
+    {
+        BlockingBoundedQueue<Integer> queue = new BlockingBoundedQueue<Integer>(1);
+        queue.offer(1);
+
+        assertThat(queue.offer(2, 5, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(queue.getProducerWaitStrategy().getCount(WaitStrategy.Phase.BLOCK)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTimeOutWhenPollingEmptyQueue() throws Exception
+    {
+        BlockingBoundedQueue<Integer> queue = new BlockingBoundedQueue<Integer>(1);
+
+        assertThat(queue.poll(5, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(queue.getConsumerWaitStrategy().getCount(WaitStrategy.Phase.BLOCK)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldBlockWhenPollingWhileElementIsBeingInserted() throws Exception
+    {
+        final CountDownLatch inserting = new CountDownLatch(1);
+        final CountDownLatch insert = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Integer> backingQueue = new ConcurrentLinkedQueue<Integer>()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean offer(Integer e)
+            {
+                inserting.countDown();
+
+                try
+                {
+                    insert.await();
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                return super.offer(e);
+            }
+        };
+        final BlockingBoundedQueue<Integer> queue = new BlockingBoundedQueue<Integer>(backingQueue, 1,
+                WaitStrategies.blocking(), WaitStrategies.blocking());
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                queue.offer(1);
+            }
+        };
+        producer.start();
+        inserting.await();
+
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.poll(20, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(queue.getConsumerWaitStrategy().getCount(WaitStrategy.Phase.BLOCK)).isEqualTo(1);
+
+        insert.countDown();
+
+        assertThat(queue.take()).isEqualTo(1);
+
+        producer.join();
+    }
+
+    @Test
+    public void shouldTransferAllElementsWithBlockingWaitStrategies() throws Exception
+    {
+        verifyTransfer(new BlockingBoundedQueue<Integer>(4));
+    }
+
+    @Test
+    public void shouldTransferAllElementsWithSpinningWaitStrategies() throws Exception
+    {
+        verifyTransfer(new BlockingBoundedQueue<Integer>(new ConcurrentLinkedQueue<Integer>(), 4,
+                WaitStrategies.spinThenYield(100), WaitStrategies.spinYieldPark(100, 10, 1, 100,
+                        TimeUnit.MICROSECONDS)));
+    }
+
+    @Test
+    public void shouldDrainElements()
+    {
+        BlockingBoundedQueue<Integer> queue = new BlockingBoundedQueue<Integer>(10);
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        List<Integer> drained = new ArrayList<Integer>();
+
+        assertThat(queue.drainTo(drained, 2)).isEqualTo(2);
+        assertThat(queue.drainTo(drained)).isEqualTo(1);
+        assertThat(drained).containsExactly(1, 2, 3);
+        assertThat(queue).isEmpty();
+    }
+
+    @Test
+    public void shouldNotExceedCapacityWhenRemovingPolledElementUsingIterator()
+    {
+        BlockingBoundedQueue<Integer> queue = new BlockingBoundedQueue<Integer>(2);
+        queue.offer(1);
+        queue.offer(2);
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        queue.poll();
+        iterator.remove();
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.offer(3)).isTrue();
+        assertThat(queue.offer(4)).isFalse();
+        assertThat(queue).containsOnly(2, 3);
+    }
+
+    @Test
+    public void shouldRemoveElementUsingIterator()
+    {
+        BlockingBoundedQueue<Integer> queue = new BlockingBoundedQueue<Integer>(2);
+        queue.offer(1);
+        queue.offer(2);
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.offer(3)).isTrue();
+        assertThat(queue).containsOnly(2, 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldNotAllowSharingWaitStrategyBetweenConsumersAndProducers()
+    {
+        WaitStrategy waitStrategy = WaitStrategies.blocking();
+        new BlockingBoundedQueue<Integer>(new ConcurrentLinkedQueue<Integer>(), 10, waitStrategy, waitStrategy);
+    }
+
+    /**
+     * Puts a number of elements from another thread, much more than the
+     * capacity, and verifies that they are taken in order.
+     *
+     * @param queue
+     * @throws Exception
+     */
+    private static void verifyTransfer(final BlockingBoundedQueue<Integer> queue) throws Exception
+    {
+        final int numberOfElements = 10000;
+        Thread producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    for (int i = 0; i < numberOfElements; ++i)
+                    {
+                        queue.put(i);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        producer.start();
+
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            assertThat(queue.take()).isEqualTo(i);
+        }
+
+        producer.join();
+
+        assertThat(queue).isEmpty();
+    }
+}
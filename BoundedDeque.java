@@ -0,0 +1,454 @@
+package gakesson.util.collections;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * This is an implementation which decorates a {@link Deque} with a bounded
+ * limit, with the same semantics as {@link BoundedQueue} at both ends of the
+ * deque: offering an element at either end fails when the deque is full, and
+ * adding an element throws an {@link IllegalStateException}.
+ *
+ * In evicting mode, inserting an element at one end of a full deque instead
+ * removes the element at the other end, i.e. the deque holds a sliding window
+ * of the most recently inserted elements. The element at the other end is
+ * evicted before the new element is inserted, and put back in case the backing
+ * deque rejects the new element, hence the backing deque never holds more than
+ * the capacity. With a backing {@link Deque} such as
+ * {@link java.util.ArrayDeque} sized to the capacity, the eviction is a
+ * constant time operation which never grows the backing deque. The number of
+ * evicted elements is reported by {@link #getEvictedCount()}.
+ *
+ * Taking the bounded limit decoration aside, this implementation's behavior is
+ * completely dictated by the provided {@link Deque} implementation.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class BoundedDeque<E> extends AbstractQueue<E> implements Deque<E>
+{
+    private final Deque<E> myBackingDeque;
+    private final int myCapacity;
+    private final boolean myEvicting;
+    private long myEvictedCount;
+
+    /**
+     * Creates a new {@link Deque} instance using the provided backing deque and
+     * maximum capacity, rejecting elements when full.
+     *
+     * @param backingDeque
+     *            The deque to decorate.
+     * @param capacity
+     *            The maximum capacity.
+     */
+    public BoundedDeque(Deque<E> backingDeque, int capacity)
+    {
+        this(backingDeque, capacity, false);
+    }
+
+    /**
+     * Creates a new {@link Deque} instance using the provided backing deque and
+     * maximum capacity.
+     *
+     * @param backingDeque
+     *            The deque to decorate.
+     * @param capacity
+     *            The maximum capacity.
+     * @param evicting
+     *            {@code true} to evict the element at the other end when
+     *            inserting into a full deque, else {@code false} to reject the
+     *            inserted element.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public BoundedDeque(Deque<E> backingDeque, int capacity, boolean evicting)
+    {
+        checkNotNull(backingDeque);
+
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        myBackingDeque = backingDeque;
+        myCapacity = capacity;
+        myEvicting = evicting;
+    }
+
+    /**
+     * Returns the maximum capacity of this {@link BoundedDeque}.
+     *
+     * @return The maximum capacity of this deque.
+     */
+    public int getCapacity()
+    {
+        return myCapacity;
+    }
+
+    /**
+     * Returns whether or not this {@link BoundedDeque} evicts elements when
+     * full.
+     *
+     * @return {@code true} if evicting, else {@code false}.
+     */
+    public boolean isEvicting()
+    {
+        return myEvicting;
+    }
+
+    /**
+     * Returns the number of elements evicted since this deque was created.
+     *
+     * @return The number of evicted elements.
+     */
+    public long getEvictedCount()
+    {
+        return myEvictedCount;
+    }
+
+    /**
+     * Inserts the specified element at the front of this deque if it is
+     * possible to do so without violating the capacity restriction, or by
+     * evicting the last element in evicting mode.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added to the backing deque, else
+     *         {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null and
+     *         the backing deque does not permit null values.
+     */
+    @Override
+    public boolean offerFirst(E e)
+    {
+        if (size() < myCapacity)
+        {
+            return myBackingDeque.offerFirst(e);
+        }
+
+        if (!myEvicting)
+        {
+            return false;
+        }
+
+        // Evict before inserting, in order to never exceed the capacity of the
+        // backing deque
+        E evicted = myBackingDeque.pollLast();
+        boolean inserted = false;
+
+        try
+        {
+            inserted = myBackingDeque.offerFirst(e);
+        }
+        finally
+        {
+            if (inserted)
+            {
+                myEvictedCount++;
+            }
+            else
+            {
+                myBackingDeque.offerLast(evicted);
+            }
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Inserts the specified element at the end of this deque if it is possible
+     * to do so without violating the capacity restriction, or by evicting the
+     * first element in evicting mode.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added to the backing deque, else
+     *         {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null and
+     *         the backing deque does not permit null values.
+     */
+    @Override
+    public boolean offerLast(E e)
+    {
+        if (size() < myCapacity)
+        {
+            return myBackingDeque.offerLast(e);
+        }
+
+        if (!myEvicting)
+        {
+            return false;
+        }
+
+        // Evict before inserting, in order to never exceed the capacity of the
+        // backing deque
+        E evicted = myBackingDeque.pollFirst();
+        boolean inserted = false;
+
+        try
+        {
+            inserted = myBackingDeque.offerLast(e);
+        }
+        finally
+        {
+            if (inserted)
+            {
+                myEvictedCount++;
+            }
+            else
+            {
+                myBackingDeque.offerFirst(evicted);
+            }
+        }
+
+        return inserted;
+    }
+
+    @Override
+    public boolean offer(E e)
+    {
+        return offerLast(e);
+    }
+
+    /**
+     * Inserts the specified element at the front of this deque.
+     *
+     * @param e
+     *            The element to add.
+     * @throws {@link IllegalStateException} if the element cannot be added.
+     */
+    @Override
+    public void addFirst(E e)
+    {
+        if (!offerFirst(e))
+        {
+            throw new IllegalStateException("Deque full");
+        }
+    }
+
+    /**
+     * Inserts the specified element at the end of this deque.
+     *
+     * @param e
+     *            The element to add.
+     * @throws {@link IllegalStateException} if the element cannot be added.
+     */
+    @Override
+    public void addLast(E e)
+    {
+        if (!offerLast(e))
+        {
+            throw new IllegalStateException("Deque full");
+        }
+    }
+
+    @Override
+    public void push(E e)
+    {
+        addFirst(e);
+    }
+
+    /**
+     * Adds all of the elements in the specified collection at the end of this
+     * deque. Unless evicting, an {@link IllegalStateException} is thrown in
+     * case the provided collection's size plus the current size of the backing
+     * deque exceeds the capacity, in which case no elements have been
+     * inserted.
+     *
+     * @param collectionToAdd
+     *            The collection containing elements to be added to this deque.
+     * @return {@code true} if this deque changed as a result of the call.
+     * @throws {@link NullPointerException} If the specified collection is
+     *         null.
+     * @throws {@link IllegalArgumentException} If the specified collection is
+     *         this deque or the backing deque.
+     * @throws {@link IllegalStateException} If not all of the elements can be
+     *         added at this time due to insertion restrictions.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> collectionToAdd)
+    {
+        checkNotNull(collectionToAdd);
+        checkNotSame(this, collectionToAdd);
+        checkNotSame(myBackingDeque, collectionToAdd);
+
+        if (!myEvicting && size() + collectionToAdd.size() > myCapacity)
+        {
+            throw new IllegalStateException();
+        }
+
+        boolean modified = false;
+
+        for (E e : collectionToAdd)
+        {
+            if (offerLast(e))
+            {
+                modified = true;
+            }
+        }
+
+        return modified;
+    }
+
+    @Override
+    public E pollFirst()
+    {
+        return myBackingDeque.pollFirst();
+    }
+
+    @Override
+    public E pollLast()
+    {
+        return myBackingDeque.pollLast();
+    }
+
+    @Override
+    public E poll()
+    {
+        return myBackingDeque.pollFirst();
+    }
+
+    @Override
+    public E removeFirst()
+    {
+        return myBackingDeque.removeFirst();
+    }
+
+    @Override
+    public E removeLast()
+    {
+        return myBackingDeque.removeLast();
+    }
+
+    @Override
+    public E pop()
+    {
+        return myBackingDeque.removeFirst();
+    }
+
+    @Override
+    public E peekFirst()
+    {
+        return myBackingDeque.peekFirst();
+    }
+
+    @Override
+    public E peekLast()
+    {
+        return myBackingDeque.peekLast();
+    }
+
+    @Override
+    public E peek()
+    {
+        return myBackingDeque.peekFirst();
+    }
+
+    @Override
+    public E getFirst()
+    {
+        return myBackingDeque.getFirst();
+    }
+
+    @Override
+    public E getLast()
+    {
+        return myBackingDeque.getLast();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o)
+    {
+        return myBackingDeque.removeFirstOccurrence(o);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o)
+    {
+        return myBackingDeque.removeLastOccurrence(o);
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        return myBackingDeque.remove(o);
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return myBackingDeque.contains(o);
+    }
+
+    @Override
+    public void clear()
+    {
+        myBackingDeque.clear();
+    }
+
+    /**
+     * Returns an iterator over the elements contained in the backing deque,
+     * from first to last.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return myBackingDeque.iterator();
+    }
+
+    /**
+     * Returns an iterator over the elements contained in the backing deque,
+     * from last to first.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> descendingIterator()
+    {
+        return myBackingDeque.descendingIterator();
+    }
+
+    /**
+     * Returns the size of the backing deque.
+     *
+     * @return The size of the backing deque.
+     */
+    @Override
+    public int size()
+    {
+        return myBackingDeque.size();
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Verifies that the two references don't refer to the very same object, and
+     * if they do an {@link IllegalArgumentException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotSame(Object first, Object second)
+    {
+        if (first == second)
+        {
+            throw new IllegalArgumentException("Not allowed due to same object");
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import org.testng.annotations.Test;
+
+public class BoundedDequeTest
+{
+    @Test
+    public void shouldReturnDequeCapacity()
+    {
+        BoundedDeque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(), 200);
+
+        assertThat(deque.getCapacity()).isEqualTo(200);
+        assertThat(deque.isEvicting()).isFalse();
+    }
+
+    @Test
+    public void shouldNotOfferMoreThanCapacityNumberOfElementsAtEitherEnd()
+    {
+        Deque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(), 2);
+
+        assertThat(deque.offerFirst(1)).isTrue();
+        assertThat(deque.offerLast(2)).isTrue();
+        assertThat(deque.offerFirst(3)).isFalse();
+        assertThat(deque.offerLast(3)).isFalse();
+        assertThat(new ArrayList<Integer>(deque)).containsExactly(1, 2);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldThrowIllegalStateExceptionWhenPushingToFullDeque()
+    {
+        Deque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(), 1);
+        deque.push(1);
+
+        deque.push(2);
+    }
+
+    @Test
+    public void shouldBehaveAsStackAndQueue()
+    {
+        Deque<Integer> deque = new BoundedDeque<Integer>(new LinkedList<Integer>(), 10);
+        deque.push(1);
+        deque.push(2);
+        deque.offer(3);
+
+        assertThat(deque.pop()).isEqualTo(2);
+        assertThat(deque.pollLast()).isEqualTo(3);
+        assertThat(deque.poll()).isEqualTo(1);
+        assertThat(deque.poll()).isNull();
+    }
+
+    @Test
+    public void shouldEvictFirstElementWhenAddingLastToFullDeque()
+    {
+        BoundedDeque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(3), 3, true);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            deque.addLast(i);
+        }
+
+        assertThat(new ArrayList<Integer>(deque)).containsExactly(7, 8, 9);
+        assertThat(deque.getEvictedCount()).isEqualTo(7);
+    }
+
+    @Test
+    public void shouldEvictLastElementWhenAddingFirstToFullDeque()
+    {
+        BoundedDeque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(3), 3, true);
+        deque.addAll(Arrays.asList(1, 2, 3));
+
+        deque.push(0);
+
+        assertThat(new ArrayList<Integer>(deque)).containsExactly(0, 1, 2);
+        assertThat(deque.getEvictedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotEvictWhenBackingDequeRejectsElement()
+    {
+        BoundedDeque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(1), 1, true);
+        deque.offer(1);
+
+        try
+        {
+            deque.offer(null);
+        }
+        catch (NullPointerException e)
+        {
+            // Expected
+        }
+
+        assertThat(new ArrayList<Integer>(deque)).containsExactly(1);
+        assertThat(deque.getEvictedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldEvictWhenBackingDequeIsBoundedToCapacity()
+    {
+        BoundedDeque<Integer> deque = new BoundedDeque<Integer>(new LinkedBlockingDeque<Integer>(3), 3, true);
+
+        for (int i = 0; i < 5; ++i)
+        {
+            assertThat(deque.offerLast(i)).isTrue();
+        }
+
+        assertThat(deque.offerFirst(0)).isTrue();
+        assertThat(new ArrayList<Integer>(deque)).containsExactly(0, 2, 3);
+        assertThat(deque.getEvictedCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldNeverExceedCapacityOfBackingDequeWhenEvicting()
+    {
+        SizeRecordingDeque backingDeque = new SizeRecordingDeque(3);
+        BoundedDeque<Integer> deque = new BoundedDeque<Integer>(backingDeque, 3, true);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            deque.offerLast(i);
+            deque.offerFirst(i);
+        }
+
+        assertThat(backingDeque.myMaxSize).isEqualTo(3);
+        assertThat(deque.getEvictedCount()).isEqualTo(17);
+    }
+
+    @Test
+    public void shouldPutBackEvictedElementWhenBackingDequeRejectsElement()
+    {
+        BoundedDeque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(2), 2, true);
+        deque.offer(1);
+        deque.offer(2);
+
+        try
+        {
+            deque.offerFirst(null);
+        }
+        catch (NullPointerException e)
+        {
+            // Expected
+        }
+
+        assertThat(new ArrayList<Integer>(deque)).containsExactly(1, 2);
+        assertThat(deque.getEvictedCount()).isEqualTo(0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldNotAddAllWhenCapacityIsNotEnoughUnlessEvicting()
+    {
+        Deque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(), 2);
+
+        deque.addAll(Arrays.asList(1, 2, 3));
+    }
+
+    @Test
+    public void shouldIterateInBothDirections()
+    {
+        Deque<Integer> deque = new BoundedDeque<Integer>(new ArrayDeque<Integer>(), 3);
+        deque.addAll(Arrays.asList(1, 2, 3));
+        Iterator<Integer> descendingIterator = deque.descendingIterator();
+
+        assertThat(new ArrayList<Integer>(deque)).containsExactly(1, 2, 3);
+        assertThat(descendingIterator.next()).isEqualTo(3);
+        assertThat(descendingIterator.next()).isEqualTo(2);
+        assertThat(descendingIterator.next()).isEqualTo(1);
+        assertThat(descendingIterator.hasNext()).isFalse();
+    }
+
+    /**
+     * An {@link ArrayDeque} sized to hold the capacity, recording the largest
+     * size it reached.
+     */
+    private static final class SizeRecordingDeque extends ArrayDeque<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private int myMaxSize;
+
+        private SizeRecordingDeque(int capacity)
+        {
+            super(capacity);
+        }
+
+        @Override
+        public boolean offerFirst(Integer e)
+        {
+            boolean inserted = super.offerFirst(e);
+            myMaxSize = Math.max(myMaxSize, size());
+            return inserted;
+        }
+
+        @Override
+        public boolean offerLast(Integer e)
+        {
+            boolean inserted = super.offerLast(e);
+            myMaxSize = Math.max(myMaxSize, size());
+            return inserted;
+        }
+    }
+}
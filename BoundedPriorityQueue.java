@@ -0,0 +1,482 @@
+package gakesson.util.collections;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * This is a bounded priority queue which, when full, keeps the elements with
+ * the highest priority by evicting the element with the lowest priority when an
+ * element with higher priority is offered. This is useful when only the top-K
+ * elements out of a larger stream of elements are of interest.
+ *
+ * Similar to {@link PriorityQueue}, the element with the highest priority is
+ * the least element according to the natural ordering of the elements or the
+ * provided {@link Comparator}, and is the head of this queue. Both the element
+ * with the highest priority ({@link #peek()}) and the element with the lowest
+ * priority ({@link #peekLast()}) are retrieved in constant time, while
+ * {@link #offer(Object)}, {@link #poll()} and {@link #pollLast()} run in
+ * logarithmic time. The implementation is a min-max heap stored in an array
+ * allocated to the capacity up front, hence no allocation takes place after
+ * construction.
+ *
+ * The {@link #iterator()} does not return the elements in any particular order
+ * and does not support removal, use {@link #remove(Object)} instead.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class BoundedPriorityQueue<E> extends AbstractQueue<E>
+{
+    private final E[] myHeap;
+    private final Comparator<? super E> myComparator;
+    private int mySize;
+    private int myModificationCount;
+
+    /**
+     * Creates a new {@link BoundedPriorityQueue} with the provided capacity,
+     * ordering the elements according to their natural ordering.
+     *
+     * @param capacity
+     *            The maximum capacity.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public BoundedPriorityQueue(int capacity)
+    {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a new {@link BoundedPriorityQueue} with the provided capacity,
+     * ordering the elements according to the provided {@link Comparator}.
+     *
+     * @param capacity
+     *            The maximum capacity.
+     * @param comparator
+     *            The comparator ordering the elements, or {@code null} to use
+     *            the natural ordering of the elements.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedPriorityQueue(int capacity, Comparator<? super E> comparator)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        myHeap = (E[]) new Object[capacity];
+        myComparator = comparator;
+    }
+
+    /**
+     * Returns the maximum capacity of this {@link BoundedPriorityQueue}.
+     *
+     * @return The maximum capacity of this queue.
+     */
+    public int getCapacity()
+    {
+        return myHeap.length;
+    }
+
+    /**
+     * Returns the {@link Comparator} used to order the elements, or
+     * {@code null} if the elements are ordered according to their natural
+     * ordering.
+     *
+     * @return The comparator used to order the elements.
+     */
+    public Comparator<? super E> comparator()
+    {
+        return myComparator;
+    }
+
+    /**
+     * Inserts the specified element into this queue. In case the queue is
+     * full, the element is only inserted if it has higher priority than the
+     * element with the lowest priority, which is then evicted.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was inserted, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     * @throws {@link ClassCastException} if the specified element cannot be
+     *         compared with the elements currently in this queue.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+
+        if (mySize == myHeap.length)
+        {
+            if (compare(e, myHeap[maxIndex()]) >= 0)
+            {
+                return false;
+            }
+
+            pollLast();
+        }
+
+        myModificationCount++;
+        myHeap[mySize] = e;
+        pushUp(mySize++);
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the element with the highest priority, or returns
+     * {@code null} if the queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E poll()
+    {
+        return mySize == 0 ? null : removeAt(0);
+    }
+
+    /**
+     * Retrieves, but does not remove, the element with the highest priority,
+     * or returns {@code null} if the queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E peek()
+    {
+        return mySize == 0 ? null : myHeap[0];
+    }
+
+    /**
+     * Retrieves and removes the element with the lowest priority, or returns
+     * {@code null} if the queue is empty.
+     *
+     * @return The element with the lowest priority, or {@code null} if the
+     *         queue is empty.
+     */
+    public E pollLast()
+    {
+        return mySize == 0 ? null : removeAt(maxIndex());
+    }
+
+    /**
+     * Retrieves, but does not remove, the element with the lowest priority, or
+     * returns {@code null} if the queue is empty.
+     *
+     * @return The element with the lowest priority, or {@code null} if the
+     *         queue is empty.
+     */
+    public E peekLast()
+    {
+        return mySize == 0 ? null : myHeap[maxIndex()];
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue, if
+     * present.
+     *
+     * @param o
+     *            The element to remove.
+     * @return {@code true} if an element was removed, else {@code false}.
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        if (o != null)
+        {
+            for (int i = 0; i < mySize; ++i)
+            {
+                if (o.equals(myHeap[i]))
+                {
+                    removeAt(i);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes all elements from this queue.
+     */
+    @Override
+    public void clear()
+    {
+        myModificationCount++;
+        Arrays.fill(myHeap, 0, mySize, null);
+        mySize = 0;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue, in no particular
+     * order. The iterator does not support removal.
+     *
+     * @return An iterator over the elements in this queue.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<E>()
+        {
+            private final int myExpectedModificationCount = myModificationCount;
+            private int myIndex;
+
+            @Override
+            public boolean hasNext()
+            {
+                return myIndex < mySize;
+            }
+
+            @Override
+            public E next()
+            {
+                if (myExpectedModificationCount != myModificationCount)
+                {
+                    throw new ConcurrentModificationException();
+                }
+
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return myHeap[myIndex++];
+            }
+        };
+    }
+
+    /**
+     * Returns the size of this queue.
+     *
+     * @return The size of this queue.
+     */
+    @Override
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Removes the element at the provided heap index and restores the heap
+     * property.
+     *
+     * @param index
+     * @return The removed element.
+     */
+    private E removeAt(int index)
+    {
+        myModificationCount++;
+        E removed = myHeap[index];
+        int lastIndex = --mySize;
+        E last = myHeap[lastIndex];
+        myHeap[lastIndex] = null;
+
+        if (index != lastIndex)
+        {
+            myHeap[index] = last;
+            pushUp(pushDown(index));
+        }
+
+        return removed;
+    }
+
+    /**
+     * Returns the heap index of the element with the lowest priority. The heap
+     * must not be empty.
+     *
+     * @return
+     */
+    private int maxIndex()
+    {
+        if (mySize <= 2)
+        {
+            return mySize - 1;
+        }
+
+        return compare(myHeap[1], myHeap[2]) >= 0 ? 1 : 2;
+    }
+
+    /**
+     * Moves the element at the provided index up until the heap property is
+     * restored.
+     *
+     * @param index
+     */
+    private void pushUp(int index)
+    {
+        if (index == 0)
+        {
+            return;
+        }
+
+        int parent = (index - 1) >>> 1;
+        boolean minLevel = isMinLevel(index);
+        int comparison = compare(myHeap[index], myHeap[parent]);
+
+        if (minLevel ? comparison > 0 : comparison < 0)
+        {
+            swap(index, parent);
+            pushUpGrandparents(parent, !minLevel);
+        }
+        else
+        {
+            pushUpGrandparents(index, minLevel);
+        }
+    }
+
+    /**
+     * Moves the element at the provided index up through its grandparents,
+     * which are all on min levels or all on max levels.
+     *
+     * @param index
+     * @param minLevel
+     */
+    private void pushUpGrandparents(int index, boolean minLevel)
+    {
+        while (index > 2)
+        {
+            int grandparent = (index - 3) >>> 2;
+            int comparison = compare(myHeap[index], myHeap[grandparent]);
+
+            if (minLevel ? comparison >= 0 : comparison <= 0)
+            {
+                break;
+            }
+
+            swap(index, grandparent);
+            index = grandparent;
+        }
+    }
+
+    /**
+     * Moves the element at the provided index down until the heap property is
+     * restored for the subtree rooted at the provided index.
+     *
+     * @param index
+     * @return The index the element initially at the provided index ended up
+     *         at, which may violate the heap property with regards to its
+     *         ancestors.
+     */
+    private int pushDown(int index)
+    {
+        boolean minLevel = isMinLevel(index);
+        int position = index;
+
+        while (true)
+        {
+            int firstChild = 2 * index + 1;
+
+            if (firstChild >= mySize)
+            {
+                return position;
+            }
+
+            int extreme = firstChild;
+            int lastDescendant = Math.min(4 * index + 6, mySize - 1);
+
+            for (int candidate = firstChild + 1; candidate <= lastDescendant; ++candidate)
+            {
+                if (candidate == firstChild + 2)
+                {
+                    // Skip to the grandchildren
+                    candidate = 4 * index + 3;
+
+                    if (candidate > lastDescendant)
+                    {
+                        break;
+                    }
+                }
+
+                int comparison = compare(myHeap[candidate], myHeap[extreme]);
+
+                if (minLevel ? comparison < 0 : comparison > 0)
+                {
+                    extreme = candidate;
+                }
+            }
+
+            int comparison = compare(myHeap[extreme], myHeap[index]);
+
+            if (minLevel ? comparison >= 0 : comparison <= 0)
+            {
+                return position;
+            }
+
+            swap(extreme, index);
+
+            if (position == index)
+            {
+                position = extreme;
+            }
+
+            if (extreme <= firstChild + 1)
+            {
+                // A child is on the opposite level, hence no further descent
+                return position;
+            }
+
+            int parent = (extreme - 1) >>> 1;
+            comparison = compare(myHeap[extreme], myHeap[parent]);
+
+            if (minLevel ? comparison > 0 : comparison < 0)
+            {
+                swap(extreme, parent);
+
+                if (position == extreme)
+                {
+                    position = parent;
+                }
+            }
+
+            index = extreme;
+        }
+    }
+
+    /**
+     * Returns whether or not the provided heap index is on a min level, i.e.
+     * an even level counting the root as level zero.
+     *
+     * @param index
+     * @return
+     */
+    private static boolean isMinLevel(int index)
+    {
+        return ((31 - Integer.numberOfLeadingZeros(index + 1)) & 1) == 0;
+    }
+
+    private void swap(int first, int second)
+    {
+        E e = myHeap[first];
+        myHeap[first] = myHeap[second];
+        myHeap[second] = e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E first, E second)
+    {
+        return myComparator == null ? ((Comparable<? super E>) first).compareTo(second) : myComparator.compare(
+                first, second);
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class BoundedPriorityQueueTest
+{
+    @Test
+    public void shouldReturnQueueCapacity()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(200);
+
+        assertThat(queue.getCapacity()).isEqualTo(200);
+    }
+
+    @Test
+    public void shouldPollElementsInPriorityOrder()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(100);
+        List<Integer> elements = createShuffledElements(100);
+
+        for (Integer element : elements)
+        {
+            assertThat(queue.offer(element)).isTrue();
+        }
+
+        Collections.sort(elements);
+
+        for (Integer element : elements)
+        {
+            assertThat(queue.peek()).isEqualTo(element);
+            assertThat(queue.poll()).isEqualTo(element);
+        }
+
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    public void shouldPollLastElementsInReversePriorityOrder()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(100);
+        List<Integer> elements = createShuffledElements(100);
+        queue.addAll(elements);
+
+        Collections.sort(elements, Collections.reverseOrder());
+
+        for (Integer element : elements)
+        {
+            assertThat(queue.peekLast()).isEqualTo(element);
+            assertThat(queue.pollLast()).isEqualTo(element);
+        }
+
+        assertThat(queue.pollLast()).isNull();
+    }
+
+    @Test
+    public void shouldKeepElementsWithHighestPriorityWhenFull()
+    {
+        int capacity = 10;
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(capacity);
+
+        for (Integer element : createShuffledElements(1000))
+        {
+            queue.offer(element);
+        }
+
+        assertThat(queue).hasSize(capacity);
+
+        for (int i = 0; i < capacity; ++i)
+        {
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void shouldRejectElementWithLowerPriorityThanLowestWhenFull()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(2);
+        queue.offer(1);
+        queue.offer(2);
+
+        boolean inserted = queue.offer(3);
+
+        assertThat(inserted).isFalse();
+        assertThat(queue.peekLast()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldEvictElementWithLowestPriorityWhenFull()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(2);
+        queue.offer(2);
+        queue.offer(3);
+
+        boolean inserted = queue.offer(1);
+
+        assertThat(inserted).isTrue();
+        assertThat(queue).hasSize(2);
+        assertThat(queue.peek()).isEqualTo(1);
+        assertThat(queue.peekLast()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldOrderUsingProvidedComparator()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(3,
+                Collections.<Integer> reverseOrder());
+
+        for (Integer element : createShuffledElements(100))
+        {
+            queue.offer(element);
+        }
+
+        assertThat(queue.poll()).isEqualTo(99);
+        assertThat(queue.pollLast()).isEqualTo(97);
+        assertThat(queue.poll()).isEqualTo(98);
+    }
+
+    @Test
+    public void shouldKeepHeapOrderWhenRemovingArbitraryElements()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(500);
+        List<Integer> elements = createShuffledElements(500);
+        queue.addAll(elements);
+
+        for (int i = 0; i < 250; ++i)
+        {
+            assertThat(queue.remove(elements.remove(elements.size() - 1))).isTrue();
+        }
+
+        Collections.sort(elements);
+
+        for (Integer element : elements)
+        {
+            assertThat(queue.poll()).isEqualTo(element);
+        }
+    }
+
+    @Test
+    public void shouldIterateOverAllElements()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(100);
+        List<Integer> elements = createShuffledElements(100);
+        queue.addAll(elements);
+        List<Integer> iteratedElements = new ArrayList<Integer>();
+        Iterator<Integer> iterator = queue.iterator();
+
+        while (iterator.hasNext())
+        {
+            iteratedElements.add(iterator.next());
+        }
+
+        Collections.sort(elements);
+        Collections.sort(iteratedElements);
+        assertThat(iteratedElements).isEqualTo(elements);
+    }
+
+    @Test
+    public void shouldBeEmptyAfterClear()
+    {
+        BoundedPriorityQueue<Integer> queue = new BoundedPriorityQueue<Integer>(100);
+        queue.addAll(createShuffledElements(100));
+
+        queue.clear();
+
+        assertThat(queue).isEmpty();
+        assertThat(queue.peek()).isNull();
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldNotAllowNullElements()
+    {
+        new BoundedPriorityQueue<Integer>(1).offer(null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldNotAllowNonPositiveCapacity()
+    {
+        new BoundedPriorityQueue<Integer>(0);
+    }
+
+    /**
+     * Creates the elements 0 to the provided number (exclusive) in random
+     * order.
+     * 
+     * @param numberOfElements
+     * @return
+     */
+    private static List<Integer> createShuffledElements(int numberOfElements)
+    {
+        List<Integer> elements = new ArrayList<Integer>(numberOfElements);
+
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            elements.add(i);
+        }
+
+        Collections.shuffle(elements, new Random(3211));
+        return elements;
+    }
+}
@@ -0,0 +1,491 @@
+package gakesson.util.collections;
+
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This is a {@link Flow.Publisher} delivering the elements of a bounded
+ * {@link Queue} to a single {@link Flow.Subscriber}. Producers insert elements
+ * using {@link #offer(Object)}, which returns {@code false} when the queue is
+ * full, i.e. backpressure from a subscriber which doesn't request more
+ * elements propagates to the producers through the capacity of the queue.
+ *
+ * Elements are delivered asynchronously using the provided {@link Executor},
+ * only as long as the subscriber has outstanding demand, and at most
+ * {@link #getMaxBatchSize()} elements per executed task after which the task is
+ * resubmitted in order to not monopolize a thread of the executor. Since no
+ * thread is blocked waiting for elements or demand, the executor may be of any
+ * kind, e.g. one creating a virtual thread per task.
+ *
+ * Once the subscriber has been signalled to be done, i.e. completed, failed or
+ * cancelled, no further elements are delivered. A subscriber throwing from
+ * {@link Flow.Subscriber#onNext(Object)} is considered cancelled, and is
+ * signalled the exception using {@link Flow.Subscriber#onError(Throwable)}. A second subscriber is
+ * rejected with an {@link IllegalStateException}.
+ *
+ * The queue is guarded by its own monitor, hence a non thread-safe queue such
+ * as a {@link BoundedQueue} may be used as long as it is only accessed through
+ * this publisher. This class is thread-safe.
+ *
+ * @param <E>
+ *            The type of elements published
+ */
+public class BoundedQueuePublisher<E> implements Flow.Publisher<E>
+{
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    private final Queue<E> myQueue;
+    private final Executor myExecutor;
+    private final int myMaxBatchSize;
+    private final AtomicReference<QueueSubscription> mySubscription = new AtomicReference<QueueSubscription>();
+    private volatile boolean myClosed;
+    private volatile Throwable myFailure;
+
+    /**
+     * Creates a new {@link BoundedQueuePublisher} publishing the elements of
+     * the provided queue using the provided executor.
+     *
+     * @param queue
+     *            The bounded queue holding the elements to publish.
+     * @param executor
+     *            The executor delivering the elements.
+     */
+    public BoundedQueuePublisher(Queue<E> queue, Executor executor)
+    {
+        this(queue, executor, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new {@link BoundedQueuePublisher} publishing the elements of
+     * the provided queue using the provided executor.
+     *
+     * @param queue
+     *            The bounded queue holding the elements to publish.
+     * @param executor
+     *            The executor delivering the elements.
+     * @param maxBatchSize
+     *            The maximum number of elements delivered per executed task.
+     * @throws {@link IllegalArgumentException} if the maximum batch size is
+     *         less than 1.
+     */
+    public BoundedQueuePublisher(Queue<E> queue, Executor executor, int maxBatchSize)
+    {
+        checkNotNull(queue);
+        checkNotNull(executor);
+
+        if (maxBatchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+
+        myQueue = queue;
+        myExecutor = executor;
+        myMaxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns the maximum number of elements delivered per executed task.
+     *
+     * @return The maximum batch size.
+     */
+    public int getMaxBatchSize()
+    {
+        return myMaxBatchSize;
+    }
+
+    /**
+     * Subscribes the provided subscriber, which is signalled
+     * {@link Flow.Subscriber#onSubscribe(Flow.Subscription)} using the
+     * executor. In case this publisher already has a subscriber, the provided
+     * subscriber is signalled {@link Flow.Subscriber#onError(Throwable)} with
+     * an {@link IllegalStateException}.
+     *
+     * @param subscriber
+     *            The subscriber.
+     * @throws {@link NullPointerException} if the subscriber is null.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super E> subscriber)
+    {
+        checkNotNull(subscriber);
+        QueueSubscription subscription = new QueueSubscription(subscriber);
+
+        if (!mySubscription.compareAndSet(null, subscription))
+        {
+            subscriber.onSubscribe(new Flow.Subscription()
+            {
+                @Override
+                public void request(long n)
+                {
+                    // Nothing
+                }
+
+                @Override
+                public void cancel()
+                {
+                    // Nothing
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher only supports a single subscriber"));
+            return;
+        }
+
+        subscription.signal();
+    }
+
+    /**
+     * Inserts the provided element into the queue if it is possible to do so
+     * without violating its capacity restrictions, to be delivered once the
+     * subscriber requests it.
+     *
+     * @param e
+     *            The element to publish.
+     * @return {@code true} if the element was inserted, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     * @throws {@link IllegalStateException} if this publisher is closed.
+     */
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+        boolean inserted;
+
+        synchronized (myQueue)
+        {
+            if (myClosed)
+            {
+                throw new IllegalStateException("Publisher is closed");
+            }
+
+            inserted = myQueue.offer(e);
+        }
+
+        if (inserted)
+        {
+            signalSubscription();
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Returns the number of elements waiting to be delivered.
+     *
+     * @return The number of queued elements.
+     */
+    public int size()
+    {
+        synchronized (myQueue)
+        {
+            return myQueue.size();
+        }
+    }
+
+    /**
+     * Closes this publisher, rejecting further elements. The subscriber is
+     * signalled {@link Flow.Subscriber#onComplete()} once all queued elements
+     * have been delivered.
+     */
+    public void close()
+    {
+        synchronized (myQueue)
+        {
+            myClosed = true;
+        }
+
+        signalSubscription();
+    }
+
+    /**
+     * Closes this publisher, rejecting further elements. The subscriber is
+     * signalled {@link Flow.Subscriber#onError(Throwable)} with the provided
+     * failure without delivering the elements still queued.
+     *
+     * @param failure
+     *            The failure to signal.
+     */
+    public void closeExceptionally(Throwable failure)
+    {
+        checkNotNull(failure);
+
+        synchronized (myQueue)
+        {
+            myFailure = failure;
+            myClosed = true;
+        }
+
+        signalSubscription();
+    }
+
+    /**
+     * Returns whether or not this publisher has been closed.
+     *
+     * @return {@code true} if closed, else {@code false}.
+     */
+    public boolean isClosed()
+    {
+        return myClosed;
+    }
+
+    private void signalSubscription()
+    {
+        QueueSubscription subscription = mySubscription.get();
+
+        if (subscription != null)
+        {
+            subscription.signal();
+        }
+    }
+
+    private E pollQueue()
+    {
+        synchronized (myQueue)
+        {
+            return myQueue.poll();
+        }
+    }
+
+    private boolean isDrained()
+    {
+        synchronized (myQueue)
+        {
+            return myClosed && myQueue.isEmpty();
+        }
+    }
+
+    /**
+     * Adds the two non-negative values, capping the result at
+     * {@link Long#MAX_VALUE}.
+     *
+     * @param first
+     * @param second
+     * @return
+     */
+    private static long addCapped(long first, long second)
+    {
+        long sum = first + second;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * The subscription of the single subscriber. All signals to the subscriber
+     * are issued from {@link #run()}, which is executed by at most one thread
+     * at a time since it is only submitted to the executor by the thread
+     * incrementing the number of pending signals from zero.
+     *
+     */
+    private final class QueueSubscription implements Flow.Subscription, Runnable
+    {
+        private final Flow.Subscriber<? super E> mySubscriber;
+        private final AtomicLong myDemand = new AtomicLong();
+        private final AtomicInteger myPendingSignals = new AtomicInteger();
+        private volatile boolean myCancelled;
+        private volatile Throwable myRequestFailure;
+        private boolean mySubscribed;
+        private boolean myTerminated;
+
+        private QueueSubscription(Flow.Subscriber<? super E> subscriber)
+        {
+            mySubscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                myRequestFailure = new IllegalArgumentException("Non-positive request: " + n);
+            }
+            else
+            {
+                myDemand.accumulateAndGet(n, BoundedQueuePublisher::addCapped);
+            }
+
+            signal();
+        }
+
+        @Override
+        public void cancel()
+        {
+            myCancelled = true;
+        }
+
+        private void signal()
+        {
+            if (myPendingSignals.getAndIncrement() == 0)
+            {
+                execute();
+            }
+        }
+
+        private void execute()
+        {
+            try
+            {
+                myExecutor.execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                myCancelled = true;
+                mySubscriber.onError(e);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            int pendingSignals = myPendingSignals.get();
+
+            while (true)
+            {
+                if (!myTerminated && deliverBatch())
+                {
+                    // Yield the thread, the pending signals remain ours
+                    execute();
+                    return;
+                }
+
+                pendingSignals = myPendingSignals.addAndGet(-pendingSignals);
+
+                if (pendingSignals == 0)
+                {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Signals the subscriber according to the current state.
+         *
+         * @return {@code true} if a full batch was delivered and the
+         *         subscriber may have further demand, else {@code false}.
+         */
+        private boolean deliverBatch()
+        {
+            if (!mySubscribed)
+            {
+                mySubscribed = true;
+                mySubscriber.onSubscribe(this);
+            }
+
+            if (myCancelled)
+            {
+                myTerminated = true;
+                return false;
+            }
+
+            Throwable failure = myRequestFailure != null ? myRequestFailure : myFailure;
+
+            if (failure != null)
+            {
+                terminate(failure);
+                return false;
+            }
+
+            long demand = myDemand.get();
+            int delivered = 0;
+            Throwable onNextFailure = null;
+
+            while (delivered < demand && delivered < myMaxBatchSize && !myCancelled)
+            {
+                E e = pollQueue();
+
+                if (e == null)
+                {
+                    break;
+                }
+
+                delivered++;
+
+                try
+                {
+                    mySubscriber.onNext(e);
+                }
+                catch (Throwable t)
+                {
+                    onNextFailure = t;
+                    break;
+                }
+            }
+
+            if (demand != Long.MAX_VALUE)
+            {
+                myDemand.addAndGet(-delivered);
+            }
+
+            if (onNextFailure != null)
+            {
+                failSubscriber(onNextFailure);
+                return false;
+            }
+
+            if (isDrained())
+            {
+                terminate(myFailure);
+                return false;
+            }
+
+            return delivered == myMaxBatchSize;
+        }
+
+        /**
+         * Terminates the subscription after the subscriber threw from
+         * {@link Flow.Subscriber#onNext(Object)}, which is considered a
+         * cancellation (Reactive Streams rule 2.13), yet signals the failure
+         * to the subscriber like {@link java.util.concurrent.SubmissionPublisher}
+         * does. Any exception thrown by the subscriber when signalled is
+         * ignored, so that the pending signals are still reset by
+         * {@link #run()}.
+         *
+         * @param failure
+         */
+        private void failSubscriber(Throwable failure)
+        {
+            try
+            {
+                terminate(failure);
+            }
+            catch (Throwable t)
+            {
+                // Ignored, the subscription is terminated
+            }
+        }
+
+        private void terminate(Throwable failure)
+        {
+            myTerminated = true;
+
+            if (!myCancelled)
+            {
+                myCancelled = true;
+
+                if (failure == null)
+                {
+                    mySubscriber.onComplete();
+                }
+                else
+                {
+                    mySubscriber.onError(failure);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import org.testng.annotations.Test;
+
+public class BoundedQueuePublisherTest
+{
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    @Test
+    public void shouldOnlyDeliverRequestedElements()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(10, 64);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        offerElements(publisher, 5);
+
+        assertThat(subscriber.myElements).isEmpty();
+
+        subscriber.mySubscription.request(3);
+
+        assertThat(subscriber.myElements).containsExactly(0, 1, 2);
+        assertThat(publisher.size()).isEqualTo(2);
+
+        subscriber.mySubscription.request(3);
+        publisher.offer(5);
+
+        assertThat(subscriber.myElements).containsExactly(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void shouldRejectElementsWhenQueueIsFullWithoutDemand()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(2, 64);
+        publisher.subscribe(new RecordingSubscriber());
+
+        assertThat(publisher.offer(1)).isTrue();
+        assertThat(publisher.offer(2)).isTrue();
+        assertThat(publisher.offer(3)).isFalse();
+    }
+
+    @Test
+    public void shouldDeliverAllElementsInBatches()
+    {
+        CountingExecutor executor = new CountingExecutor();
+        BoundedQueuePublisher<Integer> publisher = new BoundedQueuePublisher<Integer>(new BoundedQueue<Integer>(
+                new LinkedList<Integer>(), 100), executor, 10);
+        offerElements(publisher, 100);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.mySubscription.request(Long.MAX_VALUE);
+
+        assertThat(subscriber.myElements).hasSize(100);
+        assertThat(executor.myExecutions).isGreaterThan(10);
+    }
+
+    @Test
+    public void shouldCompleteOnceDrainedAfterClose()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(10, 64);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        offerElements(publisher, 2);
+        publisher.close();
+
+        assertThat(subscriber.myCompleted).isFalse();
+
+        subscriber.mySubscription.request(2);
+
+        assertThat(subscriber.myElements).containsExactly(0, 1);
+        assertThat(subscriber.myCompleted).isTrue();
+    }
+
+    @Test
+    public void shouldSignalErrorWhenClosedExceptionally()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(10, 64);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        offerElements(publisher, 2);
+        IllegalStateException failure = new IllegalStateException();
+
+        publisher.closeExceptionally(failure);
+
+        assertThat(subscriber.myFailure).isSameAs(failure);
+        assertThat(subscriber.myElements).isEmpty();
+    }
+
+    @Test
+    public void shouldSignalErrorWhenRequestingNonPositiveNumberOfElements()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(10, 64);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.mySubscription.request(0);
+
+        assertThat(subscriber.myFailure).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldRejectSecondSubscriber()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(10, 64);
+        publisher.subscribe(new RecordingSubscriber());
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        publisher.subscribe(subscriber);
+
+        assertThat(subscriber.myFailure).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldStopDeliveringWhenCancelled()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(10, 64);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.mySubscription.request(10);
+        publisher.offer(1);
+
+        subscriber.mySubscription.cancel();
+        publisher.offer(2);
+
+        assertThat(subscriber.myElements).containsExactly(1);
+    }
+
+    @Test
+    public void shouldSignalErrorAndKeepDeliveringSignalsWhenSubscriberThrows()
+    {
+        CountingExecutor executor = new CountingExecutor();
+        BoundedQueuePublisher<Integer> publisher = new BoundedQueuePublisher<Integer>(new BoundedQueue<Integer>(
+                new LinkedList<Integer>(), 10), executor, 64);
+        final IllegalStateException failure = new IllegalStateException();
+        RecordingSubscriber subscriber = new RecordingSubscriber()
+        {
+            @Override
+            public void onNext(Integer item)
+            {
+                super.onNext(item);
+
+                if (item == 1)
+                {
+                    throw failure;
+                }
+            }
+        };
+        publisher.subscribe(subscriber);
+        offerElements(publisher, 3);
+
+        subscriber.mySubscription.request(10);
+
+        assertThat(subscriber.myElements).containsExactly(0, 1);
+        assertThat(subscriber.myFailure).isSameAs(failure);
+        assertThat(publisher.size()).isEqualTo(1);
+
+        int executions = executor.myExecutions;
+        publisher.offer(3);
+        subscriber.mySubscription.request(1);
+
+        assertThat(executor.myExecutions).isEqualTo(executions + 2);
+        assertThat(subscriber.myElements).containsExactly(0, 1);
+    }
+
+    @Test
+    public void shouldFeedSubscriberQueueAccordingToItsCapacity()
+    {
+        BoundedQueuePublisher<Integer> publisher = createPublisher(100, 64);
+        BoundedQueueSubscriber<Integer> subscriber = new BoundedQueueSubscriber<Integer>(new BoundedQueue<Integer>(
+                new LinkedList<Integer>(), 4));
+        publisher.subscribe(subscriber);
+        offerElements(publisher, 10);
+
+        assertThat(subscriber.size()).isEqualTo(4);
+        assertThat(publisher.size()).isEqualTo(6);
+
+        List<Integer> received = new ArrayList<Integer>();
+        received.add(subscriber.poll());
+
+        assertThat(publisher.size()).isEqualTo(6);
+
+        received.add(subscriber.poll());
+
+        assertThat(publisher.size()).isEqualTo(4);
+
+        publisher.close();
+
+        while (!subscriber.isDone())
+        {
+            subscriber.drainTo(received, 3);
+        }
+
+        assertThat(received).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(subscriber.getFailure()).isNull();
+    }
+
+    private static BoundedQueuePublisher<Integer> createPublisher(int capacity, int maxBatchSize)
+    {
+        return new BoundedQueuePublisher<Integer>(new BoundedQueue<Integer>(new LinkedList<Integer>(), capacity),
+                DIRECT_EXECUTOR, maxBatchSize);
+    }
+
+    private static void offerElements(BoundedQueuePublisher<Integer> publisher, int numberOfElements)
+    {
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            assertThat(publisher.offer(i)).isTrue();
+        }
+    }
+
+    /**
+     * A subscriber recording its signals, without requesting anything by
+     * itself.
+     *
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<Integer>
+    {
+        private final List<Integer> myElements = new ArrayList<Integer>();
+        private Flow.Subscription mySubscription;
+        private Throwable myFailure;
+        private boolean myCompleted;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            mySubscription = subscription;
+        }
+
+        @Override
+        public void onNext(Integer item)
+        {
+            myElements.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            myFailure = throwable;
+        }
+
+        @Override
+        public void onComplete()
+        {
+            myCompleted = true;
+        }
+    }
+
+    /**
+     * An executor running tasks directly, counting the executions.
+     *
+     */
+    private static class CountingExecutor implements Executor
+    {
+        private int myExecutions;
+
+        @Override
+        public void execute(Runnable command)
+        {
+            myExecutions++;
+            command.run();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package gakesson.util.collections;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+
+/**
+ * This is a {@link Flow.Subscriber} inserting the elements it receives into a
+ * bounded {@link Queue}, from which consumers retrieve them using
+ * {@link #poll()} or {@link #drainTo(Collection, int)}. The subscriber never
+ * requests more elements than there is free capacity in the queue, hence the
+ * queue never overflows and a slow consumer propagates backpressure to the
+ * publisher.
+ *
+ * Demand is replenished as consumers retrieve elements, but only once at least
+ * half of the capacity is free, so that elements are requested in batches
+ * rather than one at a time.
+ *
+ * The queue is guarded by its own monitor, hence a non thread-safe queue such
+ * as a {@link BoundedQueue} may be used as long as it is only accessed through
+ * this subscriber. This class is thread-safe.
+ *
+ * @param <E>
+ *            The type of elements received
+ */
+public class BoundedQueueSubscriber<E> implements Flow.Subscriber<E>
+{
+    private final Queue<E> myQueue;
+    private final int myCapacity;
+    private final int myReplenishThreshold;
+    private volatile Flow.Subscription mySubscription;
+    private long myOutstandingDemand;
+    private volatile boolean myDone;
+    private volatile Throwable myFailure;
+
+    /**
+     * Creates a new {@link BoundedQueueSubscriber} inserting received elements
+     * into the provided {@link BoundedQueue}.
+     *
+     * @param queue
+     *            The queue to insert received elements into.
+     */
+    public BoundedQueueSubscriber(BoundedQueue<E> queue)
+    {
+        this(queue, queue.getCapacity());
+    }
+
+    /**
+     * Creates a new {@link BoundedQueueSubscriber} inserting received elements
+     * into the provided queue, which must be able to hold at least the
+     * provided number of elements.
+     *
+     * @param queue
+     *            The queue to insert received elements into.
+     * @param capacity
+     *            The maximum number of elements held in the queue.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public BoundedQueueSubscriber(Queue<E> queue, int capacity)
+    {
+        checkNotNull(queue);
+
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        myQueue = queue;
+        myCapacity = capacity;
+        myReplenishThreshold = Math.max(1, capacity / 2);
+    }
+
+    /**
+     * Requests as many elements as the queue has room for. In case this
+     * subscriber has already been subscribed, the provided subscription is
+     * cancelled.
+     *
+     * @param subscription
+     *            The subscription.
+     */
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+        checkNotNull(subscription);
+
+        if (mySubscription != null)
+        {
+            subscription.cancel();
+            return;
+        }
+
+        long demand;
+
+        synchronized (myQueue)
+        {
+            mySubscription = subscription;
+            demand = reserveDemand(1);
+        }
+
+        request(demand);
+    }
+
+    /**
+     * Inserts the provided element into the queue. In case the queue is full,
+     * the publisher has delivered more elements than requested, hence the
+     * subscription is cancelled and this subscriber is done with an
+     * {@link IllegalStateException}.
+     *
+     * @param item
+     *            The received element.
+     */
+    @Override
+    public void onNext(E item)
+    {
+        checkNotNull(item);
+        boolean inserted;
+
+        synchronized (myQueue)
+        {
+            myOutstandingDemand--;
+            inserted = myQueue.offer(item);
+        }
+
+        if (!inserted)
+        {
+            mySubscription.cancel();
+            onError(new IllegalStateException("Queue full, received more elements than requested"));
+        }
+    }
+
+    /**
+     * Marks this subscriber as done with the provided failure.
+     *
+     * @param throwable
+     *            The failure.
+     */
+    @Override
+    public void onError(Throwable throwable)
+    {
+        myFailure = throwable;
+        myDone = true;
+    }
+
+    /**
+     * Marks this subscriber as done.
+     */
+    @Override
+    public void onComplete()
+    {
+        myDone = true;
+    }
+
+    /**
+     * Retrieves and removes the head of the queue, or returns {@code null} if
+     * the queue is empty, replenishing the demand in case enough capacity has
+     * been freed.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    public E poll()
+    {
+        E e;
+        long demand;
+
+        synchronized (myQueue)
+        {
+            e = myQueue.poll();
+            demand = reserveDemand(myReplenishThreshold);
+        }
+
+        request(demand);
+        return e;
+    }
+
+    /**
+     * Removes at most the provided number of elements from the queue and adds
+     * them to the provided collection, replenishing the demand in case enough
+     * capacity has been freed.
+     *
+     * @param collection
+     *            The collection to transfer elements into.
+     * @param maxElements
+     *            The maximum number of elements to transfer.
+     * @return The number of elements transferred.
+     */
+    public int drainTo(Collection<? super E> collection, int maxElements)
+    {
+        checkNotNull(collection);
+        int drained = 0;
+        long demand;
+
+        synchronized (myQueue)
+        {
+            E e;
+
+            while (drained < maxElements && (e = myQueue.poll()) != null)
+            {
+                collection.add(e);
+                drained++;
+            }
+
+            demand = reserveDemand(myReplenishThreshold);
+        }
+
+        request(demand);
+        return drained;
+    }
+
+    /**
+     * Returns the number of received elements which haven't been retrieved.
+     *
+     * @return The number of queued elements.
+     */
+    public int size()
+    {
+        synchronized (myQueue)
+        {
+            return myQueue.size();
+        }
+    }
+
+    /**
+     * Returns whether or not the publisher has signalled completion or failure
+     * and all received elements have been retrieved.
+     *
+     * @return {@code true} if no further elements will be retrieved, else
+     *         {@code false}.
+     */
+    public boolean isDone()
+    {
+        return myDone && size() == 0;
+    }
+
+    /**
+     * Returns the failure signalled by the publisher, if any.
+     *
+     * @return The failure, or {@code null} if none.
+     */
+    public Throwable getFailure()
+    {
+        return myFailure;
+    }
+
+    /**
+     * Cancels the subscription, if any. Elements already received remain in
+     * the queue.
+     */
+    public void cancel()
+    {
+        Flow.Subscription subscription = mySubscription;
+        myDone = true;
+
+        if (subscription != null)
+        {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Reserves the free capacity of the queue not already requested, in case
+     * it amounts to at least the provided threshold. Must be called while
+     * holding the monitor of the queue.
+     *
+     * @param threshold
+     * @return The number of elements to request, or zero.
+     */
+    private long reserveDemand(int threshold)
+    {
+        if (myDone || mySubscription == null)
+        {
+            return 0;
+        }
+
+        long free = myCapacity - myQueue.size() - myOutstandingDemand;
+
+        if (free < threshold)
+        {
+            return 0;
+        }
+
+        myOutstandingDemand += free;
+        return free;
+    }
+
+    private void request(long demand)
+    {
+        if (demand > 0)
+        {
+            mySubscription.request(demand);
+        }
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package gakesson.util.collections;
+
+import gakesson.util.misc.Stack;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * The {@link CircularArrayStack} class represents a last-in-first-out (LIFO)
+ * stack of objects with a fixed capacity, such as an undo history. All the
+ * classic stack operations are provided. The implementation is backed by a
+ * circular array which is preallocated upon construction.
+ *
+ * Pushing an element onto a full stack discards the oldest (bottom) element,
+ * i.e. the stack holds the most recently pushed elements. Pushing is a
+ * constant time operation which never grows, copies or allocates. The number
+ * of discarded elements is reported by {@link #getDiscardedCount()}.
+ *
+ * This class is not thread-safe.
+ *
+ */
+public class CircularArrayStack<E> implements Stack<E>
+{
+    private final E[] myElements;
+    private int myTop;
+    private int mySize;
+    private long myDiscardedCount;
+
+    /**
+     * Creates a new {@link CircularArrayStack} with the provided capacity.
+     *
+     * @param capacity
+     *            The maximum number of elements held.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public CircularArrayStack(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        @SuppressWarnings("unchecked")
+        E[] elements = (E[]) new Object[capacity];
+        myElements = elements;
+    }
+
+    /**
+     * Pushes the provided element onto the top of this stack, discarding the
+     * bottom element in case the stack is full.
+     *
+     * @param e
+     *            The element to push.
+     */
+    @Override
+    public void push(E e)
+    {
+        myElements[myTop] = e;
+        myTop = increment(myTop);
+
+        if (mySize < myElements.length)
+        {
+            mySize++;
+        }
+        else
+        {
+            // The slot of the bottom element was just overwritten
+            myDiscardedCount++;
+        }
+    }
+
+    @Override
+    public E pop()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+
+        myTop = decrement(myTop);
+        E e = myElements[myTop];
+        myElements[myTop] = null;
+        mySize--;
+        return e;
+    }
+
+    @Override
+    public E peek()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+
+        return myElements[decrement(myTop)];
+    }
+
+    /**
+     * Returns the bottom element of this stack, i.e. the element to be
+     * discarded by the next push onto a full stack.
+     *
+     * @return The bottom element.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public E peekBottom()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+
+        int bottom = myTop - mySize;
+        return myElements[bottom < 0 ? bottom + myElements.length : bottom];
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Returns whether or not this stack is full, in which case the next push
+     * discards the bottom element.
+     *
+     * @return {@code true} if full, else {@code false}.
+     */
+    public boolean isFull()
+    {
+        return mySize == myElements.length;
+    }
+
+    /**
+     * Returns the maximum capacity of this {@link CircularArrayStack}.
+     *
+     * @return The maximum capacity of this stack.
+     */
+    public int getCapacity()
+    {
+        return myElements.length;
+    }
+
+    /**
+     * Returns the number of elements discarded from the bottom of this stack
+     * since it was created.
+     *
+     * @return The number of discarded elements.
+     */
+    public long getDiscardedCount()
+    {
+        return myDiscardedCount;
+    }
+
+    /**
+     * Removes all of the elements from this stack.
+     */
+    public void clear()
+    {
+        Arrays.fill(myElements, null);
+        myTop = 0;
+        mySize = 0;
+    }
+
+    private int increment(int index)
+    {
+        return ++index == myElements.length ? 0 : index;
+    }
+
+    private int decrement(int index)
+    {
+        return (index == 0 ? myElements.length : index) - 1;
+    }
+}
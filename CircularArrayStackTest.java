@@ -0,0 +1,138 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+import gakesson.util.misc.Stack;
+
+import java.util.EmptyStackException;
+
+import org.testng.annotations.Test;
+
+public class CircularArrayStackTest
+{
+    @Test
+    public void shouldPushAndPopElementsInLIFO()
+    {
+        int numberOfElements = 100;
+        Stack<Object> stack = new CircularArrayStack<Object>(numberOfElements);
+        java.util.Stack<Object> javaStack = new java.util.Stack<Object>();
+
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            Object object = new Object();
+            stack.push(object);
+            javaStack.push(object);
+        }
+
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            Object object = stack.pop();
+            Object javaObject = javaStack.pop();
+
+            assertThat(object).isSameAs(javaObject);
+        }
+
+        assertThat(stack.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldDiscardBottomElementWhenPushingOntoFullStack()
+    {
+        int capacity = 3;
+        CircularArrayStack<Integer> stack = new CircularArrayStack<Integer>(capacity);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            stack.push(i);
+        }
+
+        assertThat(stack.size()).isEqualTo(capacity);
+        assertThat(stack.isFull()).isTrue();
+        assertThat(stack.getDiscardedCount()).isEqualTo(7);
+        assertThat(stack.peekBottom()).isEqualTo(7);
+        assertThat(stack.pop()).isEqualTo(9);
+        assertThat(stack.pop()).isEqualTo(8);
+        assertThat(stack.pop()).isEqualTo(7);
+        assertThat(stack.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldInterleavePushAndPopAcrossWrapAround()
+    {
+        int capacity = 4;
+        CircularArrayStack<Integer> stack = new CircularArrayStack<Integer>(capacity);
+        java.util.Deque<Integer> expected = new java.util.ArrayDeque<Integer>();
+
+        for (int i = 0; i < 1000; ++i)
+        {
+            if (i % 3 == 2)
+            {
+                assertThat(stack.pop()).isEqualTo(expected.pollFirst());
+            }
+            else
+            {
+                stack.push(i);
+                expected.offerFirst(i);
+
+                if (expected.size() > capacity)
+                {
+                    expected.pollLast();
+                }
+            }
+
+            assertThat(stack.size()).isEqualTo(expected.size());
+
+            if (!expected.isEmpty())
+            {
+                assertThat(stack.peek()).isEqualTo(expected.peekFirst());
+                assertThat(stack.peekBottom()).isEqualTo(expected.peekLast());
+            }
+        }
+    }
+
+    @Test
+    public void shouldPeekHeadOfStack()
+    {
+        Stack<Object> stack = new CircularArrayStack<Object>(2);
+        Object first = new Object();
+        Object second = new Object();
+
+        stack.push(first);
+        stack.push(second);
+
+        assertThat(stack.peek()).isSameAs(second);
+        assertThat(stack.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldClearStack()
+    {
+        CircularArrayStack<Object> stack = new CircularArrayStack<Object>(2);
+        stack.push(new Object());
+        stack.push(new Object());
+        stack.push(new Object());
+
+        stack.clear();
+
+        assertThat(stack.isEmpty()).isTrue();
+        assertThat(stack.getCapacity()).isEqualTo(2);
+        assertThat(stack.getDiscardedCount()).isEqualTo(1);
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenPoppingEmptyStack()
+    {
+        new CircularArrayStack<Object>(1).pop();
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenPeekingEmptyStack()
+    {
+        new CircularArrayStack<Object>(1).peek();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenCreatingStackWithZeroCapacity()
+    {
+        new CircularArrayStack<Object>(0);
+    }
+}
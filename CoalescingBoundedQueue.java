@@ -0,0 +1,208 @@
+package gakesson.util.collections;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * This is a bounded queue which coalesces the pending elements sharing a key,
+ * e.g. the updates of the same instrument, so that a consumer falling behind
+ * only processes the latest element per key. An element offered for a key
+ * which is already pending replaces the pending element in place, i.e. it
+ * keeps the queue position of the replaced element and uses no extra
+ * capacity, hence it is accepted even if this queue is full. The keys are
+ * polled in FIFO order of their first arrival since last being polled.
+ *
+ * The elements are held by a {@link LinkedHashMap} from key to element, hence
+ * offering, polling and removing by key are done in constant time. The keys
+ * are returned by the key extractor, and are compared using
+ * {@link Object#equals(Object)}. This queue does not permit null elements.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class CoalescingBoundedQueue<E> extends AbstractQueue<E>
+{
+    private final Map<Object, E> myPendingElements = new LinkedHashMap<Object, E>();
+    private final Function<? super E, ?> myKeyExtractor;
+    private final int myCapacity;
+    private long myCoalescedCount;
+
+    /**
+     * Creates a new {@link CoalescingBoundedQueue} using the provided maximum
+     * capacity and key extractor.
+     *
+     * @param capacity
+     *            The maximum number of pending keys.
+     * @param keyExtractor
+     *            The function returning the key of an element.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public CoalescingBoundedQueue(int capacity, Function<? super E, ?> keyExtractor)
+    {
+        checkNotNull(keyExtractor);
+
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        myCapacity = capacity;
+        myKeyExtractor = keyExtractor;
+    }
+
+    /**
+     * Returns the maximum capacity of this {@link CoalescingBoundedQueue}.
+     *
+     * @return The maximum capacity of this queue.
+     */
+    public int getCapacity()
+    {
+        return myCapacity;
+    }
+
+    /**
+     * Inserts the specified element into this queue, replacing the pending
+     * element of the same key if any, else in case it is possible to do so
+     * without violating the capacity restriction.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+        Object key = myKeyExtractor.apply(e);
+
+        if (myPendingElements.size() < myCapacity)
+        {
+            if (myPendingElements.put(key, e) != null)
+            {
+                myCoalescedCount++;
+            }
+
+            return true;
+        }
+
+        // Full, only accepted when replacing a pending element
+        if (myPendingElements.replace(key, e) != null)
+        {
+            myCoalescedCount++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Retrieves and removes the pending element of the key which arrived
+     * first, or returns {@code null} if this queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E poll()
+    {
+        if (myPendingElements.isEmpty())
+        {
+            return null;
+        }
+
+        Iterator<E> iterator = myPendingElements.values().iterator();
+        E e = iterator.next();
+        iterator.remove();
+        return e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the pending element of the key which
+     * arrived first, or returns {@code null} if this queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E peek()
+    {
+        return myPendingElements.isEmpty() ? null : myPendingElements.values().iterator().next();
+    }
+
+    /**
+     * Returns the pending element of the provided key.
+     *
+     * @param key
+     *            The key.
+     * @return The pending element, or {@code null} if the key is not pending.
+     */
+    public E getPending(Object key)
+    {
+        return myPendingElements.get(key);
+    }
+
+    /**
+     * Removes the pending element of the provided key.
+     *
+     * @param key
+     *            The key.
+     * @return The removed element, or {@code null} if the key is not pending.
+     */
+    public E removePending(Object key)
+    {
+        return myPendingElements.remove(key);
+    }
+
+    /**
+     * Returns the number of elements which replaced a pending element since
+     * this queue was created.
+     *
+     * @return The number of coalesced elements.
+     */
+    public long getCoalescedCount()
+    {
+        return myCoalescedCount;
+    }
+
+    @Override
+    public void clear()
+    {
+        myPendingElements.clear();
+    }
+
+    /**
+     * Returns an iterator over the pending elements, in the order they would
+     * be polled.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return myPendingElements.values().iterator();
+    }
+
+    @Override
+    public int size()
+    {
+        return myPendingElements.size();
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.testng.annotations.Test;
+
+public class CoalescingBoundedQueueTest
+{
+    private static final Function<Update, String> INSTRUMENT = new Function<Update, String>()
+    {
+        @Override
+        public String apply(Update update)
+        {
+            return update.myInstrument;
+        }
+    };
+
+    @Test
+    public void shouldPollElementsInFifoOrder()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(10);
+        Update first = new Update("A", 1);
+        Update second = new Update("B", 1);
+        queue.offer(first);
+        queue.offer(second);
+
+        assertThat(queue.peek()).isSameAs(first);
+        assertThat(queue.poll()).isSameAs(first);
+        assertThat(queue.poll()).isSameAs(second);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.peek()).isNull();
+    }
+
+    @Test
+    public void shouldReplacePendingElementInPlace()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(10);
+        queue.offer(new Update("A", 1));
+        queue.offer(new Update("B", 1));
+        Update latest = new Update("A", 2);
+        queue.offer(latest);
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.getCoalescedCount()).isEqualTo(1);
+        assertThat(queue.getPending("A")).isSameAs(latest);
+        assertThat(queue.poll()).isSameAs(latest);
+        assertThat(queue.poll().myInstrument).isEqualTo("B");
+    }
+
+    @Test
+    public void shouldReplacePendingElementWhenFull()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(2);
+        queue.offer(new Update("A", 1));
+        queue.offer(new Update("B", 1));
+
+        assertThat(queue.offer(new Update("C", 1))).isFalse();
+        assertThat(queue.offer(new Update("B", 2))).isTrue();
+        assertThat(queue.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldEnqueueKeyLastWhenOfferedAfterBeingPolled()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(10);
+        queue.offer(new Update("A", 1));
+        queue.offer(new Update("B", 1));
+        queue.poll();
+        queue.offer(new Update("A", 2));
+
+        assertThat(queue.poll().myInstrument).isEqualTo("B");
+        assertThat(queue.poll().myVersion).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldOnlyProcessLatestElementPerKey()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(3);
+
+        for (int version = 0; version < 100; ++version)
+        {
+            for (String instrument : new String[] { "A", "B", "C" })
+            {
+                assertThat(queue.offer(new Update(instrument, version))).isTrue();
+            }
+        }
+
+        List<Update> polled = new ArrayList<Update>();
+
+        while (!queue.isEmpty())
+        {
+            polled.add(queue.poll());
+        }
+
+        assertThat(polled).hasSize(3);
+
+        for (Update update : polled)
+        {
+            assertThat(update.myVersion).isEqualTo(99);
+        }
+    }
+
+    @Test
+    public void shouldRemovePendingElement()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(10);
+        Update update = new Update("A", 1);
+        queue.offer(update);
+
+        assertThat(queue.removePending("A")).isSameAs(update);
+        assertThat(queue.removePending("A")).isNull();
+        assertThat(queue).isEmpty();
+    }
+
+    @Test
+    public void shouldRemoveElementUsingIterator()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(10);
+        queue.offer(new Update("A", 1));
+        queue.offer(new Update("B", 1));
+        Iterator<Update> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.getPending("A")).isNull();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldThrowExceptionWhenAddingToFullQueue()
+    {
+        CoalescingBoundedQueue<Update> queue = createQueue(1);
+        queue.add(new Update("A", 1));
+        queue.add(new Update("B", 1));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenOfferingNullElement()
+    {
+        createQueue(1).offer(null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenCreatingQueueWithZeroCapacity()
+    {
+        createQueue(0);
+    }
+
+    private static CoalescingBoundedQueue<Update> createQueue(int capacity)
+    {
+        return new CoalescingBoundedQueue<Update>(capacity, INSTRUMENT);
+    }
+
+    private static final class Update
+    {
+        private final String myInstrument;
+        private final int myVersion;
+
+        private Update(String instrument, int version)
+        {
+            myInstrument = instrument;
+            myVersion = version;
+        }
+    }
+}
@@ -0,0 +1,612 @@
+package gakesson.util.collections;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This is a thread-safe bounded cache with a high hit rate, using the
+ * Window TinyLFU policy. The entries are held by a {@link ConcurrentHashMap},
+ * hence reads and writes of the data itself scale like the
+ * {@link ConcurrentHashMap}, whereas the bookkeeping of the policy is performed
+ * under a lock.
+ *
+ * New entries are first added to a small LRU window (one percent of the
+ * maximum size). Entries leaving the window are candidates for the main
+ * space, which is a segmented LRU of a probation and a protected segment
+ * (eighty percent of the main space). Entries accessed while on probation are
+ * promoted to the protected segment. When the cache exceeds its maximum size,
+ * the candidate competes with the victim at the head of the probation segment,
+ * and the one with the lower estimated access frequency according to a
+ * {@link FrequencySketch} is evicted. Hence a burst of entries accessed only
+ * once, e.g. a scan, does not flush frequently accessed entries.
+ *
+ * Reads never take a lock. Instead, the accessed entry is recorded in one of a
+ * number of striped ring buffers, chosen by the {@link ThreadProbe} of the
+ * reading thread (which moves to another buffer when contended), and the
+ * buffers are drained into the policy when one of them is half full (using a
+ * try-lock, hence readers never wait for it) and before each write. The buffers are lossy, i.e. accesses are dropped when a buffer is full
+ * or contended, which only affects the accuracy of the policy and not the
+ * data.
+ *
+ * The {@link #size()} may temporarily exceed the maximum size by the number of
+ * concurrently adding threads. This cache does not permit null keys or values.
+ *
+ * This class is thread-safe.
+ *
+ * @param <K>
+ *            The type of keys
+ * @param <V>
+ *            The type of values
+ */
+public class ConcurrentTinyLfuCache<K, V>
+{
+    private static final int NONE = 0;
+    private static final int WINDOW = 1;
+    private static final int PROBATION = 2;
+    private static final int PROTECTED = 3;
+    private static final int MAX_READ_BUFFERS = 256;
+
+    private final ConcurrentHashMap<K, Node<K, V>> myData;
+    private final int myMaxSize;
+    private final int myMaxWindowSize;
+    private final int myMaxProtectedSize;
+    private final ReentrantLock myEvictionLock = new ReentrantLock();
+    private final FrequencySketch mySketch;
+    private final ReadBuffer[] myReadBuffers;
+    private final int myReadBufferMask;
+    private final Node<K, V> myWindow = newSentinel();
+    private final Node<K, V> myProbation = newSentinel();
+    private final Node<K, V> myProtected = newSentinel();
+    private final LongAdder myHitCount = new LongAdder();
+    private final LongAdder myMissCount = new LongAdder();
+    private final LongAdder myEvictionCount = new LongAdder();
+    private int myWindowSize;
+    private int myProbationSize;
+    private int myProtectedSize;
+
+    /**
+     * Creates a new {@link ConcurrentTinyLfuCache} holding at most the provided
+     * number of entries.
+     *
+     * @param maxSize
+     *            The maximum number of entries.
+     * @throws {@link IllegalArgumentException} if the maximum size is less
+     *         than 1.
+     */
+    public ConcurrentTinyLfuCache(int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maxSize);
+        }
+
+        myData = new ConcurrentHashMap<K, Node<K, V>>();
+        myMaxSize = maxSize;
+        myMaxWindowSize = Math.max(1, maxSize / 100);
+        myMaxProtectedSize = (int) ((maxSize - myMaxWindowSize) * 8L / 10);
+        mySketch = new FrequencySketch(maxSize);
+
+        int readBuffers = Math.min(MAX_READ_BUFFERS,
+                Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1);
+        myReadBuffers = new ReadBuffer[readBuffers];
+        myReadBufferMask = readBuffers - 1;
+
+        for (int i = 0; i < readBuffers; ++i)
+        {
+            myReadBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * Returns the value of the provided key, or {@code null} if not cached.
+     * This method never blocks.
+     *
+     * @param key
+     *            The key.
+     * @return The cached value, or {@code null}.
+     */
+    public V get(Object key)
+    {
+        Node<K, V> node = myData.get(key);
+
+        if (node == null || node.myRetired)
+        {
+            myMissCount.increment();
+            return null;
+        }
+
+        myHitCount.increment();
+        V value = node.myValue;
+        recordAccess(node);
+        return value;
+    }
+
+    /**
+     * Returns whether or not the provided key is cached, without counting as
+     * an access.
+     *
+     * @param key
+     *            The key.
+     * @return {@code true} if cached, else {@code false}.
+     */
+    public boolean containsKey(Object key)
+    {
+        Node<K, V> node = myData.get(key);
+        return node != null && !node.myRetired;
+    }
+
+    /**
+     * Caches the provided value for the provided key, which may evict another
+     * entry, or the new entry itself in case it is not admitted.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @return The previously cached value of the key, or {@code null}.
+     * @throws {@link NullPointerException} if the key or value is null.
+     */
+    public V put(K key, V value)
+    {
+        checkNotNull(key);
+        checkNotNull(value);
+        Node<K, V> node = new Node<K, V>(key, value);
+
+        while (true)
+        {
+            Node<K, V> prior = myData.putIfAbsent(key, node);
+
+            if (prior == null)
+            {
+                added(node);
+                return null;
+            }
+
+            if (!prior.myRetired)
+            {
+                V oldValue = prior.myValue;
+                prior.myValue = value;
+
+                recordAccess(prior);
+                return oldValue;
+            }
+
+            // Being evicted or removed concurrently, help removing it
+            myData.remove(key, prior);
+        }
+    }
+
+    /**
+     * Removes the entry of the provided key, if cached.
+     *
+     * @param key
+     *            The key.
+     * @return The removed value, or {@code null}.
+     */
+    public V remove(Object key)
+    {
+        Node<K, V> node = myData.remove(key);
+
+        if (node == null)
+        {
+            return null;
+        }
+
+        node.myRetired = true;
+        myEvictionLock.lock();
+
+        try
+        {
+            unlink(node);
+        }
+        finally
+        {
+            myEvictionLock.unlock();
+        }
+
+        return node.myValue;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear()
+    {
+        for (K key : myData.keySet())
+        {
+            remove(key);
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return The number of entries.
+     */
+    public int size()
+    {
+        return myData.size();
+    }
+
+    /**
+     * Returns the maximum number of entries of this cache.
+     *
+     * @return The maximum size.
+     */
+    public int getMaxSize()
+    {
+        return myMaxSize;
+    }
+
+    /**
+     * Applies the pending bookkeeping of reads to the policy, which otherwise
+     * happens when needed.
+     */
+    public void cleanUp()
+    {
+        myEvictionLock.lock();
+
+        try
+        {
+            drainReadBuffers();
+        }
+        finally
+        {
+            myEvictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of reads which found an entry.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount()
+    {
+        return myHitCount.sum();
+    }
+
+    /**
+     * Returns the number of reads which found no entry.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount()
+    {
+        return myMissCount.sum();
+    }
+
+    /**
+     * Returns the ratio of reads which found an entry.
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing has been read.
+     */
+    public double getHitRate()
+    {
+        long hits = getHitCount();
+        long reads = hits + getMissCount();
+        return reads == 0 ? 0 : (double) hits / reads;
+    }
+
+    /**
+     * Returns the number of entries evicted or not admitted.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount()
+    {
+        return myEvictionCount.sum();
+    }
+
+    private void added(Node<K, V> node)
+    {
+        myEvictionLock.lock();
+
+        try
+        {
+            drainReadBuffers();
+
+            if (!node.myRetired)
+            {
+                mySketch.increment(node.myKey);
+                node.myQueue = WINDOW;
+                linkLast(myWindow, node);
+                myWindowSize++;
+                evict();
+            }
+        }
+        finally
+        {
+            myEvictionLock.unlock();
+        }
+    }
+
+    private void tryDrainReadBuffers()
+    {
+        if (myEvictionLock.tryLock())
+        {
+            try
+            {
+                drainReadBuffers();
+            }
+            finally
+            {
+                myEvictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies the recorded reads to the policy. Guarded by the eviction lock.
+     */
+    private void drainReadBuffers()
+    {
+        for (ReadBuffer buffer : myReadBuffers)
+        {
+            buffer.drainTo(this);
+        }
+    }
+
+    /**
+     * Records an access of the provided node. Guarded by the eviction lock.
+     *
+     * @param node
+     */
+    private void accessed(Node<K, V> node)
+    {
+        if (node.myQueue == NONE)
+        {
+            // Removed, evicted or not yet added
+            return;
+        }
+
+        mySketch.increment(node.myKey);
+
+        if (node.myQueue == PROBATION)
+        {
+            unlink(node);
+            node.myQueue = PROTECTED;
+            linkLast(myProtected, node);
+            myProtectedSize++;
+
+            while (myProtectedSize > myMaxProtectedSize)
+            {
+                Node<K, V> demoted = myProtected.myNext;
+                unlink(demoted);
+                demoted.myQueue = PROBATION;
+                linkLast(myProbation, demoted);
+                myProbationSize++;
+            }
+        }
+        else
+        {
+            unlinkNode(node);
+            linkLast(node.myQueue == WINDOW ? myWindow : myProtected, node);
+        }
+    }
+
+    /**
+     * Moves the entries exceeding the window to the probation segment, and
+     * evicts entries until the maximum size is respected. Guarded by the
+     * eviction lock.
+     */
+    private void evict()
+    {
+        while (myWindowSize > myMaxWindowSize)
+        {
+            Node<K, V> candidate = myWindow.myNext;
+            unlink(candidate);
+            candidate.myQueue = PROBATION;
+            linkLast(myProbation, candidate);
+            myProbationSize++;
+        }
+
+        while (myWindowSize + myProbationSize + myProtectedSize > myMaxSize)
+        {
+            Node<K, V> victim = myProbation.myNext;
+            Node<K, V> candidate = myProbation.myPrevious;
+
+            if (victim == myProbation)
+            {
+                evict(myProtected.myNext != myProtected ? myProtected.myNext : myWindow.myNext);
+            }
+            else if (victim != candidate && mySketch.frequency(candidate.myKey) > mySketch.frequency(victim.myKey))
+            {
+                evict(victim);
+            }
+            else
+            {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node<K, V> node)
+    {
+        unlink(node);
+        node.myRetired = true;
+        myData.remove(node.myKey, node);
+        myEvictionCount.increment();
+    }
+
+    /**
+     * Unlinks the provided node from its queue, if any. Guarded by the
+     * eviction lock.
+     *
+     * @param node
+     */
+    private void unlink(Node<K, V> node)
+    {
+        switch (node.myQueue)
+        {
+        case WINDOW:
+            myWindowSize--;
+            break;
+        case PROBATION:
+            myProbationSize--;
+            break;
+        case PROTECTED:
+            myProtectedSize--;
+            break;
+        default:
+            return;
+        }
+
+        unlinkNode(node);
+        node.myQueue = NONE;
+    }
+
+    private static <K, V> Node<K, V> newSentinel()
+    {
+        Node<K, V> sentinel = new Node<K, V>(null, null);
+        sentinel.myPrevious = sentinel;
+        sentinel.myNext = sentinel;
+        return sentinel;
+    }
+
+    private static <K, V> void unlinkNode(Node<K, V> node)
+    {
+        node.myPrevious.myNext = node.myNext;
+        node.myNext.myPrevious = node.myPrevious;
+    }
+
+    private static <K, V> void linkLast(Node<K, V> sentinel, Node<K, V> node)
+    {
+        node.myPrevious = sentinel.myPrevious;
+        node.myNext = sentinel;
+        sentinel.myPrevious.myNext = node;
+        sentinel.myPrevious = node;
+    }
+
+    /**
+     * Records an access of the provided node in the read buffer chosen by the
+     * {@link ThreadProbe} of the calling thread, which moves to another read
+     * buffer in case the buffer was contended.
+     *
+     * @param node
+     */
+    private void recordAccess(Node<K, V> node)
+    {
+        int result = myReadBuffers[ThreadProbe.get() & myReadBufferMask].offer(node);
+
+        if (result == ReadBuffer.CONTENDED)
+        {
+            ThreadProbe.advance();
+        }
+        else if (result == ReadBuffer.DRAIN)
+        {
+            tryDrainReadBuffers();
+        }
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * A cache entry, linked into one of the queues of the policy.
+     */
+    private static final class Node<K, V>
+    {
+        private final K myKey;
+        private volatile V myValue;
+        private volatile boolean myRetired;
+        private int myQueue;
+        private Node<K, V> myPrevious;
+        private Node<K, V> myNext;
+
+        private Node(K key, V value)
+        {
+            myKey = key;
+            myValue = value;
+        }
+    }
+
+    /**
+     * A lossy ring buffer of accessed nodes, written by any number of reading
+     * threads and drained under the eviction lock.
+     */
+    private static final class ReadBuffer
+    {
+        private static final int SIZE = 16;
+        private static final int MASK = SIZE - 1;
+        private static final int DRAIN_THRESHOLD = SIZE / 2;
+        private static final int RECORDED = 0;
+        private static final int DRAIN = 1;
+        private static final int CONTENDED = 2;
+
+        private final AtomicReferenceArray<Node<?, ?>> mySlots = new AtomicReferenceArray<Node<?, ?>>(SIZE);
+        private final AtomicLong myWriteCount = new AtomicLong();
+        private volatile long myReadCount;
+
+        /**
+         * Records the provided node, unless the buffer is full or contended.
+         *
+         * @param node
+         * @return {@link #DRAIN} if the buffer should be drained,
+         *         {@link #CONTENDED} if the node was dropped since another thread
+         *         recorded a node concurrently, else {@link #RECORDED}.
+         */
+        private int offer(Node<?, ?> node)
+        {
+            long head = myReadCount;
+            long tail = myWriteCount.get();
+            long size = tail - head;
+
+            if (size >= SIZE)
+            {
+                return DRAIN;
+            }
+
+            if (myWriteCount.compareAndSet(tail, tail + 1))
+            {
+                mySlots.lazySet((int) tail & MASK, node);
+                return size + 1 >= DRAIN_THRESHOLD ? DRAIN : RECORDED;
+            }
+
+            return CONTENDED;
+        }
+
+        /**
+         * Applies the recorded nodes to the policy of the provided cache,
+         * stopping at a slot which has been claimed but not yet written.
+         *
+         * @param cache
+         */
+        @SuppressWarnings("unchecked")
+        private <K, V> void drainTo(ConcurrentTinyLfuCache<K, V> cache)
+        {
+            long head = myReadCount;
+            long tail = myWriteCount.get();
+
+            for (; head < tail; ++head)
+            {
+                int index = (int) head & MASK;
+                Node<?, ?> node = mySlots.get(index);
+
+                if (node == null)
+                {
+                    break;
+                }
+
+                mySlots.lazySet(index, null);
+                cache.accessed((Node<K, V>) node);
+            }
+
+            myReadCount = head;
+        }
+    }
+}
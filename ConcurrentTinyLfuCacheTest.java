@@ -0,0 +1,222 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class ConcurrentTinyLfuCacheTest
+{
+    @Test
+    public void shouldGetPutValue()
+    {
+        ConcurrentTinyLfuCache<String, Integer> cache = new ConcurrentTinyLfuCache<String, Integer>(10);
+
+        assertThat(cache.put("key", 1)).isNull();
+        assertThat(cache.put("key", 2)).isEqualTo(1);
+        assertThat(cache.get("key")).isEqualTo(2);
+        assertThat(cache.containsKey("key")).isTrue();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCountMiss()
+    {
+        ConcurrentTinyLfuCache<String, Integer> cache = new ConcurrentTinyLfuCache<String, Integer>(10);
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitRate()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void shouldRemoveValue()
+    {
+        ConcurrentTinyLfuCache<String, Integer> cache = new ConcurrentTinyLfuCache<String, Integer>(10);
+        cache.put("key", 1);
+
+        assertThat(cache.remove("key")).isEqualTo(1);
+        assertThat(cache.remove("key")).isNull();
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void shouldClearCache()
+    {
+        ConcurrentTinyLfuCache<Integer, Integer> cache = new ConcurrentTinyLfuCache<Integer, Integer>(10);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            cache.put(i, i);
+        }
+
+        cache.clear();
+
+        assertThat(cache.size()).isZero();
+
+        for (int i = 0; i < 10; ++i)
+        {
+            cache.put(i, i);
+        }
+
+        assertThat(cache.size()).isEqualTo(10);
+        assertThat(cache.getEvictionCount()).isZero();
+    }
+
+    @Test
+    public void shouldNeverExceedMaximumSizeWhenSingleThreaded()
+    {
+        int maxSize = 50;
+        ConcurrentTinyLfuCache<Integer, Integer> cache = new ConcurrentTinyLfuCache<Integer, Integer>(maxSize);
+        Random random = new Random(1);
+
+        for (int i = 0; i < 10000; ++i)
+        {
+            int key = random.nextInt(500);
+
+            if (cache.get(key) == null)
+            {
+                cache.put(key, key);
+            }
+
+            assertThat(cache.size()).isLessThanOrEqualTo(maxSize);
+        }
+
+        assertThat(cache.getEvictionCount()).isEqualTo(cache.getMissCount() - cache.size());
+    }
+
+    @Test
+    public void shouldKeepFrequentlyUsedEntriesDuringScan()
+    {
+        int maxSize = 100;
+        ConcurrentTinyLfuCache<Integer, Integer> cache = new ConcurrentTinyLfuCache<Integer, Integer>(maxSize);
+        Map<Integer, Integer> lru = LazyCacheMap.newLruCacheMap(maxSize);
+        int lruHits = 0;
+        int reads = 0;
+
+        for (int round = 0; round < 100; ++round)
+        {
+            for (int key = 0; key < 50; ++key)
+            {
+                readThrough(cache, key);
+                lruHits += readThrough(lru, key) ? 1 : 0;
+                reads++;
+            }
+
+            for (int i = 0; i < 200; ++i)
+            {
+                int key = 1000000 + round * 200 + i;
+                readThrough(cache, key);
+                lruHits += readThrough(lru, key) ? 1 : 0;
+                reads++;
+            }
+        }
+
+        double lruHitRate = (double) lruHits / reads;
+
+        assertThat(cache.getHitRate()).isGreaterThan(lruHitRate + 0.1);
+        assertThat(cache.size()).isLessThanOrEqualTo(maxSize);
+    }
+
+    @Test
+    public void shouldStayConsistentWhenAccessedConcurrently() throws Exception
+    {
+        final int maxSize = 64;
+        final ConcurrentTinyLfuCache<Integer, Integer> cache = new ConcurrentTinyLfuCache<Integer, Integer>(maxSize);
+        int numberOfThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        for (int t = 0; t < numberOfThreads; ++t)
+        {
+            final long seed = t;
+
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    Random random = new Random(seed);
+
+                    for (int i = 0; i < 20000; ++i)
+                    {
+                        int key = random.nextInt(256);
+                        Integer value = cache.get(key);
+
+                        if (value == null)
+                        {
+                            cache.put(key, key);
+                        }
+                        else if (value != key)
+                        {
+                            throw new AssertionError("Wrong value " + value + " of key " + key);
+                        }
+
+                        if (i % 97 == 0)
+                        {
+                            cache.remove(key);
+                        }
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures)
+        {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+        cache.cleanUp();
+
+        assertThat(cache.size()).isLessThanOrEqualTo(maxSize);
+        assertThat(cache.getHitCount() + cache.getMissCount()).isEqualTo(numberOfThreads * 20000L);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenPuttingNullValue()
+    {
+        new ConcurrentTinyLfuCache<String, Integer>(1).put("key", null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenCreatingCacheWithZeroSize()
+    {
+        new ConcurrentTinyLfuCache<String, Integer>(0);
+    }
+
+    private static boolean readThrough(ConcurrentTinyLfuCache<Integer, Integer> cache, Integer key)
+    {
+        if (cache.get(key) != null)
+        {
+            return true;
+        }
+
+        cache.put(key, key);
+        return false;
+    }
+
+    private static boolean readThrough(Map<Integer, Integer> cache, Integer key)
+    {
+        if (cache.get(key) != null)
+        {
+            return true;
+        }
+
+        cache.put(key, key);
+        return false;
+    }
+}
@@ -0,0 +1,295 @@
+package gakesson.util.collections;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * This is a bounded FIFO queue where each element expires a fixed time-to-live
+ * after it was inserted. Expired elements are discarded lazily, i.e. when they
+ * reach the head of the queue upon {@link #poll()}, {@link #peek()} and
+ * {@link #size()}, and when the queue is full upon {@link #offer(Object)}, in
+ * which case the capacity they occupied is reused for the offered element. The
+ * number of discarded elements is reported by {@link #getExpiredCount()}.
+ *
+ * Since all elements live for the same duration, they expire in insertion
+ * order, hence only the head of the queue ever needs to be inspected. The time
+ * is read from a {@link LongSupplier} returning nanoseconds (by default
+ * {@link System#nanoTime()}), which allows for a controlled clock when testing.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class ExpiringBoundedQueue<E> extends AbstractQueue<E>
+{
+    private final Queue<ExpiringElement<E>> myBackingQueue;
+    private final int myCapacity;
+    private final long myTimeToLiveNanos;
+    private final LongSupplier myNanoClock;
+    private long myExpiredCount;
+
+    /**
+     * Creates a new {@link ExpiringBoundedQueue} with the provided capacity and
+     * time-to-live, using {@link System#nanoTime()} as clock.
+     *
+     * @param capacity
+     *            The maximum capacity.
+     * @param timeToLive
+     *            The time an element remains in the queue before it expires.
+     * @param unit
+     *            The unit of the time-to-live.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1
+     *         or the time-to-live is not positive.
+     */
+    public ExpiringBoundedQueue(int capacity, long timeToLive, TimeUnit unit)
+    {
+        this(capacity, timeToLive, unit, System::nanoTime);
+    }
+
+    /**
+     * Creates a new {@link ExpiringBoundedQueue} with the provided capacity and
+     * time-to-live, using the provided clock.
+     *
+     * @param capacity
+     *            The maximum capacity.
+     * @param timeToLive
+     *            The time an element remains in the queue before it expires.
+     * @param unit
+     *            The unit of the time-to-live.
+     * @param nanoClock
+     *            The clock returning the current time in nanoseconds, which
+     *            must never go backwards.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1
+     *         or the time-to-live is not positive.
+     */
+    public ExpiringBoundedQueue(int capacity, long timeToLive, TimeUnit unit, LongSupplier nanoClock)
+    {
+        checkNotNull(unit);
+        checkNotNull(nanoClock);
+
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        if (timeToLive <= 0)
+        {
+            throw new IllegalArgumentException("Time-to-live must be positive: " + timeToLive);
+        }
+
+        myBackingQueue = new ArrayDeque<ExpiringElement<E>>(Math.min(capacity, 16));
+        myCapacity = capacity;
+        myTimeToLiveNanos = unit.toNanos(timeToLive);
+        myNanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the maximum capacity of this {@link ExpiringBoundedQueue}.
+     *
+     * @return The maximum capacity of this queue.
+     */
+    public int getCapacity()
+    {
+        return myCapacity;
+    }
+
+    /**
+     * Returns the time-to-live of the elements in the provided unit.
+     *
+     * @param unit
+     *            The unit to convert the time-to-live to.
+     * @return The time-to-live of the elements.
+     */
+    public long getTimeToLive(TimeUnit unit)
+    {
+        return unit.convert(myTimeToLiveNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of elements which have been discarded since they
+     * expired before being polled.
+     *
+     * @return The number of expired elements.
+     */
+    public long getExpiredCount()
+    {
+        return myExpiredCount;
+    }
+
+    /**
+     * Inserts the specified element into this queue if it is possible to do so
+     * immediately without violating the capacity restriction, after discarding
+     * any expired elements in case the queue is full.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+        long now = myNanoClock.getAsLong();
+
+        if (myBackingQueue.size() == myCapacity && discardExpired(now) == 0)
+        {
+            return false;
+        }
+
+        return myBackingQueue.offer(new ExpiringElement<E>(e, now + myTimeToLiveNanos));
+    }
+
+    /**
+     * Retrieves and removes the first element which hasn't expired, or returns
+     * {@code null} if there is none.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E poll()
+    {
+        discardExpired(myNanoClock.getAsLong());
+        ExpiringElement<E> head = myBackingQueue.poll();
+        return head == null ? null : head.myElement;
+    }
+
+    /**
+     * Retrieves, but does not remove, the first element which hasn't expired,
+     * or returns {@code null} if there is none.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E peek()
+    {
+        discardExpired(myNanoClock.getAsLong());
+        ExpiringElement<E> head = myBackingQueue.peek();
+        return head == null ? null : head.myElement;
+    }
+
+    /**
+     * Discards all expired elements.
+     *
+     * @return The number of discarded elements.
+     */
+    public int purgeExpired()
+    {
+        return discardExpired(myNanoClock.getAsLong());
+    }
+
+    /**
+     * Removes all elements from this queue. The removed elements are not
+     * counted as expired.
+     */
+    @Override
+    public void clear()
+    {
+        myBackingQueue.clear();
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in FIFO order. Since
+     * expired elements are only discarded lazily, the iterator may return
+     * elements which expire during the iteration.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        discardExpired(myNanoClock.getAsLong());
+        final Iterator<ExpiringElement<E>> iterator = myBackingQueue.iterator();
+
+        return new Iterator<E>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next()
+            {
+                return iterator.next().myElement;
+            }
+
+            @Override
+            public void remove()
+            {
+                iterator.remove();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of elements in this queue which haven't expired.
+     *
+     * @return The size of this queue.
+     */
+    @Override
+    public int size()
+    {
+        discardExpired(myNanoClock.getAsLong());
+        return myBackingQueue.size();
+    }
+
+    /**
+     * Discards the elements at the head of the queue which have expired at the
+     * provided time.
+     *
+     * @param now
+     * @return The number of discarded elements.
+     */
+    private int discardExpired(long now)
+    {
+        int discarded = 0;
+        ExpiringElement<E> head;
+
+        while ((head = myBackingQueue.peek()) != null && head.myExpirationTime - now <= 0)
+        {
+            myBackingQueue.poll();
+            discarded++;
+        }
+
+        myExpiredCount += discarded;
+        return discarded;
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * An element together with the time at which it expires.
+     *
+     * @param <E>
+     */
+    private static final class ExpiringElement<E>
+    {
+        private final E myElement;
+        private final long myExpirationTime;
+
+        private ExpiringElement(E element, long expirationTime)
+        {
+            myElement = element;
+            myExpirationTime = expirationTime;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ExpiringBoundedQueueTest
+{
+    private static final long TIME_TO_LIVE_MILLIS = 100;
+
+    private ManualClock myClock;
+
+    @BeforeMethod
+    public void initTestCase()
+    {
+        myClock = new ManualClock();
+    }
+
+    @Test
+    public void shouldPollElementsInFIFOBeforeTheyExpire()
+    {
+        ExpiringBoundedQueue<Integer> queue = createQueue(10);
+        queue.offer(1);
+        myClock.advance(TIME_TO_LIVE_MILLIS / 2);
+        queue.offer(2);
+
+        assertThat(queue.poll()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo(2);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.getExpiredCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldDiscardExpiredElementsWhenPeekingAndPolling()
+    {
+        ExpiringBoundedQueue<Integer> queue = createQueue(10);
+        queue.offer(1);
+        queue.offer(2);
+        myClock.advance(TIME_TO_LIVE_MILLIS / 2);
+        queue.offer(3);
+        myClock.advance(TIME_TO_LIVE_MILLIS / 2);
+
+        assertThat(queue.peek()).isEqualTo(3);
+        assertThat(queue.getExpiredCount()).isEqualTo(2);
+        assertThat(queue).hasSize(1);
+
+        myClock.advance(TIME_TO_LIVE_MILLIS / 2);
+
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.getExpiredCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldRejectElementWhenFullOfUnexpiredElements()
+    {
+        ExpiringBoundedQueue<Integer> queue = createQueue(2);
+        queue.offer(1);
+        queue.offer(2);
+
+        assertThat(queue.offer(3)).isFalse();
+        assertThat(new ArrayList<Integer>(queue)).containsExactly(1, 2);
+    }
+
+    @Test
+    public void shouldReuseCapacityOfExpiredElementsWhenFull()
+    {
+        ExpiringBoundedQueue<Integer> queue = createQueue(2);
+        queue.offer(1);
+        myClock.advance(TIME_TO_LIVE_MILLIS / 2);
+        queue.offer(2);
+        myClock.advance(TIME_TO_LIVE_MILLIS / 2);
+
+        assertThat(queue.offer(3)).isTrue();
+        assertThat(queue.getExpiredCount()).isEqualTo(1);
+        assertThat(new ArrayList<Integer>(queue)).containsExactly(2, 3);
+    }
+
+    @Test
+    public void shouldPurgeExpiredElements()
+    {
+        ExpiringBoundedQueue<Integer> queue = createQueue(10);
+        queue.offer(1);
+        queue.offer(2);
+        myClock.advance(TIME_TO_LIVE_MILLIS);
+
+        assertThat(queue.purgeExpired()).isEqualTo(2);
+        assertThat(queue).isEmpty();
+    }
+
+    @Test
+    public void shouldReturnTimeToLive()
+    {
+        ExpiringBoundedQueue<Integer> queue = createQueue(10);
+
+        assertThat(queue.getTimeToLive(TimeUnit.MILLISECONDS)).isEqualTo(TIME_TO_LIVE_MILLIS);
+        assertThat(queue.getCapacity()).isEqualTo(10);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldNotAllowNullElements()
+    {
+        createQueue(10).offer(null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldNotAllowNonPositiveTimeToLive()
+    {
+        new ExpiringBoundedQueue<Integer>(10, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an {@link ExpiringBoundedQueue} with the provided capacity, the
+     * {@link #TIME_TO_LIVE_MILLIS} and the manual clock.
+     *
+     * @param capacity
+     * @return
+     */
+    private ExpiringBoundedQueue<Integer> createQueue(int capacity)
+    {
+        return new ExpiringBoundedQueue<Integer>(capacity, TIME_TO_LIVE_MILLIS, TimeUnit.MILLISECONDS, myClock);
+    }
+
+    /**
+     * A clock which is only advanced explicitly.
+     *
+     */
+    private static class ManualClock implements LongSupplier
+    {
+        private long myNanos;
+
+        @Override
+        public long getAsLong()
+        {
+            return myNanos;
+        }
+
+        void advance(long millis)
+        {
+            myNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
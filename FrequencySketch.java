@@ -0,0 +1,156 @@
+package gakesson.util.collections;
+
+/**
+ * A compact count-min sketch estimating the access frequencies of elements,
+ * used by {@link ConcurrentTinyLfuCache} to decide whether admitting a new
+ * entry is worth evicting an existing one.
+ *
+ * Each element is counted by four 4-bit counters, chosen by four hash
+ * functions, and its estimated frequency is the minimum of its counters, hence
+ * the estimate never underestimates but may overestimate due to collisions.
+ * The counters of an element are packed into the same group of four counters
+ * of four different {@code long}s, and the table holds one {@code long} (i.e.
+ * sixteen counters) per element of the expected maximum size.
+ *
+ * In order to let the frequencies reflect recent accesses, all counters are
+ * halved once the number of increments reaches ten times the maximum size,
+ * meaning that the counters saturate at 15 and that the history ages.
+ *
+ * This class is not thread-safe.
+ *
+ */
+final class FrequencySketch
+{
+    private static final long[] SEEDS = { 0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL,
+            0xCBF29CE484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    private final long[] myTable;
+    private final int myTableMask;
+    private final int mySampleSize;
+    private int mySize;
+
+    /**
+     * Creates a new {@link FrequencySketch} sized for the provided maximum
+     * number of elements of interest.
+     *
+     * @param maximumSize
+     *            The maximum number of elements of interest.
+     */
+    FrequencySketch(int maximumSize)
+    {
+        int tableSize = maximumSize >= MAX_TABLE_SIZE ? MAX_TABLE_SIZE
+                : Integer.highestOneBit(Math.max(maximumSize, 2) - 1) << 1;
+        myTable = new long[tableSize];
+        myTableMask = tableSize - 1;
+        mySampleSize = (int) Math.min(10L * Math.max(maximumSize, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the estimated number of accesses of the provided element, at
+     * most 15.
+     *
+     * @param e
+     *            The element.
+     * @return The estimated frequency.
+     */
+    int frequency(Object e)
+    {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+
+        for (int i = 0; i < 4; ++i)
+        {
+            int offset = (start + i) << 2;
+            int count = (int) ((myTable[indexOf(hash, i)] >>> offset) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Increments the estimated number of accesses of the provided element,
+     * halving all counters once the sample size is reached.
+     *
+     * @param e
+     *            The element.
+     */
+    void increment(Object e)
+    {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+
+        for (int i = 0; i < 4; ++i)
+        {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && ++mySize == mySampleSize)
+        {
+            reset();
+        }
+    }
+
+    /**
+     * Increments the provided counter of the {@code long} at the provided
+     * index, unless saturated.
+     *
+     * @param index
+     * @param counter
+     * @return {@code true} if incremented, else {@code false}.
+     */
+    private boolean incrementAt(int index, int counter)
+    {
+        int offset = counter << 2;
+        long mask = 0xFL << offset;
+
+        if ((myTable[index] & mask) != mask)
+        {
+            myTable[index] += 1L << offset;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Halves all counters, and adjusts the size for the truncated odd counts.
+     */
+    private void reset()
+    {
+        int oddCounts = 0;
+
+        for (int i = 0; i < myTable.length; ++i)
+        {
+            oddCounts += Long.bitCount(myTable[i] & ONE_MASK);
+            myTable[i] = (myTable[i] >>> 1) & RESET_MASK;
+        }
+
+        mySize = (mySize >>> 1) - (oddCounts >>> 2);
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & myTableMask;
+    }
+
+    /**
+     * Spreads the provided hash code, to protect against poor hash functions.
+     *
+     * @param x
+     * @return
+     */
+    private static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x) * 0x45D9F3B;
+        x = ((x >>> 16) ^ x) * 0x45D9F3B;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,79 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+public class FrequencySketchTest
+{
+    @Test
+    public void shouldEstimateZeroForUnseenElement()
+    {
+        FrequencySketch sketch = new FrequencySketch(100);
+
+        assertThat(sketch.frequency("element")).isZero();
+    }
+
+    @Test
+    public void shouldCountIncrements()
+    {
+        FrequencySketch sketch = new FrequencySketch(100);
+
+        for (int i = 0; i < 5; ++i)
+        {
+            sketch.increment("element");
+        }
+
+        assertThat(sketch.frequency("element")).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldSaturateAtFifteen()
+    {
+        FrequencySketch sketch = new FrequencySketch(100);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            sketch.increment("element");
+        }
+
+        assertThat(sketch.frequency("element")).isEqualTo(15);
+    }
+
+    @Test
+    public void shouldNeverUnderestimate()
+    {
+        FrequencySketch sketch = new FrequencySketch(512);
+
+        for (int i = 0; i < 500; ++i)
+        {
+            for (int j = 0; j <= i % 10; ++j)
+            {
+                sketch.increment(i);
+            }
+        }
+
+        for (int i = 0; i < 500; ++i)
+        {
+            assertThat(sketch.frequency(i)).isGreaterThanOrEqualTo(Math.min(15, i % 10 + 1));
+        }
+    }
+
+    @Test
+    public void shouldHalveCountersWhenSampleSizeIsReached()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+
+        for (int i = 0; i < 8; ++i)
+        {
+            sketch.increment("hot");
+        }
+
+        for (int i = 0; i < 160; ++i)
+        {
+            sketch.increment(Integer.valueOf(1000 + i));
+        }
+
+        assertThat(sketch.frequency("hot")).isLessThan(8);
+    }
+}
@@ -0,0 +1,230 @@
+package gakesson.util.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * An immutable {@link Map} storing its keys and values densely packed in
+ * arrays, in the iteration order of the {@link Map} it was copied from, and
+ * indexed by an open addressing hash table of array positions. Keys are either
+ * compared by equality (like {@link java.util.HashMap}) or by reference (like
+ * {@link java.util.IdentityHashMap}).
+ *
+ * All state is assigned in the constructor and never modified afterwards,
+ * hence this class is safe for concurrent readers without synchronization. All
+ * modifying operations throw {@link UnsupportedOperationException}.
+ *
+ */
+final class FrozenHashMap<K, V> extends AbstractMap<K, V> {
+
+	private static final int[] EMPTY_INDEX = new int[1];
+
+	private final Object[] myKeys;
+	private final Object[] myValues;
+	private final int[] myIndex;
+	private final boolean myIdentity;
+
+	/**
+	 * Creates a new {@link FrozenHashMap} containing a copy of the provided
+	 * {@link Map}.
+	 *
+	 * @param map
+	 *            The map to copy.
+	 * @param identity
+	 *            Whether or not keys should be compared by reference.
+	 */
+	FrozenHashMap(Map<? extends K, ? extends V> map, boolean identity) {
+		int size = map.size();
+		myKeys = new Object[size];
+		myValues = new Object[size];
+		myIndex = size == 0 ? EMPTY_INDEX : new int[tableSizeFor(size)];
+		myIdentity = identity;
+		int mask = myIndex.length - 1;
+		int position = 0;
+
+		for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			Object key = entry.getKey();
+			int slot = hash(key) & mask;
+
+			while (myIndex[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			myKeys[position] = key;
+			myValues[position] = entry.getValue();
+			myIndex[slot] = ++position;
+		}
+	}
+
+	@Override
+	public int size() {
+		return myKeys.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		for (Object candidate : myValues) {
+			if (myIdentity ? candidate == value : eq(candidate, value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int index = indexOf(key);
+		return index >= 0 ? (V) myValues[index] : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public V remove(Object key) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void replaceAll(
+			BiFunction<? super K, ? super V, ? extends V> function) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	@Override
+	public int hashCode() {
+		if (!myIdentity) {
+			return super.hashCode();
+		}
+
+		int hashCode = 0;
+
+		for (int i = 0; i < myKeys.length; ++i) {
+			hashCode += System.identityHashCode(myKeys[i])
+					^ System.identityHashCode(myValues[i]);
+		}
+		return hashCode;
+	}
+
+	/**
+	 * Returns the array position of the provided key, or -1 in case the key
+	 * isn't present.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private int indexOf(Object key) {
+		int[] index = myIndex;
+		int mask = index.length - 1;
+		int slot = hash(key) & mask;
+		int position;
+
+		while ((position = index[slot]) != 0) {
+			Object candidate = myKeys[position - 1];
+
+			if (myIdentity ? candidate == key : eq(candidate, key)) {
+				return position - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the spread hash of the provided key, according to how keys are
+	 * compared.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private int hash(Object key) {
+		int h = myIdentity ? System.identityHashCode(key)
+				: (key == null ? 0 : key.hashCode());
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean eq(Object first, Object second) {
+		return first == null ? second == null : first.equals(second);
+	}
+
+	/**
+	 * Returns the power of two hash table size keeping the load factor of the
+	 * provided number of entries at most two thirds.
+	 *
+	 * @param size
+	 * @return
+	 */
+	private static int tableSizeFor(int size) {
+		int minimumSize = size + (size >> 1) + 1;
+
+		if (minimumSize < 0 || minimumSize > (1 << 30)) {
+			return 1 << 30;
+		}
+		return Integer.highestOneBit(minimumSize - 1) << 1;
+	}
+
+	/**
+	 * The entry set view, iterating over the entries in array order.
+	 *
+	 */
+	private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+		@Override
+		public Iterator<Entry<K, V>> iterator() {
+			return new Iterator<Entry<K, V>>() {
+
+				private int myPosition;
+
+				@Override
+				public boolean hasNext() {
+					return myPosition < myKeys.length;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public Entry<K, V> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					int position = myPosition++;
+					return new SimpleImmutableEntry<>((K) myKeys[position],
+							(V) myValues[position]);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return myKeys.length;
+		}
+	}
+}
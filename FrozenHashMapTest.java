@@ -0,0 +1,68 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class FrozenHashMapTest {
+
+	@Test
+	public void shouldContainAllEntriesOfCopiedMap() {
+		Map<Object, Object> map = new HashMap<>();
+
+		for (int i = 0; i < 1000; ++i) {
+			map.put(new Integer(i), new Integer(-i));
+		}
+		map.put(null, "null");
+
+		Map<Object, Object> frozenMap = new FrozenHashMap<>(map, false);
+
+		assertThat(frozenMap).hasSize(1001);
+		assertThat(frozenMap).isEqualTo(map);
+		assertThat(frozenMap.get(new Integer(500))).isEqualTo(
+				new Integer(-500));
+		assertThat(frozenMap.get(null)).isEqualTo("null");
+		assertThat(frozenMap.get(new Integer(1000))).isNull();
+		assertThat(frozenMap.containsValue(new Integer(-999))).isTrue();
+	}
+
+	@Test
+	public void shouldIterateInOrderOfCopiedMap() {
+		Map<Object, Object> map = new LinkedHashMap<>();
+		map.put("c", 1);
+		map.put("a", 2);
+		map.put("b", 3);
+
+		Map<Object, Object> frozenMap = new FrozenHashMap<>(map, false);
+
+		assertThat(new ArrayList<>(frozenMap.keySet())).containsExactly("c",
+				"a", "b");
+	}
+
+	@Test
+	public void shouldCompareKeysByReference() {
+		Map<Object, Object> map = new IdentityHashMap<>();
+		Object key = new Integer(3211);
+		map.put(key, key);
+
+		Map<Object, Object> frozenMap = new FrozenHashMap<>(map, true);
+
+		assertThat(frozenMap.get(key)).isSameAs(key);
+		assertThat(frozenMap.get(new Integer(3211))).isNull();
+		assertThat(frozenMap.hashCode()).isEqualTo(map.hashCode());
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void shouldNotAllowPutting() {
+		Map<Object, Object> frozenMap = new FrozenHashMap<>(
+				new HashMap<>(), false);
+
+		frozenMap.put("key", "value");
+	}
+}
@@ -0,0 +1,572 @@
+package gakesson.util.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BiFunction;
+
+/**
+ * An immutable {@link NavigableMap} storing its keys and values in sorted
+ * arrays, looked up using binary search. The range views share the arrays of
+ * the {@link FrozenSortedMap} they are created from, except for the descending
+ * views which are copied in reverse order.
+ *
+ * All state is assigned in the constructor and never modified afterwards,
+ * hence this class is safe for concurrent readers without synchronization. All
+ * modifying operations throw {@link UnsupportedOperationException}.
+ *
+ */
+final class FrozenSortedMap<K, V> extends AbstractMap<K, V> implements
+		NavigableMap<K, V> {
+
+	private final Object[] myKeys;
+	private final Object[] myValues;
+	private final int myFrom;
+	private final int myTo;
+	private final Comparator<? super K> myComparator;
+	private final boolean myFromStart;
+	private final Object myLow;
+	private final boolean myLowInclusive;
+	private final boolean myToEnd;
+	private final Object myHigh;
+	private final boolean myHighInclusive;
+
+	/**
+	 * Creates a new {@link FrozenSortedMap} containing a copy of the provided
+	 * {@link Map}, which must iterate its entries in the order of the provided
+	 * {@link Comparator}.
+	 *
+	 * @param sortedMap
+	 *            The map to copy.
+	 * @param comparator
+	 *            The comparator ordering the keys, or {@code null} for natural
+	 *            ordering.
+	 */
+	FrozenSortedMap(Map<? extends K, ? extends V> sortedMap,
+			Comparator<? super K> comparator) {
+		int size = sortedMap.size();
+		myKeys = new Object[size];
+		myValues = new Object[size];
+		myFrom = 0;
+		myTo = size;
+		myComparator = comparator;
+		myFromStart = true;
+		myLow = null;
+		myLowInclusive = false;
+		myToEnd = true;
+		myHigh = null;
+		myHighInclusive = false;
+		int position = 0;
+
+		for (Entry<? extends K, ? extends V> entry : sortedMap.entrySet()) {
+			myKeys[position] = entry.getKey();
+			myValues[position++] = entry.getValue();
+		}
+	}
+
+	private FrozenSortedMap(Object[] keys, Object[] values, int from, int to,
+			Comparator<? super K> comparator, boolean fromStart, Object low,
+			boolean lowInclusive, boolean toEnd, Object high,
+			boolean highInclusive) {
+		myKeys = keys;
+		myValues = values;
+		myFrom = from;
+		myTo = to;
+		myComparator = comparator;
+		myFromStart = fromStart;
+		myLow = low;
+		myLowInclusive = lowInclusive;
+		myToEnd = toEnd;
+		myHigh = high;
+		myHighInclusive = highInclusive;
+	}
+
+	@Override
+	public int size() {
+		return myTo - myFrom;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		int index = indexOf(key);
+		return index >= 0 ? (V) myValues[index] : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public V remove(Object key) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void replaceAll(
+			BiFunction<? super K, ? super V, ? extends V> function) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new AbstractSet<Entry<K, V>>() {
+
+			@Override
+			public Iterator<Entry<K, V>> iterator() {
+				return new ArrayIterator<Entry<K, V>>() {
+
+					@Override
+					Entry<K, V> elementAt(int index) {
+						return entryAt(index);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return FrozenSortedMap.this.size();
+			}
+		};
+	}
+
+	@Override
+	public Comparator<? super K> comparator() {
+		return myComparator;
+	}
+
+	@Override
+	public Entry<K, V> lowerEntry(K key) {
+		return entryAt(lowerBound(key) - 1);
+	}
+
+	@Override
+	public K lowerKey(K key) {
+		return keyAt(lowerBound(key) - 1);
+	}
+
+	@Override
+	public Entry<K, V> floorEntry(K key) {
+		return entryAt(upperBound(key) - 1);
+	}
+
+	@Override
+	public K floorKey(K key) {
+		return keyAt(upperBound(key) - 1);
+	}
+
+	@Override
+	public Entry<K, V> ceilingEntry(K key) {
+		return entryAt(lowerBound(key));
+	}
+
+	@Override
+	public K ceilingKey(K key) {
+		return keyAt(lowerBound(key));
+	}
+
+	@Override
+	public Entry<K, V> higherEntry(K key) {
+		return entryAt(upperBound(key));
+	}
+
+	@Override
+	public K higherKey(K key) {
+		return keyAt(upperBound(key));
+	}
+
+	@Override
+	public Entry<K, V> firstEntry() {
+		return entryAt(myFrom);
+	}
+
+	@Override
+	public Entry<K, V> lastEntry() {
+		return entryAt(myTo - 1);
+	}
+
+	@Override
+	public Entry<K, V> pollFirstEntry() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Entry<K, V> pollLastEntry() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public K firstKey() {
+		if (isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return keyAt(myFrom);
+	}
+
+	@Override
+	public K lastKey() {
+		if (isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		return keyAt(myTo - 1);
+	}
+
+	@Override
+	public NavigableMap<K, V> descendingMap() {
+		int size = size();
+		Object[] keys = new Object[size];
+		Object[] values = new Object[size];
+
+		for (int i = 0; i < size; ++i) {
+			keys[i] = myKeys[myTo - 1 - i];
+			values[i] = myValues[myTo - 1 - i];
+		}
+		return new FrozenSortedMap<K, V>(keys, values, 0, size,
+				Collections.reverseOrder(myComparator), myToEnd, myHigh,
+				myHighInclusive, myFromStart, myLow, myLowInclusive);
+	}
+
+	@Override
+	public NavigableSet<K> navigableKeySet() {
+		return new KeySet();
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return navigableKeySet();
+	}
+
+	@Override
+	public NavigableSet<K> descendingKeySet() {
+		return descendingMap().navigableKeySet();
+	}
+
+	@Override
+	public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive,
+			K toKey, boolean toInclusive) {
+		if (compare(fromKey, toKey) > 0) {
+			throw new IllegalArgumentException("fromKey > toKey");
+		}
+		if (!inRange(fromKey, fromInclusive)) {
+			throw new IllegalArgumentException("fromKey out of range");
+		}
+		if (!inRange(toKey, toInclusive)) {
+			throw new IllegalArgumentException("toKey out of range");
+		}
+
+		int from = fromInclusive ? lowerBound(fromKey) : upperBound(fromKey);
+		int to = toInclusive ? upperBound(toKey) : lowerBound(toKey);
+		return new FrozenSortedMap<K, V>(myKeys, myValues, from, Math.max(
+				from, to), myComparator, false, fromKey, fromInclusive, false,
+				toKey, toInclusive);
+	}
+
+	@Override
+	public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+		if (!inRange(toKey, inclusive)) {
+			throw new IllegalArgumentException("toKey out of range");
+		}
+
+		int to = inclusive ? upperBound(toKey) : lowerBound(toKey);
+		return new FrozenSortedMap<K, V>(myKeys, myValues, myFrom, to,
+				myComparator, myFromStart, myLow, myLowInclusive, false, toKey,
+				inclusive);
+	}
+
+	@Override
+	public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+		if (!inRange(fromKey, inclusive)) {
+			throw new IllegalArgumentException("fromKey out of range");
+		}
+
+		int from = inclusive ? lowerBound(fromKey) : upperBound(fromKey);
+		return new FrozenSortedMap<K, V>(myKeys, myValues, from, myTo,
+				myComparator, false, fromKey, inclusive, myToEnd, myHigh,
+				myHighInclusive);
+	}
+
+	@Override
+	public SortedMap<K, V> subMap(K fromKey, K toKey) {
+		return subMap(fromKey, true, toKey, false);
+	}
+
+	@Override
+	public SortedMap<K, V> headMap(K toKey) {
+		return headMap(toKey, false);
+	}
+
+	@Override
+	public SortedMap<K, V> tailMap(K fromKey) {
+		return tailMap(fromKey, true);
+	}
+
+	/**
+	 * Returns whether the provided bound of a new range view lies within the
+	 * key range of this map, following the rules of the range views of
+	 * {@link java.util.TreeMap}: an exclusive bound may equal an exclusive
+	 * bound of this map.
+	 *
+	 * @param key
+	 * @param inclusive
+	 * @return
+	 */
+	private boolean inRange(Object key, boolean inclusive) {
+		if (!myFromStart) {
+			int comparison = compare(key, myLow);
+
+			if (comparison < 0 || comparison == 0 && inclusive
+					&& !myLowInclusive) {
+				return false;
+			}
+		}
+		if (!myToEnd) {
+			int comparison = compare(key, myHigh);
+
+			if (comparison > 0 || comparison == 0 && inclusive
+					&& !myHighInclusive) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the array position of the provided key, or -1 in case the key
+	 * isn't present.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private int indexOf(Object key) {
+		int index = lowerBound(key);
+		return index < myTo && compare(myKeys[index], key) == 0 ? index : -1;
+	}
+
+	/**
+	 * Returns the first array position within range holding a key greater
+	 * than or equal to the provided key, or the end of the range if none.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private int lowerBound(Object key) {
+		int low = myFrom;
+		int high = myTo;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (compare(myKeys[middle], key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the first array position within range holding a key strictly
+	 * greater than the provided key, or the end of the range if none.
+	 *
+	 * @param key
+	 * @return
+	 */
+	private int upperBound(Object key) {
+		int low = myFrom;
+		int high = myTo;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (compare(myKeys[middle], key) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	@SuppressWarnings("unchecked")
+	private K keyAt(int index) {
+		return index >= myFrom && index < myTo ? (K) myKeys[index] : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Entry<K, V> entryAt(int index) {
+		return index >= myFrom && index < myTo ? new SimpleImmutableEntry<>(
+				(K) myKeys[index], (V) myValues[index]) : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare(Object k1, Object k2) {
+		return myComparator == null ? ((Comparable<? super K>) k1)
+				.compareTo((K) k2) : myComparator.compare((K) k1, (K) k2);
+	}
+
+	/**
+	 * An iterator over the array positions within range.
+	 *
+	 */
+	private abstract class ArrayIterator<E> implements Iterator<E> {
+
+		private int myPosition = myFrom;
+
+		@Override
+		public boolean hasNext() {
+			return myPosition < myTo;
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return elementAt(myPosition++);
+		}
+
+		abstract E elementAt(int index);
+	}
+
+	/**
+	 * The navigable key set view, delegating to the enclosing map.
+	 *
+	 */
+	private final class KeySet extends AbstractSet<K> implements
+			NavigableSet<K> {
+
+		@Override
+		public Iterator<K> iterator() {
+			return new ArrayIterator<K>() {
+
+				@Override
+				K elementAt(int index) {
+					return keyAt(index);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return FrozenSortedMap.this.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return containsKey(o);
+		}
+
+		@Override
+		public Comparator<? super K> comparator() {
+			return myComparator;
+		}
+
+		@Override
+		public K first() {
+			return firstKey();
+		}
+
+		@Override
+		public K last() {
+			return lastKey();
+		}
+
+		@Override
+		public K lower(K e) {
+			return lowerKey(e);
+		}
+
+		@Override
+		public K floor(K e) {
+			return floorKey(e);
+		}
+
+		@Override
+		public K ceiling(K e) {
+			return ceilingKey(e);
+		}
+
+		@Override
+		public K higher(K e) {
+			return higherKey(e);
+		}
+
+		@Override
+		public K pollFirst() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public K pollLast() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public NavigableSet<K> descendingSet() {
+			return descendingKeySet();
+		}
+
+		@Override
+		public Iterator<K> descendingIterator() {
+			return descendingKeySet().iterator();
+		}
+
+		@Override
+		public NavigableSet<K> subSet(K fromElement, boolean fromInclusive,
+				K toElement, boolean toInclusive) {
+			return subMap(fromElement, fromInclusive, toElement, toInclusive)
+					.navigableKeySet();
+		}
+
+		@Override
+		public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+			return headMap(toElement, inclusive).navigableKeySet();
+		}
+
+		@Override
+		public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+			return tailMap(fromElement, inclusive).navigableKeySet();
+		}
+
+		@Override
+		public SortedSet<K> subSet(K fromElement, K toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedSet<K> headSet(K toElement) {
+			return headSet(toElement, false);
+		}
+
+		@Override
+		public SortedSet<K> tailSet(K fromElement) {
+			return tailSet(fromElement, true);
+		}
+	}
+}
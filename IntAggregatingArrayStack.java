@@ -0,0 +1,201 @@
+package gakesson.util.collections;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * The {@link IntAggregatingArrayStack} class is the {@code int} specialisation
+ * of {@link AggregatingArrayStack}, i.e. a last-in-first-out (LIFO) stack of
+ * {@code int} values which answers the minimum, the maximum and a fold of all
+ * of its values in constant time, without boxing. The implementation is
+ * array-based and the capacity is unbounded.
+ *
+ * The minimum and maximum are always maintained, and the fold is maintained
+ * using the associative reducer provided upon construction, if any.
+ *
+ * This class is not thread-safe.
+ *
+ */
+public class IntAggregatingArrayStack
+{
+    private static final int DEFAULT_INITIAL_SIZE = 10;
+
+    private final IntBinaryOperator myReducer;
+    private int[] myElements;
+    private int[] myMins;
+    private int[] myMaxs;
+    private int[] myFolds;
+    private int mySize;
+
+    /**
+     * Creates a new {@link IntAggregatingArrayStack} answering the minimum and
+     * the maximum.
+     */
+    public IntAggregatingArrayStack()
+    {
+        this(null, DEFAULT_INITIAL_SIZE);
+    }
+
+    /**
+     * Creates a new {@link IntAggregatingArrayStack} with the provided initial
+     * size, answering the minimum, the maximum and the fold using the provided
+     * reducer, which may be {@code null} in case the fold isn't needed.
+     *
+     * @param reducer
+     *            The associative reducer of the values, e.g.
+     *            {@link Integer#sum(int, int)}, or {@code null}.
+     * @param initialSize
+     *            The initial size.
+     */
+    public IntAggregatingArrayStack(IntBinaryOperator reducer, int initialSize)
+    {
+        myReducer = reducer;
+        myElements = new int[initialSize];
+        myMins = new int[initialSize];
+        myMaxs = new int[initialSize];
+
+        if (reducer != null)
+        {
+            myFolds = new int[initialSize];
+        }
+    }
+
+    /**
+     * Pushes the provided value onto the top of this stack.
+     *
+     * @param value
+     *            The value to push.
+     */
+    public void push(int value)
+    {
+        ensureStackCapacity(mySize + 1);
+        int index = mySize;
+
+        if (index == 0)
+        {
+            myMins[index] = value;
+            myMaxs[index] = value;
+        }
+        else
+        {
+            myMins[index] = Math.min(myMins[index - 1], value);
+            myMaxs[index] = Math.max(myMaxs[index - 1], value);
+        }
+
+        if (myReducer != null)
+        {
+            myFolds[index] = index == 0 ? value : myReducer.applyAsInt(myFolds[index - 1], value);
+        }
+
+        myElements[index] = value;
+        mySize++;
+    }
+
+    /**
+     * Removes and returns the value at the top of this stack.
+     *
+     * @return The top value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public int pop()
+    {
+        checkNotEmpty();
+        return myElements[--mySize];
+    }
+
+    /**
+     * Returns the value at the top of this stack without removing it.
+     *
+     * @return The top value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public int peek()
+    {
+        checkNotEmpty();
+        return myElements[mySize - 1];
+    }
+
+    /**
+     * Returns the minimum value of this stack.
+     *
+     * @return The minimum value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public int min()
+    {
+        checkNotEmpty();
+        return myMins[mySize - 1];
+    }
+
+    /**
+     * Returns the maximum value of this stack.
+     *
+     * @return The maximum value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public int max()
+    {
+        checkNotEmpty();
+        return myMaxs[mySize - 1];
+    }
+
+    /**
+     * Returns the fold of all values of this stack from the bottom to the top
+     * using the reducer.
+     *
+     * @return The fold of the values.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     * @throws {@link IllegalStateException} if created without a reducer.
+     */
+    public int fold()
+    {
+        if (myReducer == null)
+        {
+            throw new IllegalStateException("Aggregate not maintained by this stack");
+        }
+
+        checkNotEmpty();
+        return myFolds[mySize - 1];
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Ensures that the capacity of the internal arrays is at least the
+     * provided capacity.
+     *
+     * @param requiredCapacity
+     */
+    private void ensureStackCapacity(int requiredCapacity)
+    {
+        if (requiredCapacity > myElements.length)
+        {
+            int newCapacity = ArrayStack.newStackCapacity(myElements.length, requiredCapacity);
+            myElements = Arrays.copyOf(myElements, newCapacity);
+            myMins = Arrays.copyOf(myMins, newCapacity);
+            myMaxs = Arrays.copyOf(myMaxs, newCapacity);
+
+            if (myReducer != null)
+            {
+                myFolds = Arrays.copyOf(myFolds, newCapacity);
+            }
+        }
+    }
+
+    private void checkNotEmpty()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.EmptyStackException;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class IntAggregatingArrayStackTest
+{
+    @Test
+    public void shouldMaintainAggregatesThroughPushAndPop()
+    {
+        Random random = new Random(7);
+        IntAggregatingArrayStack stack = new IntAggregatingArrayStack(Integer::sum, 0);
+        java.util.Stack<Integer> expected = new java.util.Stack<Integer>();
+
+        for (int i = 0; i < 2000; ++i)
+        {
+            if (!expected.isEmpty() && random.nextInt(3) == 0)
+            {
+                assertThat(stack.pop()).isEqualTo(expected.pop().intValue());
+            }
+            else
+            {
+                int value = random.nextInt(1000) - 500;
+                stack.push(value);
+                expected.push(value);
+            }
+
+            assertThat(stack.size()).isEqualTo(expected.size());
+
+            if (!expected.isEmpty())
+            {
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                int sum = 0;
+
+                for (int value : expected)
+                {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                }
+
+                assertThat(stack.peek()).isEqualTo(expected.peek().intValue());
+                assertThat(stack.min()).isEqualTo(min);
+                assertThat(stack.max()).isEqualTo(max);
+                assertThat(stack.fold()).isEqualTo(sum);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldThrowExceptionWhenAskingForFoldWithoutReducer()
+    {
+        IntAggregatingArrayStack stack = new IntAggregatingArrayStack();
+        stack.push(1);
+
+        stack.fold();
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenPoppingEmptyStack()
+    {
+        new IntAggregatingArrayStack().pop();
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenAskingForMinOfEmptyStack()
+    {
+        new IntAggregatingArrayStack().min();
+    }
+}
@@ -0,0 +1,551 @@
+package gakesson.util.collections;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * This is a bounded queue which separates its elements into lanes, e.g. one
+ * lane per traffic class, so that a flood of elements in one lane neither
+ * takes the capacity of nor starves the elements in the other lanes. Each lane
+ * is FIFO, and the lane of an offered element is chosen by a lane selector,
+ * or explicitly using {@link #offer(int, Object)}.
+ *
+ * Each lane has a capacity of its own. Once a lane is full, its elements may
+ * overflow into a pool of capacity shared by all lanes, if any. The elements of
+ * a lane release the shared capacity before the capacity of the lane.
+ *
+ * The lanes are served by {@link #poll()} in deficit round-robin order: each
+ * lane in turn is credited its weight and is served as long as the cost of its
+ * head element is covered by its credit, any remainder being carried over to
+ * its next turn (unless the lane became empty). With the default cost of one
+ * per element, this is weighted round-robin, i.e. a lane with weight {@code w}
+ * is served up to {@code w} elements per turn. Hence the latency of a lane is
+ * bounded by the weights of the other lanes, regardless of how saturated they
+ * are. Selecting the next element is done in time proportional to the number
+ * of lanes, regardless of the costs and weights.
+ *
+ * The {@link #iterator()} returns the elements lane by lane, rather than in
+ * the order they would be polled. This queue does not permit null elements.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class LanedBoundedQueue<E> extends AbstractQueue<E>
+{
+    private static final ToIntFunction<Object> UNIT_COST = new ToIntFunction<Object>()
+    {
+        @Override
+        public int applyAsInt(Object e)
+        {
+            return 1;
+        }
+    };
+
+    private final ArrayDeque<E>[] myLanes;
+    private final int[] myLaneCapacities;
+    private final int[] myLaneWeights;
+    private final int[] myLaneOverflows;
+    private final long[] myLaneDeficits;
+    private final long[] myLaneRejectedCounts;
+    private final int mySharedCapacity;
+    private final ToIntFunction<? super E> myLaneSelector;
+    private final ToIntFunction<? super E> myCostFunction;
+    private int mySize;
+    private int mySharedSize;
+    private int myCurrentLane;
+    private boolean myTurnStarted;
+    private long myRoundsOfNextPosition;
+
+    /**
+     * Creates a new {@link LanedBoundedQueue} serving the lanes in weighted
+     * round-robin order.
+     *
+     * @param laneCapacities
+     *            The capacity of each lane.
+     * @param laneWeights
+     *            The weight of each lane, i.e. the number of elements served
+     *            per turn.
+     * @param sharedCapacity
+     *            The capacity shared by all lanes.
+     * @param laneSelector
+     *            The function returning the lane of an offered element.
+     * @throws {@link IllegalArgumentException} if there are no lanes, the
+     *         number of capacities and weights differ, a capacity is negative
+     *         or a weight is less than 1.
+     */
+    public LanedBoundedQueue(int[] laneCapacities, int[] laneWeights, int sharedCapacity,
+            ToIntFunction<? super E> laneSelector)
+    {
+        this(laneCapacities, laneWeights, sharedCapacity, laneSelector, UNIT_COST);
+    }
+
+    /**
+     * Creates a new {@link LanedBoundedQueue} serving the lanes in deficit
+     * round-robin order.
+     *
+     * @param laneCapacities
+     *            The capacity of each lane.
+     * @param laneWeights
+     *            The weight of each lane, i.e. the cost credited per turn.
+     * @param sharedCapacity
+     *            The capacity shared by all lanes.
+     * @param laneSelector
+     *            The function returning the lane of an offered element.
+     * @param costFunction
+     *            The function returning the non-negative cost of serving an
+     *            element, e.g. its size in bytes.
+     * @throws {@link IllegalArgumentException} if there are no lanes, the
+     *         number of capacities and weights differ, a capacity is negative
+     *         or a weight is less than 1.
+     */
+    public LanedBoundedQueue(int[] laneCapacities, int[] laneWeights, int sharedCapacity,
+            ToIntFunction<? super E> laneSelector, ToIntFunction<? super E> costFunction)
+    {
+        checkNotNull(laneCapacities);
+        checkNotNull(laneWeights);
+        checkNotNull(laneSelector);
+        checkNotNull(costFunction);
+
+        if (laneCapacities.length == 0 || laneCapacities.length != laneWeights.length)
+        {
+            throw new IllegalArgumentException("Lane capacities and weights must be non-empty and of equal length");
+        }
+
+        if (sharedCapacity < 0)
+        {
+            throw new IllegalArgumentException("Negative shared capacity: " + sharedCapacity);
+        }
+
+        int numberOfLanes = laneCapacities.length;
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ArrayDeque<E>[] lanes = new ArrayDeque[numberOfLanes];
+        myLanes = lanes;
+        myLaneCapacities = laneCapacities.clone();
+        myLaneWeights = laneWeights.clone();
+        myLaneOverflows = new int[numberOfLanes];
+        myLaneDeficits = new long[numberOfLanes];
+        myLaneRejectedCounts = new long[numberOfLanes];
+        mySharedCapacity = sharedCapacity;
+        myLaneSelector = laneSelector;
+        myCostFunction = costFunction;
+
+        for (int lane = 0; lane < numberOfLanes; ++lane)
+        {
+            if (myLaneCapacities[lane] < 0)
+            {
+                throw new IllegalArgumentException("Negative lane capacity: " + myLaneCapacities[lane]);
+            }
+
+            if (myLaneWeights[lane] < 1)
+            {
+                throw new IllegalArgumentException("Lane weight must be positive: " + myLaneWeights[lane]);
+            }
+
+            myLanes[lane] = new ArrayDeque<E>(Math.min(myLaneCapacities[lane], 1024));
+        }
+    }
+
+    /**
+     * Inserts the specified element into the lane returned by the lane
+     * selector, if it is possible to do so without violating the capacity
+     * restrictions of the lane and the shared capacity.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     * @throws {@link IllegalArgumentException} if the lane selector returns a
+     *         non-existing lane, or the cost of the element is negative.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+        return offer(myLaneSelector.applyAsInt(e), e);
+    }
+
+    /**
+     * Inserts the specified element into the provided lane, if it is possible
+     * to do so without violating the capacity restrictions of the lane and the
+     * shared capacity.
+     *
+     * @param lane
+     *            The lane.
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     * @throws {@link IllegalArgumentException} if the lane does not exist, or
+     *         the cost of the element is negative.
+     */
+    public boolean offer(int lane, E e)
+    {
+        checkNotNull(e);
+        checkLane(lane);
+
+        if (myCostFunction.applyAsInt(e) < 0)
+        {
+            throw new IllegalArgumentException("Negative cost of element: " + e);
+        }
+
+        ArrayDeque<E> queue = myLanes[lane];
+
+        if (queue.size() >= myLaneCapacities[lane])
+        {
+            if (mySharedSize >= mySharedCapacity)
+            {
+                myLaneRejectedCounts[lane]++;
+                return false;
+            }
+
+            myLaneOverflows[lane]++;
+            mySharedSize++;
+        }
+
+        queue.offer(e);
+        mySize++;
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the next element according to the lane weights,
+     * or returns {@code null} if this queue is empty.
+     *
+     * @return The next element, or {@code null} if this queue is empty.
+     */
+    @Override
+    public E poll()
+    {
+        int position = nextPosition();
+
+        if (position < 0)
+        {
+            return null;
+        }
+
+        long rounds = myRoundsOfNextPosition;
+        int numberOfLanes = myLanes.length;
+
+        // Apply the credits of the turns taken until the selected lane is
+        // served, as if visiting the lanes one turn at a time
+        for (int p = 0; p < numberOfLanes; ++p)
+        {
+            int lane = laneAt(p);
+
+            if (p > position && rounds == 0)
+            {
+                break;
+            }
+
+            if (myLanes[lane].isEmpty())
+            {
+                myLaneDeficits[lane] = 0;
+                continue;
+            }
+
+            long turns = p <= position ? rounds + 1 : rounds;
+
+            if (p == 0 && myTurnStarted)
+            {
+                turns--;
+            }
+
+            myLaneDeficits[lane] += turns * myLaneWeights[lane];
+        }
+
+        int lane = laneAt(position);
+        E e = myLanes[lane].poll();
+        myLaneDeficits[lane] -= myCostFunction.applyAsInt(e);
+        myCurrentLane = lane;
+        myTurnStarted = true;
+        released(lane);
+        return e;
+    }
+
+    /**
+     * Retrieves, but does not remove, the element which would be returned by
+     * {@link #poll()}, or returns {@code null} if this queue is empty.
+     *
+     * @return The next element, or {@code null} if this queue is empty.
+     */
+    @Override
+    public E peek()
+    {
+        int position = nextPosition();
+        return position < 0 ? null : myLanes[laneAt(position)].peek();
+    }
+
+    @Override
+    public void clear()
+    {
+        for (int lane = 0; lane < myLanes.length; ++lane)
+        {
+            myLanes[lane].clear();
+            myLaneOverflows[lane] = 0;
+            myLaneDeficits[lane] = 0;
+        }
+
+        mySize = 0;
+        mySharedSize = 0;
+        myTurnStarted = false;
+    }
+
+    /**
+     * Returns an iterator over the elements of this queue, lane by lane.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<E>()
+        {
+            private int myLane;
+            private Iterator<E> myIterator = myLanes[0].iterator();
+            private Iterator<E> myLastIterator;
+            private int myLastLane;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (!myIterator.hasNext() && myLane < myLanes.length - 1)
+                {
+                    myIterator = myLanes[++myLane].iterator();
+                }
+
+                return myIterator.hasNext();
+            }
+
+            @Override
+            public E next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                myLastIterator = myIterator;
+                myLastLane = myLane;
+                return myIterator.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                if (myLastIterator == null)
+                {
+                    throw new IllegalStateException();
+                }
+
+                myLastIterator.remove();
+                myLastIterator = null;
+                released(myLastLane);
+            }
+        };
+    }
+
+    @Override
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Returns the number of lanes.
+     *
+     * @return The number of lanes.
+     */
+    public int getLaneCount()
+    {
+        return myLanes.length;
+    }
+
+    /**
+     * Returns the number of elements in the provided lane, including the
+     * elements occupying shared capacity.
+     *
+     * @param lane
+     *            The lane.
+     * @return The number of elements in the lane.
+     */
+    public int getLaneSize(int lane)
+    {
+        checkLane(lane);
+        return myLanes[lane].size();
+    }
+
+    /**
+     * Returns the number of elements in the provided lane occupying shared
+     * capacity.
+     *
+     * @param lane
+     *            The lane.
+     * @return The number of overflowed elements in the lane.
+     */
+    public int getLaneOverflow(int lane)
+    {
+        checkLane(lane);
+        return myLaneOverflows[lane];
+    }
+
+    /**
+     * Returns the capacity of the provided lane, not including the shared
+     * capacity.
+     *
+     * @param lane
+     *            The lane.
+     * @return The capacity of the lane.
+     */
+    public int getLaneCapacity(int lane)
+    {
+        checkLane(lane);
+        return myLaneCapacities[lane];
+    }
+
+    /**
+     * Returns the weight of the provided lane.
+     *
+     * @param lane
+     *            The lane.
+     * @return The weight of the lane.
+     */
+    public int getLaneWeight(int lane)
+    {
+        checkLane(lane);
+        return myLaneWeights[lane];
+    }
+
+    /**
+     * Returns the number of elements rejected by the provided lane since this
+     * queue was created.
+     *
+     * @param lane
+     *            The lane.
+     * @return The number of rejected elements.
+     */
+    public long getLaneRejectedCount(int lane)
+    {
+        checkLane(lane);
+        return myLaneRejectedCounts[lane];
+    }
+
+    /**
+     * Returns the capacity shared by all lanes.
+     *
+     * @return The shared capacity.
+     */
+    public int getSharedCapacity()
+    {
+        return mySharedCapacity;
+    }
+
+    /**
+     * Returns the number of elements occupying shared capacity.
+     *
+     * @return The number of elements in the shared capacity.
+     */
+    public int getSharedSize()
+    {
+        return mySharedSize;
+    }
+
+    /**
+     * Returns the position, relative to the current lane, of the lane to be
+     * served next, and sets the number of full rounds of turns needed until
+     * then. A lane is served once its credit covers the cost of its head
+     * element, hence the lane served next is the one requiring the fewest
+     * rounds of credits, and of those the first one in turn.
+     *
+     * @return The position of the lane to serve, or -1 if this queue is empty.
+     */
+    private int nextPosition()
+    {
+        if (mySize == 0)
+        {
+            return -1;
+        }
+
+        int bestPosition = -1;
+        long bestRounds = Long.MAX_VALUE;
+
+        for (int p = 0; p < myLanes.length; ++p)
+        {
+            int lane = laneAt(p);
+            E head = myLanes[lane].peek();
+
+            if (head == null)
+            {
+                continue;
+            }
+
+            long weight = myLaneWeights[lane];
+            long credit = myLaneDeficits[lane] + (p == 0 && myTurnStarted ? 0 : weight);
+            long cost = myCostFunction.applyAsInt(head);
+            long rounds = cost <= credit ? 0 : (cost - credit + weight - 1) / weight;
+
+            if (rounds < bestRounds)
+            {
+                bestRounds = rounds;
+                bestPosition = p;
+
+                if (rounds == 0)
+                {
+                    break;
+                }
+            }
+        }
+
+        myRoundsOfNextPosition = bestRounds;
+        return bestPosition;
+    }
+
+    private int laneAt(int position)
+    {
+        int lane = myCurrentLane + position;
+        return lane < myLanes.length ? lane : lane - myLanes.length;
+    }
+
+    /**
+     * Updates the counters after removing an element of the provided lane,
+     * releasing shared capacity before the capacity of the lane.
+     *
+     * @param lane
+     */
+    private void released(int lane)
+    {
+        mySize--;
+
+        if (myLaneOverflows[lane] > 0)
+        {
+            myLaneOverflows[lane]--;
+            mySharedSize--;
+        }
+    }
+
+    private void checkLane(int lane)
+    {
+        if (lane < 0 || lane >= myLanes.length)
+        {
+            throw new IllegalArgumentException("No such lane: " + lane);
+        }
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import org.testng.annotations.Test;
+
+public class LanedBoundedQueueTest
+{
+    private static final int CONTROL = 0;
+    private static final int BULK = 1;
+
+    @Test
+    public void shouldPollElementsOfLaneInFifoOrder()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 10 }, new int[] { 1 }, 0);
+        Message first = new Message(CONTROL, 1);
+        Message second = new Message(CONTROL, 1);
+        queue.offer(first);
+        queue.offer(second);
+
+        assertThat(queue.peek()).isSameAs(first);
+        assertThat(queue.poll()).isSameAs(first);
+        assertThat(queue.poll()).isSameAs(second);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.peek()).isNull();
+    }
+
+    @Test
+    public void shouldRejectElementWhenLaneIsFullAndNoSharedCapacity()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 1, 1 }, new int[] { 1, 1 }, 0);
+
+        assertThat(queue.offer(new Message(BULK, 1))).isTrue();
+        assertThat(queue.offer(new Message(BULK, 1))).isFalse();
+        assertThat(queue.offer(new Message(CONTROL, 1))).isTrue();
+        assertThat(queue.getLaneRejectedCount(BULK)).isEqualTo(1);
+        assertThat(queue.getLaneRejectedCount(CONTROL)).isZero();
+    }
+
+    @Test
+    public void shouldOverflowIntoSharedCapacity()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 1, 1 }, new int[] { 1, 1 }, 2);
+
+        for (int i = 0; i < 3; ++i)
+        {
+            assertThat(queue.offer(new Message(BULK, 1))).isTrue();
+        }
+
+        assertThat(queue.offer(new Message(BULK, 1))).isFalse();
+        assertThat(queue.offer(new Message(CONTROL, 1))).isTrue();
+        assertThat(queue.offer(new Message(CONTROL, 1))).isFalse();
+        assertThat(queue.getLaneSize(BULK)).isEqualTo(3);
+        assertThat(queue.getLaneOverflow(BULK)).isEqualTo(2);
+        assertThat(queue.getSharedSize()).isEqualTo(2);
+        assertThat(queue.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldReleaseSharedCapacityFirstWhenPolling()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 1, 1 }, new int[] { 1, 1 }, 1);
+        queue.offer(new Message(BULK, 1));
+        queue.offer(new Message(BULK, 1));
+        queue.poll();
+
+        assertThat(queue.getLaneOverflow(BULK)).isZero();
+        assertThat(queue.getSharedSize()).isZero();
+        assertThat(queue.offer(new Message(CONTROL, 1))).isTrue();
+        assertThat(queue.offer(new Message(CONTROL, 1))).isTrue();
+        assertThat(queue.getLaneOverflow(CONTROL)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldServeLanesByWeight()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 100, 100 }, new int[] { 3, 1 }, 0);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            queue.offer(new Message(BULK, 1));
+            queue.offer(new Message(CONTROL, 1));
+        }
+
+        int[] polled = new int[2];
+
+        for (int i = 0; i < 80; ++i)
+        {
+            polled[queue.poll().myLane]++;
+        }
+
+        assertThat(polled[CONTROL]).isEqualTo(60);
+        assertThat(polled[BULK]).isEqualTo(20);
+    }
+
+    @Test
+    public void shouldNotStarveLaneWhileOtherLaneIsSaturated()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 10, 1000 }, new int[] { 1, 1 }, 0);
+
+        while (queue.offer(new Message(BULK, 1)))
+        {
+            // Flood
+        }
+
+        queue.poll();
+        Message control = new Message(CONTROL, 1);
+        queue.offer(control);
+
+        assertThat(queue.poll()).isSameAs(control);
+    }
+
+    @Test
+    public void shouldServeLanesByCostWhenUsingDeficitRoundRobin()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 100, 100 }, new int[] { 500, 500 }, 0,
+                new ToIntFunction<Message>()
+                {
+                    @Override
+                    public int applyAsInt(Message message)
+                    {
+                        return message.myCost;
+                    }
+                });
+
+        for (int i = 0; i < 50; ++i)
+        {
+            queue.offer(new Message(CONTROL, 100));
+            queue.offer(new Message(BULK, 1000));
+        }
+
+        long[] cost = new long[2];
+
+        for (int i = 0; i < 55; ++i)
+        {
+            Message message = queue.poll();
+            cost[message.myLane] += message.myCost;
+        }
+
+        assertThat(cost[CONTROL]).isEqualTo(5000);
+        assertThat(cost[BULK]).isEqualTo(5000);
+    }
+
+    @Test
+    public void shouldPeekElementReturnedByPoll()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 100, 100, 100 }, new int[] { 2, 1, 3 }, 0,
+                new ToIntFunction<Message>()
+                {
+                    @Override
+                    public int applyAsInt(Message message)
+                    {
+                        return message.myCost;
+                    }
+                });
+
+        for (int i = 0; i < 100; ++i)
+        {
+            queue.offer(i % 3, new Message(i % 3, 1 + i % 7));
+        }
+
+        while (!queue.isEmpty())
+        {
+            Message peeked = queue.peek();
+
+            assertThat(queue.poll()).isSameAs(peeked);
+        }
+    }
+
+    @Test
+    public void shouldServeLanesInSameOrderAsRoundRobin()
+    {
+        int[] weights = { 2, 5, 3 };
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 100, 100, 100 }, weights, 0,
+                new ToIntFunction<Message>()
+                {
+                    @Override
+                    public int applyAsInt(Message message)
+                    {
+                        return message.myCost;
+                    }
+                });
+        List<List<Message>> lanes = new ArrayList<List<Message>>();
+
+        for (int lane = 0; lane < weights.length; ++lane)
+        {
+            lanes.add(new ArrayList<Message>());
+
+            for (int i = 0; i < 30; ++i)
+            {
+                Message message = new Message(lane, (lane * 7 + i * 5) % 11);
+                lanes.get(lane).add(message);
+                queue.offer(message);
+            }
+        }
+
+        // Deficit round-robin, visiting the lanes one at a time
+        long[] deficits = new long[weights.length];
+        int lane = 0;
+        boolean turnStarted = false;
+
+        while (!queue.isEmpty())
+        {
+            List<Message> messages = lanes.get(lane);
+
+            if (messages.isEmpty())
+            {
+                deficits[lane] = 0;
+            }
+            else
+            {
+                if (!turnStarted)
+                {
+                    deficits[lane] += weights[lane];
+                    turnStarted = true;
+                }
+
+                if (messages.get(0).myCost <= deficits[lane])
+                {
+                    deficits[lane] -= messages.get(0).myCost;
+
+                    assertThat(queue.poll()).isSameAs(messages.remove(0));
+                    continue;
+                }
+            }
+
+            lane = (lane + 1) % weights.length;
+            turnStarted = false;
+        }
+    }
+
+    @Test
+    public void shouldRemoveElementUsingIterator()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 1, 1 }, new int[] { 1, 1 }, 1);
+        Message control = new Message(CONTROL, 1);
+        queue.offer(control);
+        queue.offer(new Message(BULK, 1));
+        queue.offer(new Message(BULK, 1));
+        Iterator<Message> iterator = queue.iterator();
+
+        assertThat(iterator.next()).isSameAs(control);
+
+        iterator.next();
+        iterator.remove();
+
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.getLaneSize(BULK)).isEqualTo(1);
+        assertThat(queue.getSharedSize()).isZero();
+        assertThat(iterator.hasNext()).isTrue();
+        assertThat(queue.remove(control)).isTrue();
+        assertThat(queue.getLaneSize(CONTROL)).isZero();
+    }
+
+    @Test
+    public void shouldClearQueue()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 1, 1 }, new int[] { 1, 1 }, 1);
+        queue.offer(new Message(BULK, 1));
+        queue.offer(new Message(BULK, 1));
+        queue.clear();
+
+        assertThat(queue).isEmpty();
+        assertThat(queue.getSharedSize()).isZero();
+        assertThat(queue.getLaneOverflow(BULK)).isZero();
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void shouldThrowExceptionWhenAddingToFullLane()
+    {
+        LanedBoundedQueue<Message> queue = createQueue(new int[] { 1 }, new int[] { 1 }, 0);
+        queue.add(new Message(CONTROL, 1));
+        queue.add(new Message(CONTROL, 1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenOfferingToNonExistingLane()
+    {
+        createQueue(new int[] { 1 }, new int[] { 1 }, 0).offer(new Message(BULK, 1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenCreatingQueueWithZeroWeight()
+    {
+        createQueue(new int[] { 1 }, new int[] { 0 }, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenCreatingQueueWithMismatchingLanes()
+    {
+        createQueue(new int[] { 1, 1 }, new int[] { 1 }, 0);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenOfferingNullElement()
+    {
+        createQueue(new int[] { 1 }, new int[] { 1 }, 0).offer(CONTROL, null);
+    }
+
+    private static LanedBoundedQueue<Message> createQueue(int[] capacities, int[] weights, int sharedCapacity)
+    {
+        return new LanedBoundedQueue<Message>(capacities, weights, sharedCapacity, Message.LANE);
+    }
+
+    private static LanedBoundedQueue<Message> createQueue(int[] capacities, int[] weights, int sharedCapacity,
+            ToIntFunction<Message> costFunction)
+    {
+        return new LanedBoundedQueue<Message>(capacities, weights, sharedCapacity, Message.LANE, costFunction);
+    }
+
+    private static final class Message
+    {
+        private static final ToIntFunction<Message> LANE = new ToIntFunction<Message>()
+        {
+            @Override
+            public int applyAsInt(Message message)
+            {
+                return message.myLane;
+            }
+        };
+
+        private final int myLane;
+        private final int myCost;
+
+        private Message(int lane, int cost)
+        {
+            myLane = lane;
+            myCost = cost;
+        }
+    }
+}
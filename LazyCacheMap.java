@@ -0,0 +1,650 @@
+package gakesson.util.collections;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * This class is a bounded cache {@link Map} with lazy creation, meaning that
+ * nothing but this instance is allocated until needed (e.g. when putting an
+ * element), just like {@link LazyLinkedHashMap}.
+ *
+ * The cache holds entries up to a maximum weight, where the weight of each
+ * entry is computed by a weigher when put, or is one in case the cache is
+ * bounded by a maximum size. Putting an entry which brings the total weight
+ * above the maximum weight evicts entries according to the
+ * {@link EvictionPolicy}, until the total weight is within the maximum weight
+ * again, and notifies the eviction listener (if any) of each evicted entry.
+ * Entries are evicted before a new entry is added, hence a new entry is only
+ * evicted itself in case it is heavier than the maximum weight.
+ * Evicting an entry is a constant time operation for both policies.
+ *
+ * Reads using {@link #get(Object)} count as accesses of the entry, and are
+ * counted as hits or misses. Other operations, including the views and
+ * {@link #containsKey(Object)}, neither access entries nor count. The
+ * iteration order of the views is unspecified. Updating the value of an entry
+ * using {@link Entry#setValue(Object)} takes effect on the total weight
+ * immediately, whereas any resulting eviction is deferred until the next put.
+ *
+ * This class is {@link Serializable} using a compact form, given that the
+ * weigher and eviction listener are {@link Serializable}. The entries are
+ * written in eviction order along with their weights and access frequencies,
+ * hence a deserialized cache evicts the same entries as the serialized one.
+ * Neither the weigher nor the eviction listener is invoked when deserializing.
+ * The counters are not part of the serialized form.
+ *
+ * Released instances (see {@link #release()}) leave their backing map for the
+ * garbage collector, since a backing map is bound to the configuration of its
+ * cache. The counters are kept when released.
+ *
+ */
+public final class LazyCacheMap<K, V> extends AbstractLazyMap<K, V> {
+
+	/**
+	 * The order in which a {@link LazyCacheMap} evicts its entries.
+	 */
+	public enum EvictionPolicy {
+		/**
+		 * Evicts the least recently accessed (or put) entry first.
+		 */
+		LRU,
+		/**
+		 * Evicts the least frequently accessed entry first, and of equally
+		 * frequently accessed entries the least recently accessed one.
+		 */
+		LFU
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private transient EvictionPolicy myPolicy;
+	private transient long myMaxWeight;
+	private transient ToLongBiFunction<? super K, ? super V> myWeigher;
+	private transient BiConsumer<? super K, ? super V> myEvictionListener;
+	private transient long myHitCount;
+	private transient long myMissCount;
+	private transient long myEvictionCount;
+
+	private LazyCacheMap(EvictionPolicy policy, long maxWeight,
+			ToLongBiFunction<? super K, ? super V> weigher,
+			BiConsumer<? super K, ? super V> evictionListener) {
+		myPolicy = policy;
+		myMaxWeight = maxWeight;
+		myWeigher = weigher;
+		myEvictionListener = evictionListener;
+	}
+
+	/**
+	 * Creates a new {@link LazyCacheMap} instance holding at most the provided
+	 * number of entries, evicting the least recently used entry first.
+	 *
+	 * @param maxSize
+	 *            The maximum number of entries.
+	 * @return a new {@link LazyCacheMap}.
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is less than 1.
+	 */
+	public static <K, V> LazyCacheMap<K, V> newLruCacheMap(int maxSize) {
+		return newCacheMap(EvictionPolicy.LRU, maxSize, UnitWeigher.INSTANCE,
+				null);
+	}
+
+	/**
+	 * Creates a new {@link LazyCacheMap} instance holding at most the provided
+	 * number of entries, evicting the least frequently used entry first.
+	 *
+	 * @param maxSize
+	 *            The maximum number of entries.
+	 * @return a new {@link LazyCacheMap}.
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is less than 1.
+	 */
+	public static <K, V> LazyCacheMap<K, V> newLfuCacheMap(int maxSize) {
+		return newCacheMap(EvictionPolicy.LFU, maxSize, UnitWeigher.INSTANCE,
+				null);
+	}
+
+	/**
+	 * Creates a new {@link LazyCacheMap} instance holding entries up to the
+	 * provided maximum weight.
+	 *
+	 * @param policy
+	 *            The eviction policy.
+	 * @param maxWeight
+	 *            The maximum total weight of the entries.
+	 * @param weigher
+	 *            The weigher computing the non-negative weight of an entry.
+	 * @param evictionListener
+	 *            The listener notified of evicted entries, or {@code null}.
+	 * @return a new {@link LazyCacheMap}.
+	 * @throws IllegalArgumentException
+	 *             if the maximum weight is less than 1.
+	 */
+	public static <K, V> LazyCacheMap<K, V> newCacheMap(EvictionPolicy policy,
+			long maxWeight, ToLongBiFunction<? super K, ? super V> weigher,
+			BiConsumer<? super K, ? super V> evictionListener) {
+		if (policy == null || weigher == null) {
+			throw new NullPointerException();
+		}
+
+		if (maxWeight < 1) {
+			throw new IllegalArgumentException("Non-positive maximum weight: "
+					+ maxWeight);
+		}
+		return new LazyCacheMap<K, V>(policy, maxWeight, weigher,
+				evictionListener);
+	}
+
+	@Override
+	public V get(Object key) {
+		if (!isLazyMapCreated()) {
+			myMissCount++;
+			return null;
+		}
+		return super.get(key);
+	}
+
+	/**
+	 * Returns the eviction policy of this cache.
+	 *
+	 * @return the eviction policy.
+	 */
+	public EvictionPolicy getEvictionPolicy() {
+		return myPolicy;
+	}
+
+	/**
+	 * Returns the maximum total weight of the entries of this cache, which is
+	 * the maximum size in case the cache is bounded by size.
+	 *
+	 * @return the maximum weight.
+	 */
+	public long getMaxWeight() {
+		return myMaxWeight;
+	}
+
+	/**
+	 * Returns the total weight of the entries of this cache, which is the size
+	 * in case the cache is bounded by size.
+	 *
+	 * @return the total weight.
+	 */
+	@SuppressWarnings("unchecked")
+	public long getWeightedSize() {
+		Map<K, V> map = getBackingMap();
+
+		if (map instanceof LazyCacheMap.CacheMap) {
+			return ((CacheMap) map).myWeight;
+		}
+
+		long weight = 0;
+
+		for (Entry<K, V> entry : map.entrySet()) {
+			weight += myWeigher.applyAsLong(entry.getKey(), entry.getValue());
+		}
+		return weight;
+	}
+
+	/**
+	 * Returns the number of reads which found an entry.
+	 *
+	 * @return the hit count.
+	 */
+	public long getHitCount() {
+		return myHitCount;
+	}
+
+	/**
+	 * Returns the number of reads which found no entry.
+	 *
+	 * @return the miss count.
+	 */
+	public long getMissCount() {
+		return myMissCount;
+	}
+
+	/**
+	 * Returns the number of evicted entries.
+	 *
+	 * @return the eviction count.
+	 */
+	public long getEvictionCount() {
+		return myEvictionCount;
+	}
+
+	@Override
+	Map<K, V> createMap() {
+		return new CacheMap();
+	}
+
+	@Override
+	void writeHeader(ObjectOutputStream s) throws IOException {
+		s.writeObject(myPolicy);
+		s.writeLong(myMaxWeight);
+		s.writeObject(myWeigher);
+		s.writeObject(myEvictionListener);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	void readHeader(ObjectInputStream s) throws IOException,
+			ClassNotFoundException {
+		myPolicy = (EvictionPolicy) s.readObject();
+		myMaxWeight = s.readLong();
+		myWeigher = (ToLongBiFunction<? super K, ? super V>) s.readObject();
+		myEvictionListener = (BiConsumer<? super K, ? super V>) s.readObject();
+
+		if (myPolicy == null || myWeigher == null || myMaxWeight < 1) {
+			throw new InvalidObjectException("Invalid cache configuration");
+		}
+	}
+
+	/**
+	 * Writes the entries in eviction order, each followed by its weight and
+	 * access frequency, so that the eviction order is restored when read.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	void writeEntries(ObjectOutputStream s, Map<K, V> map) throws IOException {
+		if (map instanceof LazyCacheMap.CacheMap) {
+			((CacheMap) map).writeEntries(s);
+			return;
+		}
+
+		// Frozen, the eviction order is gone
+		for (Entry<K, V> entry : map.entrySet()) {
+			s.writeObject(entry.getKey());
+			s.writeObject(entry.getValue());
+			s.writeLong(myWeigher.applyAsLong(entry.getKey(), entry.getValue()));
+			s.writeLong(1);
+		}
+	}
+
+	/**
+	 * Reads the entries written by
+	 * {@link #writeEntries(ObjectOutputStream, Map)}, restoring their weights
+	 * and eviction order without weighing, evicting or notifying the eviction
+	 * listener.
+	 */
+	@Override
+	Map<K, V> readEntries(ObjectInputStream s, int size) throws IOException,
+			ClassNotFoundException {
+		CacheMap map = new CacheMap();
+		map.readEntries(s, size);
+		return map;
+	}
+
+	/**
+	 * The backing {@link Map} of a {@link LazyCacheMap}. The entries are kept
+	 * in a {@link HashMap} for lookups, and in buckets of equally frequently
+	 * accessed entries for eviction. Each bucket is a doubly-linked list from
+	 * the least to the most recently accessed entry, and the buckets are
+	 * ordered by increasing frequency. The LRU policy disregards frequencies,
+	 * hence it uses a single bucket.
+	 */
+	private final class CacheMap extends AbstractMap<K, V> {
+
+		private final HashMap<K, Node> myNodes = new HashMap<>();
+		private final Bucket myBuckets = new Bucket(0);
+		private long myWeight;
+		private Set<Entry<K, V>> myEntrySet;
+
+		@Override
+		public int size() {
+			return myNodes.size();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return myNodes.containsKey(key);
+		}
+
+		@Override
+		public V get(Object key) {
+			Node node = myNodes.get(key);
+
+			if (node == null) {
+				myMissCount++;
+				return null;
+			}
+			myHitCount++;
+			access(node);
+			return node.myValue;
+		}
+
+		@Override
+		public V put(K key, V value) {
+			long weight = weigh(key, value);
+			Node node = myNodes.get(key);
+			V oldValue = null;
+
+			if (node != null) {
+				oldValue = node.myValue;
+				node.myValue = value;
+				myWeight += weight - node.myWeight;
+				node.myWeight = weight;
+				access(node);
+			} else {
+				// Make room before adding, as a new entry would otherwise be the
+				// first to be evicted by the LFU policy
+				evict(myMaxWeight - weight);
+				node = new Node(key, value, weight);
+				myNodes.put(key, node);
+				myWeight += weight;
+				add(node);
+			}
+			evict(myMaxWeight);
+			return oldValue;
+		}
+
+		@Override
+		public V remove(Object key) {
+			Node node = myNodes.remove(key);
+
+			if (node == null) {
+				return null;
+			}
+			unlink(node);
+			return node.myValue;
+		}
+
+		@Override
+		public void clear() {
+			myNodes.clear();
+			myBuckets.myPrevious = myBuckets;
+			myBuckets.myNext = myBuckets;
+			myWeight = 0;
+		}
+
+		@Override
+		public Set<Entry<K, V>> entrySet() {
+			if (myEntrySet == null) {
+				myEntrySet = new AbstractSet<Entry<K, V>>() {
+					@Override
+					public Iterator<Entry<K, V>> iterator() {
+						return new EntryIterator();
+					}
+
+					@Override
+					public int size() {
+						return myNodes.size();
+					}
+
+					@Override
+					public void clear() {
+						CacheMap.this.clear();
+					}
+				};
+			}
+			return myEntrySet;
+		}
+
+		private void writeEntries(ObjectOutputStream s) throws IOException {
+			for (Bucket bucket = myBuckets.myNext; bucket != myBuckets; bucket = bucket.myNext) {
+				for (Node node = bucket.myHead.myNext; node != bucket.myHead; node = node.myNext) {
+					s.writeObject(node.myKey);
+					s.writeObject(node.myValue);
+					s.writeLong(node.myWeight);
+					s.writeLong(bucket.myFrequency);
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void readEntries(ObjectInputStream s, int size)
+				throws IOException, ClassNotFoundException {
+			for (int i = 0; i < size; ++i) {
+				K key = (K) s.readObject();
+				V value = (V) s.readObject();
+				long weight = s.readLong();
+				long frequency = s.readLong();
+				Bucket last = myBuckets.myPrevious;
+
+				if (weight < 0 || frequency < 1 || frequency < last.myFrequency
+						|| myNodes.containsKey(key)) {
+					throw new InvalidObjectException("Invalid entry: " + key);
+				}
+
+				if (last == myBuckets || last.myFrequency != frequency) {
+					last = new Bucket(frequency);
+					last.linkAfter(myBuckets.myPrevious);
+				}
+
+				Node node = new Node(key, value, weight);
+				myNodes.put(key, node);
+				myWeight += weight;
+				last.append(node);
+			}
+		}
+
+		private long weigh(K key, V value) {
+			long weight = myWeigher.applyAsLong(key, value);
+
+			if (weight < 0) {
+				throw new IllegalArgumentException("Negative weight: " + weight);
+			}
+			return weight;
+		}
+
+		/**
+		 * Evicts entries until the total weight is at most the provided
+		 * weight, or until no entries remain.
+		 * 
+		 * @param maxWeight
+		 */
+		private void evict(long maxWeight) {
+			while (myWeight > maxWeight && !myNodes.isEmpty()) {
+				Node victim = myBuckets.myNext.myHead.myNext;
+				myNodes.remove(victim.myKey);
+				unlink(victim);
+				myEvictionCount++;
+
+				if (myEvictionListener != null) {
+					myEvictionListener.accept(victim.myKey, victim.myValue);
+				}
+			}
+		}
+
+		private void add(Node node) {
+			Bucket first = myBuckets.myNext;
+
+			if (first == myBuckets || first.myFrequency != 1) {
+				first = new Bucket(1);
+				first.linkAfter(myBuckets);
+			}
+			first.append(node);
+		}
+
+		private void access(Node node) {
+			Bucket bucket = node.myBucket;
+			node.unlinkFromBucket();
+
+			if (myPolicy == EvictionPolicy.LRU) {
+				bucket.append(node);
+				return;
+			}
+
+			Bucket next = bucket.myNext;
+
+			if (next == myBuckets || next.myFrequency != bucket.myFrequency + 1) {
+				next = new Bucket(bucket.myFrequency + 1);
+				next.linkAfter(bucket);
+			}
+			next.append(node);
+
+			if (bucket.isEmpty()) {
+				bucket.unlink();
+			}
+		}
+
+		private void unlink(Node node) {
+			Bucket bucket = node.myBucket;
+			node.unlinkFromBucket();
+			myWeight -= node.myWeight;
+
+			if (bucket.isEmpty()) {
+				bucket.unlink();
+			}
+		}
+
+		private final class Node implements Entry<K, V> {
+
+			private final K myKey;
+			private V myValue;
+			private long myWeight;
+			private Bucket myBucket;
+			private Node myPrevious;
+			private Node myNext;
+
+			private Node(K key, V value, long weight) {
+				myKey = key;
+				myValue = value;
+				myWeight = weight;
+			}
+
+			@Override
+			public K getKey() {
+				return myKey;
+			}
+
+			@Override
+			public V getValue() {
+				return myValue;
+			}
+
+			@Override
+			public V setValue(V value) {
+				long weight = weigh(myKey, value);
+				V oldValue = myValue;
+				CacheMap.this.myWeight += weight - myWeight;
+				myWeight = weight;
+				myValue = value;
+				return oldValue;
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				if (!(o instanceof Entry)) {
+					return false;
+				}
+				Entry<?, ?> entry = (Entry<?, ?>) o;
+				return eq(myKey, entry.getKey()) && eq(myValue, entry.getValue());
+			}
+
+			@Override
+			public int hashCode() {
+				return (myKey == null ? 0 : myKey.hashCode())
+						^ (myValue == null ? 0 : myValue.hashCode());
+			}
+
+			@Override
+			public String toString() {
+				return myKey + "=" + myValue;
+			}
+
+			private void unlinkFromBucket() {
+				myPrevious.myNext = myNext;
+				myNext.myPrevious = myPrevious;
+				myPrevious = null;
+				myNext = null;
+				myBucket = null;
+			}
+		}
+
+		private final class Bucket {
+
+			private final long myFrequency;
+			private final Node myHead = new Node(null, null, 0);
+			private Bucket myPrevious = this;
+			private Bucket myNext = this;
+
+			private Bucket(long frequency) {
+				myFrequency = frequency;
+				myHead.myPrevious = myHead;
+				myHead.myNext = myHead;
+			}
+
+			private boolean isEmpty() {
+				return myHead.myNext == myHead;
+			}
+
+			private void append(Node node) {
+				node.myBucket = this;
+				node.myPrevious = myHead.myPrevious;
+				node.myNext = myHead;
+				myHead.myPrevious.myNext = node;
+				myHead.myPrevious = node;
+			}
+
+			private void linkAfter(Bucket bucket) {
+				myPrevious = bucket;
+				myNext = bucket.myNext;
+				bucket.myNext.myPrevious = this;
+				bucket.myNext = this;
+			}
+
+			private void unlink() {
+				myPrevious.myNext = myNext;
+				myNext.myPrevious = myPrevious;
+			}
+		}
+
+		private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+			private final Iterator<Node> myIterator = myNodes.values()
+					.iterator();
+			private Node myLastReturned;
+
+			@Override
+			public boolean hasNext() {
+				return myIterator.hasNext();
+			}
+
+			@Override
+			public Entry<K, V> next() {
+				myLastReturned = myIterator.next();
+				return myLastReturned;
+			}
+
+			@Override
+			public void remove() {
+				myIterator.remove();
+				unlink(myLastReturned);
+				myLastReturned = null;
+			}
+		}
+	}
+
+	private static boolean eq(Object first, Object second) {
+		return first == null ? second == null : first.equals(second);
+	}
+
+	/**
+	 * The weigher of caches bounded by size, weighing every entry as one.
+	 */
+	private static final class UnitWeigher implements
+			ToLongBiFunction<Object, Object>, Serializable {
+
+		private static final long serialVersionUID = 1L;
+		private static final UnitWeigher INSTANCE = new UnitWeigher();
+
+		@Override
+		public long applyAsLong(Object key, Object value) {
+			return 1;
+		}
+
+		private Object readResolve() {
+			return INSTANCE;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+@Test
+public class LazyCacheMapTest extends AbstractLazyMapTest {
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedEntry() {
+		LazyCacheMap<String, Integer> cache = LazyCacheMap.newLruCacheMap(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.get("a");
+
+		cache.put("c", 3);
+
+		assertThat(cache.keySet()).containsOnly("a", "c");
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldEvictLeastFrequentlyUsedEntry() {
+		LazyCacheMap<String, Integer> cache = LazyCacheMap.newLfuCacheMap(3);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("c", 3);
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		cache.get("c");
+
+		cache.put("d", 4);
+
+		assertThat(cache.keySet()).containsOnly("a", "c", "d");
+
+		cache.put("e", 5);
+
+		assertThat(cache.keySet()).containsOnly("a", "c", "e");
+	}
+
+	@Test
+	public void shouldEvictByWeightAndNotifyListener() {
+		final List<String> evicted = new ArrayList<>();
+		LazyCacheMap<String, String> cache = LazyCacheMap.newCacheMap(
+				LazyCacheMap.EvictionPolicy.LRU, 10,
+				(key, value) -> value.length(),
+				(key, value) -> evicted.add(key));
+		cache.put("a", "xxxx");
+		cache.put("b", "xxxx");
+		cache.put("c", "xxxx");
+
+		assertThat(evicted).containsExactly("a");
+		assertThat(cache.getWeightedSize()).isEqualTo(8);
+
+		cache.put("d", "xxxxxxxxxxx");
+
+		assertThat(evicted).containsExactly("a", "b", "c", "d");
+		assertThat(cache).isEmpty();
+		assertThat(cache.getWeightedSize()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldUpdateWeightWhenReplacingValue() {
+		LazyCacheMap<String, String> cache = LazyCacheMap.newCacheMap(
+				LazyCacheMap.EvictionPolicy.LFU, 10,
+				(key, value) -> value.length(), null);
+		cache.put("a", "xx");
+		cache.put("b", "xx");
+
+		cache.put("a", "xxxxxx");
+
+		assertThat(cache.getWeightedSize()).isEqualTo(8);
+
+		cache.entrySet().iterator().next().setValue("x");
+		cache.remove("b");
+
+		assertThat(cache.getWeightedSize()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldCountHitsAndMisses() {
+		LazyCacheMap<String, Integer> cache = LazyCacheMap.newLruCacheMap(2);
+		cache.get("a");
+		cache.put("a", 1);
+		cache.get("a");
+		cache.get("b");
+
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldNotCreateMapWhenMissing() {
+		LazyCacheMap<String, Integer> cache = LazyCacheMap.newLruCacheMap(2);
+
+		cache.get("a");
+
+		assertThat(cache.isLazyMapCreated()).isFalse();
+	}
+
+	@Test
+	public void shouldKeepWeightWhenRemovingThroughIterator() {
+		LazyCacheMap<Integer, Integer> cache = LazyCacheMap.newLfuCacheMap(3);
+		cache.put(1, 1);
+		cache.put(2, 2);
+		cache.put(3, 3);
+		cache.get(2);
+
+		for (Iterator<Integer> iterator = cache.keySet().iterator(); iterator
+				.hasNext();) {
+			if (iterator.next() != 3) {
+				iterator.remove();
+			}
+		}
+		cache.put(4, 4);
+		cache.put(5, 5);
+
+		assertThat(cache.keySet()).containsOnly(3, 4, 5);
+		assertThat(cache.getWeightedSize()).isEqualTo(3);
+		assertThat(cache.getEvictionCount()).isZero();
+	}
+
+	@Test
+	public void shouldNeverExceedMaximumSize() {
+		LazyCacheMap<Integer, Integer> cache = LazyCacheMap.newLfuCacheMap(16);
+
+		for (int i = 0; i < 1000; ++i) {
+			cache.put(i % 37, i);
+			cache.get(i % 5);
+
+			assertThat(cache.size()).isLessThanOrEqualTo(16);
+			assertThat(cache.getWeightedSize()).isEqualTo(cache.size());
+		}
+		assertThat(cache.keySet()).contains(0, 1, 2, 3, 4);
+	}
+
+	@Test
+	public void shouldKeepLeastRecentlyUsedOrderWhenSerializing()
+			throws Exception {
+		LazyCacheMap<Object, Object> cache = LazyCacheMap.newLruCacheMap(3);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("c", 3);
+		cache.get("a");
+
+		LazyCacheMap<Object, Object> deserializedCache = (LazyCacheMap<Object, Object>) serializeAndDeserialize(cache);
+		deserializedCache.put("d", 4);
+
+		assertThat(deserializedCache.keySet()).containsOnly("a", "c", "d");
+		assertThat(deserializedCache.getEvictionCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldKeepFrequenciesWhenSerializing() throws Exception {
+		LazyCacheMap<Object, Object> cache = LazyCacheMap.newLfuCacheMap(3);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("c", 3);
+		cache.get("a");
+		cache.get("a");
+		cache.get("c");
+
+		LazyCacheMap<Object, Object> deserializedCache = (LazyCacheMap<Object, Object>) serializeAndDeserialize(cache);
+		deserializedCache.put("d", 4);
+
+		assertThat(deserializedCache.keySet()).containsOnly("a", "c", "d");
+
+		// Accessed as often as c, but more recently
+		deserializedCache.get("d");
+		deserializedCache.put("e", 5);
+
+		assertThat(deserializedCache.keySet()).containsOnly("a", "d", "e");
+		assertThat(deserializedCache.getWeightedSize()).isEqualTo(3);
+	}
+
+	@Override
+	protected Map<Object, Object> createLazyMap() {
+		return LazyCacheMap.newLruCacheMap(100);
+	}
+
+	@Override
+	protected Map<Object, Object> createBackingMap() {
+		return new HashMap<>();
+	}
+}
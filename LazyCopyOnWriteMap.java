@@ -0,0 +1,118 @@
+package gakesson.util.collections;
+
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * This class decorates a shared template {@link Map} with copy-on-write
+ * semantics, meaning that all reads go directly to the template until the
+ * first mutating operation, at which point a private {@link HashMap} copy of
+ * the template is created and used from there on.
+ *
+ * The template is shared between all instances created from it and is never
+ * modified by this class, hence it must not be modified by anyone else either
+ * while instances created from it are in use. The {@link #keySet()},
+ * {@link #values()} and {@link #entrySet()} views returned before the private
+ * copy has been created are unmodifiable views of the template.
+ *
+ * Besides the copy-on-write behavior, this class behaves exactly as
+ * {@link HashMap} except that {@link Cloneable} is not supported by this
+ * class. In case that kind of behavior is required, it is possible to extract
+ * the backing {@link Map} using the {@link #getLazilyCreatedMap()} method.
+ *
+ * This class is {@link Serializable} using a compact form, writing the current
+ * entries whether they are read through the template or not. The template is
+ * not part of the serialized form, hence a deserialized instance holds its
+ * entries in a private {@link HashMap} (or nothing at all, if empty).
+ *
+ * The private copies are obtained from and released to the same
+ * {@link MapPool} as {@link LazyHashMap}, and a released instance reads
+ * through the template again.
+ *
+ */
+public final class LazyCopyOnWriteMap<K, V> extends AbstractLazyMap<K, V> {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient Map<K, V> myTemplate;
+
+	private LazyCopyOnWriteMap(Map<K, V> template) {
+		super(template);
+		myTemplate = template;
+	}
+
+	/**
+	 * Creates a new {@link LazyCopyOnWriteMap} instance reading through the
+	 * provided template.
+	 *
+	 * @param template
+	 *            The shared template to read through until first modified.
+	 * @return a new {@link LazyCopyOnWriteMap}.
+	 */
+	public static <K, V> Map<K, V> newLazyCopyOnWriteMap(Map<K, V> template) {
+		if (template == null) {
+			throw new NullPointerException();
+		}
+		return new LazyCopyOnWriteMap<K, V>(template);
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return isLazyMapCreated() ? super.keySet() : Collections
+				.unmodifiableSet(super.keySet());
+	}
+
+	@Override
+	public Collection<V> values() {
+		return isLazyMapCreated() ? super.values() : Collections
+				.unmodifiableCollection(super.values());
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return isLazyMapCreated() ? super.entrySet() : Collections
+				.unmodifiableMap(myTemplate).entrySet();
+	}
+
+	@Override
+	public void replaceAll(
+			BiFunction<? super K, ? super V, ? extends V> function) {
+		if (!isEmpty()) {
+			getLazyMap().replaceAll(function);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	Map<K, V> createMap() {
+		HashMap<K, V> map = (HashMap<K, V>) LazyHashMap.getMapPool()
+				.acquire();
+		return map != null ? map : new HashMap<K, V>();
+	}
+
+	@Override
+	Map<K, V> createMap(int expectedSize) {
+		return new HashMap<>(hashMapCapacity(expectedSize));
+	}
+
+	@Override
+	void recycleMap(Map<K, V> map, int peakSize) {
+		LazyHashMap.getMapPool().release((HashMap<?, ?>) map, peakSize);
+	}
+
+	@Override
+	Map<K, V> initialMap() {
+		return myTemplate;
+	}
+
+	@Override
+	void readHeader(ObjectInputStream s) {
+		myTemplate = Collections.emptyMap();
+	}
+}
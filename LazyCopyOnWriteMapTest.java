@@ -0,0 +1,114 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+@Test
+public class LazyCopyOnWriteMapTest extends AbstractLazyMapTest {
+
+	@Test
+	public void shouldReadThroughTemplate() {
+		Map<Object, Object> template = createTemplate();
+
+		Map<Object, Object> lazyMap = LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(template);
+
+		assertThat(lazyMap).hasSize(1);
+		assertThat(lazyMap.get("key")).isEqualTo("value");
+		assertThat(lazyMap).isEqualTo(template);
+	}
+
+	@Test
+	public void shouldNotModifyTemplateWhenPutting() {
+		Map<Object, Object> template = createTemplate();
+		Map<Object, Object> lazyMap = LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(template);
+
+		lazyMap.put("key", "anotherValue");
+		lazyMap.put("anotherKey", "value");
+
+		assertThat(lazyMap).hasSize(2);
+		assertThat(lazyMap.get("key")).isEqualTo("anotherValue");
+		assertThat(template).isEqualTo(createTemplate());
+	}
+
+	@Test
+	public void shouldNotModifyTemplateWhenRemoving() {
+		Map<Object, Object> template = createTemplate();
+		Map<Object, Object> lazyMap = LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(template);
+
+		assertThat(lazyMap.remove("key")).isEqualTo("value");
+
+		assertThat(lazyMap).isEmpty();
+		assertThat(template).isEqualTo(createTemplate());
+	}
+
+	@Test
+	public void shouldNotModifyTemplateWhenClearing() {
+		Map<Object, Object> template = createTemplate();
+		Map<Object, Object> lazyMap = LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(template);
+
+		lazyMap.clear();
+
+		assertThat(lazyMap).isEmpty();
+		assertThat(template).isEqualTo(createTemplate());
+	}
+
+	@Test
+	public void shouldNotCreateMapWhenRemovingAbsentKey() {
+		Map<Object, Object> template = createTemplate();
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(template);
+
+		assertThat(lazyMap.remove("anotherKey")).isNull();
+
+		assertThat(lazyMap.isLazyMapCreated()).isFalse();
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void shouldNotAllowModifyingTemplateThroughViews() {
+		Map<Object, Object> lazyMap = LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(createTemplate());
+
+		lazyMap.keySet().clear();
+	}
+
+	@Test
+	public void shouldNotShareCopyBetweenInstances() {
+		Map<Object, Object> template = Collections
+				.unmodifiableMap(createTemplate());
+		Map<Object, Object> lazyMap = LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(template);
+		Map<Object, Object> anotherLazyMap = LazyCopyOnWriteMap
+				.newLazyCopyOnWriteMap(template);
+
+		lazyMap.put("anotherKey", "value");
+
+		assertThat(lazyMap).hasSize(2);
+		assertThat(anotherLazyMap).hasSize(1);
+	}
+
+	@Override
+	protected Map<Object, Object> createLazyMap() {
+		return LazyCopyOnWriteMap.newLazyCopyOnWriteMap(Collections
+				.emptyMap());
+	}
+
+	@Override
+	protected Map<Object, Object> createBackingMap() {
+		return new HashMap<>();
+	}
+
+	private static Map<Object, Object> createTemplate() {
+		Map<Object, Object> template = new HashMap<>();
+		template.put("key", "value");
+		return template;
+	}
+}
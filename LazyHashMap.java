@@ -10,14 +10,24 @@ import java.util.Map;
  * element).
  * 
  * Besides the lazy creation, this class behaves exactly as {@link HashMap}
- * except that {@link Serializable} and {@link Cloneable} are not supported by
- * this class. In case that kind of behavior is required, it is possible to
- * extract the backing {@link Map} using the {@link #getLazilyCreatedMap()}
- * method.
+ * except that {@link Cloneable} is not supported by this class. In case that
+ * kind of behavior is required, it is possible to extract the backing
+ * {@link Map} using the {@link #getLazilyCreatedMap()} method.
+ * 
+ * This class is {@link Serializable} using a compact form, where an empty map
+ * is written as a single zero and is deserialized without creating the
+ * {@link HashMap}.
+ * 
+ * Released instances (see {@link #release()}) return their backing
+ * {@link HashMap} to the {@link #getMapPool()}, which is used before allocating
+ * a new {@link HashMap}.
  * 
  */
 public final class LazyHashMap<K, V> extends AbstractLazyMap<K, V> {
 
+	private static final long serialVersionUID = 1L;
+	private static final MapPool<HashMap<?, ?>> MAP_POOL = new MapPool<>();
+
 	private LazyHashMap() {
 		// Nothing
 	}
@@ -31,8 +41,30 @@ public final class LazyHashMap<K, V> extends AbstractLazyMap<K, V> {
 		return new LazyHashMap<K, V>();
 	}
 
+	/**
+	 * Returns the {@link MapPool} which released {@link LazyHashMap} instances
+	 * return their backing {@link HashMap} to.
+	 * 
+	 * @return the {@link MapPool} of this class.
+	 */
+	public static MapPool<HashMap<?, ?>> getMapPool() {
+		return MAP_POOL;
+	}
+
 	@Override
+	@SuppressWarnings("unchecked")
 	Map<K, V> createMap() {
-		return new HashMap<>();
+		HashMap<K, V> map = (HashMap<K, V>) MAP_POOL.acquire();
+		return map != null ? map : new HashMap<K, V>();
+	}
+
+	@Override
+	Map<K, V> createMap(int expectedSize) {
+		return new HashMap<>(hashMapCapacity(expectedSize));
+	}
+
+	@Override
+	void recycleMap(Map<K, V> map, int peakSize) {
+		MAP_POOL.release((HashMap<?, ?>) map, peakSize);
 	}
 }
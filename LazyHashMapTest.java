@@ -1,5 +1,7 @@
 package gakesson.util.collections;
 
+import static org.fest.assertions.Assertions.assertThat;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,6 +10,54 @@ import org.testng.annotations.Test;
 @Test
 public class LazyHashMapTest extends AbstractLazyMapTest {
 
+	@Test
+	public void shouldReuseBackingMapOfReleasedLazyMap() {
+		LazyHashMap.getMapPool().reset();
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		lazyMap.put(new Integer(3211), new Integer(3211));
+		Map<Object, Object> backingMap = lazyMap.getBackingMap();
+		long hitCount = LazyHashMap.getMapPool().getHitCount();
+
+		lazyMap.release();
+		AbstractLazyMap<Object, Object> anotherLazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+
+		assertThat(anotherLazyMap.getLazilyCreatedMap()).isSameAs(backingMap);
+		assertThat(backingMap).isEmpty();
+		assertThat(LazyHashMap.getMapPool().getHitCount()).isEqualTo(
+				hitCount + 1);
+	}
+
+	@Test
+	public void shouldNotReuseBackingMapWhichHasHeldTooManyEntries() {
+		MapPool<HashMap<?, ?>> mapPool = LazyHashMap.getMapPool();
+		mapPool.reset();
+		mapPool.setMaxRetainedSize(1);
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		lazyMap.put("key", "value");
+		lazyMap.put("anotherKey", "value");
+		lazyMap.remove("anotherKey");
+		long discardedCount = mapPool.getDiscardedCount();
+
+		lazyMap.release();
+		mapPool.reset();
+
+		assertThat(mapPool.getDiscardedCount()).isEqualTo(discardedCount + 1);
+	}
+
+	@Test
+	public void shouldNotReuseBackingMapWhichHasBeenExposed() {
+		MapPool<HashMap<?, ?>> mapPool = LazyHashMap.getMapPool();
+		mapPool.reset();
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		Map<Object, Object> backingMap = lazyMap.getLazilyCreatedMap();
+
+		lazyMap.release();
+		AbstractLazyMap<Object, Object> anotherLazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		anotherLazyMap.put("key", "value");
+
+		assertThat(anotherLazyMap.getBackingMap()).isNotSameAs(backingMap);
+	}
+
 	@Override
 	protected Map<Object, Object> createLazyMap() {
 		return LazyHashMap.newLazyHashMap();
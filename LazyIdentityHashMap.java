@@ -10,14 +10,25 @@ import java.util.Map;
  * (e.g. when putting an element).
  * 
  * Besides the lazy creation, this class behaves exactly as
- * {@link IdentityHashMap} except that {@link Serializable} and
- * {@link Cloneable} are not supported by this class. In case that kind of
- * behavior is required, it is possible to extract the backing {@link Map} using
- * the {@link #getLazilyCreatedMap()} method.
+ * {@link IdentityHashMap} except that {@link Cloneable} is not supported by
+ * this class. In case that kind of behavior is required, it is possible to
+ * extract the backing {@link Map} using the {@link #getLazilyCreatedMap()}
+ * method.
+ * 
+ * This class is {@link Serializable} using a compact form, where an empty map
+ * is written as a single zero and is deserialized without creating the
+ * {@link IdentityHashMap}.
+ * 
+ * Released instances (see {@link #release()}) return their backing
+ * {@link IdentityHashMap} to the {@link #getMapPool()}, which is used before
+ * allocating a new {@link IdentityHashMap}.
  * 
  */
 public final class LazyIdentityHashMap<K, V> extends AbstractLazyMap<K, V> {
 
+	private static final long serialVersionUID = 1L;
+	private static final MapPool<IdentityHashMap<?, ?>> MAP_POOL = new MapPool<>();
+
 	private LazyIdentityHashMap() {
 		// Nothing
 	}
@@ -31,8 +42,35 @@ public final class LazyIdentityHashMap<K, V> extends AbstractLazyMap<K, V> {
 		return new LazyIdentityHashMap<K, V>();
 	}
 
+	/**
+	 * Returns the {@link MapPool} which released {@link LazyIdentityHashMap} instances
+	 * return their backing {@link IdentityHashMap} to.
+	 * 
+	 * @return the {@link MapPool} of this class.
+	 */
+	public static MapPool<IdentityHashMap<?, ?>> getMapPool() {
+		return MAP_POOL;
+	}
+
 	@Override
+	@SuppressWarnings("unchecked")
 	Map<K, V> createMap() {
-		return new IdentityHashMap<>();
+		IdentityHashMap<K, V> map = (IdentityHashMap<K, V>) MAP_POOL.acquire();
+		return map != null ? map : new IdentityHashMap<K, V>();
+	}
+
+	@Override
+	Map<K, V> createFrozenMap(Map<K, V> map) {
+		return new FrozenHashMap<>(map, true);
+	}
+
+	@Override
+	Map<K, V> createMap(int expectedSize) {
+		return new IdentityHashMap<>(expectedSize);
+	}
+
+	@Override
+	void recycleMap(Map<K, V> map, int peakSize) {
+		MAP_POOL.release((IdentityHashMap<?, ?>) map, peakSize);
 	}
 }
@@ -10,13 +10,23 @@ import java.util.Map;
  * putting an element).
  * 
  * Besides the lazy creation, this class behaves exactly as
- * {@link LinkedHashMap} except that {@link Serializable} and {@link Cloneable}
- * are not supported by this class. In case that kind of behavior is required,
- * it is possible to extract the backing {@link Map} using the
- * {@link #getLazilyCreatedMap()} method.
+ * {@link LinkedHashMap} except that {@link Cloneable} is not supported by this
+ * class. In case that kind of behavior is required, it is possible to extract
+ * the backing {@link Map} using the {@link #getLazilyCreatedMap()} method.
+ * 
+ * This class is {@link Serializable} using a compact form, where an empty map
+ * is written as a single zero and is deserialized without creating the
+ * {@link LinkedHashMap}.
+ * 
+ * Released instances (see {@link #release()}) return their backing
+ * {@link LinkedHashMap} to the {@link #getMapPool()}, which is used before
+ * allocating a new {@link LinkedHashMap}.
  */
 public final class LazyLinkedHashMap<K, V> extends AbstractLazyMap<K, V> {
 
+	private static final long serialVersionUID = 1L;
+	private static final MapPool<LinkedHashMap<?, ?>> MAP_POOL = new MapPool<>();
+
 	private LazyLinkedHashMap() {
 		// Nothing
 	}
@@ -30,8 +40,30 @@ public final class LazyLinkedHashMap<K, V> extends AbstractLazyMap<K, V> {
 		return new LazyLinkedHashMap<K, V>();
 	}
 
+	/**
+	 * Returns the {@link MapPool} which released {@link LazyLinkedHashMap} instances
+	 * return their backing {@link LinkedHashMap} to.
+	 * 
+	 * @return the {@link MapPool} of this class.
+	 */
+	public static MapPool<LinkedHashMap<?, ?>> getMapPool() {
+		return MAP_POOL;
+	}
+
 	@Override
+	@SuppressWarnings("unchecked")
 	Map<K, V> createMap() {
-		return new LinkedHashMap<>();
+		LinkedHashMap<K, V> map = (LinkedHashMap<K, V>) MAP_POOL.acquire();
+		return map != null ? map : new LinkedHashMap<K, V>();
+	}
+
+	@Override
+	Map<K, V> createMap(int expectedSize) {
+		return new LinkedHashMap<>(hashMapCapacity(expectedSize));
+	}
+
+	@Override
+	void recycleMap(Map<K, V> map, int peakSize) {
+		MAP_POOL.release((LinkedHashMap<?, ?>) map, peakSize);
 	}
 }
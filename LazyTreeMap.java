@@ -1,40 +1,428 @@
 package gakesson.util.collections;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
  * This class decorates a {@link TreeMap} with lazy creation, meaning that the
  * actual {@link TreeMap} will not be created until needed (e.g. when putting an
  * element).
- * 
+ *
  * Besides the lazy creation, this class behaves exactly as {@link TreeMap},
- * using the natural orderings of the keys.
- * 
- * Note that {@link Serializable} and {@link Cloneable} are not supported by
- * this class. In case that kind of behavior is required, it is possible to
- * extract the backing {@link Map} using the {@link #getLazilyCreatedMap()}
- * method.
- * 
+ * using either the natural orderings of the keys or the provided
+ * {@link Comparator}. All {@link NavigableMap} operations are answered without
+ * creating the {@link TreeMap} as long as it hasn't been created. Similar to
+ * the other views of this class, the range views returned before the
+ * {@link TreeMap} has been created are empty and unmodifiable snapshots, which
+ * don't reflect entries put into this map later on.
+ *
+ * Note that {@link Cloneable} is not supported by this class. In case that
+ * kind of behavior is required, it is possible to extract the backing
+ * {@link Map} using the {@link #getLazilyCreatedMap()} method.
+ *
+ * This class is {@link Serializable} using a compact form, where an empty map
+ * is written as its {@link Comparator} followed by a single zero and is
+ * deserialized without creating the {@link TreeMap}. Similar to
+ * {@link TreeMap}, the {@link Comparator} must be {@link Serializable} for
+ * the map to be serializable.
+ *
  */
-public final class LazyTreeMap<K, V> extends AbstractLazyMap<K, V> {
+public class LazyTreeMap<K, V> extends AbstractLazyMap<K, V> implements
+		NavigableMap<K, V> {
+
+	private static final long serialVersionUID = 1L;
 
 	private LazyTreeMap() {
 		// Nothing
 	}
 
 	/**
-	 * Creates a new {@link LazyTreeMap} instance.
-	 * 
+	 * Creates a new {@link LazyTreeMap} instance, using the natural ordering
+	 * of the keys.
+	 *
 	 * @return a new {@link LazyTreeMap}.
 	 */
-	public static <K, V> Map<K, V> newLazyTreeMap() {
+	public static <K, V> NavigableMap<K, V> newLazyTreeMap() {
 		return new LazyTreeMap<K, V>();
 	}
 
+	/**
+	 * Creates a new {@link LazyTreeMap} instance, ordered according to the
+	 * provided {@link Comparator}.
+	 *
+	 * @param comparator
+	 *            The comparator used to order the keys, or {@code null} to use
+	 *            the natural ordering of the keys.
+	 * @return a new {@link LazyTreeMap}.
+	 */
+	public static <K, V> NavigableMap<K, V> newLazyTreeMap(
+			Comparator<? super K> comparator) {
+		return comparator == null ? new LazyTreeMap<K, V>()
+				: new ComparatorLazyTreeMap<K, V>(comparator);
+	}
+
+	@Override
+	public Comparator<? super K> comparator() {
+		return null;
+	}
+
+	@Override
+	public Entry<K, V> lowerEntry(K key) {
+		return isLazyMapCreated() ? navigableMap().lowerEntry(key) : null;
+	}
+
+	@Override
+	public K lowerKey(K key) {
+		return isLazyMapCreated() ? navigableMap().lowerKey(key) : null;
+	}
+
+	@Override
+	public Entry<K, V> floorEntry(K key) {
+		return isLazyMapCreated() ? navigableMap().floorEntry(key) : null;
+	}
+
+	@Override
+	public K floorKey(K key) {
+		return isLazyMapCreated() ? navigableMap().floorKey(key) : null;
+	}
+
+	@Override
+	public Entry<K, V> ceilingEntry(K key) {
+		return isLazyMapCreated() ? navigableMap().ceilingEntry(key) : null;
+	}
+
+	@Override
+	public K ceilingKey(K key) {
+		return isLazyMapCreated() ? navigableMap().ceilingKey(key) : null;
+	}
+
+	@Override
+	public Entry<K, V> higherEntry(K key) {
+		return isLazyMapCreated() ? navigableMap().higherEntry(key) : null;
+	}
+
+	@Override
+	public K higherKey(K key) {
+		return isLazyMapCreated() ? navigableMap().higherKey(key) : null;
+	}
+
+	@Override
+	public Entry<K, V> firstEntry() {
+		return isLazyMapCreated() ? navigableMap().firstEntry() : null;
+	}
+
+	@Override
+	public Entry<K, V> lastEntry() {
+		return isLazyMapCreated() ? navigableMap().lastEntry() : null;
+	}
+
+	@Override
+	public Entry<K, V> pollFirstEntry() {
+		return isLazyMapCreated() ? navigableMap().pollFirstEntry() : null;
+	}
+
+	@Override
+	public Entry<K, V> pollLastEntry() {
+		return isLazyMapCreated() ? navigableMap().pollLastEntry() : null;
+	}
+
+	@Override
+	public K firstKey() {
+		if (!isLazyMapCreated()) {
+			throw new NoSuchElementException();
+		}
+		return navigableMap().firstKey();
+	}
+
+	@Override
+	public K lastKey() {
+		if (!isLazyMapCreated()) {
+			throw new NoSuchElementException();
+		}
+		return navigableMap().lastKey();
+	}
+
+	/**
+	 * Returns a reverse order view of the mappings of this map.
+	 *
+	 * Returned before the {@link TreeMap} has been created, the view is an
+	 * empty and unmodifiable snapshot which doesn't reflect entries put into
+	 * this map later on.
+	 *
+	 * @return a reverse order view of this map.
+	 */
+	@Override
+	public NavigableMap<K, V> descendingMap() {
+		return isLazyMapCreated() ? navigableMap().descendingMap()
+				: emptyNavigableMap().descendingMap();
+	}
+
+	/**
+	 * Returns a view of the keys of this map, in ascending order.
+	 *
+	 * Returned before the {@link TreeMap} has been created, the view is an
+	 * empty and unmodifiable snapshot which doesn't reflect entries put into
+	 * this map later on.
+	 *
+	 * @return a navigable set view of the keys of this map.
+	 */
+	@Override
+	public NavigableSet<K> navigableKeySet() {
+		return isLazyMapCreated() ? navigableMap().navigableKeySet()
+				: emptyNavigableMap().navigableKeySet();
+	}
+
+	/**
+	 * Returns a view of the keys of this map, in descending order.
+	 *
+	 * Returned before the {@link TreeMap} has been created, the view is an
+	 * empty and unmodifiable snapshot which doesn't reflect entries put into
+	 * this map later on.
+	 *
+	 * @return a reverse order navigable set view of the keys of this map.
+	 */
+	@Override
+	public NavigableSet<K> descendingKeySet() {
+		return isLazyMapCreated() ? navigableMap().descendingKeySet()
+				: emptyNavigableMap().descendingKeySet();
+	}
+
+	/**
+	 * Returns a view of the portion of this map whose keys range from
+	 * {@code fromKey} to {@code toKey}.
+	 *
+	 * Returned before the {@link TreeMap} has been created, the view is an
+	 * empty and unmodifiable snapshot which doesn't reflect entries put into
+	 * this map later on, hence it doesn't throw for keys put out of range.
+	 *
+	 * @param fromKey
+	 * @param fromInclusive
+	 * @param toKey
+	 * @param toInclusive
+	 * @return a view of the portion of this map within the range.
+	 */
+	@Override
+	public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive,
+			K toKey, boolean toInclusive) {
+		if (isLazyMapCreated()) {
+			return navigableMap().subMap(fromKey, fromInclusive, toKey,
+					toInclusive);
+		}
+
+		if (compare(fromKey, toKey) > 0) {
+			throw new IllegalArgumentException("fromKey > toKey");
+		}
+		return emptyNavigableMap();
+	}
+
+	/**
+	 * Returns a view of the portion of this map whose keys are less than (or
+	 * equal to, if {@code inclusive} is true) {@code toKey}.
+	 *
+	 * Returned before the {@link TreeMap} has been created, the view is an
+	 * empty and unmodifiable snapshot which doesn't reflect entries put into
+	 * this map later on.
+	 *
+	 * @param toKey
+	 * @param inclusive
+	 * @return a view of the portion of this map below {@code toKey}.
+	 */
+	@Override
+	public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+		if (isLazyMapCreated()) {
+			return navigableMap().headMap(toKey, inclusive);
+		}
+
+		compare(toKey, toKey);
+		return emptyNavigableMap();
+	}
+
+	/**
+	 * Returns a view of the portion of this map whose keys are greater than
+	 * (or equal to, if {@code inclusive} is true) {@code fromKey}.
+	 *
+	 * Returned before the {@link TreeMap} has been created, the view is an
+	 * empty and unmodifiable snapshot which doesn't reflect entries put into
+	 * this map later on.
+	 *
+	 * @param fromKey
+	 * @param inclusive
+	 * @return a view of the portion of this map above {@code fromKey}.
+	 */
+	@Override
+	public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+		if (isLazyMapCreated()) {
+			return navigableMap().tailMap(fromKey, inclusive);
+		}
+
+		compare(fromKey, fromKey);
+		return emptyNavigableMap();
+	}
+
+	/**
+	 * Equivalent to {@code subMap(fromKey, true, toKey, false)}, hence
+	 * returned before the {@link TreeMap} has been created, the view is an
+	 * empty and unmodifiable snapshot (see
+	 * {@link #subMap(Object, boolean, Object, boolean)}).
+	 *
+	 * @param fromKey
+	 * @param toKey
+	 * @return a view of the portion of this map within the range.
+	 */
+	@Override
+	public SortedMap<K, V> subMap(K fromKey, K toKey) {
+		return subMap(fromKey, true, toKey, false);
+	}
+
+	/**
+	 * Equivalent to {@code headMap(toKey, false)}, hence returned before the
+	 * {@link TreeMap} has been created, the view is an empty and unmodifiable
+	 * snapshot (see {@link #headMap(Object, boolean)}).
+	 *
+	 * @param toKey
+	 * @return a view of the portion of this map below {@code toKey}.
+	 */
+	@Override
+	public SortedMap<K, V> headMap(K toKey) {
+		return headMap(toKey, false);
+	}
+
+	/**
+	 * Equivalent to {@code tailMap(fromKey, true)}, hence returned before the
+	 * {@link TreeMap} has been created, the view is an empty and unmodifiable
+	 * snapshot (see {@link #tailMap(Object, boolean)}).
+	 *
+	 * @param fromKey
+	 * @return a view of the portion of this map above {@code fromKey}.
+	 */
+	@Override
+	public SortedMap<K, V> tailMap(K fromKey) {
+		return tailMap(fromKey, true);
+	}
+
 	@Override
 	Map<K, V> createMap() {
-		return new TreeMap<>();
+		return new TreeMap<>(comparator());
+	}
+
+	@Override
+	Map<K, V> createFrozenMap(Map<K, V> map) {
+		return new FrozenSortedMap<>(map, comparator());
+	}
+
+	/**
+	 * Restores the {@link Comparator} read when deserializing this
+	 * {@link LazyTreeMap}, before any of the entries are read.
+	 *
+	 * @param comparator
+	 * @throws InvalidObjectException
+	 */
+	void restoreComparator(Comparator<? super K> comparator)
+			throws InvalidObjectException {
+		if (comparator != null) {
+			throw new InvalidObjectException("Unexpected comparator");
+		}
+	}
+
+	/**
+	 * Returns an empty and unmodifiable {@link NavigableMap} ordered the same
+	 * way as this {@link LazyTreeMap}, used for the views returned before the
+	 * lazy {@link Map} is created. The same instance is returned each time.
+	 *
+	 * @return
+	 */
+	NavigableMap<K, V> emptyNavigableMap() {
+		return Collections.emptyNavigableMap();
+	}
+
+	/**
+	 * Returns the created backing {@link Map} as a {@link NavigableMap}.
+	 *
+	 * @return
+	 */
+	private NavigableMap<K, V> navigableMap() {
+		return (NavigableMap<K, V>) getBackingMap();
+	}
+
+	@Override
+	void writeHeader(ObjectOutputStream s) throws IOException {
+		s.writeObject(comparator());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	void readHeader(ObjectInputStream s) throws IOException,
+			ClassNotFoundException {
+		restoreComparator((Comparator<? super K>) s.readObject());
+	}
+
+	/**
+	 * Compares the two keys the same way as the backing {@link TreeMap} would,
+	 * which also verifies that the keys are valid for this map.
+	 *
+	 * @param k1
+	 * @param k2
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private int compare(Object k1, Object k2) {
+		Comparator<? super K> comparator = comparator();
+		return comparator == null ? ((Comparable<? super K>) k1)
+				.compareTo((K) k2) : comparator.compare((K) k1, (K) k2);
+	}
+
+	/**
+	 * A {@link LazyTreeMap} ordered by a {@link Comparator}. Kept as a separate
+	 * class so that naturally ordered instances don't pay for the field. The
+	 * {@link Comparator} is serialized as the header of {@link LazyTreeMap}
+	 * since it must be known before the entries are read.
+	 *
+	 */
+	private static final class ComparatorLazyTreeMap<K, V> extends
+			LazyTreeMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private transient Comparator<? super K> myComparator;
+		private transient NavigableMap<K, V> myEmptyNavigableMap;
+
+		private ComparatorLazyTreeMap(Comparator<? super K> comparator) {
+			myComparator = comparator;
+		}
+
+		@Override
+		public Comparator<? super K> comparator() {
+			return myComparator;
+		}
+
+		@Override
+		void restoreComparator(Comparator<? super K> comparator)
+				throws InvalidObjectException {
+			if (comparator == null) {
+				throw new InvalidObjectException("Missing comparator");
+			}
+			myComparator = comparator;
+		}
+
+		@Override
+		NavigableMap<K, V> emptyNavigableMap() {
+			if (myEmptyNavigableMap == null) {
+				myEmptyNavigableMap = Collections
+						.unmodifiableNavigableMap(new TreeMap<K, V>(
+								myComparator));
+			}
+			return myEmptyNavigableMap;
+		}
 	}
 }
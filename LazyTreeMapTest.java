@@ -1,13 +1,193 @@
 package gakesson.util.collections;
 
+import static org.fest.assertions.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.TreeMap;
 
 import org.testng.annotations.Test;
 
 @Test
 public class LazyTreeMapTest extends AbstractLazyMapTest {
-	
+
+	@Test
+	public void shouldNavigateWithoutCreatingMap() {
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap.newLazyTreeMap();
+
+		assertThat(lazyMap.ceilingKey(1)).isNull();
+		assertThat(lazyMap.floorEntry(1)).isNull();
+		assertThat(lazyMap.higherKey(1)).isNull();
+		assertThat(lazyMap.lowerEntry(1)).isNull();
+		assertThat(lazyMap.firstEntry()).isNull();
+		assertThat(lazyMap.pollLastEntry()).isNull();
+		assertThat(lazyMap.subMap(1, 10)).isEmpty();
+		assertThat(lazyMap.headMap(1)).isEmpty();
+		assertThat(lazyMap.tailMap(1)).isEmpty();
+		assertThat(lazyMap.descendingKeySet()).isEmpty();
+
+		assertThat(((AbstractLazyMap<Integer, Object>) lazyMap)
+				.isLazyMapCreated()).isFalse();
+	}
+
+	@Test
+	public void shouldNavigateCreatedMap() {
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap.newLazyTreeMap();
+		lazyMap.put(10, "ten");
+		lazyMap.put(20, "twenty");
+		lazyMap.put(30, "thirty");
+
+		assertThat(lazyMap.ceilingKey(11)).isEqualTo(20);
+		assertThat(lazyMap.floorKey(29)).isEqualTo(20);
+		assertThat(lazyMap.higherKey(30)).isNull();
+		assertThat(lazyMap.firstKey()).isEqualTo(10);
+		assertThat(lazyMap.lastKey()).isEqualTo(30);
+		assertThat(lazyMap.subMap(10, 30)).hasSize(2);
+		assertThat(lazyMap.headMap(20, true)).hasSize(2);
+		assertThat(lazyMap.tailMap(20, false)).hasSize(1);
+	}
+
+	@Test
+	public void shouldOrderUsingProvidedComparator() {
+		Comparator<Integer> comparator = Collections.reverseOrder();
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap
+				.newLazyTreeMap(comparator);
+
+		assertThat(lazyMap.comparator()).isSameAs(comparator);
+		assertThat(lazyMap.headMap(1).comparator()).isSameAs(comparator);
+
+		lazyMap.put(10, "ten");
+		lazyMap.put(20, "twenty");
+
+		assertThat(lazyMap.firstKey()).isEqualTo(20);
+		assertThat(lazyMap.ceilingKey(15)).isEqualTo(10);
+	}
+
+	@Test
+	public void shouldReturnEmptySnapshotViewsBeforeLazyMapIsCreated() {
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap
+				.newLazyTreeMap(Collections.<Integer> reverseOrder());
+		NavigableMap<Integer, Object> headMap = lazyMap.headMap(20, true);
+
+		assertThat(lazyMap.tailMap(10, true)).isSameAs(headMap);
+
+		lazyMap.put(10, "ten");
+
+		assertThat(headMap).isEmpty();
+		assertThat(lazyMap.tailMap(20, true)).hasSize(1);
+		assertThat(((AbstractLazyMap<Integer, Object>) lazyMap)
+				.isLazyMapCreated()).isTrue();
+	}
+
+	@Test
+	public void shouldSerializeComparatorWithLazyMap() throws Exception {
+		Comparator<Object> comparator = Collections.reverseOrder();
+		NavigableMap<Object, Object> lazyMap = LazyTreeMap
+				.newLazyTreeMap(comparator);
+		lazyMap.put(10, "ten");
+		lazyMap.put(20, "twenty");
+
+		NavigableMap<Object, Object> deserializedMap = (NavigableMap<Object, Object>) serializeAndDeserialize(lazyMap);
+
+		assertThat(deserializedMap.comparator()).isEqualTo(comparator);
+		assertThat(deserializedMap.firstKey()).isEqualTo(20);
+	}
+
+	@Test
+	public void shouldNavigateFrozenMap() {
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap.newLazyTreeMap();
+		lazyMap.put(10, "ten");
+		lazyMap.put(20, "twenty");
+		lazyMap.put(30, "thirty");
+		lazyMap.put(40, "forty");
+
+		((AbstractLazyMap<Integer, Object>) lazyMap).freeze();
+
+		assertThat(lazyMap.ceilingKey(11)).isEqualTo(20);
+		assertThat(lazyMap.ceilingKey(41)).isNull();
+		assertThat(lazyMap.floorKey(30)).isEqualTo(30);
+		assertThat(lazyMap.lowerKey(30)).isEqualTo(20);
+		assertThat(lazyMap.higherKey(30)).isEqualTo(40);
+		assertThat(lazyMap.firstKey()).isEqualTo(10);
+		assertThat(lazyMap.lastEntry().getValue()).isEqualTo("forty");
+		assertThat(new ArrayList<>(lazyMap.subMap(15, true, 30, true)
+				.keySet())).containsExactly(20, 30);
+		assertThat(new ArrayList<>(lazyMap.headMap(30).keySet()))
+				.containsExactly(10, 20);
+		assertThat(new ArrayList<>(lazyMap.tailMap(30, false).keySet()))
+				.containsExactly(40);
+		assertThat(new ArrayList<>(lazyMap.descendingMap().keySet()))
+				.containsExactly(40, 30, 20, 10);
+		assertThat(lazyMap.descendingMap().ceilingKey(25)).isEqualTo(20);
+		assertThat(
+				new ArrayList<>(lazyMap.navigableKeySet().headSet(30, true)))
+				.containsExactly(10, 20, 30);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldThrowIllegalArgumentExceptionWhenRangeViewOfFrozenMapIsOutOfRange() {
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap.newLazyTreeMap();
+		lazyMap.put(10, "ten");
+		lazyMap.put(20, "twenty");
+		lazyMap.put(30, "thirty");
+		lazyMap.put(40, "forty");
+
+		((AbstractLazyMap<Integer, Object>) lazyMap).freeze();
+
+		lazyMap.subMap(10, 30).headMap(35);
+	}
+
+	@Test
+	public void shouldNavigateNestedRangeViewsOfFrozenMap() {
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap.newLazyTreeMap();
+		lazyMap.put(10, "ten");
+		lazyMap.put(20, "twenty");
+		lazyMap.put(30, "thirty");
+		lazyMap.put(40, "forty");
+
+		((AbstractLazyMap<Integer, Object>) lazyMap).freeze();
+
+		NavigableMap<Integer, Object> subMap = lazyMap.subMap(10, true, 30,
+				false);
+
+		assertThat(new ArrayList<>(subMap.headMap(30).keySet()))
+				.containsExactly(10, 20);
+		assertThat(new ArrayList<>(subMap.tailMap(15).keySet()))
+				.containsExactly(20);
+		assertThat(new ArrayList<>(subMap.descendingMap().headMap(10, true)
+				.keySet())).containsExactly(20, 10);
+
+		try {
+			subMap.headMap(30, true);
+			fail("Should have rejected the out of range key");
+		} catch (IllegalArgumentException e) {
+			// Expected, 30 is excluded from the view
+		}
+		try {
+			subMap.descendingMap().tailMap(30, true);
+			fail("Should have rejected the out of range key");
+		} catch (IllegalArgumentException e) {
+			// Expected, 30 is excluded from the view
+		}
+	}
+
+	@Test(expectedExceptions = NoSuchElementException.class)
+	public void shouldThrowNoSuchElementExceptionWhenGettingFirstKeyOfEmptyMap() {
+		LazyTreeMap.newLazyTreeMap().firstKey();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldThrowIllegalArgumentExceptionWhenFromKeyIsGreaterThanToKey() {
+		NavigableMap<Integer, Object> lazyMap = LazyTreeMap.newLazyTreeMap();
+
+		lazyMap.subMap(10, 1);
+	}
+
 	@Override
 	protected Map<Object, Object> createLazyMap() {
 		return LazyTreeMap.newLazyTreeMap();
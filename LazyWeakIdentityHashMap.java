@@ -0,0 +1,80 @@
+package gakesson.util.collections;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * This class decorates a {@link WeakIdentityHashMap} with lazy creation,
+ * meaning that the actual {@link WeakIdentityHashMap} will not be created until
+ * needed (e.g. when putting an element). This is useful for attaching data to
+ * objects without preventing them from being garbage collected, since an entry
+ * lives only as long as its key.
+ * 
+ * Keys are held weakly, compared by reference and hashed using
+ * {@link System#identityHashCode(Object)}, and values are compared by
+ * reference, like {@link java.util.IdentityHashMap}. Entries whose keys have
+ * been garbage collected are expunged incrementally by the subsequent
+ * operations, a small batch at a time, rather than by sweeping the map.
+ * Hence {@link #size()} may include entries which are not yet expunged,
+ * whereas the views never return them. Note that a value referring to its key
+ * prevents the key from being garbage collected.
+ * 
+ * This class is {@link Serializable}, but the entries are not part of the
+ * serialized form: a deserialized key is a new object which nothing but the
+ * map would refer to, hence its entry could never be looked up and would be
+ * expunged once the key is garbage collected. A map is therefore always
+ * deserialized empty (and frozen, if it was frozen), without creating the
+ * {@link WeakIdentityHashMap}. Freezing (see {@link #freeze()}) copies the
+ * entries into an identity based frozen map which holds the keys strongly.
+ * 
+ * Released instances (see {@link #release()}) leave their backing
+ * {@link WeakIdentityHashMap} for the garbage collector.
+ * 
+ */
+public final class LazyWeakIdentityHashMap<K, V> extends AbstractLazyMap<K, V> {
+
+	private static final long serialVersionUID = 1L;
+
+	private LazyWeakIdentityHashMap() {
+		// Nothing
+	}
+
+	/**
+	 * Creates a new {@link LazyWeakIdentityHashMap} instance.
+	 * 
+	 * @return a new {@link LazyWeakIdentityHashMap}.
+	 */
+	public static <K, V> Map<K, V> newLazyWeakIdentityHashMap() {
+		return new LazyWeakIdentityHashMap<K, V>();
+	}
+
+	@Override
+	Map<K, V> createMap() {
+		return new WeakIdentityHashMap<K, V>();
+	}
+
+	@Override
+	Map<K, V> createFrozenMap(Map<K, V> map) {
+		return new FrozenHashMap<>(map, true);
+	}
+
+	@Override
+	Map<K, V> createMap(int expectedSize) {
+		return new WeakIdentityHashMap<>(expectedSize);
+	}
+
+	/**
+	 * Replaces this map by an empty map when serialized (see class
+	 * documentation).
+	 * 
+	 * @return
+	 */
+	private Object writeReplace() {
+		LazyWeakIdentityHashMap<K, V> replacement = new LazyWeakIdentityHashMap<>();
+
+		if (isFrozen()) {
+			replacement.freeze();
+		}
+		return replacement;
+	}
+}
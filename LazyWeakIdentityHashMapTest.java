@@ -0,0 +1,160 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+@Test
+public class LazyWeakIdentityHashMapTest extends AbstractLazyMapTest {
+
+	@Test
+	public void shouldCompareKeysByReference() {
+		Map<Object, Object> lazyMap = createLazyMap();
+		Integer key = new Integer(3211);
+		Integer equalKey = new Integer(3211);
+
+		lazyMap.put(key, "value");
+		lazyMap.put(equalKey, "anotherValue");
+
+		assertThat(lazyMap).hasSize(2);
+		assertThat(lazyMap.get(key)).isEqualTo("value");
+		assertThat(lazyMap.get(equalKey)).isEqualTo("anotherValue");
+	}
+
+	@Test
+	public void shouldExpungeEntryWhenKeyIsGarbageCollected()
+			throws InterruptedException {
+		Map<Object, Object> lazyMap = createLazyMap();
+		Object key = new Object();
+		lazyMap.put(key, "value");
+		lazyMap.put(new Object(), "collectable");
+
+		for (int i = 0; i < 100 && lazyMap.size() > 1; ++i) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertThat(lazyMap).hasSize(1);
+		assertThat(lazyMap.get(key)).isEqualTo("value");
+	}
+
+	@Test
+	public void shouldSerializeAsEmptyMap() throws Exception {
+		Map<Object, Object> lazyMap = createLazyMap();
+		Object key = new Object();
+		lazyMap.put(key, "value");
+
+		Map<Object, Object> deserializedMap = serializeAndDeserialize(lazyMap);
+
+		assertThat(deserializedMap).isEmpty();
+		assertThat(
+				((AbstractLazyMap<Object, Object>) deserializedMap)
+						.isLazyMapCreated()).isFalse();
+		assertThat(lazyMap.get(key)).isEqualTo("value");
+	}
+
+	// The inherited tests below put keys which nothing else refers to, which
+	// could be garbage collected while the test runs. They are overridden to
+	// hold the keys strongly until the end of the test.
+
+	@Override
+	@Test
+	public void shouldReturnSizeOfLazyMap() {
+		Map<Object, Object> lazyMap = createLazyMap();
+		Object key = new Object();
+
+		assertThat(lazyMap).hasSize(0);
+
+		lazyMap.put(key, key);
+
+		assertThat(lazyMap).hasSize(1);
+		assertThat(lazyMap.get(key)).isSameAs(key);
+	}
+
+	@Override
+	@Test
+	public void shouldReturnIsEmptyOfLazyMap() {
+		Map<Object, Object> lazyMap = createLazyMap();
+		Object key = new Object();
+
+		assertThat(lazyMap).isEmpty();
+
+		lazyMap.put(key, key);
+
+		assertThat(lazyMap).isNotEmpty();
+		assertThat(lazyMap.get(key)).isSameAs(key);
+	}
+
+	@Override
+	@Test
+	public void shouldReturnHashCodeFromLazyMap() {
+		Map<Object, Object> lazyMap = createLazyMap();
+		Object key = new Object();
+
+		assertThat(lazyMap.hashCode()).isEqualTo(createBackingMap().hashCode());
+
+		lazyMap.put(key, "value");
+
+		assertThat(lazyMap.hashCode()).isNotEqualTo(
+				createBackingMap().hashCode());
+		assertThat(lazyMap.get(key)).isEqualTo("value");
+	}
+
+	@Override
+	@Test
+	public void shouldSerializeLazyMap() throws Exception {
+		shouldSerializeAsEmptyMap();
+	}
+
+	@Override
+	@Test
+	public void shouldKeepContentsWhenFreezingLazyMap() {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		Object firstKey = new Object();
+		Object secondKey = new Object();
+		lazyMap.put(firstKey, "first");
+		lazyMap.put(secondKey, "second");
+		Map<Object, Object> expectedMap = createBackingMap();
+		expectedMap.put(firstKey, "first");
+		expectedMap.put(secondKey, "second");
+
+		lazyMap.freeze();
+
+		assertThat(lazyMap.isFrozen()).isTrue();
+		assertThat(lazyMap).hasSize(2);
+		assertThat(lazyMap.get(firstKey)).isEqualTo("first");
+		assertThat(lazyMap).isEqualTo(expectedMap);
+		assertThat(lazyMap.hashCode()).isEqualTo(expectedMap.hashCode());
+	}
+
+	@Override
+	@Test
+	public void shouldStayFrozenWhenSerializingFrozenLazyMap()
+			throws Exception {
+		AbstractLazyMap<Object, Object> lazyMap = (AbstractLazyMap<Object, Object>) createLazyMap();
+		Object key = new Object();
+		lazyMap.put(key, "value");
+		lazyMap.freeze();
+
+		Map<Object, Object> deserializedMap = serializeAndDeserialize(lazyMap);
+
+		assertThat(
+				((AbstractLazyMap<Object, Object>) deserializedMap).isFrozen())
+				.isTrue();
+		assertThat(deserializedMap).isEmpty();
+		assertThat(lazyMap.get(key)).isEqualTo("value");
+	}
+
+	@Override
+	protected Map<Object, Object> createLazyMap() {
+		return LazyWeakIdentityHashMap.newLazyWeakIdentityHashMap();
+	}
+
+	@Override
+	protected Map<Object, Object> createBackingMap() {
+		return new IdentityHashMap<>();
+	}
+}
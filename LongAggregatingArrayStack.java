@@ -0,0 +1,201 @@
+package gakesson.util.collections;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * The {@link LongAggregatingArrayStack} class is the {@code long} specialisation
+ * of {@link AggregatingArrayStack}, i.e. a last-in-first-out (LIFO) stack of
+ * {@code long} values which answers the minimum, the maximum and a fold of all
+ * of its values in constant time, without boxing. The implementation is
+ * array-based and the capacity is unbounded.
+ *
+ * The minimum and maximum are always maintained, and the fold is maintained
+ * using the associative reducer provided upon construction, if any.
+ *
+ * This class is not thread-safe.
+ *
+ */
+public class LongAggregatingArrayStack
+{
+    private static final int DEFAULT_INITIAL_SIZE = 10;
+
+    private final LongBinaryOperator myReducer;
+    private long[] myElements;
+    private long[] myMins;
+    private long[] myMaxs;
+    private long[] myFolds;
+    private int mySize;
+
+    /**
+     * Creates a new {@link LongAggregatingArrayStack} answering the minimum and
+     * the maximum.
+     */
+    public LongAggregatingArrayStack()
+    {
+        this(null, DEFAULT_INITIAL_SIZE);
+    }
+
+    /**
+     * Creates a new {@link LongAggregatingArrayStack} with the provided initial
+     * size, answering the minimum, the maximum and the fold using the provided
+     * reducer, which may be {@code null} in case the fold isn't needed.
+     *
+     * @param reducer
+     *            The associative reducer of the values, e.g.
+     *            {@link Long#sum(long, long)}, or {@code null}.
+     * @param initialSize
+     *            The initial size.
+     */
+    public LongAggregatingArrayStack(LongBinaryOperator reducer, int initialSize)
+    {
+        myReducer = reducer;
+        myElements = new long[initialSize];
+        myMins = new long[initialSize];
+        myMaxs = new long[initialSize];
+
+        if (reducer != null)
+        {
+            myFolds = new long[initialSize];
+        }
+    }
+
+    /**
+     * Pushes the provided value onto the top of this stack.
+     *
+     * @param value
+     *            The value to push.
+     */
+    public void push(long value)
+    {
+        ensureStackCapacity(mySize + 1);
+        int index = mySize;
+
+        if (index == 0)
+        {
+            myMins[index] = value;
+            myMaxs[index] = value;
+        }
+        else
+        {
+            myMins[index] = Math.min(myMins[index - 1], value);
+            myMaxs[index] = Math.max(myMaxs[index - 1], value);
+        }
+
+        if (myReducer != null)
+        {
+            myFolds[index] = index == 0 ? value : myReducer.applyAsLong(myFolds[index - 1], value);
+        }
+
+        myElements[index] = value;
+        mySize++;
+    }
+
+    /**
+     * Removes and returns the value at the top of this stack.
+     *
+     * @return The top value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public long pop()
+    {
+        checkNotEmpty();
+        return myElements[--mySize];
+    }
+
+    /**
+     * Returns the value at the top of this stack without removing it.
+     *
+     * @return The top value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public long peek()
+    {
+        checkNotEmpty();
+        return myElements[mySize - 1];
+    }
+
+    /**
+     * Returns the minimum value of this stack.
+     *
+     * @return The minimum value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public long min()
+    {
+        checkNotEmpty();
+        return myMins[mySize - 1];
+    }
+
+    /**
+     * Returns the maximum value of this stack.
+     *
+     * @return The maximum value.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public long max()
+    {
+        checkNotEmpty();
+        return myMaxs[mySize - 1];
+    }
+
+    /**
+     * Returns the fold of all values of this stack from the bottom to the top
+     * using the reducer.
+     *
+     * @return The fold of the values.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     * @throws {@link IllegalStateException} if created without a reducer.
+     */
+    public long fold()
+    {
+        if (myReducer == null)
+        {
+            throw new IllegalStateException("Aggregate not maintained by this stack");
+        }
+
+        checkNotEmpty();
+        return myFolds[mySize - 1];
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Ensures that the capacity of the internal arrays is at least the
+     * provided capacity.
+     *
+     * @param requiredCapacity
+     */
+    private void ensureStackCapacity(int requiredCapacity)
+    {
+        if (requiredCapacity > myElements.length)
+        {
+            int newCapacity = ArrayStack.newStackCapacity(myElements.length, requiredCapacity);
+            myElements = Arrays.copyOf(myElements, newCapacity);
+            myMins = Arrays.copyOf(myMins, newCapacity);
+            myMaxs = Arrays.copyOf(myMaxs, newCapacity);
+
+            if (myReducer != null)
+            {
+                myFolds = Arrays.copyOf(myFolds, newCapacity);
+            }
+        }
+    }
+
+    private void checkNotEmpty()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+    }
+}
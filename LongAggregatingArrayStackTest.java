@@ -0,0 +1,40 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.EmptyStackException;
+
+import org.testng.annotations.Test;
+
+public class LongAggregatingArrayStackTest
+{
+    @Test
+    public void shouldMaintainAggregatesThroughPushAndPop()
+    {
+        LongAggregatingArrayStack stack = new LongAggregatingArrayStack(Math::max, 1);
+
+        stack.push(5L);
+        stack.push(Long.MAX_VALUE);
+        stack.push(Long.MIN_VALUE);
+        stack.push(3L);
+
+        assertThat(stack.min()).isEqualTo(Long.MIN_VALUE);
+        assertThat(stack.max()).isEqualTo(Long.MAX_VALUE);
+        assertThat(stack.fold()).isEqualTo(Long.MAX_VALUE);
+
+        stack.pop();
+        stack.pop();
+        stack.pop();
+
+        assertThat(stack.min()).isEqualTo(5L);
+        assertThat(stack.max()).isEqualTo(5L);
+        assertThat(stack.fold()).isEqualTo(5L);
+        assertThat(stack.size()).isEqualTo(1);
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenPeekingEmptyStack()
+    {
+        new LongAggregatingArrayStack().peek();
+    }
+}
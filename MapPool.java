@@ -0,0 +1,229 @@
+package gakesson.util.collections;
+
+import gakesson.util.misc.Stack;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of cleared {@link Map} instances which lazy maps obtain their
+ * backing {@link Map} from before allocating a new one, and which released
+ * lazy maps return their backing {@link Map} to (see
+ * {@link AbstractLazyMap#release()}).
+ *
+ * Pooled maps are kept per thread, hence acquiring and releasing never
+ * contends with other threads, and a map released by one thread is only
+ * reused by the same thread. Each thread retains at most
+ * {@link #getMaxPooledMaps()} maps, and maps which have held more than
+ * {@link #getMaxRetainedSize()} entries at any time are discarded rather than
+ * pooled, since their tables never shrink and would stay large after being
+ * cleared.
+ *
+ * Until a map has been released to this pool, acquiring returns {@code null}
+ * without looking up the pool of the calling thread, hence lazy maps which are
+ * never released pay no more than a volatile read for the pooling.
+ *
+ * This class is thread-safe.
+ *
+ * @param <M>
+ *            The type of maps held in this pool
+ */
+public final class MapPool<M extends Map<?, ?>> {
+
+	private static final int DEFAULT_MAX_POOLED_MAPS = 16;
+	private static final int DEFAULT_MAX_RETAINED_SIZE = 1024;
+
+	private final ThreadLocal<Stack<M>> myPooledMaps = new ThreadLocal<>();
+	private final LongAdder myHitCount = new LongAdder();
+	private final LongAdder myMissCount = new LongAdder();
+	private final LongAdder myRecycledCount = new LongAdder();
+	private final LongAdder myDiscardedCount = new LongAdder();
+	private volatile int myMaxPooledMaps = DEFAULT_MAX_POOLED_MAPS;
+	private volatile int myMaxRetainedSize = DEFAULT_MAX_RETAINED_SIZE;
+	private volatile boolean myHasReleased;
+
+	/**
+	 * Creates a new {@link MapPool} with the default limits.
+	 */
+	MapPool() {
+		// Nothing
+	}
+
+	/**
+	 * Retrieves a pooled, empty {@link Map} of the calling thread. Nothing is
+	 * looked up, nor counted as a miss, until a map has been released to this
+	 * pool.
+	 *
+	 * @return A pooled map, or {@code null} if the pool of the calling thread
+	 *         is empty.
+	 */
+	M acquire() {
+		if (!myHasReleased) {
+			return null;
+		}
+
+		Stack<M> pooledMaps = myPooledMaps.get();
+
+		if (pooledMaps == null || pooledMaps.isEmpty()) {
+			myMissCount.increment();
+			return null;
+		}
+
+		myHitCount.increment();
+		return pooledMaps.pop();
+	}
+
+	/**
+	 * Clears and returns the provided {@link Map} to the pool of the calling
+	 * thread, unless it has held too many entries or the pool is full.
+	 *
+	 * @param map
+	 *            The map to recycle.
+	 * @param peakSize
+	 *            The largest number of entries the map has held, which bounds
+	 *            the capacity of its table.
+	 * @return {@code true} if the map was pooled, else {@code false}.
+	 */
+	boolean release(M map, int peakSize) {
+		if (Math.max(peakSize, map.size()) > myMaxRetainedSize) {
+			myDiscardedCount.increment();
+			return false;
+		}
+
+		Stack<M> pooledMaps = myPooledMaps.get();
+
+		if (pooledMaps == null) {
+			pooledMaps = new ArrayStack<M>(0);
+			myPooledMaps.set(pooledMaps);
+		}
+
+		if (pooledMaps.size() >= myMaxPooledMaps) {
+			myDiscardedCount.increment();
+			return false;
+		}
+
+		map.clear();
+		pooledMaps.push(map);
+		myRecycledCount.increment();
+
+		if (!myHasReleased) {
+			myHasReleased = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Discards the maps pooled by the calling thread and restores the default
+	 * limits.
+	 */
+	void reset() {
+		myPooledMaps.remove();
+		myMaxPooledMaps = DEFAULT_MAX_POOLED_MAPS;
+		myMaxRetainedSize = DEFAULT_MAX_RETAINED_SIZE;
+	}
+
+	/**
+	 * Returns the maximum number of maps pooled per thread.
+	 *
+	 * @return The maximum number of maps pooled per thread.
+	 */
+	public int getMaxPooledMaps() {
+		return myMaxPooledMaps;
+	}
+
+	/**
+	 * Sets the maximum number of maps pooled per thread. Lowering the limit
+	 * doesn't evict maps already pooled, it only prevents further maps from
+	 * being pooled until the pools have drained below the new limit.
+	 *
+	 * @param maxPooledMaps
+	 *            The maximum number of maps pooled per thread, zero disables
+	 *            pooling.
+	 */
+	public void setMaxPooledMaps(int maxPooledMaps) {
+		checkNotNegative(maxPooledMaps);
+		myMaxPooledMaps = maxPooledMaps;
+	}
+
+	/**
+	 * Returns the maximum number of entries a map may have held in order to be
+	 * pooled when released.
+	 *
+	 * @return The maximum number of entries of a pooled map.
+	 */
+	public int getMaxRetainedSize() {
+		return myMaxRetainedSize;
+	}
+
+	/**
+	 * Sets the maximum number of entries a map may have held in order to be
+	 * pooled when released, which bounds the table capacity retained by pooled
+	 * maps.
+	 *
+	 * @param maxRetainedSize
+	 *            The maximum number of entries of a pooled map.
+	 */
+	public void setMaxRetainedSize(int maxRetainedSize) {
+		checkNotNegative(maxRetainedSize);
+		myMaxRetainedSize = maxRetainedSize;
+	}
+
+	/**
+	 * Returns the number of times a map was obtained from this pool.
+	 *
+	 * @return The number of pool hits.
+	 */
+	public long getHitCount() {
+		return myHitCount.sum();
+	}
+
+	/**
+	 * Returns the number of times this pool was empty when asked for a map,
+	 * causing a new map to be allocated. Maps allocated before any map has
+	 * been released to this pool are not counted.
+	 *
+	 * @return The number of pool misses.
+	 */
+	public long getMissCount() {
+		return myMissCount.sum();
+	}
+
+	/**
+	 * Returns the number of released maps which were pooled.
+	 *
+	 * @return The number of recycled maps.
+	 */
+	public long getRecycledCount() {
+		return myRecycledCount.sum();
+	}
+
+	/**
+	 * Returns the number of released maps which were discarded since the pool
+	 * was full or the map had held too many entries.
+	 *
+	 * @return The number of discarded maps.
+	 */
+	public long getDiscardedCount() {
+		return myDiscardedCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "MapPool[hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", recycled=" + getRecycledCount() + ", discarded="
+				+ getDiscardedCount() + ", maxPooledMaps=" + myMaxPooledMaps
+				+ ", maxRetainedSize=" + myMaxRetainedSize + "]";
+	}
+
+	/**
+	 * Verifies that the provided value is not negative, and if it is an
+	 * {@link IllegalArgumentException} is thrown.
+	 *
+	 * @param value
+	 */
+	private static void checkNotNegative(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value: " + value);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class MapPoolTest {
+
+	@Test
+	public void shouldNotCountMissBeforeAnyMapIsReleased() {
+		MapPool<Map<Object, Object>> pool = new MapPool<>();
+
+		assertThat(pool.acquire()).isNull();
+		assertThat(pool.getMissCount()).isZero();
+	}
+
+	@Test
+	public void shouldMissWhenPoolIsEmpty() {
+		MapPool<Map<Object, Object>> pool = new MapPool<>();
+		pool.release(new HashMap<>(), 0);
+		pool.acquire();
+
+		assertThat(pool.acquire()).isNull();
+		assertThat(pool.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldAcquireClearedReleasedMap() {
+		MapPool<Map<Object, Object>> pool = new MapPool<>();
+		Map<Object, Object> map = new HashMap<>();
+		map.put("key", "value");
+
+		assertThat(pool.release(map, map.size())).isTrue();
+		Map<Object, Object> acquiredMap = pool.acquire();
+
+		assertThat(acquiredMap).isSameAs(map);
+		assertThat(acquiredMap).isEmpty();
+		assertThat(pool.getRecycledCount()).isEqualTo(1);
+		assertThat(pool.getHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldDiscardMapWhenPoolIsFull() {
+		MapPool<Map<Object, Object>> pool = new MapPool<>();
+		pool.setMaxPooledMaps(1);
+
+		assertThat(pool.release(new HashMap<>(), 0)).isTrue();
+		assertThat(pool.release(new HashMap<>(), 0)).isFalse();
+		assertThat(pool.getDiscardedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldDiscardMapHoldingTooManyEntries() {
+		MapPool<Map<Object, Object>> pool = new MapPool<>();
+		pool.setMaxRetainedSize(1);
+		Map<Object, Object> map = new HashMap<>();
+		map.put("key", "value");
+		map.put("anotherKey", "value");
+
+		assertThat(pool.release(map, map.size())).isFalse();
+		assertThat(map).hasSize(2);
+		assertThat(pool.acquire()).isNull();
+	}
+
+	@Test
+	public void shouldDiscardMapWhichHasHeldTooManyEntries() {
+		MapPool<Map<Object, Object>> pool = new MapPool<>();
+		pool.setMaxRetainedSize(1);
+
+		assertThat(pool.release(new HashMap<>(), 2)).isFalse();
+		assertThat(pool.getDiscardedCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldNotShareMapsBetweenThreads() throws Exception {
+		final MapPool<Map<Object, Object>> pool = new MapPool<>();
+		pool.release(new HashMap<>(), 0);
+		final Object[] acquiredMap = new Object[1];
+
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				acquiredMap[0] = pool.acquire();
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertThat(acquiredMap[0]).isNull();
+		assertThat(pool.acquire()).isNotNull();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldNotAllowNegativeMaxPooledMaps() {
+		new MapPool<Map<Object, Object>>().setMaxPooledMaps(-1);
+	}
+}
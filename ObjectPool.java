@@ -0,0 +1,540 @@
+package gakesson.util.collections;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable objects, e.g. buffers or parsers which are
+ * expensive to allocate. At most {@link #getCapacity()} objects are alive at
+ * any time, i.e. created by the factory and either borrowed or pooled.
+ *
+ * Each thread has a slot holding the object it released last, hence a thread
+ * repeatedly borrowing and releasing an object never touches shared state other
+ * than the metrics. The other released objects are pooled in a
+ * {@link BlockingBoundedQueue}, backed by an {@link ArrayBlockingQueue} so that
+ * releasing does not allocate, which borrowing threads fall back to when their
+ * slot is empty. Once the capacity is reached, borrowing threads take the
+ * objects held by the slots of other threads, hence objects never get stuck in
+ * the slots of idle threads. While threads are waiting in
+ * {@link #borrow(long, TimeUnit)}, released objects are pooled in the shared
+ * queue rather than in the slots, so that the waiting threads are served.
+ *
+ * A released object is reset using the reset hook and then validated, and is
+ * discarded rather than pooled in case it is not valid, e.g. a buffer which
+ * has grown too large. Pooled objects which have not been borrowed since the
+ * previous call to {@link #evictIdle()} are evicted by it, hence calling it
+ * periodically, e.g. using a scheduled executor, evicts the objects which have
+ * been idle for (at least) the period. The slots of terminated threads are
+ * evicted as well.
+ *
+ * This class is thread-safe.
+ *
+ * @param <E>
+ *            The type of objects held in this pool
+ */
+public class ObjectPool<E>
+{
+    private static final Consumer<Object> NO_RESET = new Consumer<Object>()
+    {
+        @Override
+        public void accept(Object e)
+        {
+            // Nothing
+        }
+    };
+    private static final Predicate<Object> ALWAYS_VALID = new Predicate<Object>()
+    {
+        @Override
+        public boolean test(Object e)
+        {
+            return true;
+        }
+    };
+
+    private final int myCapacity;
+    private final Supplier<? extends E> myFactory;
+    private final Consumer<? super E> myResetHook;
+    private final Predicate<? super E> myValidator;
+    private final WaitStrategy myWaitStrategy;
+    private final BlockingBoundedQueue<E> myPooledObjects;
+    private final ConcurrentLinkedQueue<Slot<E>> mySlots = new ConcurrentLinkedQueue<Slot<E>>();
+    private final ThreadLocal<Slot<E>> myThreadSlot = new ThreadLocal<Slot<E>>()
+    {
+        @Override
+        protected Slot<E> initialValue()
+        {
+            Slot<E> slot = new Slot<E>(Thread.currentThread());
+            mySlots.offer(slot);
+            return slot;
+        }
+    };
+    private final AtomicInteger myLiveCount = new AtomicInteger();
+    private final AtomicInteger myWaiterCount = new AtomicInteger();
+    private final AtomicInteger myLowestPooledCount = new AtomicInteger();
+    private final LongAdder myCreatedCount = new LongAdder();
+    private final LongAdder myHitCount = new LongAdder();
+    private final LongAdder myEvictedCount = new LongAdder();
+    private final LongAdder myInvalidatedCount = new LongAdder();
+    private final LongAdder myTimeoutCount = new LongAdder();
+    private final BooleanSupplier myAvailable = new BooleanSupplier()
+    {
+        @Override
+        public boolean getAsBoolean()
+        {
+            return !myPooledObjects.isEmpty() || myLiveCount.get() < myCapacity || hasSlottedObject();
+        }
+    };
+
+    /**
+     * Creates a new {@link ObjectPool} without reset hook and validation, and
+     * which blocks threads waiting for an object.
+     *
+     * @param capacity
+     *            The maximum number of live objects.
+     * @param factory
+     *            The factory creating new objects.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public ObjectPool(int capacity, Supplier<? extends E> factory)
+    {
+        this(capacity, factory, NO_RESET, ALWAYS_VALID, WaitStrategies.blocking());
+    }
+
+    /**
+     * Creates a new {@link ObjectPool}.
+     *
+     * @param capacity
+     *            The maximum number of live objects.
+     * @param factory
+     *            The factory creating new objects, which must not return
+     *            null.
+     * @param resetHook
+     *            The hook resetting released objects, e.g. clearing a buffer.
+     * @param validator
+     *            The predicate telling whether a reset object may be pooled.
+     * @param waitStrategy
+     *            The wait strategy of threads waiting for an object, which
+     *            must not be shared with other pools or queues.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public ObjectPool(int capacity, Supplier<? extends E> factory, Consumer<? super E> resetHook,
+            Predicate<? super E> validator, WaitStrategy waitStrategy)
+    {
+        checkNotNull(factory);
+        checkNotNull(resetHook);
+        checkNotNull(validator);
+        checkNotNull(waitStrategy);
+
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        myCapacity = capacity;
+        myFactory = factory;
+        myResetHook = resetHook;
+        myValidator = validator;
+        myWaitStrategy = waitStrategy;
+        myPooledObjects = new BlockingBoundedQueue<E>(new ArrayBlockingQueue<E>(capacity), capacity, waitStrategy,
+                WaitStrategies.busySpin());
+    }
+
+    /**
+     * Borrows a pooled object, or creates a new object in case none is pooled
+     * and the capacity is not reached, else takes an object held by the slot
+     * of another thread.
+     *
+     * @return An object, or {@code null} if the capacity is reached and no
+     *         object is pooled.
+     */
+    public E tryBorrow()
+    {
+        Slot<E> slot = myThreadSlot.get();
+        E e = slot.get();
+
+        if (e != null && (e = slot.getAndSet(null)) != null)
+        {
+            myHitCount.increment();
+            return e;
+        }
+
+        e = myPooledObjects.poll();
+
+        if (e != null)
+        {
+            lowerPooledCount(myPooledObjects.size());
+            myHitCount.increment();
+            return e;
+        }
+
+        e = tryCreate();
+        return e != null ? e : trySteal();
+    }
+
+    /**
+     * Borrows a pooled object, or creates a new object in case none is pooled
+     * and the capacity is not reached, else waits up to the provided time for
+     * an object to be released.
+     *
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the timeout.
+     * @return An object, or {@code null} if the timeout elapsed.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    public E borrow(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        E e = tryBorrow();
+
+        if (e != null)
+        {
+            return e;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        myWaiterCount.incrementAndGet();
+
+        try
+        {
+            while ((e = tryBorrow()) == null)
+            {
+                long remainingNanos = deadline - System.nanoTime();
+
+                if (remainingNanos <= 0 || !myWaitStrategy.await(myAvailable, remainingNanos))
+                {
+                    myTimeoutCount.increment();
+                    return null;
+                }
+            }
+
+            return e;
+        }
+        finally
+        {
+            myWaiterCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Resets and returns the provided object to this pool, or discards it in
+     * case it is not valid. Only objects borrowed from this pool may be
+     * released, and only once per borrow.
+     *
+     * @param e
+     *            The borrowed object.
+     * @throws {@link NullPointerException} if the specified object is null.
+     */
+    public void release(E e)
+    {
+        checkNotNull(e);
+        myResetHook.accept(e);
+
+        if (!myValidator.test(e))
+        {
+            myInvalidatedCount.increment();
+            discarded();
+            return;
+        }
+
+        Slot<E> slot = myThreadSlot.get();
+
+        if (slot.get() == null && myWaiterCount.get() == 0)
+        {
+            // Only the owning thread sets the slot, hence it stays empty. A
+            // thread starting to wait concurrently either sees the object, or
+            // is signalled
+            slot.mySetCount++;
+            slot.set(e);
+
+            if (myWaiterCount.get() > 0)
+            {
+                myWaitStrategy.signalAll();
+            }
+
+            return;
+        }
+
+        if (!myPooledObjects.offer(e))
+        {
+            // Not borrowed from this pool, or released twice
+            discarded();
+        }
+    }
+
+    /**
+     * Evicts the pooled objects which have not been borrowed since the
+     * previous call to this method, and the objects held by the slots of
+     * terminated threads.
+     *
+     * @return The number of evicted objects.
+     */
+    public synchronized int evictIdle()
+    {
+        int evicted = 0;
+        Iterator<Slot<E>> iterator = mySlots.iterator();
+
+        while (iterator.hasNext())
+        {
+            Slot<E> slot = iterator.next();
+            Thread owner = slot.myOwner.get();
+            boolean terminated = owner == null || !owner.isAlive();
+            int setCount = slot.mySetCount;
+
+            if (terminated)
+            {
+                iterator.remove();
+            }
+
+            if ((terminated || setCount == slot.myEvictionSetCount) && slot.getAndSet(null) != null)
+            {
+                evicted++;
+            }
+
+            slot.myEvictionSetCount = setCount;
+        }
+
+        // The lowest number of pooled objects since the previous call were not
+        // needed by any borrower
+        int idle = myLowestPooledCount.getAndSet(Integer.MAX_VALUE);
+
+        for (int i = 0; i < idle && myPooledObjects.poll() != null; ++i)
+        {
+            evicted++;
+        }
+
+        myLowestPooledCount.set(myPooledObjects.size());
+
+        for (int i = 0; i < evicted; ++i)
+        {
+            discarded();
+        }
+
+        myEvictedCount.add(evicted);
+        return evicted;
+    }
+
+    /**
+     * Returns the maximum number of live objects.
+     *
+     * @return The capacity of this pool.
+     */
+    public int getCapacity()
+    {
+        return myCapacity;
+    }
+
+    /**
+     * Returns the number of live objects, i.e. created and not discarded.
+     *
+     * @return The number of live objects.
+     */
+    public int getLiveCount()
+    {
+        return myLiveCount.get();
+    }
+
+    /**
+     * Returns the number of objects pooled in the shared queue, not including
+     * the objects held by the slots of the threads.
+     *
+     * @return The number of objects in the shared queue.
+     */
+    public int getPooledCount()
+    {
+        return myPooledObjects.size();
+    }
+
+    /**
+     * Returns the number of threads waiting in {@link #borrow(long, TimeUnit)}.
+     *
+     * @return The number of waiting threads.
+     */
+    public int getWaiterCount()
+    {
+        return myWaiterCount.get();
+    }
+
+    /**
+     * Returns the number of objects created by the factory.
+     *
+     * @return The number of created objects.
+     */
+    public long getCreatedCount()
+    {
+        return myCreatedCount.sum();
+    }
+
+    /**
+     * Returns the number of borrows served by a pooled object.
+     *
+     * @return The number of pool hits.
+     */
+    public long getHitCount()
+    {
+        return myHitCount.sum();
+    }
+
+    /**
+     * Returns the number of objects evicted by {@link #evictIdle()}.
+     *
+     * @return The number of evicted objects.
+     */
+    public long getEvictedCount()
+    {
+        return myEvictedCount.sum();
+    }
+
+    /**
+     * Returns the number of released objects discarded since not valid.
+     *
+     * @return The number of invalidated objects.
+     */
+    public long getInvalidatedCount()
+    {
+        return myInvalidatedCount.sum();
+    }
+
+    /**
+     * Returns the number of borrows which timed out waiting for an object.
+     *
+     * @return The number of timeouts.
+     */
+    public long getTimeoutCount()
+    {
+        return myTimeoutCount.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ObjectPool[capacity=" + myCapacity + ", live=" + getLiveCount() + ", pooled=" + getPooledCount()
+                + ", waiters=" + getWaiterCount() + ", created=" + getCreatedCount() + ", hits=" + getHitCount()
+                + ", evicted=" + getEvictedCount() + ", invalidated=" + getInvalidatedCount() + ", timeouts="
+                + getTimeoutCount() + "]";
+    }
+
+    private E tryCreate()
+    {
+        int count;
+
+        do
+        {
+            count = myLiveCount.get();
+
+            if (count >= myCapacity)
+            {
+                return null;
+            }
+        }
+        while (!myLiveCount.compareAndSet(count, count + 1));
+
+        E e;
+
+        try
+        {
+            e = myFactory.get();
+            checkNotNull(e);
+        }
+        catch (RuntimeException | Error exception)
+        {
+            discarded();
+            throw exception;
+        }
+
+        myCreatedCount.increment();
+        return e;
+    }
+
+    private E trySteal()
+    {
+        for (Slot<E> slot : mySlots)
+        {
+            E e;
+
+            if (slot.get() != null && (e = slot.getAndSet(null)) != null)
+            {
+                myHitCount.increment();
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean hasSlottedObject()
+    {
+        for (Slot<E> slot : mySlots)
+        {
+            if (slot.get() != null)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void lowerPooledCount(int pooledCount)
+    {
+        int lowest;
+
+        while (pooledCount < (lowest = myLowestPooledCount.get())
+                && !myLowestPooledCount.compareAndSet(lowest, pooledCount))
+        {
+            // Retry
+        }
+    }
+
+    private void discarded()
+    {
+        myLiveCount.decrementAndGet();
+        myWaitStrategy.signalAll();
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * The slot of a thread, holding the object released last by the thread.
+     * The slot is only set by its thread, whereas it is emptied atomically by
+     * any borrowing thread and by {@link ObjectPool#evictIdle()}. The
+     * number of times the slot was set tells the latter whether it holds the
+     * same object as at its previous call.
+     */
+    private static final class Slot<E> extends AtomicReference<E>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final WeakReference<Thread> myOwner;
+        private int mySetCount;
+        private int myEvictionSetCount;
+
+        private Slot(Thread owner)
+        {
+            myOwner = new WeakReference<Thread>(owner);
+        }
+    }
+}
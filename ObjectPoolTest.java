@@ -0,0 +1,308 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.testng.annotations.Test;
+
+public class ObjectPoolTest
+{
+    private static final Supplier<StringBuilder> FACTORY = new Supplier<StringBuilder>()
+    {
+        @Override
+        public StringBuilder get()
+        {
+            return new StringBuilder();
+        }
+    };
+    private static final Consumer<StringBuilder> RESET = new Consumer<StringBuilder>()
+    {
+        @Override
+        public void accept(StringBuilder builder)
+        {
+            builder.setLength(0);
+        }
+    };
+    private static final Predicate<StringBuilder> NOT_TOO_LARGE = new Predicate<StringBuilder>()
+    {
+        @Override
+        public boolean test(StringBuilder builder)
+        {
+            return builder.capacity() <= 64;
+        }
+    };
+
+    @Test
+    public void shouldReuseObjectReleasedBySameThread()
+    {
+        ObjectPool<StringBuilder> pool = createPool(2);
+        StringBuilder builder = pool.tryBorrow();
+        pool.release(builder);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            StringBuilder borrowed = pool.tryBorrow();
+
+            assertThat(borrowed).isSameAs(builder);
+
+            pool.release(borrowed);
+        }
+
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+        assertThat(pool.getHitCount()).isEqualTo(10);
+        assertThat(pool.getPooledCount()).isZero();
+    }
+
+    @Test
+    public void shouldPoolObjectsInSharedQueueWhenSlotIsTaken()
+    {
+        ObjectPool<StringBuilder> pool = createPool(3);
+        StringBuilder first = pool.tryBorrow();
+        StringBuilder second = pool.tryBorrow();
+        pool.release(first);
+        pool.release(second);
+
+        assertThat(pool.getPooledCount()).isEqualTo(1);
+        assertThat(pool.tryBorrow()).isSameAs(first);
+        assertThat(pool.tryBorrow()).isSameAs(second);
+        assertThat(pool.getCreatedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldResetReleasedObject()
+    {
+        ObjectPool<StringBuilder> pool = createPool(1);
+        StringBuilder builder = pool.tryBorrow();
+        builder.append("content");
+        pool.release(builder);
+
+        assertThat(pool.tryBorrow().length()).isZero();
+    }
+
+    @Test
+    public void shouldDiscardInvalidObject()
+    {
+        ObjectPool<StringBuilder> pool = createPool(1);
+        StringBuilder builder = pool.tryBorrow();
+        builder.ensureCapacity(1024);
+        pool.release(builder);
+
+        assertThat(pool.getInvalidatedCount()).isEqualTo(1);
+        assertThat(pool.getLiveCount()).isZero();
+        assertThat(pool.tryBorrow()).isNotSameAs(builder);
+    }
+
+    @Test
+    public void shouldNotCreateMoreObjectsThanCapacity()
+    {
+        ObjectPool<StringBuilder> pool = createPool(2);
+
+        assertThat(pool.tryBorrow()).isNotNull();
+        assertThat(pool.tryBorrow()).isNotNull();
+        assertThat(pool.tryBorrow()).isNull();
+        assertThat(pool.getLiveCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldTimeOutWhenPoolIsExhausted() throws InterruptedException
+    {
+        ObjectPool<StringBuilder> pool = createPool(1);
+        pool.tryBorrow();
+
+        assertThat(pool.borrow(10, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(pool.getTimeoutCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldServeWaitingThreadWhenObjectIsReleased() throws Exception
+    {
+        final ObjectPool<StringBuilder> pool = createPool(1);
+        final StringBuilder builder = pool.tryBorrow();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<StringBuilder> future = executor.submit(new Callable<StringBuilder>()
+        {
+            @Override
+            public StringBuilder call() throws InterruptedException
+            {
+                return pool.borrow(10, TimeUnit.SECONDS);
+            }
+        });
+
+        while (pool.getWaiterCount() == 0)
+        {
+            Thread.sleep(1);
+        }
+
+        pool.release(builder);
+
+        assertThat(future.get(10, TimeUnit.SECONDS)).isSameAs(builder);
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldServeWaitingThreadWhenObjectIsDiscarded() throws Exception
+    {
+        final ObjectPool<StringBuilder> pool = createPool(1);
+        final StringBuilder builder = pool.tryBorrow();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<StringBuilder> future = executor.submit(new Callable<StringBuilder>()
+        {
+            @Override
+            public StringBuilder call() throws InterruptedException
+            {
+                return pool.borrow(10, TimeUnit.SECONDS);
+            }
+        });
+
+        while (pool.getWaiterCount() == 0)
+        {
+            Thread.sleep(1);
+        }
+
+        builder.ensureCapacity(1024);
+        pool.release(builder);
+        StringBuilder borrowed = future.get(10, TimeUnit.SECONDS);
+
+        assertThat(borrowed).isNotNull();
+        assertThat(borrowed).isNotSameAs(builder);
+        assertThat(pool.getCreatedCount()).isEqualTo(2);
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldEvictObjectsIdleSincePreviousEviction()
+    {
+        ObjectPool<StringBuilder> pool = createPool(3);
+        StringBuilder first = pool.tryBorrow();
+        StringBuilder second = pool.tryBorrow();
+        StringBuilder third = pool.tryBorrow();
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        pool.evictIdle();
+
+        // Borrowed and released again, the others stay idle
+        pool.release(pool.tryBorrow());
+
+        assertThat(pool.evictIdle()).isEqualTo(2);
+        assertThat(pool.getLiveCount()).isEqualTo(1);
+
+        assertThat(pool.evictIdle()).isEqualTo(1);
+        assertThat(pool.getLiveCount()).isZero();
+        assertThat(pool.getEvictedCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldEvictSlotOfTerminatedThread() throws InterruptedException
+    {
+        final ObjectPool<StringBuilder> pool = createPool(1);
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                pool.release(pool.tryBorrow());
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(pool.evictIdle()).isEqualTo(1);
+        assertThat(pool.getLiveCount()).isZero();
+    }
+
+    @Test
+    public void shouldTakeObjectFromSlotOfOtherThreadWhenCapacityIsReached() throws InterruptedException
+    {
+        final ObjectPool<StringBuilder> pool = createPool(1);
+        final StringBuilder[] released = new StringBuilder[1];
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                released[0] = pool.tryBorrow();
+                pool.release(released[0]);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(pool.tryBorrow()).isSameAs(released[0]);
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNeverExceedCapacityWhenAccessedConcurrently() throws Exception
+    {
+        final int capacity = 4;
+        final ObjectPool<StringBuilder> pool = createPool(capacity);
+        int numberOfThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        for (int t = 0; t < numberOfThreads; ++t)
+        {
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws InterruptedException
+                {
+                    for (int i = 0; i < 2000; ++i)
+                    {
+                        StringBuilder builder = pool.borrow(10, TimeUnit.SECONDS);
+
+                        if (builder == null || builder.length() != 0)
+                        {
+                            throw new AssertionError("Unexpected object " + builder);
+                        }
+
+                        builder.append(i);
+                        pool.release(builder);
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> future : futures)
+        {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+
+        assertThat(pool.getLiveCount()).isLessThanOrEqualTo(capacity);
+        assertThat(pool.getCreatedCount()).isLessThanOrEqualTo(capacity);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenReleasingNullObject()
+    {
+        createPool(1).release(null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldThrowExceptionWhenCreatingPoolWithZeroCapacity()
+    {
+        createPool(0);
+    }
+
+    private static ObjectPool<StringBuilder> createPool(int capacity)
+    {
+        return new ObjectPool<StringBuilder>(capacity, FACTORY, RESET, NOT_TOO_LARGE, WaitStrategies.blocking());
+    }
+}
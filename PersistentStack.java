@@ -0,0 +1,173 @@
+package gakesson.util.collections;
+
+import java.util.EmptyStackException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The {@link PersistentStack} class represents an immutable last-in-first-out
+ * (LIFO) stack of objects. It provides the read operations of
+ * {@link gakesson.util.misc.Stack}, whereas {@link #push(Object)} and
+ * {@link #pop()} leave the stack untouched and return a new version of it
+ * which shares structure with the original, in constant time. Hence every
+ * version is a snapshot which can be kept and shared at no cost, e.g. at the
+ * branch points of a backtracking search.
+ *
+ * A stack is either a node on top of another stack, or a base holding its
+ * elements in an array which is never modified, as created by
+ * {@link ArrayStack#toPersistentStack()} using a single array copy rather than
+ * one node per element.
+ *
+ * This class is immutable and thereby thread-safe.
+ *
+ */
+public final class PersistentStack<E> implements Iterable<E>
+{
+    private static final PersistentStack<Object> EMPTY = new PersistentStack<Object>(null, null, null, 0);
+
+    private final E myTop;
+    private final PersistentStack<E> myBelow;
+    private final E[] myBase;
+    private final int mySize;
+
+    private PersistentStack(E top, PersistentStack<E> below, E[] base, int size)
+    {
+        myTop = top;
+        myBelow = below;
+        myBase = base;
+        mySize = size;
+    }
+
+    /**
+     * Returns the empty {@link PersistentStack}.
+     *
+     * @return The empty stack.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentStack<E> empty()
+    {
+        return (PersistentStack<E>) EMPTY;
+    }
+
+    /**
+     * Returns a {@link PersistentStack} holding the elements of the provided
+     * array from the bottom to the top, taking ownership of the array which
+     * must not be modified afterwards.
+     *
+     * @param elements
+     *            The elements, with the top element last.
+     * @return The stack of the elements.
+     */
+    static <E> PersistentStack<E> ofOwnedArray(E[] elements)
+    {
+        return ofBase(elements, elements.length);
+    }
+
+    /**
+     * Returns a new version of this stack with the provided element on top.
+     *
+     * @param e
+     *            The element to push.
+     * @return The stack with the element on top.
+     */
+    public PersistentStack<E> push(E e)
+    {
+        return new PersistentStack<E>(e, this, null, mySize + 1);
+    }
+
+    /**
+     * Returns a new version of this stack without its top element.
+     *
+     * @return The stack without its top element.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public PersistentStack<E> pop()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+
+        return myBase == null ? myBelow : ofBase(myBase, mySize - 1);
+    }
+
+    /**
+     * Returns the top element of this stack.
+     *
+     * @return The top element.
+     * @throws {@link EmptyStackException} if this stack is empty.
+     */
+    public E peek()
+    {
+        if (isEmpty())
+        {
+            throw new EmptyStackException();
+        }
+
+        return myTop;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public int size()
+    {
+        return mySize;
+    }
+
+    /**
+     * Returns an iterator over the elements of this stack, from the top to
+     * the bottom.
+     *
+     * @return An iterator over the elements of this stack.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<E>()
+        {
+            private PersistentStack<E> myCurrent = PersistentStack.this;
+
+            @Override
+            public boolean hasNext()
+            {
+                return !myCurrent.isEmpty();
+            }
+
+            @Override
+            public E next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                E e = myCurrent.myTop;
+                myCurrent = myCurrent.pop();
+                return e;
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("[");
+        String separator = "";
+
+        for (E e : this)
+        {
+            builder.append(separator).append(e);
+            separator = ", ";
+        }
+
+        return builder.append("]").toString();
+    }
+
+    private static <E> PersistentStack<E> ofBase(E[] base, int size)
+    {
+        return size == 0 ? PersistentStack.<E> empty() : new PersistentStack<E>(base[size - 1], null, base, size);
+    }
+}
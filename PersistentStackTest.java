@@ -0,0 +1,112 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class PersistentStackTest
+{
+    @Test
+    public void shouldPushAndPopElementsInLIFO()
+    {
+        int numberOfElements = 100;
+        PersistentStack<Integer> stack = PersistentStack.empty();
+
+        for (int i = 0; i < numberOfElements; ++i)
+        {
+            stack = stack.push(i);
+        }
+
+        assertThat(stack.size()).isEqualTo(numberOfElements);
+
+        for (int i = numberOfElements - 1; i >= 0; --i)
+        {
+            assertThat(stack.peek()).isEqualTo(i);
+            stack = stack.pop();
+        }
+
+        assertThat(stack.isEmpty()).isTrue();
+        assertThat(stack).isSameAs(PersistentStack.<Integer> empty());
+    }
+
+    @Test
+    public void shouldLeaveEarlierVersionsUntouched()
+    {
+        PersistentStack<String> base = PersistentStack.<String> empty().push("a").push("b");
+        PersistentStack<String> left = base.push("c");
+        PersistentStack<String> right = base.pop().push("d");
+
+        assertThat(toList(base)).containsExactly("b", "a");
+        assertThat(toList(left)).containsExactly("c", "b", "a");
+        assertThat(toList(right)).containsExactly("d", "a");
+        assertThat(left.pop()).isSameAs(base);
+    }
+
+    @Test
+    public void shouldConvertArrayStackToPersistentStack()
+    {
+        ArrayStack<Integer> arrayStack = new ArrayStack<Integer>();
+        arrayStack.push(1);
+        arrayStack.push(2);
+        arrayStack.push(3);
+
+        PersistentStack<Integer> stack = arrayStack.toPersistentStack();
+        arrayStack.pop();
+        arrayStack.push(4);
+        PersistentStack<Integer> popped = stack.pop();
+        PersistentStack<Integer> pushed = popped.push(5);
+
+        assertThat(toList(stack)).containsExactly(3, 2, 1);
+        assertThat(toList(popped)).containsExactly(2, 1);
+        assertThat(toList(pushed)).containsExactly(5, 2, 1);
+        assertThat(stack.toString()).isEqualTo("[3, 2, 1]");
+    }
+
+    @Test
+    public void shouldConvertEmptyArrayStackToEmptyPersistentStack()
+    {
+        PersistentStack<Object> stack = new ArrayStack<Object>().toPersistentStack();
+
+        assertThat(stack.isEmpty()).isTrue();
+        assertThat(stack.iterator().hasNext()).isFalse();
+    }
+
+    @Test
+    public void shouldCreateStackOfOwnedArray()
+    {
+        PersistentStack<String> stack = PersistentStack.ofOwnedArray(new String[] { "bottom", "top" });
+
+        assertThat(stack.peek()).isEqualTo("top");
+        assertThat(stack.pop().peek()).isEqualTo("bottom");
+        assertThat(stack.pop().pop().isEmpty()).isTrue();
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenPoppingEmptyStack()
+    {
+        PersistentStack.empty().pop();
+    }
+
+    @Test(expectedExceptions = EmptyStackException.class)
+    public void shouldThrowExceptionWhenPeekingEmptyStack()
+    {
+        PersistentStack.empty().peek();
+    }
+
+    private static <E> List<E> toList(PersistentStack<E> stack)
+    {
+        List<E> list = new ArrayList<E>();
+
+        for (E e : stack)
+        {
+            list.add(e);
+        }
+
+        assertThat(list).hasSize(stack.size());
+        return list;
+    }
+}
@@ -0,0 +1,151 @@
+package gakesson.util.collections;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values using buckets whose bounds are powers of
+ * two. Bucket zero counts the value zero and bucket {@code i} counts the values
+ * in {@code [2^(i-1), 2^i)}, hence recording a value is a constant time
+ * operation and the relative error of a bucket is at most a factor of two,
+ * regardless of the magnitude of the values.
+ *
+ * Values are recorded by the owning component, and the counts may be read by
+ * any thread. This class is thread-safe.
+ *
+ */
+public final class PowerOfTwoHistogram
+{
+    private static final int NUMBER_OF_BUCKETS = 64;
+
+    private final AtomicLongArray myBuckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+    /**
+     * Creates a new, empty {@link PowerOfTwoHistogram}.
+     */
+    PowerOfTwoHistogram()
+    {
+        // Nothing
+    }
+
+    /**
+     * Records the provided value, negative values being recorded as zero.
+     *
+     * @param value
+     *            The value to record.
+     */
+    void record(long value)
+    {
+        myBuckets.incrementAndGet(bucketOf(Math.max(0, value)));
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return The number of buckets.
+     */
+    public int getNumberOfBuckets()
+    {
+        return NUMBER_OF_BUCKETS;
+    }
+
+    /**
+     * Returns the number of recorded values in the provided bucket.
+     *
+     * @param bucket
+     *            The bucket index.
+     * @return The number of values in the bucket.
+     */
+    public long getBucketCount(int bucket)
+    {
+        return myBuckets.get(bucket);
+    }
+
+    /**
+     * Returns the exclusive upper bound of the values in the provided bucket.
+     *
+     * @param bucket
+     *            The bucket index.
+     * @return The upper bound of the bucket, or {@link Long#MAX_VALUE} for the
+     *         last bucket.
+     */
+    public long getBucketUpperBound(int bucket)
+    {
+        return bucket == NUMBER_OF_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Returns the total number of recorded values.
+     *
+     * @return The number of recorded values.
+     */
+    public long getCount()
+    {
+        long count = 0;
+
+        for (int i = 0; i < NUMBER_OF_BUCKETS; ++i)
+        {
+            count += myBuckets.get(i);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns an upper bound of the value at the provided percentile, i.e. the
+     * upper bound of the bucket holding that value.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     * @return The upper bound of the value at the percentile, or zero if no
+     *         values have been recorded.
+     */
+    public long getPercentileUpperBound(double percentile)
+    {
+        long count = getCount();
+
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < NUMBER_OF_BUCKETS; ++i)
+        {
+            seen += myBuckets.get(i);
+
+            if (seen >= rank)
+            {
+                return getBucketUpperBound(i);
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("PowerOfTwoHistogram[");
+        String separator = "";
+
+        for (int i = 0; i < NUMBER_OF_BUCKETS; ++i)
+        {
+            long count = myBuckets.get(i);
+
+            if (count > 0)
+            {
+                builder.append(separator).append("<").append(getBucketUpperBound(i)).append("=").append(count);
+                separator = ", ";
+            }
+        }
+
+        return builder.append("]").toString();
+    }
+
+    private static int bucketOf(long value)
+    {
+        return Math.min(NUMBER_OF_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+}
@@ -0,0 +1,53 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+public class PowerOfTwoHistogramTest
+{
+    @Test
+    public void shouldRecordValuesInPowerOfTwoBuckets()
+    {
+        PowerOfTwoHistogram histogram = new PowerOfTwoHistogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(1000);
+
+        assertThat(histogram.getCount()).isEqualTo(5);
+        assertThat(histogram.getBucketCount(0)).isEqualTo(1);
+        assertThat(histogram.getBucketCount(1)).isEqualTo(1);
+        assertThat(histogram.getBucketCount(2)).isEqualTo(2);
+        assertThat(histogram.getBucketCount(10)).isEqualTo(1);
+        assertThat(histogram.getBucketUpperBound(10)).isEqualTo(1024);
+    }
+
+    @Test
+    public void shouldReturnPercentileUpperBound()
+    {
+        PowerOfTwoHistogram histogram = new PowerOfTwoHistogram();
+
+        assertThat(histogram.getPercentileUpperBound(50)).isEqualTo(0);
+
+        for (int i = 1; i <= 100; ++i)
+        {
+            histogram.record(i);
+        }
+
+        assertThat(histogram.getPercentileUpperBound(50)).isEqualTo(64);
+        assertThat(histogram.getPercentileUpperBound(100)).isEqualTo(128);
+        assertThat(histogram.getPercentileUpperBound(1)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRecordLargestValuesInLastBucket()
+    {
+        PowerOfTwoHistogram histogram = new PowerOfTwoHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.getBucketCount(histogram.getNumberOfBuckets() - 1)).isEqualTo(1);
+        assertThat(histogram.getPercentileUpperBound(99)).isEqualTo(Long.MAX_VALUE);
+    }
+}
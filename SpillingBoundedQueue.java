@@ -0,0 +1,528 @@
+package gakesson.util.collections;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * This is a FIFO queue which holds up to a given number of elements on the
+ * heap, and spills elements offered beyond that to append-only segment files
+ * which are memory-mapped from the provided directory. This is useful to
+ * absorb bursts which are much larger than what is reasonable to keep on the
+ * heap, without dropping elements.
+ *
+ * Once any element has been spilled, subsequent elements are spilled as well
+ * until the segment files have been consumed, hence the elements are always
+ * retrieved in the order they were offered. When the elements on the heap have
+ * been consumed, a batch of spilled elements is read back to the heap. A
+ * segment file is deleted as soon as all of its elements have been read back.
+ * The number of segment files is bounded, and an offer fails when the heap is
+ * full and no more segment files may be created.
+ *
+ * Elements are converted to and from bytes using the provided
+ * {@link Serializer}. The segment files are only scratch storage for this
+ * instance and cannot be used to recover the elements after a restart.
+ * {@link #close()} deletes the remaining segment files. Note that the memory
+ * of a mapped segment is only unmapped once its buffer is garbage collected,
+ * even though the file itself is deleted.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class SpillingBoundedQueue<E> extends AbstractQueue<E> implements Closeable
+{
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int RECORD_HEADER_SIZE = 4;
+
+    private final Queue<E> myMemoryQueue;
+    private final int myMemoryCapacity;
+    private final Path myDirectory;
+    private final Serializer<E> mySerializer;
+    private final int mySegmentSize;
+    private final int myMaxSegments;
+    private final ArrayDeque<Segment> mySegments = new ArrayDeque<Segment>();
+    private long mySpilledCount;
+    private long myTotalSpilledCount;
+
+    /**
+     * Creates a new {@link SpillingBoundedQueue} holding at most the provided
+     * number of elements on the heap, with an unbounded number of segment
+     * files of the default size.
+     *
+     * @param memoryCapacity
+     *            The maximum number of elements held on the heap.
+     * @param directory
+     *            The directory to create the segment files in.
+     * @param serializer
+     *            The serializer converting elements to and from bytes.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public SpillingBoundedQueue(int memoryCapacity, Path directory, Serializer<E> serializer)
+    {
+        this(memoryCapacity, directory, serializer, DEFAULT_SEGMENT_SIZE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new {@link SpillingBoundedQueue} holding at most the provided
+     * number of elements on the heap, and at most the provided number of
+     * segment files of the provided size.
+     *
+     * @param memoryCapacity
+     *            The maximum number of elements held on the heap.
+     * @param directory
+     *            The directory to create the segment files in.
+     * @param serializer
+     *            The serializer converting elements to and from bytes.
+     * @param segmentSize
+     *            The size in bytes of each segment file. A segment file is
+     *            made larger in case a single element doesn't fit.
+     * @param maxSegments
+     *            The maximum number of segment files at any time.
+     * @throws {@link IllegalArgumentException} if the capacity, the segment
+     *         size or the maximum number of segment files is less than 1.
+     */
+    public SpillingBoundedQueue(int memoryCapacity, Path directory, Serializer<E> serializer, int segmentSize,
+            int maxSegments)
+    {
+        checkNotNull(directory);
+        checkNotNull(serializer);
+
+        if (memoryCapacity < 1 || segmentSize < 1 || maxSegments < 1)
+        {
+            throw new IllegalArgumentException("Capacity, segment size and max segments must be positive");
+        }
+
+        myMemoryQueue = new ArrayDeque<E>(Math.min(memoryCapacity, 1024));
+        myMemoryCapacity = memoryCapacity;
+        myDirectory = directory;
+        mySerializer = serializer;
+        mySegmentSize = segmentSize;
+        myMaxSegments = maxSegments;
+    }
+
+    /**
+     * Returns the maximum number of elements held on the heap.
+     *
+     * @return The capacity of the heap part of this queue.
+     */
+    public int getMemoryCapacity()
+    {
+        return myMemoryCapacity;
+    }
+
+    /**
+     * Returns the number of elements currently held in segment files.
+     *
+     * @return The number of spilled elements.
+     */
+    public long getSpilledCount()
+    {
+        return mySpilledCount;
+    }
+
+    /**
+     * Returns the total number of elements which have been spilled to segment
+     * files since this queue was created.
+     *
+     * @return The total number of spilled elements.
+     */
+    public long getTotalSpilledCount()
+    {
+        return myTotalSpilledCount;
+    }
+
+    /**
+     * Returns the number of segment files currently in use.
+     *
+     * @return The number of segment files.
+     */
+    public int getSegmentCount()
+    {
+        return mySegments.size();
+    }
+
+    /**
+     * Inserts the specified element on the heap in case there is room and no
+     * elements are spilled, or else spills it to a segment file.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added, else {@code false} if it
+     *         must be spilled and the maximum number of segment files is
+     *         reached.
+     * @throws {@link NullPointerException} if the specified element is null.
+     * @throws {@link UncheckedIOException} if a segment file cannot be created.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+
+        if (mySpilledCount == 0 && myMemoryQueue.size() < myMemoryCapacity)
+        {
+            return myMemoryQueue.offer(e);
+        }
+
+        return spill(e);
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns {@code null} if
+     * the queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E poll()
+    {
+        refillMemoryQueue();
+        return myMemoryQueue.poll();
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or returns
+     * {@code null} if the queue is empty.
+     *
+     * @return The head of the queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E peek()
+    {
+        refillMemoryQueue();
+        return myMemoryQueue.peek();
+    }
+
+    /**
+     * Removes all elements from this queue and deletes all segment files.
+     */
+    @Override
+    public void clear()
+    {
+        myMemoryQueue.clear();
+        deleteSegments();
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in FIFO order,
+     * deserializing the spilled elements without consuming them. The iterator
+     * does not support removal, and the behavior is undefined in case the
+     * queue is modified during the iteration.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        final Iterator<E> memoryIterator = myMemoryQueue.iterator();
+        final Iterator<Segment> segmentIterator = mySegments.iterator();
+
+        return new Iterator<E>()
+        {
+            private ByteBuffer mySegmentBuffer;
+
+            @Override
+            public boolean hasNext()
+            {
+                if (memoryIterator.hasNext())
+                {
+                    return true;
+                }
+
+                while (mySegmentBuffer == null || !mySegmentBuffer.hasRemaining())
+                {
+                    if (!segmentIterator.hasNext())
+                    {
+                        return false;
+                    }
+
+                    mySegmentBuffer = segmentIterator.next().unreadRecords();
+                }
+
+                return true;
+            }
+
+            @Override
+            public E next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                if (memoryIterator.hasNext())
+                {
+                    return memoryIterator.next();
+                }
+
+                return mySerializer.deserialize(readRecord(mySegmentBuffer));
+            }
+        };
+    }
+
+    /**
+     * Returns the number of elements in this queue, on the heap and spilled.
+     *
+     * @return The size of this queue, or {@link Integer#MAX_VALUE} in case it
+     *         holds more elements than that.
+     */
+    @Override
+    public int size()
+    {
+        return (int) Math.min(Integer.MAX_VALUE, myMemoryQueue.size() + mySpilledCount);
+    }
+
+    /**
+     * Deletes all segment files, discarding the spilled elements. The elements
+     * on the heap remain.
+     */
+    @Override
+    public void close()
+    {
+        deleteSegments();
+    }
+
+    /**
+     * Appends the provided element to the last segment file, creating a new
+     * segment file in case it doesn't fit.
+     *
+     * @param e
+     * @return
+     */
+    private boolean spill(E e)
+    {
+        byte[] bytes = mySerializer.serialize(e);
+        Segment segment = mySegments.peekLast();
+
+        if (segment == null || !segment.write(bytes))
+        {
+            if (mySegments.size() == myMaxSegments)
+            {
+                return false;
+            }
+
+            segment = createSegment(Math.max(mySegmentSize, RECORD_HEADER_SIZE + bytes.length));
+            mySegments.offer(segment);
+            segment.write(bytes);
+        }
+
+        mySpilledCount++;
+        myTotalSpilledCount++;
+        return true;
+    }
+
+    /**
+     * Reads back spilled elements to the heap in case the heap is empty,
+     * deleting the segment files which have been fully read.
+     */
+    private void refillMemoryQueue()
+    {
+        if (!myMemoryQueue.isEmpty() || mySpilledCount == 0)
+        {
+            return;
+        }
+
+        while (myMemoryQueue.size() < myMemoryCapacity && mySpilledCount > 0)
+        {
+            Segment segment = mySegments.peek();
+
+            if (!segment.hasUnreadRecords())
+            {
+                mySegments.poll().delete();
+                continue;
+            }
+
+            myMemoryQueue.offer(mySerializer.deserialize(segment.read()));
+            mySpilledCount--;
+        }
+
+        if (mySpilledCount == 0)
+        {
+            deleteSegments();
+        }
+    }
+
+    private Segment createSegment(int size)
+    {
+        try
+        {
+            return new Segment(Files.createTempFile(myDirectory, "spill-", ".segment"), size);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteSegments()
+    {
+        Segment segment;
+
+        while ((segment = mySegments.poll()) != null)
+        {
+            segment.delete();
+        }
+
+        mySpilledCount = 0;
+    }
+
+    /**
+     * Reads the record at the position of the provided buffer, advancing the
+     * position past it.
+     *
+     * @param buffer
+     * @return
+     */
+    private static byte[] readRecord(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Converts elements to and from the bytes stored in the segment files.
+     *
+     * @param <E>
+     *            The type of elements converted
+     */
+    public interface Serializer<E>
+    {
+        /**
+         * Converts the provided element to bytes.
+         *
+         * @param element
+         *            The element to convert.
+         * @return The bytes representing the element.
+         */
+        byte[] serialize(E element);
+
+        /**
+         * Converts the provided bytes, as returned by
+         * {@link #serialize(Object)}, back to an element.
+         *
+         * @param bytes
+         *            The bytes to convert.
+         * @return The element represented by the bytes.
+         */
+        E deserialize(byte[] bytes);
+    }
+
+    /**
+     * A memory-mapped segment file holding length-prefixed records, written
+     * and read sequentially.
+     *
+     */
+    private static final class Segment
+    {
+        private final Path myPath;
+        private final MappedByteBuffer myBuffer;
+        private int myWritePosition;
+        private int myReadPosition;
+
+        private Segment(Path path, int size)
+        {
+            myPath = path;
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                myBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            catch (IOException e)
+            {
+                deleteFile(path);
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Appends the provided record in case it fits.
+         *
+         * @param bytes
+         * @return {@code true} if written, else {@code false}.
+         */
+        private boolean write(byte[] bytes)
+        {
+            if (myBuffer.capacity() - myWritePosition < RECORD_HEADER_SIZE + bytes.length)
+            {
+                return false;
+            }
+
+            myBuffer.position(myWritePosition);
+            myBuffer.putInt(bytes.length);
+            myBuffer.put(bytes);
+            myWritePosition = myBuffer.position();
+            return true;
+        }
+
+        private boolean hasUnreadRecords()
+        {
+            return myReadPosition < myWritePosition;
+        }
+
+        private byte[] read()
+        {
+            myBuffer.position(myReadPosition);
+            byte[] bytes = readRecord(myBuffer);
+            myReadPosition = myBuffer.position();
+            return bytes;
+        }
+
+        /**
+         * Returns a buffer over the records which haven't been read, without
+         * affecting this segment.
+         *
+         * @return
+         */
+        private ByteBuffer unreadRecords()
+        {
+            ByteBuffer buffer = myBuffer.duplicate();
+            buffer.limit(myWritePosition);
+            buffer.position(myReadPosition);
+            return buffer;
+        }
+
+        private void delete()
+        {
+            deleteFile(myPath);
+        }
+
+        private static void deleteFile(Path path)
+        {
+            try
+            {
+                Files.deleteIfExists(path);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SpillingBoundedQueueTest
+{
+    private static final int SEGMENT_SIZE = 64;
+
+    private Path myDirectory;
+
+    @BeforeMethod
+    public void initTestCase() throws IOException
+    {
+        myDirectory = Files.createTempDirectory("spilling-queue");
+    }
+
+    @AfterMethod
+    public void tearDownTestCase() throws IOException
+    {
+        for (Path file : listFiles())
+        {
+            Files.delete(file);
+        }
+
+        Files.delete(myDirectory);
+    }
+
+    @Test
+    public void shouldKeepElementsOnHeapUntilCapacityIsReached()
+    {
+        SpillingBoundedQueue<Integer> queue = createQueue(10, Integer.MAX_VALUE);
+        offerElements(queue, 0, 10);
+
+        assertThat(queue.getSpilledCount()).isEqualTo(0);
+        assertThat(queue.getSegmentCount()).isEqualTo(0);
+        assertThat(queue).hasSize(10);
+    }
+
+    @Test
+    public void shouldPollSpilledElementsInFIFO()
+    {
+        SpillingBoundedQueue<Integer> queue = createQueue(10, Integer.MAX_VALUE);
+        offerElements(queue, 0, 100);
+
+        assertThat(queue.getSpilledCount()).isEqualTo(90);
+        assertThat(queue.getSegmentCount()).isGreaterThan(1);
+        assertThat(queue).hasSize(100);
+
+        for (int i = 0; i < 50; ++i)
+        {
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+
+        offerElements(queue, 100, 150);
+
+        for (int i = 50; i < 150; ++i)
+        {
+            assertThat(queue.peek()).isEqualTo(i);
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.getTotalSpilledCount()).isEqualTo(140);
+    }
+
+    @Test
+    public void shouldDeleteSegmentsOnceConsumed() throws IOException
+    {
+        SpillingBoundedQueue<Integer> queue = createQueue(10, Integer.MAX_VALUE);
+        offerElements(queue, 0, 100);
+        int segments = queue.getSegmentCount();
+
+        assertThat(listFiles()).hasSize(segments);
+
+        for (int i = 0; i < 30; ++i)
+        {
+            queue.poll();
+        }
+
+        assertThat(listFiles().size()).isLessThan(segments);
+
+        while (!queue.isEmpty())
+        {
+            queue.poll();
+        }
+
+        assertThat(listFiles()).isEmpty();
+        assertThat(queue.getSegmentCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRejectElementsWhenMaxSegmentsIsReached()
+    {
+        SpillingBoundedQueue<Integer> queue = createQueue(10, 1);
+        int elementsPerSegment = SEGMENT_SIZE / 8;
+        offerElements(queue, 0, 10 + elementsPerSegment);
+
+        assertThat(queue.offer(-1)).isFalse();
+        assertThat(queue).hasSize(10 + elementsPerSegment);
+    }
+
+    @Test
+    public void shouldIterateOverHeapAndSpilledElementsInFIFO()
+    {
+        SpillingBoundedQueue<Integer> queue = createQueue(5, Integer.MAX_VALUE);
+        offerElements(queue, 0, 30);
+        queue.poll();
+
+        List<Integer> elements = new ArrayList<Integer>(queue);
+
+        assertThat(elements).hasSize(29);
+
+        for (int i = 0; i < 29; ++i)
+        {
+            assertThat(elements.get(i)).isEqualTo(i + 1);
+        }
+
+        assertThat(queue).hasSize(29);
+    }
+
+    @Test
+    public void shouldDeleteSegmentsWhenClosed() throws IOException
+    {
+        SpillingBoundedQueue<Integer> queue = createQueue(10, Integer.MAX_VALUE);
+        offerElements(queue, 0, 100);
+
+        queue.close();
+
+        assertThat(listFiles()).isEmpty();
+        assertThat(queue).hasSize(10);
+    }
+
+    private SpillingBoundedQueue<Integer> createQueue(int memoryCapacity, int maxSegments)
+    {
+        return new SpillingBoundedQueue<Integer>(memoryCapacity, myDirectory, new IntegerSerializer(), SEGMENT_SIZE,
+                maxSegments);
+    }
+
+    private static void offerElements(SpillingBoundedQueue<Integer> queue, int from, int to)
+    {
+        for (int i = from; i < to; ++i)
+        {
+            assertThat(queue.offer(i)).isTrue();
+        }
+    }
+
+    private List<Path> listFiles() throws IOException
+    {
+        List<Path> files = new ArrayList<Path>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(myDirectory))
+        {
+            for (Path file : stream)
+            {
+                files.add(file);
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Serializes an {@link Integer} to four bytes.
+     *
+     */
+    private static class IntegerSerializer implements SpillingBoundedQueue.Serializer<Integer>
+    {
+        @Override
+        public byte[] serialize(Integer element)
+        {
+            return ByteBuffer.allocate(4).putInt(element).array();
+        }
+
+        @Override
+        public Integer deserialize(byte[] bytes)
+        {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package gakesson.util.collections;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This is a thread-safe bounded queue which spreads its elements over a number
+ * of stripes, each being a separate {@link ConcurrentLinkedQueue} with its own
+ * element counter. A producer thread offers to the stripe chosen by its
+ * {@link ThreadProbe}, and moves to another stripe after contending with
+ * another producer on the counter, hence producers running on different cores
+ * mostly contend on different queues and counters rather than on a single
+ * head, tail and size. The counters are padded to separate cache lines, so
+ * that updating one counter doesn't invalidate the others.
+ *
+ * The capacity is divided into per stripe limits, initially evenly, which
+ * always sum up to the capacity. When the limit of a stripe is exhausted, the
+ * offering thread moves half of the unused limit of another stripe to its own
+ * stripe, i.e. the limits migrate to the stripes of busy producers, and an
+ * offer only fails when no stripe has any unused limit. The count and limit of
+ * a stripe are updated together atomically, hence the capacity is never
+ * exceeded.
+ *
+ * Elements are polled in round-robin order of the stripes, and each stripe is
+ * FIFO, meaning that the elements offered by one producer thread are polled in
+ * the order they were offered, as long as the thread doesn't move to another
+ * stripe. There is no ordering between elements offered by different producer
+ * threads. {@link #drainTo(Collection, int)} transfers
+ * the elements of all stripes in bulk.
+ *
+ * The {@link #size()} is the sum of the stripe counters and the
+ * {@link #iterator()} is weakly consistent, both as per
+ * {@link ConcurrentLinkedQueue}. This queue does not permit null elements.
+ *
+ * This class is thread-safe.
+ *
+ * @param <E>
+ *            The type of elements held in this collection
+ */
+public class StripedBoundedQueue<E> extends AbstractQueue<E>
+{
+    // Longs between two counters, spanning two 64 byte cache lines in order to
+    // also defeat adjacent line prefetching
+    private static final int STRIDE = 16;
+
+    private final Stripe<E>[] myStripes;
+    private final int myStripeMask;
+    private final int myCapacity;
+    private final AtomicInteger myPollIndex = new AtomicInteger();
+
+    /**
+     * Creates a new {@link StripedBoundedQueue} with the provided capacity and
+     * one stripe per available processor.
+     *
+     * @param capacity
+     *            The maximum capacity.
+     * @throws {@link IllegalArgumentException} if the capacity is less than 1.
+     */
+    public StripedBoundedQueue(int capacity)
+    {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new {@link StripedBoundedQueue} with the provided capacity and
+     * at least the provided number of stripes, rounded up to a power of two.
+     *
+     * @param capacity
+     *            The maximum capacity.
+     * @param numberOfStripes
+     *            The minimum number of stripes.
+     * @throws {@link IllegalArgumentException} if the capacity or the number of
+     *         stripes is less than 1.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public StripedBoundedQueue(int capacity, int numberOfStripes)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        if (numberOfStripes < 1 || numberOfStripes > 1 << 16)
+        {
+            throw new IllegalArgumentException("Number of stripes out of range: " + numberOfStripes);
+        }
+
+        int stripes = Integer.highestOneBit(numberOfStripes - 1) << 1;
+        stripes = Math.max(1, stripes);
+        myStripes = new Stripe[stripes];
+        AtomicLongArray states = new AtomicLongArray((stripes + 1) * STRIDE);
+
+        for (int i = 0; i < stripes; ++i)
+        {
+            int limit = capacity / stripes + (i < capacity % stripes ? 1 : 0);
+            myStripes[i] = new Stripe<E>(states, (i + 1) * STRIDE, limit);
+        }
+
+        myStripeMask = stripes - 1;
+        myCapacity = capacity;
+    }
+
+    /**
+     * Returns the maximum capacity of this {@link StripedBoundedQueue}.
+     *
+     * @return The maximum capacity of this queue.
+     */
+    public int getCapacity()
+    {
+        return myCapacity;
+    }
+
+    /**
+     * Returns the number of stripes of this {@link StripedBoundedQueue}.
+     *
+     * @return The number of stripes.
+     */
+    public int getNumberOfStripes()
+    {
+        return myStripes.length;
+    }
+
+    /**
+     * Inserts the specified element into the stripe of the calling thread, in
+     * case the capacity of this queue is not exhausted. In case the stripe was
+     * contended, the calling thread moves to another stripe for its next
+     * offer.
+     *
+     * @param e
+     *            The element to add.
+     * @return {@code true} if the element was added, else {@code false}.
+     * @throws {@link NullPointerException} if the specified element is null.
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        checkNotNull(e);
+        int index = ThreadProbe.get() & myStripeMask;
+        Stripe<E> stripe = myStripes[index];
+        int failedAttempts = stripe.tryReserve();
+
+        if (failedAttempts > 0)
+        {
+            ThreadProbe.advance();
+        }
+        else if (failedAttempts < 0 && !borrowAndReserve(index))
+        {
+            return false;
+        }
+
+        stripe.myQueue.offer(e);
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of the next non-empty stripe in
+     * round-robin order, or returns {@code null} if all stripes are empty.
+     *
+     * @return An element of this queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E poll()
+    {
+        int start = myPollIndex.getAndIncrement();
+
+        for (int i = 0; i < myStripes.length; ++i)
+        {
+            Stripe<E> stripe = myStripes[(start + i) & myStripeMask];
+            E e = stripe.poll();
+
+            if (e != null)
+            {
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of the stripe which is next in
+     * round-robin order and non-empty, or returns {@code null} if all stripes
+     * are empty. The element is not necessarily the one returned by a
+     * subsequent {@link #poll()}.
+     *
+     * @return An element of this queue, or {@code null} if the queue is empty.
+     */
+    @Override
+    public E peek()
+    {
+        int start = myPollIndex.get();
+
+        for (int i = 0; i < myStripes.length; ++i)
+        {
+            E e = myStripes[(start + i) & myStripeMask].myQueue.peek();
+
+            if (e != null)
+            {
+                return e;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes all available elements from this queue and adds them to the
+     * provided collection.
+     *
+     * @param collection
+     *            The collection to transfer elements into.
+     * @return The number of elements transferred.
+     * @throws {@link IllegalArgumentException} if the provided collection is
+     *         this queue.
+     */
+    public int drainTo(Collection<? super E> collection)
+    {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the provided number of available elements from this
+     * queue and adds them to the provided collection. The stripes are drained
+     * one at a time starting at the next stripe in round-robin order.
+     *
+     * @param collection
+     *            The collection to transfer elements into.
+     * @param maxElements
+     *            The maximum number of elements to transfer.
+     * @return The number of elements transferred.
+     * @throws {@link IllegalArgumentException} if the provided collection is
+     *         this queue.
+     */
+    public int drainTo(Collection<? super E> collection, int maxElements)
+    {
+        checkNotNull(collection);
+
+        if (collection == this)
+        {
+            throw new IllegalArgumentException("Not allowed due to same object");
+        }
+
+        int start = myPollIndex.getAndIncrement();
+        int drained = 0;
+
+        for (int i = 0; i < myStripes.length && drained < maxElements; ++i)
+        {
+            Stripe<E> stripe = myStripes[(start + i) & myStripeMask];
+            E e;
+
+            while (drained < maxElements && (e = stripe.poll()) != null)
+            {
+                collection.add(e);
+                drained++;
+            }
+        }
+
+        return drained;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue, if
+     * present.
+     *
+     * @param o
+     *            The element to remove.
+     * @return {@code true} if an element was removed, else {@code false}.
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        if (o != null)
+        {
+            for (Stripe<E> stripe : myStripes)
+            {
+                if (stripe.myQueue.remove(o))
+                {
+                    stripe.release();
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements in this queue,
+     * one stripe at a time. Removing using the iterator removes the last
+     * returned element from its stripe, unless it has already been removed
+     * (e.g. polled by another thread), in which case nothing is removed.
+     *
+     * @return An iterator over the elements contained in this collection.
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<E>()
+        {
+            private int myStripeIndex;
+            private Iterator<E> myIterator = myStripes[0].myQueue.iterator();
+            private Stripe<E> myLastStripe;
+            private E myLastReturned;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (!myIterator.hasNext())
+                {
+                    if (++myStripeIndex == myStripes.length)
+                    {
+                        return false;
+                    }
+
+                    myIterator = myStripes[myStripeIndex].myQueue.iterator();
+                }
+
+                return true;
+            }
+
+            @Override
+            public E next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+
+                myLastStripe = myStripes[myStripeIndex];
+                myLastReturned = myIterator.next();
+                return myLastReturned;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (myLastStripe == null)
+                {
+                    throw new IllegalStateException();
+                }
+
+                // The stripe iterator silently removes nothing in case the
+                // element has been polled, hence only released if removed
+                if (myLastStripe.myQueue.remove(myLastReturned))
+                {
+                    myLastStripe.release();
+                }
+
+                myLastStripe = null;
+                myLastReturned = null;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of elements in this queue, which is only a snapshot
+     * in case other threads are concurrently modifying the queue.
+     *
+     * @return The size of this queue.
+     */
+    @Override
+    public int size()
+    {
+        return sumCounts();
+    }
+
+    private int sumCounts()
+    {
+        int sum = 0;
+
+        for (Stripe<E> stripe : myStripes)
+        {
+            sum += stripe.count();
+        }
+
+        return sum;
+    }
+
+    /**
+     * Moves unused limit from another stripe to the stripe at the provided
+     * index, reserving one element of it.
+     *
+     * @param index
+     * @return {@code true} if reserved, else {@code false} if no other stripe
+     *         has any unused limit.
+     */
+    private boolean borrowAndReserve(int index)
+    {
+        for (int i = 1; i < myStripes.length; ++i)
+        {
+            int borrowed = myStripes[(index + i) & myStripeMask].takeUnusedLimit();
+
+            if (borrowed > 0)
+            {
+                myStripes[index].addLimitAndReserve(borrowed);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Verifies that the provided object is not null, and if it is a
+     * {@link NullPointerException} is thrown.
+     *
+     * @param object
+     */
+    private static void checkNotNull(Object object)
+    {
+        if (object == null)
+        {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * A stripe holding its own queue, element count and limit. The count and
+     * limit are packed into a single long, the limit in the upper half, in
+     * order to update them together atomically. The longs of all stripes are
+     * held by a shared {@link AtomicLongArray}, {@link #STRIDE} elements
+     * apart. The count is incremented
+     * before an element is inserted and decremented after an element is
+     * removed, hence it never underestimates the number of elements in the
+     * queue and never exceeds the limit.
+     *
+     * @param <E>
+     */
+    private static final class Stripe<E>
+    {
+        private final Queue<E> myQueue = new ConcurrentLinkedQueue<E>();
+        private final AtomicLongArray myStates;
+        private final int myIndex;
+
+        private Stripe(AtomicLongArray states, int index, int limit)
+        {
+            myStates = states;
+            myIndex = index;
+            myStates.set(index, (long) limit << 32);
+        }
+
+        /**
+         * Increments the count in case it is below the limit.
+         *
+         * @return The number of times another thread updated the stripe
+         *         concurrently before the count was incremented, or -1 if the
+         *         count reached the limit.
+         */
+        private int tryReserve()
+        {
+            int failedAttempts = 0;
+
+            for (;;)
+            {
+                long state = myStates.get(myIndex);
+
+                if (count(state) >= limit(state))
+                {
+                    return -1;
+                }
+
+                if (myStates.compareAndSet(myIndex, state, state + 1))
+                {
+                    return failedAttempts;
+                }
+
+                failedAttempts++;
+            }
+        }
+
+        /**
+         * Lowers the limit by half of the unused limit, rounded up.
+         *
+         * @return The amount the limit was lowered by.
+         */
+        private int takeUnusedLimit()
+        {
+            long state;
+            int taken;
+
+            do
+            {
+                state = myStates.get(myIndex);
+                int unused = limit(state) - count(state);
+
+                if (unused <= 0)
+                {
+                    return 0;
+                }
+
+                taken = (unused + 1) >>> 1;
+            }
+            while (!myStates.compareAndSet(myIndex, state, state - ((long) taken << 32)));
+
+            return taken;
+        }
+
+        /**
+         * Raises the limit by the provided amount and increments the count.
+         *
+         * @param amount
+         */
+        private void addLimitAndReserve(int amount)
+        {
+            myStates.addAndGet(myIndex, ((long) amount << 32) + 1);
+        }
+
+        private void release()
+        {
+            myStates.decrementAndGet(myIndex);
+        }
+
+        private int count()
+        {
+            return count(myStates.get(myIndex));
+        }
+
+        private E poll()
+        {
+            E e = myQueue.poll();
+
+            if (e != null)
+            {
+                release();
+            }
+
+            return e;
+        }
+
+        private static int count(long state)
+        {
+            return (int) state;
+        }
+
+        private static int limit(long state)
+        {
+            return (int) (state >>> 32);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+public class StripedBoundedQueueTest
+{
+    @Test
+    public void shouldRoundNumberOfStripesUpToPowerOfTwo()
+    {
+        assertThat(new StripedBoundedQueue<Integer>(100, 1).getNumberOfStripes()).isEqualTo(1);
+        assertThat(new StripedBoundedQueue<Integer>(100, 3).getNumberOfStripes()).isEqualTo(4);
+        assertThat(new StripedBoundedQueue<Integer>(100, 8).getNumberOfStripes()).isEqualTo(8);
+    }
+
+    @Test
+    public void shouldPollElementsOfSingleProducerInFIFO()
+    {
+        StripedBoundedQueue<Integer> queue = new StripedBoundedQueue<Integer>(100, 4);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            assertThat(queue.offer(i)).isTrue();
+        }
+
+        for (int i = 0; i < 100; ++i)
+        {
+            assertThat(queue.poll()).isEqualTo(i);
+        }
+
+        assertThat(queue.poll()).isNull();
+        assertThat(queue).isEmpty();
+    }
+
+    @Test
+    public void shouldBorrowCapacityOfIdleStripes()
+    {
+        StripedBoundedQueue<Integer> queue = new StripedBoundedQueue<Integer>(10, 4);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            assertThat(queue.offer(i)).isTrue();
+        }
+
+        assertThat(queue.offer(10)).isFalse();
+        assertThat(queue).hasSize(10);
+
+        queue.poll();
+
+        assertThat(queue.offer(10)).isTrue();
+    }
+
+    @Test
+    public void shouldRemoveElement()
+    {
+        StripedBoundedQueue<Integer> queue = new StripedBoundedQueue<Integer>(10, 4);
+        queue.offer(1);
+        queue.offer(2);
+
+        assertThat(queue.remove(Integer.valueOf(1))).isTrue();
+        assertThat(queue.remove(Integer.valueOf(1))).isFalse();
+        assertThat(new ArrayList<Integer>(queue)).containsExactly(2);
+        assertThat(queue).hasSize(1);
+    }
+
+    @Test
+    public void shouldNotExceedCapacityWhenRemovingPolledElementUsingIterator()
+    {
+        StripedBoundedQueue<Integer> queue = new StripedBoundedQueue<Integer>(2, 1);
+        queue.offer(1);
+        queue.offer(2);
+        Iterator<Integer> iterator = queue.iterator();
+        iterator.next();
+        queue.poll();
+        iterator.remove();
+
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.offer(3)).isTrue();
+        assertThat(queue.offer(4)).isFalse();
+        assertThat(queue).containsOnly(2, 3);
+    }
+
+    @Test
+    public void shouldDrainElementsOfAllProducers() throws Exception
+    {
+        int producers = 8;
+        int elementsPerProducer = 1000;
+        final StripedBoundedQueue<Long> queue = new StripedBoundedQueue<Long>(producers * elementsPerProducer, 4);
+        List<Thread> threads = startProducers(queue, producers, elementsPerProducer);
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        List<Long> drained = new ArrayList<Long>();
+
+        assertThat(queue.drainTo(drained, 10)).isEqualTo(10);
+        assertThat(queue.drainTo(drained)).isEqualTo(producers * elementsPerProducer - 10);
+        assertThat(queue).isEmpty();
+        verifyFIFOPerProducer(drained, threads, elementsPerProducer);
+    }
+
+    @Test
+    public void shouldNotExceedCapacityWhenProducersRunConcurrently() throws Exception
+    {
+        final StripedBoundedQueue<Long> queue = new StripedBoundedQueue<Long>(100, 4);
+        List<Thread> threads = startProducers(queue, 8, 1000);
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertThat(queue).hasSize(100);
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldNotAllowNullElements()
+    {
+        new StripedBoundedQueue<Integer>(10).offer(null);
+    }
+
+    /**
+     * Starts the provided number of threads, each offering the provided
+     * number of elements encoding the thread identifier and a sequence number.
+     *
+     * @param queue
+     * @param producers
+     * @param elementsPerProducer
+     * @return
+     */
+    private static List<Thread> startProducers(final StripedBoundedQueue<Long> queue, int producers,
+            final int elementsPerProducer)
+    {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < producers; ++i)
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    for (int sequence = 0; sequence < elementsPerProducer; ++sequence)
+                    {
+                        queue.offer(getId() * elementsPerProducer + sequence);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        startLatch.countDown();
+        return threads;
+    }
+
+    private static void verifyFIFOPerProducer(List<Long> drained, List<Thread> threads, int elementsPerProducer)
+    {
+        for (Thread thread : threads)
+        {
+            long expected = thread.getId() * elementsPerProducer;
+
+            for (Long element : drained)
+            {
+                if (element / elementsPerProducer == thread.getId())
+                {
+                    assertThat(element).isEqualTo(expected++);
+                }
+            }
+
+            assertThat(expected).isEqualTo((thread.getId() + 1) * elementsPerProducer);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package gakesson.util.collections;
+
+/**
+ * A per thread hash used to choose one of a number of stripes (e.g. of
+ * {@link StripedBoundedQueue} or the read buffers of
+ * {@link ConcurrentTinyLfuCache}). The probe of a thread is initially spread
+ * from its identifier, and is advanced by the thread when it contends with
+ * another thread on its stripe, moving it to another stripe, similar to the
+ * probe used by {@link java.util.concurrent.atomic.LongAdder}. Hence threads
+ * whose identifiers happen to collide don't keep contending on the same
+ * stripe.
+ *
+ * This class is thread-safe.
+ *
+ */
+final class ThreadProbe
+{
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+            int probe = (int) (id >>> 32);
+            return new int[] { probe != 0 ? probe : 1 };
+        }
+    };
+
+    private ThreadProbe()
+    {
+        // Nothing
+    }
+
+    /**
+     * Returns the probe of the calling thread.
+     *
+     * @return The probe, which is never zero.
+     */
+    static int get()
+    {
+        return PROBE.get()[0];
+    }
+
+    /**
+     * Advances the probe of the calling thread using a xorshift, e.g. after
+     * contending with another thread on the stripe chosen by the probe.
+     *
+     * @return The new probe, which is never zero.
+     */
+    static int advance()
+    {
+        int[] holder = PROBE.get();
+        int probe = holder[0];
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        holder[0] = probe;
+        return probe;
+    }
+}
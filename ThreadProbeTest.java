@@ -0,0 +1,52 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+public class ThreadProbeTest
+{
+    @Test
+    public void shouldKeepProbeUntilAdvanced()
+    {
+        int probe = ThreadProbe.get();
+
+        assertThat(ThreadProbe.get()).isEqualTo(probe);
+
+        int advancedProbe = ThreadProbe.advance();
+
+        assertThat(advancedProbe).isNotEqualTo(probe);
+        assertThat(ThreadProbe.get()).isEqualTo(advancedProbe);
+    }
+
+    @Test
+    public void shouldNeverAdvanceProbeToZero()
+    {
+        for (int i = 0; i < 100000; ++i)
+        {
+            assertThat(ThreadProbe.advance()).isNotEqualTo(0);
+        }
+    }
+
+    @Test
+    public void shouldNotAdvanceProbeOfOtherThread() throws InterruptedException
+    {
+        final int[] probes = new int[2];
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                probes[0] = ThreadProbe.get();
+                ThreadProbe.advance();
+                probes[1] = ThreadProbe.get();
+            }
+        });
+        int probe = ThreadProbe.get();
+        thread.start();
+        thread.join();
+
+        assertThat(ThreadProbe.get()).isEqualTo(probe);
+        assertThat(probes[1]).isNotEqualTo(probes[0]);
+    }
+}
@@ -0,0 +1,329 @@
+package gakesson.util.collections;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Factory methods for the {@link WaitStrategy} implementations. Each call
+ * returns a new instance with its own counters.
+ *
+ */
+public final class WaitStrategies
+{
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private WaitStrategies()
+    {
+        // Nothing
+    }
+
+    /**
+     * Returns a strategy which busy-spins until the condition holds. This
+     * gives the lowest latency, but occupies a core while waiting.
+     *
+     * @return A busy-spinning wait strategy.
+     */
+    public static WaitStrategy busySpin()
+    {
+        return new PhasedWaitStrategy(UNBOUNDED, 0, 0, 0);
+    }
+
+    /**
+     * Returns a strategy which busy-spins the provided number of times, and
+     * then yields between evaluations of the condition.
+     *
+     * @param spins
+     *            The number of evaluations while spinning.
+     * @return A spin-then-yield wait strategy.
+     */
+    public static WaitStrategy spinThenYield(int spins)
+    {
+        checkNotNegative(spins);
+        return new PhasedWaitStrategy(spins, UNBOUNDED, 0, 0);
+    }
+
+    /**
+     * Returns a strategy which busy-spins and yields the provided number of
+     * times, and then parks between evaluations of the condition, doubling
+     * the park time from the minimum up to the maximum. Parked threads are not
+     * woken up by {@link WaitStrategy#signalAll()}, hence the maximum park
+     * time bounds the wake-up latency.
+     *
+     * @param spins
+     *            The number of evaluations while spinning.
+     * @param yields
+     *            The number of evaluations while yielding.
+     * @param minParkTime
+     *            The initial park time.
+     * @param maxParkTime
+     *            The maximum park time.
+     * @param unit
+     *            The unit of the park times.
+     * @return A spin-yield-park wait strategy.
+     */
+    public static WaitStrategy spinYieldPark(int spins, int yields, long minParkTime, long maxParkTime,
+            TimeUnit unit)
+    {
+        checkNotNegative(spins);
+        checkNotNegative(yields);
+
+        if (minParkTime < 1 || maxParkTime < minParkTime)
+        {
+            throw new IllegalArgumentException("Invalid park times: " + minParkTime + ", " + maxParkTime);
+        }
+
+        return new PhasedWaitStrategy(spins, yields, unit.toNanos(minParkTime), unit.toNanos(maxParkTime));
+    }
+
+    /**
+     * Returns a strategy which blocks on a {@link Condition} until signalled.
+     * This releases the core while waiting, at the cost of the latency of
+     * waking up the thread.
+     *
+     * @return A blocking wait strategy.
+     */
+    public static WaitStrategy blocking()
+    {
+        return new BlockingWaitStrategy();
+    }
+
+    /**
+     * Verifies that the provided value is not negative, and if it is an
+     * {@link IllegalArgumentException} is thrown.
+     *
+     * @param value
+     */
+    private static void checkNotNegative(int value)
+    {
+        if (value < 0)
+        {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+    }
+
+    /**
+     * Returns the deadline of the provided timeout, or zero in case the
+     * timeout is infinite.
+     *
+     * @param timeoutNanos
+     * @return
+     */
+    private static long deadlineOf(long timeoutNanos)
+    {
+        return timeoutNanos == Long.MAX_VALUE ? 0 : System.nanoTime() + timeoutNanos;
+    }
+
+    /**
+     * The base of the strategies, counting the phases reached.
+     *
+     */
+    private abstract static class CountingWaitStrategy implements WaitStrategy
+    {
+        private final LongAdder[] myCounts = new LongAdder[Phase.values().length];
+
+        CountingWaitStrategy()
+        {
+            for (int i = 0; i < myCounts.length; ++i)
+            {
+                myCounts[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public long getCount(Phase phase)
+        {
+            return myCounts[phase.ordinal()].sum();
+        }
+
+        void reached(Phase phase)
+        {
+            myCounts[phase.ordinal()].increment();
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder(getClass().getSimpleName()).append("[");
+
+            for (Phase phase : Phase.values())
+            {
+                builder.append(phase == Phase.SPIN ? "" : ", ").append(phase).append("=").append(getCount(phase));
+            }
+
+            return builder.append("]").toString();
+        }
+    }
+
+    /**
+     * A strategy spinning, yielding and parking, in that order. A number of
+     * spins or yields of {@link #UNBOUNDED} never moves on to the next phase.
+     *
+     */
+    private static final class PhasedWaitStrategy extends CountingWaitStrategy
+    {
+        private final int mySpins;
+        private final int myYields;
+        private final long myMinParkNanos;
+        private final long myMaxParkNanos;
+
+        private PhasedWaitStrategy(int spins, int yields, long minParkNanos, long maxParkNanos)
+        {
+            mySpins = spins;
+            myYields = yields;
+            myMinParkNanos = minParkNanos;
+            myMaxParkNanos = maxParkNanos;
+        }
+
+        @Override
+        public boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException
+        {
+            if (condition.getAsBoolean())
+            {
+                return true;
+            }
+
+            long deadline = deadlineOf(timeoutNanos);
+            int spins = 0;
+            int yields = 0;
+            long parkNanos = 0;
+
+            do
+            {
+                if (Thread.interrupted())
+                {
+                    throw new InterruptedException();
+                }
+
+                long remainingNanos = deadline == 0 ? Long.MAX_VALUE : deadline - System.nanoTime();
+
+                if (remainingNanos <= 0)
+                {
+                    return false;
+                }
+
+                if (spins < mySpins)
+                {
+                    if (spins == 0)
+                    {
+                        reached(Phase.SPIN);
+                    }
+
+                    spins = mySpins == UNBOUNDED ? 1 : spins + 1;
+
+                    Thread.onSpinWait();
+                }
+                else if (yields < myYields)
+                {
+                    if (yields == 0)
+                    {
+                        reached(Phase.YIELD);
+                    }
+
+                    yields = myYields == UNBOUNDED ? 1 : yields + 1;
+
+                    Thread.yield();
+                }
+                else
+                {
+                    if (parkNanos == 0)
+                    {
+                        reached(Phase.PARK);
+                        parkNanos = myMinParkNanos;
+                    }
+                    else
+                    {
+                        parkNanos = Math.min(parkNanos * 2, myMaxParkNanos);
+                    }
+
+                    LockSupport.parkNanos(this, Math.min(parkNanos, remainingNanos));
+                }
+            }
+            while (!condition.getAsBoolean());
+
+            return true;
+        }
+
+        @Override
+        public void signalAll()
+        {
+            // Nothing, waiting threads re-evaluate their condition by themselves
+        }
+    }
+
+    /**
+     * A strategy blocking on a condition. The number of waiting threads is
+     * tracked in order to only take the lock when signalling in case a thread
+     * may be waiting.
+     *
+     */
+    private static final class BlockingWaitStrategy extends CountingWaitStrategy
+    {
+        private final ReentrantLock myLock = new ReentrantLock();
+        private final Condition mySignalled = myLock.newCondition();
+        private final AtomicInteger myWaiters = new AtomicInteger();
+
+        @Override
+        public boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException
+        {
+            if (condition.getAsBoolean())
+            {
+                return true;
+            }
+
+            reached(Phase.BLOCK);
+            long remainingNanos = timeoutNanos;
+            myLock.lockInterruptibly();
+
+            try
+            {
+                myWaiters.incrementAndGet();
+
+                while (!condition.getAsBoolean())
+                {
+                    if (timeoutNanos == Long.MAX_VALUE)
+                    {
+                        mySignalled.await();
+                    }
+                    else if (remainingNanos <= 0)
+                    {
+                        return false;
+                    }
+                    else
+                    {
+                        remainingNanos = mySignalled.awaitNanos(remainingNanos);
+                    }
+                }
+
+                return true;
+            }
+            finally
+            {
+                myWaiters.decrementAndGet();
+                myLock.unlock();
+            }
+        }
+
+        @Override
+        public void signalAll()
+        {
+            if (myWaiters.get() > 0)
+            {
+                myLock.lock();
+
+                try
+                {
+                    mySignalled.signalAll();
+                }
+                finally
+                {
+                    myLock.unlock();
+                }
+            }
+        }
+    }
+}
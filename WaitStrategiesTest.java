@@ -0,0 +1,138 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.Test;
+
+public class WaitStrategiesTest
+{
+    private static final BooleanSupplier NEVER = new BooleanSupplier()
+    {
+        @Override
+        public boolean getAsBoolean()
+        {
+            return false;
+        }
+    };
+
+    @Test
+    public void shouldNotCountAnyPhaseWhenConditionAlreadyHolds() throws Exception
+    {
+        WaitStrategy waitStrategy = WaitStrategies.spinYieldPark(10, 10, 1, 1, TimeUnit.MILLISECONDS);
+
+        assertThat(waitStrategy.await(new CountdownCondition(0), Long.MAX_VALUE)).isTrue();
+
+        for (WaitStrategy.Phase phase : WaitStrategy.Phase.values())
+        {
+            assertThat(waitStrategy.getCount(phase)).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void shouldOnlySpinWhenConditionHoldsDuringSpinPhase() throws Exception
+    {
+        WaitStrategy waitStrategy = WaitStrategies.spinYieldPark(10, 10, 1, 1, TimeUnit.MILLISECONDS);
+
+        assertThat(waitStrategy.await(new CountdownCondition(5), Long.MAX_VALUE)).isTrue();
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.SPIN)).isEqualTo(1);
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.YIELD)).isEqualTo(0);
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.PARK)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReachEachPhaseOnceWhenConditionHoldsDuringParkPhase() throws Exception
+    {
+        WaitStrategy waitStrategy = WaitStrategies.spinYieldPark(10, 10, 1, 1, TimeUnit.MICROSECONDS);
+
+        assertThat(waitStrategy.await(new CountdownCondition(25), Long.MAX_VALUE)).isTrue();
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.SPIN)).isEqualTo(1);
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.YIELD)).isEqualTo(1);
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.PARK)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepYieldingAfterSpinning() throws Exception
+    {
+        WaitStrategy waitStrategy = WaitStrategies.spinThenYield(10);
+
+        assertThat(waitStrategy.await(new CountdownCondition(1000), Long.MAX_VALUE)).isTrue();
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.YIELD)).isEqualTo(1);
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.PARK)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldTimeOutWhenConditionNeverHolds() throws Exception
+    {
+        WaitStrategy[] waitStrategies = { WaitStrategies.busySpin(), WaitStrategies.spinThenYield(10),
+                WaitStrategies.spinYieldPark(10, 10, 1, 1, TimeUnit.MILLISECONDS), WaitStrategies.blocking() };
+
+        for (WaitStrategy waitStrategy : waitStrategies)
+        {
+            assertThat(waitStrategy.await(NEVER, TimeUnit.MILLISECONDS.toNanos(5))).isFalse();
+        }
+
+        assertThat(waitStrategies[3].getCount(WaitStrategy.Phase.BLOCK)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldWakeUpBlockedThreadWhenSignalled() throws Exception
+    {
+        final WaitStrategy waitStrategy = WaitStrategies.blocking();
+        final CountdownCondition condition = new CountdownCondition(2);
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    waitStrategy.await(condition, Long.MAX_VALUE);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        thread.start();
+
+        while (thread.isAlive())
+        {
+            waitStrategy.signalAll();
+            thread.join(1);
+        }
+
+        assertThat(waitStrategy.getCount(WaitStrategy.Phase.BLOCK)).isEqualTo(1);
+    }
+
+    @Test(expectedExceptions = InterruptedException.class)
+    public void shouldThrowInterruptedExceptionWhenInterrupted() throws Exception
+    {
+        Thread.currentThread().interrupt();
+        WaitStrategies.busySpin().await(NEVER, Long.MAX_VALUE);
+    }
+
+    /**
+     * A condition which holds after having been evaluated a given number of
+     * times.
+     *
+     */
+    private static class CountdownCondition implements BooleanSupplier
+    {
+        private int myRemainingEvaluations;
+
+        CountdownCondition(int evaluations)
+        {
+            myRemainingEvaluations = evaluations;
+        }
+
+        @Override
+        public synchronized boolean getAsBoolean()
+        {
+            return myRemainingEvaluations-- <= 0;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package gakesson.util.collections;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A strategy for how a thread waits for a condition, e.g. a consumer waiting
+ * for a queue to become non-empty, trading CPU usage for wake-up latency. The
+ * implementations provided by {@link WaitStrategies} range from busy-spinning,
+ * which reacts within nanoseconds but occupies a core, to blocking, which
+ * releases the core but takes microseconds to wake up.
+ *
+ * The number of waits reaching each {@link Phase} is counted, in order to
+ * tell how often waiting threads actually yield, park or block. A wait
+ * strategy may be shared by threads waiting for the same condition, but
+ * should not be shared between unrelated conditions since the counters (and,
+ * for blocking strategies, the signals) would be mixed up.
+ *
+ */
+public interface WaitStrategy
+{
+    /**
+     * Waits until the provided condition holds, the timeout elapses or the
+     * calling thread is interrupted. The condition is evaluated by the calling
+     * thread, and must be thread-safe.
+     *
+     * @param condition
+     *            The condition to wait for.
+     * @param timeoutNanos
+     *            The maximum time to wait in nanoseconds, or
+     *            {@link Long#MAX_VALUE} to wait without timeout.
+     * @return {@code true} if the condition holds, else {@code false} if the
+     *         timeout elapsed.
+     * @throws InterruptedException
+     *             If interrupted while waiting.
+     */
+    boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * Wakes up the threads waiting in {@link #await(BooleanSupplier, long)}
+     * in order for them to re-evaluate their condition. Must be called after
+     * every change which may make the condition hold.
+     */
+    void signalAll();
+
+    /**
+     * Returns the number of waits which have reached the provided phase.
+     *
+     * @param phase
+     *            The phase.
+     * @return The number of waits reaching the phase.
+     */
+    long getCount(Phase phase);
+
+    /**
+     * The phases a waiting thread goes through. A wait reaches a phase in case
+     * the condition did not hold during all preceding phases.
+     *
+     */
+    enum Phase
+    {
+        /**
+         * Busy-spinning, re-evaluating the condition without giving up the
+         * core.
+         */
+        SPIN,
+        /**
+         * Yielding the core to other runnable threads between evaluations.
+         */
+        YIELD,
+        /**
+         * Parking for a bounded time between evaluations.
+         */
+        PARK,
+        /**
+         * Blocking until signalled.
+         */
+        BLOCK
+    }
+}
@@ -0,0 +1,390 @@
+package gakesson.util.collections;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A hash table based {@link Map} with weak keys which are compared by
+ * reference and hashed using {@link System#identityHashCode(Object)}, i.e. a
+ * combination of {@link java.util.WeakHashMap} and
+ * {@link java.util.IdentityHashMap}. Values are compared by reference as well,
+ * like {@link java.util.IdentityHashMap}. An entry is removed once its key has
+ * been garbage collected, whereas its value is held strongly until then.
+ *
+ * Unlike {@link java.util.WeakHashMap}, which expunges all cleared entries at
+ * once, each operation expunges at most a small batch of the entries whose
+ * keys have been cleared, as dequeued from a {@link ReferenceQueue}, hence the
+ * cost of expunging is spread over the operations and the table is never
+ * swept. As a consequence, {@link #size()} may include entries whose keys have
+ * been cleared but which are not yet expunged, whereas the views never return
+ * such entries.
+ *
+ * This class is not thread-safe.
+ *
+ */
+final class WeakIdentityHashMap<K, V> extends AbstractMap<K, V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	private static final int EXPUNGE_BATCH_SIZE = 16;
+	private static final Object NULL_KEY = new Object();
+
+	private final ReferenceQueue<Object> myQueue = new ReferenceQueue<>();
+	private WeakEntry<K, V>[] myTable;
+	private int mySize;
+	private int myModCount;
+	private Set<Entry<K, V>> myEntrySet;
+
+	/**
+	 * Creates a new, empty {@link WeakIdentityHashMap}.
+	 */
+	WeakIdentityHashMap() {
+		this(DEFAULT_CAPACITY * 3 / 4);
+	}
+
+	/**
+	 * Creates a new, empty {@link WeakIdentityHashMap} sized to hold the
+	 * expected number of entries without resizing.
+	 *
+	 * @param expectedSize
+	 *            The expected number of entries.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	WeakIdentityHashMap(int expectedSize) {
+		int minimumCapacity = AbstractLazyMap.hashMapCapacity(expectedSize);
+		int capacity = minimumCapacity >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY
+				: Integer.highestOneBit(Math.max(minimumCapacity, 2) - 1) << 1;
+		myTable = new WeakEntry[capacity];
+	}
+
+	@Override
+	public int size() {
+		expungeStaleEntries();
+		return mySize;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return getEntry(key) != null;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		for (Entry<K, V> entry : entrySet()) {
+			if (entry.getValue() == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		WeakEntry<K, V> entry = getEntry(key);
+		return entry != null ? entry.myValue : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		expungeStaleEntries();
+		Object maskedKey = mask(key);
+		int hash = System.identityHashCode(maskedKey);
+		int index = hash & (myTable.length - 1);
+
+		for (WeakEntry<K, V> entry = myTable[index]; entry != null; entry = entry.myNext) {
+			if (entry.get() == maskedKey) {
+				V oldValue = entry.myValue;
+				entry.myValue = value;
+				return oldValue;
+			}
+		}
+
+		myModCount++;
+		myTable[index] = new WeakEntry<>(maskedKey, value, hash, myTable[index], myQueue);
+
+		if (++mySize > myTable.length - (myTable.length >>> 2)) {
+			resize();
+		}
+		return null;
+	}
+
+	@Override
+	public V remove(Object key) {
+		expungeStaleEntries();
+		Object maskedKey = mask(key);
+		int index = System.identityHashCode(maskedKey) & (myTable.length - 1);
+
+		for (WeakEntry<K, V> entry = myTable[index]; entry != null; entry = entry.myNext) {
+			if (entry.get() == maskedKey) {
+				myModCount++;
+				unlink(entry);
+				return entry.myValue;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void clear() {
+		// Drop the entries already enqueued, they refer to the old table
+		while (myQueue.poll() != null) {
+			// Nothing
+		}
+
+		myModCount++;
+		mySize = 0;
+
+		for (int i = 0; i < myTable.length; ++i) {
+			myTable[i] = null;
+		}
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		if (myEntrySet == null) {
+			myEntrySet = new EntrySet();
+		}
+		return myEntrySet;
+	}
+
+	private WeakEntry<K, V> getEntry(Object key) {
+		expungeStaleEntries();
+		Object maskedKey = mask(key);
+		int index = System.identityHashCode(maskedKey) & (myTable.length - 1);
+
+		for (WeakEntry<K, V> entry = myTable[index]; entry != null; entry = entry.myNext) {
+			if (entry.get() == maskedKey) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Expunges at most {@link #EXPUNGE_BATCH_SIZE} entries whose keys have
+	 * been cleared.
+	 */
+	@SuppressWarnings("unchecked")
+	private void expungeStaleEntries() {
+		for (int i = 0; i < EXPUNGE_BATCH_SIZE; ++i) {
+			WeakEntry<K, V> stale = (WeakEntry<K, V>) myQueue.poll();
+
+			if (stale == null) {
+				return;
+			}
+			unlink(stale);
+			stale.myValue = null;
+		}
+	}
+
+	/**
+	 * Unlinks the provided entry from its bucket, in case it is still in the
+	 * table. The entry's next reference is kept, so that iterators positioned
+	 * at it may proceed.
+	 *
+	 * @param entry
+	 */
+	private void unlink(WeakEntry<K, V> entry) {
+		int index = entry.myHash & (myTable.length - 1);
+		WeakEntry<K, V> previous = null;
+
+		for (WeakEntry<K, V> current = myTable[index]; current != null; current = current.myNext) {
+			if (current == entry) {
+				if (previous == null) {
+					myTable[index] = entry.myNext;
+				} else {
+					previous.myNext = entry.myNext;
+				}
+				mySize--;
+				return;
+			}
+			previous = current;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void resize() {
+		WeakEntry<K, V>[] oldTable = myTable;
+
+		if (oldTable.length == MAXIMUM_CAPACITY) {
+			return;
+		}
+
+		WeakEntry<K, V>[] newTable = new WeakEntry[oldTable.length << 1];
+		int mask = newTable.length - 1;
+
+		for (WeakEntry<K, V> entry : oldTable) {
+			while (entry != null) {
+				WeakEntry<K, V> next = entry.myNext;
+
+				if (entry.get() == null) {
+					// Cleared, and dequeued later without being found
+					mySize--;
+				} else {
+					int index = entry.myHash & mask;
+					entry.myNext = newTable[index];
+					newTable[index] = entry;
+				}
+				entry = next;
+			}
+		}
+		myTable = newTable;
+	}
+
+	private static Object mask(Object key) {
+		return key == null ? NULL_KEY : key;
+	}
+
+	/**
+	 * An entry, which is a weak reference to its key.
+	 */
+	private static final class WeakEntry<K, V> extends WeakReference<Object>
+			implements Entry<K, V> {
+
+		private final int myHash;
+		private V myValue;
+		private WeakEntry<K, V> myNext;
+
+		private WeakEntry(Object key, V value, int hash, WeakEntry<K, V> next,
+				ReferenceQueue<Object> queue) {
+			super(key, queue);
+			myValue = value;
+			myHash = hash;
+			myNext = next;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public K getKey() {
+			Object key = get();
+			return key == NULL_KEY ? null : (K) key;
+		}
+
+		@Override
+		public V getValue() {
+			return myValue;
+		}
+
+		@Override
+		public V setValue(V value) {
+			V oldValue = myValue;
+			myValue = value;
+			return oldValue;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> entry = (Entry<?, ?>) o;
+			return getKey() == entry.getKey() && myValue == entry.getValue();
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(getKey())
+					^ System.identityHashCode(myValue);
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + myValue;
+		}
+	}
+
+	/**
+	 * The entry set view, iterating over the entries whose keys are not
+	 * cleared, and holding the keys of the next and the last returned entry
+	 * strongly so that they are not cleared while being iterated.
+	 */
+	private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+		@Override
+		public Iterator<Entry<K, V>> iterator() {
+			return new Iterator<Entry<K, V>>() {
+
+				private final WeakEntry<K, V>[] myIteratedTable = myTable;
+				private int myIndex = myIteratedTable.length;
+				private WeakEntry<K, V> myEntry;
+				private WeakEntry<K, V> myLastReturned;
+				private Object myNextKey;
+				private Object myCurrentKey;
+				private int myExpectedModCount = myModCount;
+
+				@Override
+				public boolean hasNext() {
+					while (myNextKey == null) {
+						WeakEntry<K, V> entry = myEntry;
+
+						while (entry == null && myIndex > 0) {
+							entry = myIteratedTable[--myIndex];
+						}
+
+						if (entry == null) {
+							return false;
+						}
+						myNextKey = entry.get();
+						myEntry = myNextKey == null ? entry.myNext : entry;
+					}
+					return true;
+				}
+
+				@Override
+				public Entry<K, V> next() {
+					if (myModCount != myExpectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					myLastReturned = myEntry;
+					myEntry = myEntry.myNext;
+					myCurrentKey = myNextKey;
+					myNextKey = null;
+					return myLastReturned;
+				}
+
+				@Override
+				public void remove() {
+					if (myLastReturned == null) {
+						throw new IllegalStateException();
+					}
+
+					if (myModCount != myExpectedModCount) {
+						throw new ConcurrentModificationException();
+					}
+
+					unlink(myLastReturned);
+					myLastReturned = null;
+					myCurrentKey = null;
+					myExpectedModCount = ++myModCount;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return WeakIdentityHashMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			WeakIdentityHashMap.this.clear();
+		}
+	}
+}
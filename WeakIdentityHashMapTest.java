@@ -0,0 +1,101 @@
+package gakesson.util.collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.testng.annotations.Test;
+
+public class WeakIdentityHashMapTest {
+
+	@Test
+	public void shouldBehaveAsIdentityHashMapWhileKeysAreReachable() {
+		Map<Object, Object> map = new WeakIdentityHashMap<>();
+		Map<Object, Object> expected = new IdentityHashMap<>();
+		List<Object> keys = new ArrayList<>();
+
+		for (int i = 0; i < 1000; ++i) {
+			Object key = new Integer(i % 100);
+			Object value = new Integer(i);
+			keys.add(key);
+			map.put(key, value);
+			expected.put(key, value);
+		}
+
+		for (int i = 0; i < 1000; i += 3) {
+			assertThat(map.remove(keys.get(i))).isEqualTo(
+					expected.remove(keys.get(i)));
+		}
+
+		assertThat(map).hasSize(expected.size());
+		assertThat(map).isEqualTo(expected);
+		assertThat(map.hashCode()).isEqualTo(expected.hashCode());
+	}
+
+	@Test
+	public void shouldSupportNullKey() {
+		Map<Object, Object> map = new WeakIdentityHashMap<>();
+
+		map.put(null, "value");
+
+		assertThat(map.containsKey(null)).isTrue();
+		assertThat(map.get(null)).isEqualTo("value");
+		assertThat(map.keySet().iterator().next()).isNull();
+		assertThat(map.remove(null)).isEqualTo("value");
+		assertThat(map).isEmpty();
+	}
+
+	@Test
+	public void shouldRemoveEntriesThroughIterator() {
+		Map<Object, Object> map = new WeakIdentityHashMap<>();
+		List<Object> keys = new ArrayList<>();
+
+		for (int i = 0; i < 50; ++i) {
+			Object key = new Object();
+			keys.add(key);
+			map.put(key, i);
+		}
+
+		for (Iterator<Entry<Object, Object>> iterator = map.entrySet()
+				.iterator(); iterator.hasNext();) {
+			if ((Integer) iterator.next().getValue() % 2 == 0) {
+				iterator.remove();
+			}
+		}
+
+		assertThat(map).hasSize(25);
+		assertThat(map.containsKey(keys.get(0))).isFalse();
+		assertThat(map.containsKey(keys.get(1))).isTrue();
+	}
+
+	@Test
+	public void shouldExpungeClearedEntriesIncrementally()
+			throws InterruptedException {
+		Map<Object, Object> map = new WeakIdentityHashMap<>();
+		Object reachable = new Object();
+		map.put(reachable, "value");
+
+		for (int i = 0; i < 100; ++i) {
+			map.put(new Object(), i);
+		}
+
+		int previousSize = map.size();
+
+		for (int i = 0; i < 100 && previousSize > 1; ++i) {
+			System.gc();
+			Thread.sleep(10);
+			int size = map.size();
+
+			assertThat(previousSize - size).isLessThanOrEqualTo(16);
+			previousSize = size;
+		}
+
+		assertThat(map).hasSize(1);
+		assertThat(map.get(reachable)).isEqualTo("value");
+	}
+}
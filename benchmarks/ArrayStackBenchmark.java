@@ -0,0 +1,114 @@
+package gakesson.util.collections.benchmarks;
+
+import gakesson.util.collections.ArrayStack;
+import gakesson.util.misc.Stack;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures pushing a number of elements onto, and popping them off, an
+ * {@link ArrayStack} compared to an {@link ArrayDeque} used as a stack. Both
+ * the pre-sized case (the stack never grows) and the default-sized case (the
+ * stack grows while pushing) are measured.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ArrayStackBenchmark
+{
+    @Param({ "16", "1024", "65536" })
+    private int myNumberOfElements;
+
+    private Object[] myElements;
+
+    @Setup
+    public void setUp()
+    {
+        myElements = new Object[myNumberOfElements];
+
+        for (int i = 0; i < myNumberOfElements; ++i)
+        {
+            myElements[i] = Integer.valueOf(i);
+        }
+    }
+
+    @Benchmark
+    public void arrayStackPushPop(Blackhole blackhole)
+    {
+        pushAndPop(new ArrayStack<Object>(), blackhole);
+    }
+
+    @Benchmark
+    public void presizedArrayStackPushPop(Blackhole blackhole)
+    {
+        pushAndPop(new ArrayStack<Object>(myNumberOfElements), blackhole);
+    }
+
+    @Benchmark
+    public void arrayDequePushPop(Blackhole blackhole)
+    {
+        pushAndPop(new ArrayDeque<Object>(), blackhole);
+    }
+
+    @Benchmark
+    public void presizedArrayDequePushPop(Blackhole blackhole)
+    {
+        pushAndPop(new ArrayDeque<Object>(myNumberOfElements), blackhole);
+    }
+
+    /**
+     * Pushes all elements onto the provided stack and pops them off again.
+     * 
+     * @param stack
+     * @param blackhole
+     */
+    private void pushAndPop(Stack<Object> stack, Blackhole blackhole)
+    {
+        for (Object element : myElements)
+        {
+            stack.push(element);
+        }
+
+        while (!stack.isEmpty())
+        {
+            blackhole.consume(stack.pop());
+        }
+    }
+
+    /**
+     * Pushes all elements onto the provided deque and pops them off again.
+     * 
+     * @param deque
+     * @param blackhole
+     */
+    private void pushAndPop(ArrayDeque<Object> deque, Blackhole blackhole)
+    {
+        for (Object element : myElements)
+        {
+            deque.push(element);
+        }
+
+        while (!deque.isEmpty())
+        {
+            blackhole.consume(deque.pop());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package gakesson.util.collections.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the complete benchmark suite and writes the results as JSON, one file
+ * for the single-threaded benchmarks and one file per thread count for the
+ * concurrent benchmarks. The run.sh script next to the benchmarks downloads
+ * JMH, compiles the collections and the benchmarks, and runs this class:
+ * 
+ * <pre>
+ * benchmarks/run.sh [output directory]
+ * </pre>
+ * 
+ * Alternatively, run it with the compiled collections, the compiled benchmarks
+ * (including the JMH generated sources) and JMH on the class path:
+ * 
+ * <pre>
+ * java -cp &lt;class path&gt; gakesson.util.collections.benchmarks.BenchmarkRunner [output directory]
+ * </pre>
+ * 
+ * The forks, warmup and measurement settings are fixed by the annotations on
+ * each benchmark, so that consecutive runs are comparable.
+ * 
+ */
+public final class BenchmarkRunner
+{
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    private BenchmarkRunner()
+    {
+        // Nothing
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        File outputDirectory = new File(args.length > 0 ? args[0] : ".");
+
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+        {
+            throw new IllegalArgumentException("Not a directory: " + outputDirectory);
+        }
+
+        Options singleThreaded = new OptionsBuilder()
+                .include(benchmarksOf(ArrayStackBenchmark.class))
+                .include(benchmarksOf(BoundedQueueBenchmark.class))
+                .include(benchmarksOf(LazyMapBenchmark.class))
+                .threads(1)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(outputDirectory, "benchmark-results.json").getPath())
+                .build();
+        new Runner(singleThreaded).run();
+
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+
+        for (int threads : THREAD_COUNTS)
+        {
+            if (threads > availableProcessors && threads > 1)
+            {
+                break;
+            }
+
+            Options concurrent = new OptionsBuilder()
+                    .include(benchmarksOf(ConcurrentBoundedQueueBenchmark.class))
+                    .include(benchmarksOf(StripedBoundedQueueBenchmark.class))
+                    .include(benchmarksOf(ConcurrentCacheBenchmark.class))
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(outputDirectory, "benchmark-results-" + threads + "-threads.json")
+                            .getPath())
+                    .build();
+            new Runner(concurrent).run();
+        }
+    }
+
+    /**
+     * Returns the include pattern matching the benchmarks of the provided
+     * class only (and not of classes whose name ends with the same name).
+     * 
+     * @param benchmarkClass
+     * @return
+     */
+    private static String benchmarksOf(Class<?> benchmarkClass)
+    {
+        return "^" + benchmarkClass.getName().replace(".", "\\.") + "\\.";
+    }
+}
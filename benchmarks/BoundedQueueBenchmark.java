@@ -0,0 +1,77 @@
+package gakesson.util.collections.benchmarks;
+
+import gakesson.util.collections.BoundedQueue;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BoundedQueue#offer(Object)} and {@link BoundedQueue#poll()}
+ * on a single thread, for each backing {@link QueueType} at varying fill
+ * levels. The fill level is kept constant by pairing every offer with a poll,
+ * except for {@link #rejectedOffer()} which measures offering to a full queue.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BoundedQueueBenchmark
+{
+    private static final int CAPACITY = 1024;
+    private static final Object ELEMENT = new Object();
+
+    @Param({ "LINKED_LIST", "ARRAY_DEQUE", "CONCURRENT_LINKED_QUEUE", "ARRAY_BLOCKING_QUEUE" })
+    private QueueType myQueueType;
+
+    @Param({ "0", "50", "90" })
+    private int myFillPercentage;
+
+    private Queue<Object> myQueue;
+    private Queue<Object> myFullQueue;
+
+    @Setup
+    public void setUp()
+    {
+        myQueue = new BoundedQueue<Object>(myQueueType.newQueue(CAPACITY), CAPACITY);
+        myFullQueue = new BoundedQueue<Object>(myQueueType.newQueue(CAPACITY), CAPACITY);
+        int fill = CAPACITY * myFillPercentage / 100;
+
+        for (int i = 0; i < fill; ++i)
+        {
+            myQueue.offer(ELEMENT);
+        }
+
+        for (int i = 0; i < CAPACITY; ++i)
+        {
+            myFullQueue.offer(ELEMENT);
+        }
+    }
+
+    @Benchmark
+    public Object offerPoll()
+    {
+        myQueue.offer(ELEMENT);
+        return myQueue.poll();
+    }
+
+    @Benchmark
+    public boolean rejectedOffer()
+    {
+        return myFullQueue.offer(ELEMENT);
+    }
+}
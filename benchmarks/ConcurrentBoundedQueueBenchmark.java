@@ -0,0 +1,73 @@
+package gakesson.util.collections.benchmarks;
+
+import gakesson.util.collections.BoundedQueue;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link BoundedQueue#offer(Object)} paired with
+ * {@link BoundedQueue#poll()} on a queue shared by all benchmark threads, for
+ * the thread-safe backing {@link QueueType}s at varying fill levels. The thread
+ * count is chosen when running the benchmark (see {@link BenchmarkRunner}).
+ * 
+ * Note that {@link BoundedQueue} itself is not thread-safe, meaning that the
+ * capacity is only approximately enforced here. The benchmark is about the
+ * cost of the backing queue and the size check under contention.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConcurrentBoundedQueueBenchmark
+{
+    private static final int CAPACITY = 1024;
+    private static final Object ELEMENT = new Object();
+
+    @Param({ "CONCURRENT_LINKED_QUEUE", "ARRAY_BLOCKING_QUEUE" })
+    private QueueType myQueueType;
+
+    @Param({ "0", "50", "90" })
+    private int myFillPercentage;
+
+    private Queue<Object> myQueue;
+
+    @Setup
+    public void setUp()
+    {
+        if (!myQueueType.isThreadSafe())
+        {
+            throw new IllegalStateException(myQueueType + " is not thread-safe");
+        }
+
+        myQueue = new BoundedQueue<Object>(myQueueType.newQueue(CAPACITY), CAPACITY);
+        int fill = CAPACITY * myFillPercentage / 100;
+
+        for (int i = 0; i < fill; ++i)
+        {
+            myQueue.offer(ELEMENT);
+        }
+    }
+
+    @Benchmark
+    public Object offerPoll()
+    {
+        myQueue.offer(ELEMENT);
+        return myQueue.poll();
+    }
+}
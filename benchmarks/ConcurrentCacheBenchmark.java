@@ -0,0 +1,139 @@
+package gakesson.util.collections.benchmarks;
+
+import gakesson.util.collections.ConcurrentTinyLfuCache;
+import gakesson.util.collections.LazyCacheMap;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput and hit rate of a read-through cache shared by all
+ * benchmark threads, comparing {@link ConcurrentTinyLfuCache} with a
+ * synchronized LRU {@link LazyCacheMap}. The keys follow a skewed distribution
+ * where the probability of a key decreases with its magnitude, and a miss puts
+ * the key into the cache. The hits and misses are reported as secondary
+ * results, from which the hit rate is {@code hits / (hits + misses)}. The
+ * thread count is chosen when running the benchmark (see
+ * {@link BenchmarkRunner}).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ConcurrentCacheBenchmark
+{
+    private static final int MAX_SIZE = 1024;
+    private static final int NUMBER_OF_KEYS = 1 << 16;
+    private static final int KEY_SPACE = 1 << 20;
+
+    /**
+     * The benchmarked caches.
+     */
+    public enum CacheType
+    {
+        TINY_LFU, SYNCHRONIZED_LRU
+    }
+
+    @Param({ "TINY_LFU", "SYNCHRONIZED_LRU" })
+    private CacheType myCacheType;
+
+    private Integer[] myKeys;
+    private ConcurrentTinyLfuCache<Integer, Integer> myTinyLfuCache;
+    private Map<Integer, Integer> myLruCache;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(42);
+        myKeys = new Integer[NUMBER_OF_KEYS];
+
+        for (int i = 0; i < NUMBER_OF_KEYS; ++i)
+        {
+            myKeys[i] = Integer.valueOf((int) Math.pow(KEY_SPACE, random.nextDouble()));
+        }
+
+        myTinyLfuCache = new ConcurrentTinyLfuCache<Integer, Integer>(MAX_SIZE);
+        myLruCache = Collections.synchronizedMap(LazyCacheMap.<Integer, Integer> newLruCacheMap(MAX_SIZE));
+    }
+
+    @Benchmark
+    public Integer readThrough(ThreadState state)
+    {
+        Integer key = myKeys[state.nextIndex()];
+        Integer value;
+
+        if (myCacheType == CacheType.TINY_LFU)
+        {
+            value = myTinyLfuCache.get(key);
+
+            if (value == null)
+            {
+                myTinyLfuCache.put(key, key);
+            }
+        }
+        else
+        {
+            value = myLruCache.get(key);
+
+            if (value == null)
+            {
+                myLruCache.put(key, key);
+            }
+        }
+
+        if (value == null)
+        {
+            state.misses++;
+            return key;
+        }
+
+        state.hits++;
+        return value;
+    }
+
+    /**
+     * The position of a benchmark thread in the keys, and the hits and misses
+     * of the thread reported as secondary results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ThreadState
+    {
+        public long hits;
+        public long misses;
+        private int myIndex;
+
+        @Setup(Level.Iteration)
+        public void setUp()
+        {
+            hits = 0;
+            misses = 0;
+            myIndex = new Random().nextInt(NUMBER_OF_KEYS);
+        }
+
+        int nextIndex()
+        {
+            myIndex = (myIndex + 1) & (NUMBER_OF_KEYS - 1);
+            return myIndex;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package gakesson.util.collections.benchmarks;
+
+import gakesson.util.collections.ArrayStack;
+import gakesson.util.collections.BoundedQueue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Reports the retained heap footprint per instance of the lazy maps compared
+ * to their eager JDK counterparts (see {@link MapType}), when empty and after
+ * a number of entries have been put, as well as of {@link ArrayStack} and
+ * {@link BoundedQueue} at the given capacities. The lazy maps are also
+ * measured after being frozen.
+ *
+ * The footprint is measured by walking the object graph of each instance using
+ * JOL, excluding the keys, values and elements (which are shared by all
+ * measured instances) and the JDK singletons read by empty lazy maps. Run it
+ * using the run.sh script next to the benchmarks:
+ *
+ * <pre>
+ * benchmarks/run.sh --footprint [capacity...]
+ * </pre>
+ *
+ * or with the compiled collections, the compiled benchmarks and JOL on the
+ * class path:
+ *
+ * <pre>
+ * java -Djdk.attach.allowAttachSelf=true -cp &lt;class path&gt; gakesson.util.collections.benchmarks.FootprintHarness [capacity...]
+ * </pre>
+ *
+ * The results depend on the JVM and its settings (e.g. compressed oops and
+ * object alignment), hence the harness should be run with the same settings
+ * as the application being sized.
+ *
+ */
+public final class FootprintHarness
+{
+    private static final int[] NUMBER_OF_ENTRIES = { 0, 1, 4, 16, 1000 };
+    private static final int[] DEFAULT_CAPACITIES = { 16, 1024 };
+    private static final int MAX_ELEMENTS = 1 << 16;
+    private static final String ROW_FORMAT = "%-40s %10s %12s %16s%n";
+
+    private final Integer[] myElements;
+    private final GraphLayout mySharedLayout;
+
+    private FootprintHarness(int maxElements)
+    {
+        myElements = new Integer[maxElements];
+
+        for (int i = 0; i < maxElements; ++i)
+        {
+            myElements[i] = Integer.valueOf(i);
+        }
+
+        mySharedLayout = GraphLayout.parseInstance(myElements, Collections.emptyMap(),
+                Collections.emptyNavigableMap());
+    }
+
+    public static void main(String[] args)
+    {
+        int[] capacities = DEFAULT_CAPACITIES;
+
+        if (args.length > 0)
+        {
+            capacities = new int[args.length];
+
+            for (int i = 0; i < args.length; ++i)
+            {
+                capacities[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        int maxElements = NUMBER_OF_ENTRIES[NUMBER_OF_ENTRIES.length - 1];
+
+        for (int capacity : capacities)
+        {
+            maxElements = Math.max(maxElements, capacity);
+        }
+
+        if (maxElements > MAX_ELEMENTS)
+        {
+            throw new IllegalArgumentException("Capacity exceeds " + MAX_ELEMENTS);
+        }
+
+        FootprintHarness harness = new FootprintHarness(maxElements);
+        System.out.printf(ROW_FORMAT, "instance", "entries", "bytes", "MiB per million");
+        harness.reportMaps();
+        harness.reportStacks(capacities);
+        harness.reportQueues(capacities);
+    }
+
+    /**
+     * Reports the footprint of each {@link MapType} for each number of entries,
+     * including the frozen lazy maps.
+     */
+    private void reportMaps()
+    {
+        for (MapType mapType : MapType.values())
+        {
+            for (int numberOfEntries : NUMBER_OF_ENTRIES)
+            {
+                Map<Integer, Integer> map = mapType.newMap();
+
+                for (int i = 0; i < numberOfEntries; ++i)
+                {
+                    map.put(myElements[i], myElements[i]);
+                }
+
+                report(mapType.name(), numberOfEntries, map);
+
+                if (mapType.isLazy())
+                {
+                    mapType.freeze(map);
+                    report(mapType.name() + " (frozen)", numberOfEntries, map);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports the footprint of {@link ArrayStack} created with each capacity,
+     * when empty and when filled to the capacity.
+     *
+     * @param capacities
+     */
+    private void reportStacks(int[] capacities)
+    {
+        for (int capacity : capacities)
+        {
+            ArrayStack<Integer> stack = new ArrayStack<Integer>(capacity);
+            report("ArrayStack(" + capacity + ")", 0, stack);
+
+            for (int i = 0; i < capacity; ++i)
+            {
+                stack.push(myElements[i]);
+            }
+
+            report("ArrayStack(" + capacity + ")", capacity, stack);
+        }
+    }
+
+    /**
+     * Reports the footprint of {@link BoundedQueue} with each backing
+     * {@link QueueType} and capacity, when empty and when full.
+     *
+     * @param capacities
+     */
+    private void reportQueues(int[] capacities)
+    {
+        for (QueueType queueType : QueueType.values())
+        {
+            for (int capacity : capacities)
+            {
+                String name = "BoundedQueue(" + queueType.name() + ", " + capacity + ")";
+                Queue<Integer> queue = new BoundedQueue<Integer>(queueType.<Integer> newQueue(capacity),
+                        capacity);
+                report(name, 0, queue);
+
+                for (int i = 0; i < capacity; ++i)
+                {
+                    queue.offer(myElements[i]);
+                }
+
+                report(name, capacity, queue);
+            }
+        }
+    }
+
+    /**
+     * Measures and prints the retained footprint of the provided instance.
+     *
+     * @param name
+     * @param numberOfEntries
+     * @param instance
+     */
+    private void report(String name, int numberOfEntries, Object instance)
+    {
+        long bytes = GraphLayout.parseInstance(instance).subtract(mySharedLayout).totalSize();
+        double mebibytesPerMillion = bytes * 1000000.0 / (1024 * 1024);
+        System.out.printf(ROW_FORMAT, name, numberOfEntries, bytes,
+                String.format("%.1f", mebibytesPerMillion));
+    }
+}
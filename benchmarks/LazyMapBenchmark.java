@@ -0,0 +1,93 @@
+package gakesson.util.collections.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures creating, filling and reading the lazy maps compared to their eager
+ * JDK counterparts (see {@link MapType}).
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LazyMapBenchmark
+{
+    @Param({ "LAZY_HASH_MAP", "HASH_MAP", "LAZY_LINKED_HASH_MAP", "LINKED_HASH_MAP", "LAZY_IDENTITY_HASH_MAP",
+            "IDENTITY_HASH_MAP", "LAZY_TREE_MAP", "TREE_MAP" })
+    private MapType myMapType;
+
+    @Param({ "1", "16" })
+    private int myNumberOfEntries;
+
+    private Integer[] myKeys;
+    private Map<Integer, Integer> myFilledMap;
+    private Map<Integer, Integer> myEmptyMap;
+    private int myNextKey;
+
+    @Setup
+    public void setUp()
+    {
+        myKeys = new Integer[myNumberOfEntries];
+        myFilledMap = myMapType.newMap();
+        myEmptyMap = myMapType.newMap();
+
+        for (int i = 0; i < myNumberOfEntries; ++i)
+        {
+            myKeys[i] = Integer.valueOf(i * 7919);
+            myFilledMap.put(myKeys[i], myKeys[i]);
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> create()
+    {
+        return myMapType.newMap();
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> createAndPut()
+    {
+        Map<Integer, Integer> map = myMapType.newMap();
+
+        for (Integer key : myKeys)
+        {
+            map.put(key, key);
+        }
+
+        return map;
+    }
+
+    @Benchmark
+    public Integer getHit()
+    {
+        Integer key = myKeys[myNextKey];
+        myNextKey = (myNextKey + 1) % myKeys.length;
+        return myFilledMap.get(key);
+    }
+
+    @Benchmark
+    public void getFromEmpty(Blackhole blackhole)
+    {
+        for (Integer key : myKeys)
+        {
+            blackhole.consume(myEmptyMap.get(key));
+        }
+    }
+}
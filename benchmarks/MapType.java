@@ -0,0 +1,138 @@
+package gakesson.util.collections.benchmarks;
+
+import gakesson.util.collections.LazyHashMap;
+import gakesson.util.collections.LazyIdentityHashMap;
+import gakesson.util.collections.LazyLinkedHashMap;
+import gakesson.util.collections.LazyTreeMap;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The lazy {@link Map} implementations and their eager JDK counterparts which
+ * are benchmarked and measured against each other. Public since the JMH
+ * generated benchmarks, which are in a sub package, set it as a parameter.
+ * 
+ */
+public enum MapType
+{
+    LAZY_HASH_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return LazyHashMap.newLazyHashMap();
+        }
+
+        @Override
+        <K, V> void freeze(Map<K, V> map)
+        {
+            ((LazyHashMap<K, V>) map).freeze();
+        }
+    },
+    HASH_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return new HashMap<>();
+        }
+    },
+    LAZY_LINKED_HASH_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return LazyLinkedHashMap.newLazyLinkedHashMap();
+        }
+
+        @Override
+        <K, V> void freeze(Map<K, V> map)
+        {
+            ((LazyLinkedHashMap<K, V>) map).freeze();
+        }
+    },
+    LINKED_HASH_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return new LinkedHashMap<>();
+        }
+    },
+    LAZY_IDENTITY_HASH_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return LazyIdentityHashMap.newLazyIdentityHashMap();
+        }
+
+        @Override
+        <K, V> void freeze(Map<K, V> map)
+        {
+            ((LazyIdentityHashMap<K, V>) map).freeze();
+        }
+    },
+    IDENTITY_HASH_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return new IdentityHashMap<>();
+        }
+    },
+    LAZY_TREE_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return LazyTreeMap.newLazyTreeMap();
+        }
+
+        @Override
+        <K, V> void freeze(Map<K, V> map)
+        {
+            ((LazyTreeMap<K, V>) map).freeze();
+        }
+    },
+    TREE_MAP
+    {
+        @Override
+        <K, V> Map<K, V> newMap()
+        {
+            return new TreeMap<>();
+        }
+    };
+
+    /**
+     * Creates a new, empty map of this type.
+     * 
+     * @return
+     */
+    abstract <K, V> Map<K, V> newMap();
+
+    /**
+     * Returns whether or not maps of this type are lazy maps, which may be
+     * frozen using {@link #freeze(Map)}.
+     * 
+     * @return
+     */
+    boolean isLazy()
+    {
+        return name().startsWith("LAZY_");
+    }
+
+    /**
+     * Freezes the provided lazy map of this type.
+     * 
+     * @param map
+     */
+    <K, V> void freeze(Map<K, V> map)
+    {
+        throw new UnsupportedOperationException(name() + " is not lazy");
+    }
+}
@@ -0,0 +1,76 @@
+package gakesson.util.collections.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The backing {@link Queue} implementations benchmarked with
+ * {@link gakesson.util.collections.BoundedQueue}. Public since the JMH
+ * generated benchmarks, which are in a sub package, set it as a parameter.
+ * 
+ */
+public enum QueueType
+{
+    LINKED_LIST(false)
+    {
+        @Override
+        <E> Queue<E> newQueue(int capacity)
+        {
+            return new LinkedList<E>();
+        }
+    },
+    ARRAY_DEQUE(false)
+    {
+        @Override
+        <E> Queue<E> newQueue(int capacity)
+        {
+            return new ArrayDeque<E>(capacity);
+        }
+    },
+    CONCURRENT_LINKED_QUEUE(true)
+    {
+        @Override
+        <E> Queue<E> newQueue(int capacity)
+        {
+            return new ConcurrentLinkedQueue<E>();
+        }
+    },
+    ARRAY_BLOCKING_QUEUE(true)
+    {
+        @Override
+        <E> Queue<E> newQueue(int capacity)
+        {
+            return new ArrayBlockingQueue<E>(capacity);
+        }
+    };
+
+    private final boolean myThreadSafe;
+
+    private QueueType(boolean threadSafe)
+    {
+        myThreadSafe = threadSafe;
+    }
+
+    /**
+     * Returns whether or not queues of this type may be shared between
+     * threads.
+     * 
+     * @return
+     */
+    boolean isThreadSafe()
+    {
+        return myThreadSafe;
+    }
+
+    /**
+     * Creates a new, empty queue of this type able to hold at least the
+     * provided number of elements.
+     * 
+     * @param capacity
+     * @return
+     */
+    abstract <E> Queue<E> newQueue(int capacity);
+}
@@ -0,0 +1,61 @@
+package gakesson.util.collections.benchmarks;
+
+import gakesson.util.collections.StripedBoundedQueue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link StripedBoundedQueue#offer(Object)} paired
+ * with {@link StripedBoundedQueue#poll()} on a queue shared by all benchmark
+ * threads at varying fill levels, to be compared with
+ * {@link ConcurrentBoundedQueueBenchmark} at the same thread counts (see
+ * {@link BenchmarkRunner}).
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StripedBoundedQueueBenchmark
+{
+    private static final int CAPACITY = 1024;
+    private static final Object ELEMENT = new Object();
+
+    @Param({ "0", "50", "90" })
+    private int myFillPercentage;
+
+    private StripedBoundedQueue<Object> myQueue;
+
+    @Setup
+    public void setUp()
+    {
+        myQueue = new StripedBoundedQueue<Object>(CAPACITY);
+        int fill = CAPACITY * myFillPercentage / 100;
+
+        for (int i = 0; i < fill; ++i)
+        {
+            myQueue.offer(ELEMENT);
+        }
+    }
+
+    @Benchmark
+    public Object offerPoll()
+    {
+        myQueue.offer(ELEMENT);
+        return myQueue.poll();
+    }
+}
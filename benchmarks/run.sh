@@ -0,0 +1,65 @@
+#!/bin/sh
+#
+# Compiles the collections and the benchmarks, and runs the complete benchmark
+# suite using BenchmarkRunner, which writes the JSON results into the provided
+# output directory (the current directory by default):
+#
+#   benchmarks/run.sh [output directory]
+#
+# Running with --footprint runs the FootprintHarness instead, passing on the
+# remaining arguments (the capacities):
+#
+#   benchmarks/run.sh --footprint [capacity...]
+#
+# JMH and JOL are downloaded from Maven Central into benchmarks/build/lib,
+# unless JMH_CLASSPATH is set to a class path holding them. Classes which the
+# collections depend on but which are not part of this directory (i.e. the
+# gakesson.util.misc package) are taken from CLASSPATH.
+#
+set -e
+
+JMH_VERSION=1.37
+JOL_VERSION=0.17
+MAVEN_CENTRAL=https://repo.maven.apache.org/maven2
+
+BENCHMARKS_DIR=$(cd "$(dirname "$0")" && pwd)
+SOURCE_DIR=$(dirname "$BENCHMARKS_DIR")
+BUILD_DIR=$BENCHMARKS_DIR/build
+LIB_DIR=$BUILD_DIR/lib
+CLASSES_DIR=$BUILD_DIR/classes
+
+download() {
+    jar=$LIB_DIR/$(basename "$1")
+
+    if [ ! -f "$jar" ]; then
+        curl -fsSL -o "$jar.part" "$MAVEN_CENTRAL/$1"
+        mv "$jar.part" "$jar"
+    fi
+
+    JMH_CLASSPATH=$JMH_CLASSPATH${JMH_CLASSPATH:+:}$jar
+}
+
+if [ -z "$JMH_CLASSPATH" ]; then
+    mkdir -p "$LIB_DIR"
+    download org/openjdk/jmh/jmh-core/$JMH_VERSION/jmh-core-$JMH_VERSION.jar
+    download org/openjdk/jmh/jmh-generator-annprocess/$JMH_VERSION/jmh-generator-annprocess-$JMH_VERSION.jar
+    download net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar
+    download org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar
+    download org/openjdk/jol/jol-core/$JOL_VERSION/jol-core-$JOL_VERSION.jar
+fi
+
+CLASS_PATH=$CLASSES_DIR:$JMH_CLASSPATH${CLASSPATH:+:}$CLASSPATH
+
+rm -rf "$CLASSES_DIR" "$BUILD_DIR/generated"
+mkdir -p "$CLASSES_DIR" "$BUILD_DIR/generated"
+javac -nowarn -d "$CLASSES_DIR" -s "$BUILD_DIR/generated" -cp "$CLASS_PATH" -processorpath "$JMH_CLASSPATH" \
+    $(find "$SOURCE_DIR" -maxdepth 1 -name '*.java' ! -name '*Test.java') \
+    "$BENCHMARKS_DIR"/*.java
+
+if [ "$1" = "--footprint" ]; then
+    shift
+    exec java -Djdk.attach.allowAttachSelf=true -cp "$CLASS_PATH" \
+        gakesson.util.collections.benchmarks.FootprintHarness "$@"
+fi
+
+exec java -cp "$CLASS_PATH" gakesson.util.collections.benchmarks.BenchmarkRunner "$@"